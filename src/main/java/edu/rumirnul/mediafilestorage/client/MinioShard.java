@@ -0,0 +1,28 @@
+package edu.rumirnul.mediafilestorage.client;
+
+import io.minio.MinioClient;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Шард хранилища: ведро и клиенты хранилища minio, в котором оно находится.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString(of = {"name", "bucket"})
+public class MinioShard {
+    /** Уникальное имя шарда, сохраняемое в метаданных файлов. */
+    private final String name;
+    /** Имя ведра. */
+    private final String bucket;
+    /** Клиент для доступа к хранилищу шарда. */
+    private final MinioClient client;
+    /** Клиент для низкоуровневых операций multipart загрузки. */
+    private final MultipartMinioClient multipartClient;
+    /** Клиент, подписывающий ссылки с URL хранилища, доступным клиентам. */
+    private final MinioClient presignClient;
+}
@@ -0,0 +1,102 @@
+package edu.rumirnul.mediafilestorage.client;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.errors.MinioException;
+import io.minio.messages.ListMultipartUploadsResult;
+import io.minio.messages.Part;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+/**
+ * Клиент minio, открывающий низкоуровневые операции multipart загрузки.
+ * Позволяет загружать части одного объекта параллельно, что не поддерживается методом putObject.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    private static final Multimap<String, String> NO_PARAMS = ImmutableMultimap.of();
+    private static final Multimap<String, String> OCTET_STREAM_HEADERS =
+            ImmutableMultimap.of("Content-Type", "application/octet-stream");
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * Начинает multipart загрузку объекта.
+     *
+     * @param bucket имя ведра.
+     * @param object имя объекта.
+     * @return Возвращает идентификатор multipart загрузки.
+     */
+    public String createMultipartUpload(String bucket, String object)
+            throws MinioException, IOException, GeneralSecurityException {
+        return createMultipartUpload(bucket, null, object, OCTET_STREAM_HEADERS, NO_PARAMS)
+                .result()
+                .uploadId();
+    }
+
+    /**
+     * Загружает одну часть объекта.
+     *
+     * @param bucket     имя ведра.
+     * @param object     имя объекта.
+     * @param uploadId   идентификатор multipart загрузки.
+     * @param partNumber номер части, начиная с 1.
+     * @param data       буфер с содержимым части.
+     * @param length     количество байт из буфера, составляющих часть.
+     * @return Возвращает etag загруженной части.
+     */
+    public String uploadPart(String bucket, String object, String uploadId, int partNumber, byte[] data, int length)
+            throws MinioException, IOException, GeneralSecurityException {
+        return uploadPart(bucket, null, object, data, length, uploadId, partNumber, NO_PARAMS, NO_PARAMS)
+                .etag();
+    }
+
+    /**
+     * Завершает multipart загрузку, собирая объект из загруженных частей.
+     *
+     * @param bucket   имя ведра.
+     * @param object   имя объекта.
+     * @param uploadId идентификатор multipart загрузки.
+     * @param parts    загруженные части, упорядоченные по номеру.
+     */
+    public void completeMultipartUpload(String bucket, String object, String uploadId, Part[] parts)
+            throws MinioException, IOException, GeneralSecurityException {
+        completeMultipartUpload(bucket, null, object, uploadId, parts, NO_PARAMS, NO_PARAMS);
+    }
+
+    /**
+     * Отменяет multipart загрузку и освобождает загруженные части.
+     *
+     * @param bucket   имя ведра.
+     * @param object   имя объекта.
+     * @param uploadId идентификатор multipart загрузки.
+     */
+    public void abortMultipartUpload(String bucket, String object, String uploadId)
+            throws MinioException, IOException, GeneralSecurityException {
+        abortMultipartUpload(bucket, null, object, uploadId, NO_PARAMS, NO_PARAMS);
+    }
+
+    /**
+     * Возвращает страницу незавершённых multipart загрузок в ведре.
+     *
+     * @param bucket         имя ведра.
+     * @param keyMarker      имя объекта, после которого начинается страница, или null.
+     * @param uploadIdMarker идентификатор загрузки, после которой начинается страница, или null.
+     * @param maxUploads     максимальное количество загрузок на странице.
+     * @return Возвращает страницу незавершённых загрузок.
+     */
+    public ListMultipartUploadsResult listMultipartUploads(String bucket, String keyMarker, String uploadIdMarker,
+                                                           int maxUploads)
+            throws MinioException, IOException, GeneralSecurityException {
+        return listMultipartUploads(bucket, null, null, null, keyMarker, maxUploads, null, uploadIdMarker,
+                NO_PARAMS, NO_PARAMS)
+                .result();
+    }
+}
@@ -0,0 +1,45 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Класс конфигурации хранения содержимого файлов частями, выделенными по содержимому.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.chunking")
+@Getter
+@Setter
+public class ChunkingConfiguration {
+    /** Разрешено ли обновление содержимого файлов. Обновляемые файлы хранятся частями. */
+    private boolean enabled = false;
+    /** Минимальный размер части. */
+    private DataSize minChunkSize = DataSize.ofKilobytes(256);
+    /** Средний размер части. */
+    private DataSize averageChunkSize = DataSize.ofMegabytes(1);
+    /** Максимальный размер части. */
+    private DataSize maxChunkSize = DataSize.ofMegabytes(4);
+    /** Префикс имён объектов частей в хранилище. */
+    private String objectPrefix = "chunks/";
+    /** Количество частей, загружаемых в хранилище одновременно. */
+    private int uploadThreads = 8;
+    /** Количество потоков скачивания частей. */
+    private int downloadThreads = 16;
+    /** Количество диапазонов одного файла, скачиваемых одновременно. */
+    private int downloadConcurrency = 4;
+    /** Размер диапазона, скачиваемого одним запросом. */
+    private DataSize downloadRangeSize = DataSize.ofMegabytes(1);
+    /** Период удаления частей, на которые не ссылается ни один файл. */
+    private Duration gcInterval = Duration.ofMinutes(10);
+    /** Время, в течение которого часть без ссылок не удаляется и может быть использована повторно. */
+    private Duration gcGracePeriod = Duration.ofHours(1);
+    /** Количество частей, удаляемых в одной транзакции. */
+    private int gcBatchSize = 100;
+}
@@ -0,0 +1,27 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Класс конфигурации объединения одновременных скачиваний одного файла.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.coalescing")
+@Getter
+@Setter
+public class CoalescingConfiguration {
+    /** Включено ли объединение одновременных скачиваний. */
+    private boolean enabled = true;
+    /** Максимальный объём скачанных байтов одного общего скачивания, хранимых для читателей. */
+    private DataSize windowSize = DataSize.ofMegabytes(4);
+    /** Размер блока чтения из хранилища. */
+    private DataSize chunkSize = DataSize.ofKilobytes(64);
+    /** Максимальное количество одновременных общих скачиваний. */
+    private int threads = 64;
+}
@@ -0,0 +1,34 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Класс конфигурации локального дискового кэша содержимого файлов.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.cache.disk")
+@Getter
+@Setter
+public class DiskCacheConfiguration {
+    /** Включён ли дисковый кэш. */
+    private boolean enabled = false;
+    /** Каталог для хранения кэшированных файлов. */
+    private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "media-file-storage-cache");
+    /** Максимальный суммарный размер кэшированных файлов. */
+    private DataSize maxSize = DataSize.ofGigabytes(10);
+    /** Максимальный размер одного файла. Файлы большего размера не кэшируются. */
+    private DataSize maxObjectSize = DataSize.ofMegabytes(512);
+    /** Количество потоков, сохраняющих в кэш файлы, прочитанные из хранилища. */
+    private int fillThreads = 2;
+    /** Максимальное количество файлов в очереди сохранения в кэш. Файлы сверх очереди не кэшируются. */
+    private int fillQueueSize = 64;
+}
@@ -0,0 +1,27 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Класс конфигурации кэша метаданных файлов.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.cache.file-data")
+@Getter
+@Setter
+public class FileDataCacheConfiguration {
+    /** Максимальное количество записей в кэше. */
+    private long maximumSize = 10_000;
+    /** Время жизни записи о существующем файле. Изменения метаданных, сделанные на других экземплярах
+     * (удаление, новая версия, перенос в другой сегмент), видны только после истечения записи. */
+    private Duration ttl = Duration.ofSeconds(5);
+    /** Время жизни записи об отсутствующем в БД файле. */
+    private Duration negativeTtl = Duration.ofSeconds(5);
+}
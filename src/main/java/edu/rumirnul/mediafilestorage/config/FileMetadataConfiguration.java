@@ -0,0 +1,36 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Класс конфигурации заполнения метаданных файлов.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.metadata")
+@Getter
+@Setter
+public class FileMetadataConfiguration {
+    /** Заполнять метаданные файлов, сохранённых до их появления, по сведениям из хранилища. */
+    private boolean backfillEnabled = true;
+    /** Количество файлов, заполняемых за один запуск. */
+    private int backfillBatchSize = 100;
+    /** Пауза между запусками заполнения. */
+    private Duration backfillDelay = Duration.ofSeconds(1);
+    /** Максимальное количество запросов сведений о файлах к хранилищу в секунду. */
+    private double backfillStatRate = 50;
+    /** Количество неудачных попыток получить сведения о файле, после которых файл больше не заполняется. */
+    private int backfillMaxAttempts = 5;
+    /** Период записи в БД времени последнего обращения к файлам. */
+    private Duration accessFlushInterval = Duration.ofMinutes(1);
+    /** Количество файлов, обновляемых одним запросом. */
+    private int accessFlushBatchSize = 1000;
+    /** Максимальное количество файлов в одном запросе пакетного удаления. */
+    private int batchDeleteMaxIds = 5000;
+}
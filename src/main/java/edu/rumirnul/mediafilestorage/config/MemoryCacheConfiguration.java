@@ -0,0 +1,29 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Класс конфигурации кэша небольших файлов в памяти вне heap.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.cache.memory")
+@Getter
+@Setter
+public class MemoryCacheConfiguration {
+    /** Включён ли кэш в памяти. */
+    private boolean enabled = false;
+    /** Объём памяти вне heap под содержимое файлов. */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+    /** Максимальный размер одного файла. Файлы большего размера не кэшируются. */
+    private DataSize maxObjectSize = DataSize.ofKilobytes(64);
+    /** Размер страницы памяти. Содержимое файла занимает целое число страниц. */
+    private DataSize pageSize = DataSize.ofKilobytes(4);
+    /** Количество запоминаемых файлов, запрошенных один раз. Файл попадает в кэш только при повторном запросе. */
+    private long admissionCandidates = 100_000;
+}
@@ -1,5 +1,7 @@
 package edu.rumirnul.mediafilestorage.config;
 
+import edu.rumirnul.mediafilestorage.client.MultipartMinioClient;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.Getter;
 import lombok.Setter;
@@ -7,6 +9,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 /**
  * Класс конфигурации minio хранилища файлов.
@@ -26,6 +31,26 @@ public class MinioConfiguration {
     private String accessKey;
     /** Пароль для доступа к хранилищу файлов. */
     private String secretKey;
+    /** Размер части multipart загрузки. Файлы не больше этого размера загружаются одним запросом. */
+    private DataSize partSize = DataSize.ofMegabytes(10);
+    /** Количество частей одного файла, загружаемых одновременно. */
+    private int uploadConcurrency = 4;
+    /** Количество потоков, загружающих части файлов в хранилище. */
+    private int uploadThreads = 16;
+    /** Общий объём памяти под буферы частей всех одновременных загрузок. */
+    private DataSize uploadBufferMemory = DataSize.ofMegabytes(256);
+    /** Количество диапазонов одного файла, скачиваемых одновременно. Значение 1 отключает параллельное скачивание. */
+    private int downloadConcurrency = 4;
+    /** Размер одного диапазона при параллельном скачивании. */
+    private DataSize downloadRangeSize = DataSize.ofMegabytes(8);
+    /** Минимальный размер файла, начиная с которого файл скачивается параллельными диапазонами. */
+    private DataSize downloadParallelThreshold = DataSize.ofMegabytes(64);
+    /** Количество потоков, скачивающих диапазоны файлов. */
+    private int downloadThreads = 16;
+    /** Время, после которого незавершённая multipart загрузка считается брошенной и удаляется. */
+    private Duration abandonedUploadTimeout = Duration.ofHours(24);
+    /** Интервал между проверками наличия брошенных multipart загрузок. */
+    private Duration abandonedUploadSweepInterval = Duration.ofHours(1);
 
     /**
      * Bean minio клиента для доступа к хранилищу файлов.
@@ -39,4 +64,16 @@ public class MinioConfiguration {
                 .endpoint(url)
                 .build();
     }
+
+    /**
+     * Bean minio клиента для низкоуровневых операций multipart загрузки.
+     * @return Возвращает MultipartMinioClient для доступа к хранилищу файлов.
+     */
+    @Bean
+    public MultipartMinioClient multipartMinioClient() {
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .credentials(accessKey, secretKey)
+                .endpoint(url)
+                .build());
+    }
 }
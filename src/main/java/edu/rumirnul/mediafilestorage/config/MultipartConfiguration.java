@@ -0,0 +1,24 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * Класс конфигурации разбора multipart запросов.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+public class MultipartConfiguration {
+
+    /**
+     * Bean MultipartResolver, пропускающий запросы потоковой загрузки файлов.
+     * @return Возвращает MultipartResolver для DispatcherServlet.
+     */
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public MultipartResolver multipartResolver() {
+        return new StreamingMultipartResolver();
+    }
+}
@@ -0,0 +1,41 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Класс конфигурации упаковки маленьких файлов в общие объекты-сегменты.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.packing")
+@Getter
+@Setter
+public class PackingConfiguration {
+    /** Упаковываются ли маленькие файлы в сегменты. */
+    private boolean enabled = false;
+    /** Максимальный размер файла, который упаковывается в сегмент. Файлы больше хранятся отдельными объектами. */
+    private DataSize maxFileSize = DataSize.ofKilobytes(64);
+    /** Максимальный размер сегмента. */
+    private DataSize maxSegmentSize = DataSize.ofMegabytes(64);
+    /** Максимальное количество файлов, захватываемых из outbox для упаковки за один раз. */
+    private int maxSegmentFiles = 1000;
+    /** Префикс имён объектов сегментов в хранилище. */
+    private String objectPrefix = "segments/";
+    /** Период уплотнения сегментов. */
+    private Duration compactionInterval = Duration.ofMinutes(10);
+    /** Доля живого содержимого, при которой и ниже которой сегмент переписывается. */
+    private double compactionLiveRatio = 0.5;
+    /** Максимальное количество сегментов, переписываемых за один запуск. */
+    private int compactionMaxSegments = 10;
+    /** Время, в течение которого переписанный сегмент не удаляется, чтобы начатые чтения успели завершиться. */
+    private Duration gcGracePeriod = Duration.ofHours(1);
+    /** Количество переписанных сегментов, удаляемых в одной транзакции. */
+    private int gcBatchSize = 100;
+}
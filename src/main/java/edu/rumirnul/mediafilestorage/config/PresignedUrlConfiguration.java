@@ -0,0 +1,43 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Класс конфигурации загрузки и скачивания файлов клиентами напрямую из хранилища по подписанным ссылкам.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.presigned")
+@Getter
+@Setter
+public class PresignedUrlConfiguration {
+    /** Разрешена ли загрузка файлов клиентами напрямую в хранилище по подписанным ссылкам. */
+    private boolean enabled = false;
+    /** Перенаправлять ли скачивания сохранённых файлов на подписанные ссылки хранилища. */
+    private boolean redirectDownloads = false;
+    /** URL хранилища, доступный клиентам. Если не задан, используется URL из {@link MinioConfiguration}. */
+    private String publicUrl;
+    /** Регион хранилища. Задан явно, чтобы подпись ссылок не требовала запроса к хранилищу. */
+    private String region = "us-east-1";
+    /** Время действия ссылки на загрузку. */
+    private Duration uploadUrlTtl = Duration.ofMinutes(15);
+    /** Время действия ссылки на скачивание. */
+    private Duration downloadUrlTtl = Duration.ofMinutes(5);
+    /**
+     * Время после истечения ссылки на загрузку, за которое загрузка, начатая по ссылке, должна завершиться.
+     * Незавершённые после этого загрузки удаляются.
+     */
+    private Duration uploadGracePeriod = Duration.ofHours(1);
+    /** Период проверки незавершённых загрузок. */
+    private Duration gcInterval = Duration.ofMinutes(10);
+    /** Количество незавершённых загрузок, проверяемых одной транзакцией. */
+    private int gcBatchSize = 100;
+    /** Токен, с которым хранилище отправляет уведомления о загрузке объектов. Если не задан, уведомления не принимаются. */
+    private String notificationToken;
+}
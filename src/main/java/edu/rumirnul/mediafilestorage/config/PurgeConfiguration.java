@@ -0,0 +1,28 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Класс конфигурации физического удаления удалённых файлов.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.purge")
+@Getter
+@Setter
+public class PurgeConfiguration {
+    /** Время, через которое удалённый файл удаляется физически. За это время завершаются начатые скачивания. */
+    private Duration delay = Duration.ofMinutes(1);
+    /** Период запуска физического удаления. */
+    private Duration interval = Duration.ofSeconds(10);
+    /** Количество файлов, удаляемых физически в одной транзакции. */
+    private int batchSize = 500;
+    /** Максимальное количество файлов, удаляемых физически в секунду. */
+    private double rate = 1000;
+}
@@ -0,0 +1,32 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Класс конфигурации сверки содержимого bucket с метаданными файлов.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.reconciliation")
+@Getter
+@Setter
+public class ReconciliationConfiguration {
+    /** Выполнять сверку. Сравнение имён в порядке байтов требует PostgreSQL. */
+    private boolean enabled = false;
+    /** Удалять из хранилища объекты, на которые не ссылается ни один файл. Иначе они только учитываются. */
+    private boolean deleteOrphans = false;
+    /** Количество объектов bucket, сверяемых за один запуск. */
+    private int pageSize = 1000;
+    /** Пауза между запусками, ограничивающая нагрузку на хранилище и БД. */
+    private Duration interval = Duration.ofSeconds(1);
+    /** Объекты и файлы моложе этого времени не сверяются, так как их запись может быть ещё не завершена. */
+    private Duration gracePeriod = Duration.ofHours(1);
+    /** Пауза между полными проходами по bucket. */
+    private Duration passInterval = Duration.ofDays(1);
+}
@@ -0,0 +1,14 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Класс конфигурации для периодических фоновых задач.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
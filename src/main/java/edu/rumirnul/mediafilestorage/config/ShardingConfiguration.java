@@ -0,0 +1,50 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс конфигурации распределения объектов по нескольким ведрам или хранилищам minio.
+ * Если шарды не заданы, все объекты хранятся в ведре из {@link MinioConfiguration}.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.sharding")
+@Getter
+@Setter
+public class ShardingConfiguration {
+    /** Шарды хранилища. Имя шарда сохраняется в метаданных файла, поэтому его нельзя менять. */
+    private List<Shard> shards = new ArrayList<>();
+    /** Количество точек кольца consistent hashing на единицу веса шарда. */
+    private int virtualNodes = 128;
+    /** Количество расположений объектов, запоминаемых после чтения из метаданных. */
+    private long placementCacheSize = 100_000;
+
+    /**
+     * Шард хранилища: ведро в одном из хранилищ minio.
+     */
+    @Getter
+    @Setter
+    public static class Shard {
+        /** Уникальное имя шарда. */
+        private String name;
+        /** URL хранилища. Если не задан, используется URL из {@link MinioConfiguration}. */
+        private String url;
+        /** URL хранилища, доступный клиентам по подписанным ссылкам. Если не задан, используется url. */
+        private String publicUrl;
+        /** Имя ведра. */
+        private String bucket;
+        /** Логин для доступа к хранилищу. Если не задан, используется логин из {@link MinioConfiguration}. */
+        private String accessKey;
+        /** Пароль для доступа к хранилищу. Если не задан, используется пароль из {@link MinioConfiguration}. */
+        private String secretKey;
+        /** Вес шарда: доля новых объектов шарда пропорциональна весу. */
+        private int weight = 1;
+    }
+}
@@ -0,0 +1,34 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import edu.rumirnul.mediafilestorage.constant.WebConstant;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * MultipartResolver, который не разбирает запросы потоковой загрузки файлов.
+ * Для таких запросов тело читается контроллером напрямую, поэтому servlet контейнер
+ * не сохраняет части запроса во временные файлы.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public class StreamingMultipartResolver extends StandardServletMultipartResolver {
+
+    private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+    /**
+     * Проверяет, нужно ли разбирать запрос как multipart.
+     *
+     * @param request запрос клиента.
+     * @return Возвращает false для запросов потоковой загрузки, иначе результат стандартной проверки.
+     */
+    @Override
+    public boolean isMultipart(HttpServletRequest request) {
+        if (WebConstant.STREAM_UPLOAD_URL.equals(URL_PATH_HELPER.getPathWithinApplication(request))) {
+            return false;
+        }
+        return super.isMultipart(request);
+    }
+}
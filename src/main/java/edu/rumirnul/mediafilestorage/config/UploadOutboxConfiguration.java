@@ -0,0 +1,92 @@
+package edu.rumirnul.mediafilestorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс конфигурации очереди загрузок файлов в хранилище.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.upload")
+@Getter
+@Setter
+public class UploadOutboxConfiguration {
+    /**
+     * Идентификатор экземпляра приложения, уникальный и неизменный между перезапусками.
+     * Загрузки из outbox выполняет только экземпляр, подготовивший их содержимое. По умолчанию имя хоста.
+     */
+    private String nodeId = hostName();
+    /**
+     * Каталог, в котором содержимое файлов хранится до загрузки в хранилище. Должен находиться на постоянном
+     * томе, который сохраняется между перезапусками экземпляра. По умолчанию каталог во временном каталоге,
+     * содержимое которого может не пережить перезапуск.
+     */
+    private Path stagingDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "media-file-storage-staging");
+    /**
+     * Выведенные из работы экземпляры, загрузки которых передаются этому экземпляру. Подготовленное содержимое
+     * их каталога подготовки должно быть перенесено в каталог подготовки этого экземпляра.
+     */
+    private List<String> adoptedNodes = new ArrayList<>();
+    /** Количество потоков, загружающих файлы в хранилище. */
+    private int workerThreads = 8;
+    /** Количество загрузок, ожидающих свободного потока. */
+    private int queueCapacity = 64;
+    /** Период проверки очереди загрузок в БД. */
+    private Duration pollInterval = Duration.ofMillis(500);
+    /** Время, на которое взятая в обработку запись скрыта от других обработчиков. */
+    private Duration lease = Duration.ofMinutes(5);
+    /** Максимальное количество попыток загрузки, после которого файл помечается как FAILED. */
+    private int maxAttempts = 10;
+    /** Пауза перед первой повторной попыткой. Каждая следующая пауза вдвое больше. */
+    private Duration initialBackoff = Duration.ofSeconds(1);
+    /** Максимальная пауза между попытками. */
+    private Duration maxBackoff = Duration.ofMinutes(10);
+    /**
+     * Сохранять содержимое файлов в локальный журнал вместо отдельных файлов в каталоге подготовки.
+     * Потоковые загрузки при этом тоже подтверждаются после записи в журнал, а не в хранилище.
+     */
+    private boolean journalEnabled = false;
+    /**
+     * Каталог сегментов журнала. Должен находиться на постоянном томе, который сохраняется между перезапусками
+     * экземпляра. Обязателен, если журнал включён.
+     */
+    private Path journalDirectory;
+    /** Размер сегмента журнала, после которого начинается новый сегмент. */
+    private DataSize journalSegmentSize = DataSize.ofMegabytes(256);
+    /** Размер блока содержимого в журнале. */
+    private DataSize journalChunkSize = DataSize.ofMegabytes(1);
+    /**
+     * Время жизни сессии возобновляемой загрузки с момента создания. Должно быть меньше
+     * {@link MinioConfiguration#getAbandonedUploadTimeout()}, иначе multipart загрузка сессии будет отменена раньше.
+     */
+    private Duration sessionTtl = Duration.ofHours(12);
+    /** Период удаления истёкших сессий возобновляемой загрузки. */
+    private Duration sessionGcInterval = Duration.ofMinutes(10);
+    /** Количество истёкших сессий, удаляемых в одной транзакции. */
+    private int sessionGcBatchSize = 100;
+    /** Максимальное количество файлов в одном запросе пакетной загрузки. */
+    private int batchMaxFiles = 500;
+    /** Количество потоков, загружающих файлы пакетных загрузок в хранилище. */
+    private int batchThreads = 16;
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
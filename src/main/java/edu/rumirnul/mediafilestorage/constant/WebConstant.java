@@ -8,4 +8,8 @@ package edu.rumirnul.mediafilestorage.constant;
 public class WebConstant {
     /** URL и версия API. */
     public static final String VERSION_URL = "/api/v1";
-}
\ No newline at end of file
+    /** URL загрузки файла с потоковым разбором multipart запроса без промежуточного сохранения на диск. */
+    public static final String STREAM_UPLOAD_URL = VERSION_URL + "/file/stream/create";
+    /** Заголовок с оригинальным именем файла (URL-encoded UTF-8) при загрузке файла в теле запроса. */
+    public static final String FILE_NAME_HEADER = "X-File-Name";
+}
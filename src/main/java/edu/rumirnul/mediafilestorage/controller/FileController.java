@@ -1,26 +1,73 @@
 package edu.rumirnul.mediafilestorage.controller;
 
 import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
 import edu.rumirnul.mediafilestorage.constant.WebConstant;
+import edu.rumirnul.mediafilestorage.dto.BatchDeleteResultDto;
+import edu.rumirnul.mediafilestorage.dto.BatchUploadResultDto;
+import edu.rumirnul.mediafilestorage.dto.BucketNotificationDto;
+import edu.rumirnul.mediafilestorage.dto.ByteRangeDto;
+import edu.rumirnul.mediafilestorage.dto.FileDownloadDto;
+import edu.rumirnul.mediafilestorage.dto.FileMetadataDto;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.PresignedUploadDto;
+import edu.rumirnul.mediafilestorage.dto.UploadSessionDto;
 import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.exception.IOAccessException;
+import edu.rumirnul.mediafilestorage.exception.MissingFilePartException;
+import edu.rumirnul.mediafilestorage.response.BatchDeleteItemResponse;
+import edu.rumirnul.mediafilestorage.response.BatchDeleteResponse;
+import edu.rumirnul.mediafilestorage.response.BatchUploadItemResponse;
+import edu.rumirnul.mediafilestorage.response.BatchUploadResponse;
+import edu.rumirnul.mediafilestorage.response.FileContentUpdateResponse;
 import edu.rumirnul.mediafilestorage.response.FileDataResponse;
+import edu.rumirnul.mediafilestorage.response.FileStatusResponse;
 import edu.rumirnul.mediafilestorage.response.FileUploadResponse;
+import edu.rumirnul.mediafilestorage.response.PresignedUploadResponse;
+import edu.rumirnul.mediafilestorage.response.UploadSessionResponse;
 import edu.rumirnul.mediafilestorage.service.FileService;
+import edu.rumirnul.mediafilestorage.service.impl.LocalDiskObjectCache;
+import edu.rumirnul.mediafilestorage.util.ByteRangeUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_PROBLEM_JSON_VALUE;
 import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
 
@@ -30,15 +77,31 @@ import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
 @Slf4j
 public class FileController {
 
+    private static final String FILE_PART_NAME = "file";
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+    /** Сохранённые файлы не меняются: имя объекта в хранилище случайное и не переиспользуется. */
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    /** Файл со сроком хранения кэшируется не дольше, чем он остаётся доступен. */
+    private static final String EXPIRING_CACHE_CONTROL = "public, max-age=%d, immutable";
+    /** Содержимое файлов может обновляться, поэтому закэшированный ответ нужно проверять по ETag. */
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+    /** Подписанная ссылка действует недолго, поэтому перенаправление на неё не кэшируется. */
+    private static final String NO_STORE_CACHE_CONTROL = "no-store";
+
     private final FileService fileService;
+    private final ChunkingConfiguration chunkingConfiguration;
 
 
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping(path = "/create", consumes = {MULTIPART_FORM_DATA_VALUE}, produces = {APPLICATION_PROBLEM_JSON_VALUE})
-    @Operation(summary = "Save file and meta information.")
-    public ResponseEntity<FileUploadResponse> fileUpload(@RequestParam("file") MultipartFile multipartFile) {
+    @Operation(summary = "Save file and meta information. The file is deleted after the optional ISO-8601 expiresAt time.")
+    public ResponseEntity<FileUploadResponse> fileUpload(@RequestParam("file") MultipartFile multipartFile,
+                                                         @RequestParam(value = "expiresAt", required = false) Instant expiresAt) {
 
-        final FileData fileItem = fileService.saveFile(multipartFile);
+        final FileData fileItem = fileService.saveFile(multipartFile, expiresAt);
         final FileUploadResponse response = new FileUploadResponse(fileItem.getId());
 
         log.info("Response with file id: {}", response);
@@ -46,26 +109,280 @@ public class FileController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
-    @GetMapping(path = "/get/{id}")
-    @Operation(summary = "Get file by file id.")
-    public void fileDownload(@PathVariable("id") Long fileId, HttpServletResponse response) throws IOException {
-        log.info("Request to receive a file with id: {}", fileId);
+    @PostMapping(path = "/batch/create", consumes = {MULTIPART_FORM_DATA_VALUE}, produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Save several files and meta information. Files are uploaded to storage concurrently, "
+            + "the result of each file is returned in request order.")
+    public ResponseEntity<BatchUploadResponse> batchFileUpload(@RequestParam("file") List<MultipartFile> multipartFiles) {
+        log.info("Request to upload a batch of {} files", multipartFiles.size());
 
-        InputStream inputStream = fileService.getFileById(fileId);
+        List<BatchUploadResultDto> results = fileService.saveFiles(multipartFiles);
+        List<BatchUploadItemResponse> files = results.stream()
+                .map(result -> new BatchUploadItemResponse(result.getOriginalName(), result.getFileId(), result.getError()))
+                .collect(Collectors.toList());
+        int saved = (int) files.stream().filter(file -> file.getId() != null).count();
+        final BatchUploadResponse response = new BatchUploadResponse(saved, files.size() - saved, files);
 
-        FileData fileData = fileService.getFileMetadata(fileId);
-        String encodedOriginalName = URLEncoder.encode(fileData.getOriginalName(), String.valueOf(StandardCharsets.UTF_8));
-        response.addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedOriginalName);
-        response.setCharacterEncoding("UTF-8");
+        log.info("Batch upload saved {} files, failed: {}", response.getSaved(), response.getFailed());
+
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(path = "/stream/create", consumes = {MULTIPART_FORM_DATA_VALUE}, produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Save file and meta information. File content is streamed to storage without local buffering.")
+    public ResponseEntity<FileUploadResponse> fileStreamUpload(HttpServletRequest request) {
+        FileData fileItem = null;
+        try {
+            FileItemIterator iterator = new ServletFileUpload().getItemIterator(request);
+            while (fileItem == null && iterator.hasNext()) {
+                FileItemStream item = iterator.next();
+                if (item.isFormField() || !FILE_PART_NAME.equals(item.getFieldName())) {
+                    continue;
+                }
+                try (InputStream inputStream = item.openStream()) {
+                    fileItem = fileService.saveFile(item.getName(), inputStream, -1);
+                }
+            }
+        } catch (FileUploadException | IOException e) {
+            throw new IOAccessException("Couldn't access the contents of the file");
+        }
+
+        if (fileItem == null) {
+            throw new MissingFilePartException("Required part '" + FILE_PART_NAME + "' is not present");
+        }
+        final FileUploadResponse response = new FileUploadResponse(fileItem.getId());
+
+        log.info("Response with file id: {}", response);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PutMapping(path = "/upload", consumes = {APPLICATION_OCTET_STREAM_VALUE}, produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Save file and meta information. Request body is the raw file content. "
+            + "The file is deleted after the optional ISO-8601 expiresAt time.")
+    public ResponseEntity<FileUploadResponse> fileBinaryUpload(@RequestHeader(WebConstant.FILE_NAME_HEADER) String encodedFileName,
+                                                               @RequestParam(value = "expiresAt", required = false) Instant expiresAt,
+                                                               HttpServletRequest request) throws IOException {
+        String originalFileName = URLDecoder.decode(encodedFileName, String.valueOf(StandardCharsets.UTF_8));
+        long contentLength = request.getContentLengthLong();
+        log.info("Request to upload a file {} with content length: {}", originalFileName, contentLength);
+
+        final FileData fileItem;
+        try (InputStream inputStream = request.getInputStream()) {
+            fileItem = fileService.saveFile(originalFileName, inputStream, contentLength, expiresAt);
+        }
+        final FileUploadResponse response = new FileUploadResponse(fileItem.getId());
+
+        log.info("Response with file id: {}", response);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(path = "/upload/session", produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Start a resumable upload. File content is then uploaded by chunks of the returned size.")
+    public ResponseEntity<UploadSessionResponse> createUploadSession(@RequestHeader(WebConstant.FILE_NAME_HEADER) String encodedFileName,
+                                                                     @RequestParam("size") long size) throws IOException {
+        String originalFileName = URLDecoder.decode(encodedFileName, String.valueOf(StandardCharsets.UTF_8));
+        log.info("Request to start a resumable upload of a file {} with size: {}", originalFileName, size);
+
+        UploadSessionResponse response = toResponse(fileService.createUploadSession(originalFileName, size));
+
+        log.info("Response with upload session: {}", response);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @PutMapping(path = "/upload/session/{sessionId}/chunk/{index}", consumes = {APPLICATION_OCTET_STREAM_VALUE},
+            produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Upload a chunk of a resumable upload. Chunks may be uploaded in parallel and in any order.")
+    public ResponseEntity<UploadSessionResponse> uploadSessionChunk(@PathVariable("sessionId") String sessionId,
+                                                                    @PathVariable("index") int index,
+                                                                    HttpServletRequest request) throws IOException {
+        long contentLength = request.getContentLengthLong();
+        log.info("Request to upload chunk {} of upload session {}, content length: {}", index, sessionId, contentLength);
+
+        UploadSessionDto session;
+        try (InputStream inputStream = request.getInputStream()) {
+            session = fileService.uploadSessionChunk(sessionId, index, inputStream, contentLength);
+        }
+
+        return ResponseEntity.status(HttpStatus.OK).body(toResponse(session));
+    }
+
+    @GetMapping(path = "/upload/session/{sessionId}")
+    @Operation(summary = "Get progress of a resumable upload: received chunks and the file id once completed.")
+    public ResponseEntity<UploadSessionResponse> getUploadSession(@PathVariable("sessionId") String sessionId) {
+        log.info("Request to get upload session: {}", sessionId);
+
+        return ResponseEntity.status(HttpStatus.OK).body(toResponse(fileService.getUploadSession(sessionId)));
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(path = "/upload/session/{sessionId}/complete", produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Complete a resumable upload. File is composed from uploaded chunks in storage.")
+    public ResponseEntity<FileUploadResponse> completeUploadSession(@PathVariable("sessionId") String sessionId) {
+        log.info("Request to complete upload session: {}", sessionId);
+
+        final FileData fileItem = fileService.completeUploadSession(sessionId);
+        final FileUploadResponse response = new FileUploadResponse(fileItem.getId());
+
+        log.info("Response with file id: {}", response);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @DeleteMapping(path = "/upload/session/{sessionId}")
+    @Operation(summary = "Abort a resumable upload and delete uploaded chunks.")
+    public void abortUploadSession(@PathVariable("sessionId") String sessionId) {
+        log.info("Request to abort upload session: {}", sessionId);
+
+        fileService.abortUploadSession(sessionId);
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(path = "/upload/presigned", produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Register a file and get a presigned URL to upload its content directly to storage with PUT.")
+    public ResponseEntity<PresignedUploadResponse> createPresignedUpload(@RequestHeader(WebConstant.FILE_NAME_HEADER) String encodedFileName,
+                                                                         @RequestParam(value = "size", required = false) Long size) throws IOException {
+        String originalFileName = URLDecoder.decode(encodedFileName, String.valueOf(StandardCharsets.UTF_8));
+        log.info("Request to upload a file {} directly to storage, size: {}", originalFileName, size);
+
+        PresignedUploadDto upload = fileService.createPresignedUpload(originalFileName, size != null ? size : -1);
+        PresignedUploadResponse response =
+                new PresignedUploadResponse(upload.getFileId(), upload.getUploadUrl(), upload.getExpiresAt());
+
+        log.info("Response with file id: {}", response.getId());
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(path = "/upload/presigned/{id}/complete", produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Confirm that the file content was uploaded to storage by the presigned URL.")
+    public ResponseEntity<FileUploadResponse> completePresignedUpload(@PathVariable("id") Long fileId) {
+        log.info("Request to complete direct upload of a file with id: {}", fileId);
+
+        final FileData fileItem = fileService.completePresignedUpload(fileId);
+        final FileUploadResponse response = new FileUploadResponse(fileItem.getId());
+
+        log.info("Response with file id: {}", response);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
 
-        ByteStreams.copy(inputStream, response.getOutputStream());
-        response.flushBuffer();
+    @PostMapping(path = "/upload/presigned/notification", consumes = {APPLICATION_JSON_VALUE})
+    @Operation(summary = "Storage bucket notification webhook. Completes direct uploads of created objects.")
+    public void handleBucketNotification(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                         @RequestBody BucketNotificationDto notification) {
+        log.info("Bucket notification with {} records", notification.getRecords().size());
+
+        int completed = fileService.handleBucketNotification(authorization, notification);
+
+        log.info("Direct uploads completed by notification: {}", completed);
+    }
+
+    @PutMapping(path = "/update/{id}", consumes = {APPLICATION_OCTET_STREAM_VALUE}, produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Replace file content by file id. Request body is the raw file content. "
+            + "Content is stored as chunks, only chunks missing in storage are uploaded.")
+    public ResponseEntity<FileContentUpdateResponse> fileContentUpdate(@PathVariable("id") Long fileId,
+                                                                       HttpServletRequest request) throws IOException {
+        long contentLength = request.getContentLengthLong();
+        log.info("Request to update content of a file with id: {}, content length: {}", fileId, contentLength);
+
+        final FileData fileItem;
+        try (InputStream inputStream = request.getInputStream()) {
+            fileItem = fileService.updateFileContent(fileId, inputStream, contentLength);
+        }
+        final FileContentUpdateResponse response =
+                new FileContentUpdateResponse(fileItem.getId(), fileItem.getVersion(), fileItem.getSize());
+
+        log.info("Response with file version: {}", response);
+
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    @RequestMapping(path = "/get/{id}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    @Operation(summary = "Get file by file id. Supports byte range and conditional requests. "
+            + "Redirects to a presigned storage URL when download redirects are enabled.")
+    public void fileDownload(@PathVariable("id") Long fileId,
+                             @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+                             @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRangeHeader,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        log.info("Request to receive a file with id: {}, range: {}", fileId, rangeHeader);
+
+        FileMetadataDto metadata = fileService.findFileMetadata(fileId);
+        String etag = etag(metadata.getFileName(), metadata.getVersion());
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        String cacheControl = cacheControl(metadata.getExpiresAt());
+        if (webRequest.checkNotModified(etag, toEpochMilli(metadata.getLastModified()))) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            log.info("File with id {} was not modified", fileId);
+            return;
+        }
+
+        if (HttpMethod.GET.matches(request.getMethod())) {
+            Optional<String> presignedUrl = fileService.getPresignedDownloadUrl(metadata);
+            if (presignedUrl.isPresent()) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, NO_STORE_CACHE_CONTROL);
+                response.sendRedirect(presignedUrl.get());
+                log.info("File with id {} is redirected to storage", fileId);
+                return;
+            }
+        }
+
+        try (FileDownloadDto download = fileService.getFileForDownload(metadata)) {
+            FileStatDto fileStat = download.getStat();
+            if (metadata.getLastModified() == null
+                    && webRequest.checkNotModified(etag, toEpochMilli(fileStat.getLastModified()))) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+                log.info("File with id {} was not modified", fileId);
+                return;
+            }
+
+            String encodedOriginalName =
+                    URLEncoder.encode(metadata.getOriginalName(), String.valueOf(StandardCharsets.UTF_8));
+            response.addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedOriginalName);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            String contentType = contentType(download);
+
+            if (HttpMethod.HEAD.matches(request.getMethod())) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+                response.setContentType(contentType);
+                response.setContentLengthLong(fileStat.getSize());
+                log.info("File headers were sent in response");
+                return;
+            }
+
+            List<ByteRangeDto> ranges = rangeHeader != null && isIfRangeMatched(ifRangeHeader, etag, fileStat)
+                    ? ByteRangeUtils.resolve(rangeHeader, fileStat.getSize())
+                    : Collections.emptyList();
+
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            if (ranges.isEmpty()) {
+                response.setContentType(contentType);
+                response.setContentLengthLong(fileStat.getSize());
+                writeContent(download, 0, fileStat.getSize(), request, response);
+            } else if (ranges.size() == 1) {
+                ByteRangeDto range = ranges.get(0);
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setContentType(contentType);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, fileStat.getSize()));
+                response.setContentLengthLong(range.getLength());
+                writeContent(download, range.getStart(), range.getLength(), request, response);
+            } else {
+                writeMultipartRanges(download, ranges, contentType, response);
+            }
+            response.flushBuffer();
+        }
 
         log.info("File was sent in response");
     }
 
     @GetMapping(path = "/data/get/{id}")
-    @Operation(summary = "Get file data by file id")
+    @Operation(summary = "Get file data by file id. Supports conditional requests.")
     public ResponseEntity<FileDataResponse> getFileData(@PathVariable("id") Long fileId) {
         log.info("Request to get a file data");
 
@@ -75,6 +392,21 @@ public class FileController {
 
         log.info("Response with file data: {}", response);
 
+        return ResponseEntity.status(HttpStatus.OK)
+                .eTag(etag(fileData.getFileName(), fileData.getVersion()))
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl(fileData.getExpiresAt()))
+                .body(response);
+    }
+
+    @GetMapping(path = "/status/{id}")
+    @Operation(summary = "Get storage status of the file by file id: PENDING, STORED or FAILED.")
+    public ResponseEntity<FileStatusResponse> getFileStatus(@PathVariable("id") Long fileId) {
+        log.info("Request to get a file status with id: {}", fileId);
+
+        FileStatusResponse response = new FileStatusResponse(fileId, fileService.getFileStatus(fileId));
+
+        log.info("Response with file status: {}", response);
+
         return ResponseEntity.status(HttpStatus.OK).body(response);
     }
 
@@ -86,4 +418,147 @@ public class FileController {
         fileService.deleteFileById(fileId);
     }
 
+    @PostMapping(path = "/batch/delete", produces = {APPLICATION_PROBLEM_JSON_VALUE})
+    @Operation(summary = "Delete several files by file ids. Metadata is deleted with one query, "
+            + "content is deleted from storage with bulk requests. Only failed ids are returned.")
+    public ResponseEntity<BatchDeleteResponse> batchFileDelete(@RequestBody List<Long> fileIds) {
+        log.info("Request to delete a batch of {} files", fileIds.size());
+
+        List<BatchDeleteResultDto> results = fileService.deleteFiles(fileIds);
+        List<BatchDeleteItemResponse> failures = results.stream()
+                .filter(result -> result.getError() != null)
+                .map(result -> new BatchDeleteItemResponse(result.getFileId(), result.getError()))
+                .collect(Collectors.toList());
+        final BatchDeleteResponse response =
+                new BatchDeleteResponse(results.size() - failures.size(), failures.size(), failures);
+
+        log.info("Batch delete deleted {} files, failed: {}", response.getDeleted(), response.getFailed());
+
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    /**
+     * Записывает в ответ несколько диапазонов файла в формате multipart/byteranges.
+     * Каждый диапазон скачивается из хранилища отдельным ranged запросом.
+     */
+    private void writeMultipartRanges(FileDownloadDto download, List<ByteRangeDto> ranges, String contentType,
+                                      HttpServletResponse response) throws IOException {
+        FileStatDto fileStat = download.getStat();
+        String boundary = UUID.randomUUID().toString();
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        OutputStream outputStream = response.getOutputStream();
+        for (ByteRangeDto range : ranges) {
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, fileStat.getSize()) + "\r\n\r\n";
+            outputStream.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            if (download.getLocalFile() != null) {
+                LocalDiskObjectCache.transferTo(download.getLocalFile(), range.getStart(), range.getLength(), outputStream);
+            } else {
+                copy(download.openContent(range.getStart(), range.getLength()), outputStream);
+            }
+        }
+        outputStream.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Записывает в ответ часть содержимого файла. Файл из локального дискового кэша отдаётся через sendfile,
+     * если его поддерживает коннектор Tomcat, иначе через {@link java.nio.channels.FileChannel#transferTo}.
+     * Файл из хранилища копируется из потока.
+     */
+    private void writeContent(FileDownloadDto download, long offset, long length,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path localFile = download.getLocalFile();
+        if (localFile == null) {
+            copy(download.openContent(offset, length), response.getOutputStream());
+        } else if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, localFile.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, offset);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, offset + length);
+        } else {
+            LocalDiskObjectCache.transferTo(localFile, offset, length, response.getOutputStream());
+        }
+    }
+
+    /**
+     * Проверяет условие заголовка If-Range. Диапазоны отдаются, только если файл не изменился
+     * с момента получения клиентом указанного ETag или даты.
+     */
+    private boolean isIfRangeMatched(String ifRangeHeader, String etag, FileStatDto fileStat) {
+        if (ifRangeHeader == null) {
+            return true;
+        }
+        if (ifRangeHeader.startsWith("\"")) {
+            return ifRangeHeader.equals(etag);
+        }
+        try {
+            Instant date = ZonedDateTime.parse(ifRangeHeader, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return fileStat.getLastModified() != null
+                    && date.equals(fileStat.getLastModified().truncatedTo(ChronoUnit.SECONDS));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Сильный ETag файла. Имя файла уникально, а содержимое меняется только с номером версии,
+     * поэтому они однозначно определяют содержимое и доступны без запроса к хранилищу.
+     */
+    private static String etag(String fileName, Integer version) {
+        return version != null && version > 0
+                ? "\"" + fileName + "-v" + version + "\""
+                : "\"" + fileName + "\"";
+    }
+
+    /**
+     * Файлы кэшируются клиентами без проверки, пока их содержимое нельзя обновить.
+     *
+     * @param expiresAt время, после которого файл удаляется, или null для бессрочного файла.
+     */
+    private String cacheControl(Instant expiresAt) {
+        if (chunkingConfiguration.isEnabled()) {
+            return REVALIDATE_CACHE_CONTROL;
+        }
+        if (expiresAt == null) {
+            return IMMUTABLE_CACHE_CONTROL;
+        }
+        long maxAge = Math.max(Duration.between(Instant.now(), expiresAt).getSeconds(), 0);
+        return String.format(EXPIRING_CACHE_CONTROL, maxAge);
+    }
+
+    /**
+     * Тип содержимого из метаданных файла, иначе по расширению оригинального имени файла, иначе тип объекта в хранилище.
+     */
+    private static String contentType(FileDownloadDto download) {
+        if (download.getMetadata().getContentType() != null) {
+            return download.getMetadata().getContentType();
+        }
+        String storedContentType = download.getStat().getContentType();
+        return MediaTypeFactory.getMediaType(download.getMetadata().getOriginalName())
+                .map(MediaType::toString)
+                .orElse(storedContentType != null ? storedContentType : APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    private static UploadSessionResponse toResponse(UploadSessionDto session) {
+        return new UploadSessionResponse(session.getId(), session.getChunkSize(), session.getChunkCount(),
+                session.getReceivedChunks(), session.getReceivedBytes(), session.getStatus(),
+                session.getFileId(), session.getExpiresAt());
+    }
+
+    private static long toEpochMilli(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : -1;
+    }
+
+    private static String contentRange(ByteRangeDto range, long size) {
+        return "bytes " + range.getStart() + "-" + range.getEnd() + "/" + size;
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        try (InputStream content = inputStream) {
+            ByteStreams.copy(content, outputStream);
+        }
+    }
 }
\ No newline at end of file
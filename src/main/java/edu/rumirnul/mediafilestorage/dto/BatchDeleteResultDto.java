@@ -0,0 +1,18 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Класс DTO с результатом удаления одного файла пакетного удаления.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class BatchDeleteResultDto {
+    /** Уникальный идентификатор файла из запроса. */
+    private Long fileId;
+    /** Причина, по которой файл не удалён полностью, или null. */
+    private String error;
+}
@@ -0,0 +1,20 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Класс DTO с результатом сохранения одного файла пакетной загрузки.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@Builder
+public class BatchUploadResultDto {
+    /** Оригинальное имя файла. */
+    private String originalName;
+    /** Уникальный идентификатор сохранённого файла или null, если файл не сохранён. */
+    private Long fileId;
+    /** Причина, по которой файл не сохранён, или null. */
+    private String error;
+}
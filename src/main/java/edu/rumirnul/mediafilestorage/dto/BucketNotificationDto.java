@@ -0,0 +1,56 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс DTO уведомления хранилища о событиях с объектами в формате событий S3.
+ * Содержит только используемые поля.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BucketNotificationDto {
+    /** События уведомления. */
+    @JsonProperty("Records")
+    private List<Record> records = new ArrayList<>();
+
+    /**
+     * Событие с объектом.
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Record {
+        /** Имя события, например s3:ObjectCreated:Put. */
+        private String eventName;
+        /** Сведения о ведре и объекте. */
+        private S3Entity s3;
+    }
+
+    /**
+     * Сведения о ведре и объекте события.
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class S3Entity {
+        /** Объект события. */
+        private S3Object object;
+    }
+
+    /**
+     * Объект события.
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class S3Object {
+        /** Имя объекта (URL-encoded). */
+        private String key;
+        /** Размер объекта в байтах. */
+        private Long size;
+    }
+}
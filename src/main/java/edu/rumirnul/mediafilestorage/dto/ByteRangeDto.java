@@ -0,0 +1,25 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Класс DTO для диапазона байт файла. Границы диапазона включаются в него.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class ByteRangeDto {
+    /** Смещение первого байта диапазона. */
+    private long start;
+    /** Смещение последнего байта диапазона. */
+    private long end;
+
+    /**
+     * @return Возвращает количество байт в диапазоне.
+     */
+    public long getLength() {
+        return end - start + 1;
+    }
+}
@@ -0,0 +1,62 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Класс DTO для скачивания файла. Содержит метаданные файла, сведения об объекте в хранилище
+ * и доступ к содержимому, который открывает поток только при обращении.
+ * Удерживает ресурсы скачивания, поэтому закрывается после записи ответа.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@Builder
+public class FileDownloadDto implements Closeable {
+    /** Метаданные файла. */
+    private FileMetadataDto metadata;
+    /** Сведения об объекте в хранилище. */
+    private FileStatDto stat;
+    /** Доступ к содержимому файла. */
+    private Content content;
+    /** Путь к копии файла в локальном дисковом кэше или null, если файл читается из хранилища. */
+    private Path localFile;
+    /** Ресурс, удерживаемый на время скачивания, или null. */
+    private Closeable resource;
+
+    /**
+     * Открывает часть содержимого файла.
+     *
+     * @param offset смещение начала части.
+     * @param length длина части.
+     * @return Возвращает содержимое части файла.
+     */
+    public InputStream openContent(long offset, long length) {
+        return content.open(offset, length);
+    }
+
+    /**
+     * Освобождает ресурсы скачивания.
+     *
+     * @throws IOException не удалось освободить ресурс.
+     */
+    @Override
+    public void close() throws IOException {
+        if (resource != null) {
+            resource.close();
+        }
+    }
+
+    /**
+     * Доступ к содержимому файла в хранилище.
+     */
+    @FunctionalInterface
+    public interface Content {
+        InputStream open(long offset, long length);
+    }
+}
@@ -17,6 +17,6 @@ public class FileDto {
     private InputStream inputStream;
     /** Имя файла. */
     private String name;
-    /** Размер содержимого файла */
+    /** Размер содержимого файла. -1, если размер заранее неизвестен. */
     private long size;
 }
\ No newline at end of file
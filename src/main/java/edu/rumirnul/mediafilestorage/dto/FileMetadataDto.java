@@ -0,0 +1,97 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Класс DTO с метаданными файла из БД.
+ * Заполняется проекцией запроса, без загрузки сущности и прокси Hibernate.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@Builder
+@AllArgsConstructor
+public class FileMetadataDto {
+    /** Уникальный идентификатор. */
+    private Long id;
+    /** Уникальное имя файла в хранилище. */
+    private String fileName;
+    /** Оригинальное имя файла. */
+    private String originalName;
+    /** Расширение файла. */
+    private String extension;
+    /** Размер содержимого файла в байтах. null, если ещё не заполнен. */
+    private Long size;
+    /** Тип содержимого файла. */
+    private String contentType;
+    /** Время создания файла. */
+    private Instant createdAt;
+    /** Состояние сохранения содержимого в хранилище. */
+    private FileStatus status;
+    /** Имя общего объекта с содержимым в хранилище. null, если файл сохранён до дедупликации. */
+    private String objectName;
+    /** Имя сегмента, в который упаковано содержимое. null, если содержимое хранится отдельным объектом. */
+    private String segmentName;
+    /** Смещение содержимого в сегменте. */
+    private Long segmentOffset;
+    /** Хранится ли содержимое частями. null, если содержимое не обновлялось. */
+    private Boolean chunked;
+    /** Номер версии содержимого. null, если содержимое не обновлялось. */
+    private Integer version;
+    /** Время последнего обновления содержимого. */
+    private Instant updatedAt;
+    /** Время, после которого файл недоступен. null у бессрочных файлов. */
+    private Instant expiresAt;
+    /** Шард хранилища, в который записан объект содержимого. null у файлов, сохранённых до разделения на шарды. */
+    private String shard;
+
+    /**
+     * Имя объекта с содержимым файла в хранилище.
+     *
+     * @return Возвращает имя общего объекта или имя файла, если файл сохранён до дедупликации.
+     */
+    public String getStorageName() {
+        return objectName != null ? objectName : fileName;
+    }
+
+    /**
+     * Хранится ли содержимое файла частями.
+     *
+     * @return Возвращает true, если содержимое файла обновлялось и хранится частями.
+     */
+    public boolean isChunkedContent() {
+        return Boolean.TRUE.equals(chunked);
+    }
+
+    /**
+     * Упаковано ли содержимое файла в сегмент.
+     *
+     * @return Возвращает true, если содержимое читается диапазоном из сегмента.
+     */
+    public boolean isPacked() {
+        return segmentName != null && !isChunkedContent();
+    }
+
+    /**
+     * Истёк ли срок хранения файла.
+     *
+     * @return Возвращает true, если у файла есть срок хранения и он прошёл.
+     */
+    public boolean isExpired() {
+        return expiresAt != null && !expiresAt.isAfter(Instant.now());
+    }
+
+    /**
+     * Время последнего изменения содержимого файла.
+     *
+     * @return Возвращает время обновления содержимого или время создания, если содержимое не обновлялось.
+     */
+    public Instant getLastModified() {
+        return updatedAt != null ? updatedAt : createdAt;
+    }
+}
@@ -0,0 +1,24 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Класс DTO со сведениями об объекте в хранилище.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@Builder
+public class FileStatDto {
+    /** Размер объекта в байтах. */
+    private long size;
+    /** ETag объекта в хранилище. */
+    private String etag;
+    /** Время последнего изменения объекта. */
+    private Instant lastModified;
+    /** Тип содержимого объекта. */
+    private String contentType;
+}
@@ -0,0 +1,22 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Класс DTO с зарегистрированным файлом и подписанной ссылкой, по которой клиент загружает его содержимое.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@Builder
+public class PresignedUploadDto {
+    /** Уникальный идентификатор файла. */
+    private Long fileId;
+    /** Подписанная ссылка для загрузки содержимого запросом PUT. */
+    private String uploadUrl;
+    /** Время, после которого ссылка перестаёт действовать. */
+    private Instant expiresAt;
+}
@@ -0,0 +1,22 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Класс DTO с объектом из листинга хранилища.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@Builder
+public class StoredObjectDto {
+    /** Имя объекта в хранилище. */
+    private String name;
+    /** Размер объекта в байтах. */
+    private long size;
+    /** Время последнего изменения объекта. */
+    private Instant lastModified;
+}
@@ -0,0 +1,38 @@
+package edu.rumirnul.mediafilestorage.dto;
+
+import edu.rumirnul.mediafilestorage.entity.UploadSessionStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Класс DTO с состоянием сессии возобновляемой загрузки файла.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@Builder
+public class UploadSessionDto {
+    /** Уникальный идентификатор сессии. */
+    private String id;
+    /** Оригинальное имя файла. */
+    private String originalName;
+    /** Размер файла в байтах. */
+    private long size;
+    /** Размер части в байтах. Последняя часть может быть меньше. */
+    private long chunkSize;
+    /** Количество частей файла. */
+    private int chunkCount;
+    /** Номера загруженных частей, начиная с 0. */
+    private List<Integer> receivedChunks;
+    /** Количество загруженных байт. */
+    private long receivedBytes;
+    /** Состояние сессии. */
+    private UploadSessionStatus status;
+    /** Идентификатор сохранённого файла. Заполняется после завершения сессии. */
+    private Long fileId;
+    /** Время, после которого сессия удаляется. */
+    private Instant expiresAt;
+}
@@ -0,0 +1,63 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Класс Entity части содержимого, общей для всех файлов, хранимых частями.
+ * Часть хранится в хранилище под именем, полученным из её контрольной суммы, и удаляется,
+ * когда на неё не ссылается ни один файл.
+ * Новая часть вставляется без предварительного чтения, чтобы одновременная вставка той же части
+ * другой транзакцией завершилась ошибкой уникальности, а не перезаписала её счётчик ссылок.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "content_chunk")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class ContentChunk implements Persistable<String> {
+    /** Контрольная сумма SHA-256 содержимого части в hex. */
+    @Id
+    @Column(name = "hash")
+    private String hash;
+    /** Размер части в байтах. */
+    @Column(name = "size")
+    private int size;
+    /** Количество ссылок на часть из описаний содержимого файлов. */
+    @Column(name = "ref_count")
+    private int refCount;
+    /** Время, когда на часть не осталось ссылок. null, пока на часть есть ссылки. */
+    @Column(name = "released_at")
+    private Instant releasedAt;
+    /** Имя шарда хранилища, в который записана часть. */
+    @Column(name = "shard")
+    private String shard;
+    /** Часть ещё не сохранена в БД. */
+    @Transient
+    private boolean created;
+
+    @Override
+    public String getId() {
+        return hash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return created;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        created = false;
+    }
+}
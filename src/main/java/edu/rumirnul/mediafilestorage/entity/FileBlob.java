@@ -0,0 +1,55 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Класс Entity объекта с содержимым в хранилище, общего для файлов с одинаковым содержимым.
+ * Объект удаляется из хранилища, когда на него не ссылается ни один файл. Содержимое маленьких файлов
+ * может быть упаковано в сегмент {@link FileSegment}, тогда отдельного объекта в хранилище нет.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "file_blob")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class FileBlob {
+    /** Уникальный идентификатор, выделяется из последовательности блоками. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_blob_seq")
+    @SequenceGenerator(name = "file_blob_seq", sequenceName = "file_blob_seq", allocationSize = 50)
+    private Long id;
+    /** Контрольная сумма SHA-256 содержимого в hex. */
+    @Column(name = "checksum")
+    private String checksum;
+    /** Имя объекта в хранилище. */
+    @Column(name = "object_name")
+    private String objectName;
+    /** Размер содержимого в байтах. */
+    @Column(name = "size")
+    private long size;
+    /** Имя сегмента {@link FileSegment}, в который упаковано содержимое, или null, если объект отдельный. */
+    @Column(name = "segment_name")
+    private String segmentName;
+    /** Смещение содержимого в сегменте. */
+    @Column(name = "segment_offset")
+    private Long segmentOffset;
+    /** Количество файлов, ссылающихся на объект. */
+    @Column(name = "ref_count")
+    private int refCount;
+    /** Состояние сохранения содержимого в хранилище. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private FileStatus status;
+    /** Время создания объекта. */
+    @Column(name = "created_at")
+    private Instant createdAt;
+}
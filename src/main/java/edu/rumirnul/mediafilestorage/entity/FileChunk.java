@@ -0,0 +1,42 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Класс Entity части в описании содержимого файла, хранимого частями.
+ * Содержимое файла - части в порядке {@link #seq}.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "file_chunk")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class FileChunk {
+    /** Уникальный идентификатор. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    /** Идентификатор файла. */
+    @Column(name = "file_id")
+    private Long fileId;
+    /** Порядковый номер части в файле. */
+    @Column(name = "seq")
+    private int seq;
+    /** Контрольная сумма части {@link ContentChunk#getHash()}. */
+    @Column(name = "chunk_hash")
+    private String chunkHash;
+    /** Смещение части от начала файла. */
+    @Column(name = "chunk_offset")
+    private long offset;
+    /** Размер части в байтах. */
+    @Column(name = "length")
+    private int length;
+}
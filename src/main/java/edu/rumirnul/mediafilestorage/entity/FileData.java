@@ -1,12 +1,16 @@
 package edu.rumirnul.mediafilestorage.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Where;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.UUID;
 
 /**
  * Класс Entity для сохранения информации в БД.
+ * Удалённые {@link #deletedAt} и истёкшие {@link #expiresAt} файлы остаются в таблице до физического удаления,
+ * но не читаются запросами через сущность.
  *
  * @author Alexey Svistunov
  * @version 1.0
@@ -14,6 +18,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "file")
+@Where(clause = "deleted_at is null and (expires_at is null or expires_at > current_timestamp)")
 @Getter
 @Setter
 @Builder
@@ -21,9 +26,13 @@ import java.util.UUID;
 @AllArgsConstructor
 @ToString
 public class FileData {
-    /** Уникальный идентификатор. */
+    /**
+     * Уникальный идентификатор. Идентификаторы выделяются из последовательности блоками по allocationSize,
+     * поэтому вставки строк объединяются в JDBC пакеты.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_seq")
+    @SequenceGenerator(name = "file_seq", sequenceName = "file_seq", allocationSize = 50)
     private Long id;
     /** Сгенерированное уникальное имя файла для хранения в хранилище. */
     @Column(name = "file_name", unique = true)
@@ -34,4 +43,78 @@ public class FileData {
     /** Расширение файла. */
     @Column(name = "extension")
     private String extension;
+    /** Размер содержимого файла в байтах. */
+    @Column(name = "size")
+    private Long size;
+    /** Тип содержимого файла. */
+    @Column(name = "content_type")
+    private String contentType;
+    /** Контрольная сумма SHA-256 содержимого файла в hex. */
+    @Column(name = "checksum")
+    private String checksum;
+    /** Время создания файла. */
+    @Column(name = "created_at")
+    private Instant createdAt;
+    /** Время последнего обращения к файлу. Обновляется пакетно, с задержкой. */
+    @Column(name = "last_accessed_at")
+    private Instant lastAccessedAt;
+    /** Состояние сохранения содержимого в хранилище. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private FileStatus status;
+    /**
+     * Имя объекта с содержимым в хранилище, общего для файлов с одинаковым содержимым {@link FileBlob}.
+     * null у файлов, сохранённых до дедупликации: их содержимое хранится под именем файла.
+     */
+    @Column(name = "object_name")
+    private String objectName;
+    /**
+     * Имя сегмента {@link FileSegment}, в который упаковано содержимое. null, если содержимое хранится
+     * отдельным объектом. Копия из общего объекта {@link FileBlob}, чтобы файл читался без соединения таблиц.
+     */
+    @Column(name = "segment_name")
+    private String segmentName;
+    /** Смещение содержимого в сегменте. Длина содержимого равна размеру файла. */
+    @Column(name = "segment_offset")
+    private Long segmentOffset;
+    /** Шард хранилища, в который записан объект содержимого. null у файлов, сохранённых до разделения на шарды,
+     * они хранятся в шарде по умолчанию. */
+    @Column(name = "shard")
+    private String shard;
+    /** Хранится ли содержимое частями {@link FileChunk}. null у файлов, содержимое которых не обновлялось. */
+    @Column(name = "chunked")
+    private Boolean chunked;
+    /** Номер версии содержимого, увеличивается при каждом обновлении. null у файлов, содержимое которых не обновлялось. */
+    @Column(name = "version")
+    private Integer version;
+    /** Время последнего обновления содержимого. */
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+    /** Время удаления файла. Содержимое и строка удаляются физически позже, пачками. */
+    @Column(name = "deleted_at")
+    private Instant deletedAt;
+    /** Время, после которого файл перестаёт быть доступен и удаляется физически. null у бессрочных файлов. */
+    @Column(name = "expires_at")
+    private Instant expiresAt;
+    /** Количество неудачных попыток заполнить метаданные файла, сохранённого до их появления. */
+    @Column(name = "backfill_attempts")
+    private Integer backfillAttempts;
+
+    /**
+     * Имя объекта с содержимым файла в хранилище.
+     *
+     * @return Возвращает имя общего объекта или имя файла, если файл сохранён до дедупликации.
+     */
+    public String getStorageName() {
+        return objectName != null ? objectName : fileName;
+    }
+
+    /**
+     * Хранится ли содержимое файла частями.
+     *
+     * @return Возвращает true, если содержимое файла обновлялось и хранится частями.
+     */
+    public boolean isChunkedContent() {
+        return Boolean.TRUE.equals(chunked);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Класс Entity объекта-сегмента в хранилище, в который подряд записано содержимое нескольких маленьких файлов.
+ * Живое содержимое сегмента - это общие объекты {@link FileBlob}, которые на него ссылаются.
+ * Переписанный сегмент удаляется из хранилища не сразу, а после {@link #retiredAt} и периода ожидания.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "file_segment")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class FileSegment {
+    /** Имя объекта сегмента в хранилище. */
+    @Id
+    @Column(name = "name")
+    private String name;
+    /** Размер сегмента в байтах. */
+    @Column(name = "size")
+    private long size;
+    /** Время записи сегмента. */
+    @Column(name = "created_at")
+    private Instant createdAt;
+    /** Имя шарда хранилища, в который записан сегмент. */
+    @Column(name = "shard")
+    private String shard;
+    /** Время, когда живое содержимое было переписано в другой сегмент. null у используемых сегментов. */
+    @Column(name = "retired_at")
+    private Instant retiredAt;
+}
@@ -0,0 +1,18 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+/**
+ * Состояние сохранения содержимого файла в хранилище.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public enum FileStatus {
+    /** Метаданные сохранены, содержимое ещё загружается в хранилище. */
+    PENDING,
+    /** Содержимое сохранено в хранилище. */
+    STORED,
+    /** Метаданные зарегистрированы, содержимое загружается клиентом напрямую в хранилище по подписанной ссылке. */
+    AWAITING_UPLOAD,
+    /** Содержимое не удалось сохранить или оно отсутствует в хранилище. */
+    FAILED
+}
@@ -0,0 +1,43 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Класс Entity состояния сверки bucket с метаданными файлов.
+ * Хранит имя последнего сверенного объекта, поэтому проход по bucket продолжается после перезапуска приложения.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "reconciliation_checkpoint")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class ReconciliationCheckpoint {
+    /** Имя сверяемого bucket. */
+    @Id
+    @Column(name = "id")
+    private String id;
+    /** Имя последнего сверенного объекта или null, если проход не начат. */
+    @Column(name = "last_key")
+    private String lastKey;
+    /** Время начала текущего прохода. */
+    @Column(name = "pass_started_at")
+    private Instant passStartedAt;
+    /** Время завершения последнего полного прохода. */
+    @Column(name = "pass_completed_at")
+    private Instant passCompletedAt;
+    /** Количество объектов без файлов, найденных за текущий проход. */
+    @Column(name = "orphan_objects")
+    private long orphanObjects;
+    /** Количество файлов без объектов, найденных за текущий проход. */
+    @Column(name = "dangling_files")
+    private long danglingFiles;
+}
@@ -0,0 +1,32 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Класс Entity объекта в хранилище, на который больше не ссылается ни один файл.
+ * Объект удаляется из хранилища не сразу, а после {@link #retiredAt} и периода ожидания,
+ * чтобы скачивания, начатые до обновления файла, успели прочитать старую версию содержимого.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "retired_object")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class RetiredObject {
+    /** Имя объекта в хранилище. */
+    @Id
+    @Column(name = "name")
+    private String name;
+    /** Время, когда на объект не осталось ссылок. */
+    @Column(name = "retired_at")
+    private Instant retiredAt;
+}
@@ -0,0 +1,63 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Класс Entity записи outbox о загрузке содержимого файла в хранилище.
+ * Запись создаётся в одной транзакции с метаданными файла и удаляется после успешной загрузки
+ * или исчерпания попыток.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "upload_outbox")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class UploadOutbox {
+    /** Уникальный идентификатор. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    /** Идентификатор файла. */
+    @Column(name = "file_id")
+    private Long fileId;
+    /** Имя файла в хранилище. */
+    @Column(name = "file_name")
+    private String fileName;
+    /** Экземпляр приложения, на котором подготовлено содержимое файла. */
+    @Column(name = "owner")
+    private String owner;
+    /** Путь к содержимому файла в локальном каталоге подготовки. */
+    @Column(name = "staged_path")
+    private String stagedPath;
+    /** Размер содержимого файла в байтах. */
+    @Column(name = "size")
+    private long size;
+    /** Количество неудачных попыток загрузки. */
+    @Column(name = "attempts")
+    private int attempts;
+    /** Время, начиная с которого запись может быть взята в обработку. */
+    @Column(name = "available_at")
+    private Instant availableAt;
+    /** Токен последнего захвата записи. Результат загрузки записывается, только если токен совпадает. */
+    @Column(name = "claim_token")
+    private String claimToken;
+    /** Загрузка отменена удалением всех файлов с этим содержимым. */
+    @Column(name = "cancelled")
+    private boolean cancelled;
+    /** Запись хранит копию содержимого, загрузка которого уже выполняется по другой записи, и не обрабатывается.
+     * Копия нужна для повторной загрузки, если загрузка по основной записи окончательно не удалась. */
+    @Column(name = "standby")
+    private boolean standby;
+    /** Ошибка последней неудачной попытки. */
+    @Column(name = "last_error")
+    private String lastError;
+}
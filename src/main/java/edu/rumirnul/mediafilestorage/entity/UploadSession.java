@@ -0,0 +1,76 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Класс Entity сессии возобновляемой загрузки файла.
+ * Файл загружается частями одного размера в любом порядке, каждая часть становится частью
+ * multipart загрузки в хранилище. После загрузки всех частей файл собирается на стороне хранилища.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "upload_session")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class UploadSession {
+    /** Уникальный идентификатор сессии. */
+    @Id
+    @Column(name = "id")
+    private String id;
+    /** Сгенерированное уникальное имя файла для хранения в хранилище. */
+    @Column(name = "file_name")
+    private String fileName;
+    /** Оригинальное имя файла. */
+    @Column(name = "original_name")
+    private String originalName;
+    /** Расширение файла. */
+    @Column(name = "extension")
+    private String extension;
+    /** Тип содержимого файла. */
+    @Column(name = "content_type")
+    private String contentType;
+    /** Идентификатор multipart загрузки в хранилище. */
+    @Column(name = "upload_id")
+    private String uploadId;
+    /** Размер файла в байтах. */
+    @Column(name = "size")
+    private long size;
+    /** Размер части в байтах. Последняя часть может быть меньше. */
+    @Column(name = "chunk_size")
+    private long chunkSize;
+    /** Количество частей файла. */
+    @Column(name = "chunk_count")
+    private int chunkCount;
+    /** Состояние сессии. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private UploadSessionStatus status;
+    /** Идентификатор сохранённого файла. Заполняется после завершения сессии. */
+    @Column(name = "file_id")
+    private Long fileId;
+    /** Время создания сессии. */
+    @Column(name = "created_at")
+    private Instant createdAt;
+    /** Время, после которого сессия удаляется вместе с незавершённой multipart загрузкой. */
+    @Column(name = "expires_at")
+    private Instant expiresAt;
+
+    /**
+     * Размер части с указанным номером.
+     *
+     * @param index номер части, начиная с 0.
+     * @return Возвращает размер части в байтах.
+     */
+    public int getChunkLength(int index) {
+        return (int) Math.min(chunkSize, size - index * chunkSize);
+    }
+}
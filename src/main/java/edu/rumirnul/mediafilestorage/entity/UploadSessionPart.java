@@ -0,0 +1,38 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Класс Entity загруженной части сессии возобновляемой загрузки.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Entity
+@Table(name = "upload_session_part")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class UploadSessionPart {
+    /** Уникальный идентификатор. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    /** Идентификатор сессии. */
+    @Column(name = "session_id")
+    private String sessionId;
+    /** Номер части, начиная с 0. Части multipart загрузки нумеруются с 1. */
+    @Column(name = "chunk_index")
+    private int chunkIndex;
+    /** Размер части в байтах. */
+    @Column(name = "size")
+    private long size;
+    /** etag части multipart загрузки. */
+    @Column(name = "etag")
+    private String etag;
+}
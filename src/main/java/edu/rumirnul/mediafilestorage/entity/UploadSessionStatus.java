@@ -0,0 +1,14 @@
+package edu.rumirnul.mediafilestorage.entity;
+
+/**
+ * Состояние сессии возобновляемой загрузки файла.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public enum UploadSessionStatus {
+    /** Сессия принимает части файла. */
+    ACTIVE,
+    /** Файл собран из частей и сохранён. */
+    COMPLETED
+}
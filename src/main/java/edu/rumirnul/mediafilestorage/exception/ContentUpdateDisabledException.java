@@ -0,0 +1,7 @@
+package edu.rumirnul.mediafilestorage.exception;
+
+public class ContentUpdateDisabledException extends RuntimeException {
+    public ContentUpdateDisabledException(String message) {
+        super(message);
+    }
+}
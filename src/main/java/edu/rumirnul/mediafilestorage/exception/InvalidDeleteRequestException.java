@@ -0,0 +1,7 @@
+package edu.rumirnul.mediafilestorage.exception;
+
+public class InvalidDeleteRequestException extends RuntimeException {
+    public InvalidDeleteRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package edu.rumirnul.mediafilestorage.exception;
+
+public class InvalidUploadRequestException extends RuntimeException {
+    public InvalidUploadRequestException(String message) {
+        super(message);
+    }
+}
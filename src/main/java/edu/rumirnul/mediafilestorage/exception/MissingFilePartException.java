@@ -0,0 +1,7 @@
+package edu.rumirnul.mediafilestorage.exception;
+
+public class MissingFilePartException extends RuntimeException {
+    public MissingFilePartException(String message) {
+        super(message);
+    }
+}
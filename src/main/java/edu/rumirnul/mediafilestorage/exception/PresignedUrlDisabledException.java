@@ -0,0 +1,7 @@
+package edu.rumirnul.mediafilestorage.exception;
+
+public class PresignedUrlDisabledException extends RuntimeException {
+    public PresignedUrlDisabledException(String message) {
+        super(message);
+    }
+}
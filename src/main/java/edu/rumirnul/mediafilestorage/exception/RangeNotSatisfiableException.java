@@ -0,0 +1,14 @@
+package edu.rumirnul.mediafilestorage.exception;
+
+import lombok.Getter;
+
+@Getter
+public class RangeNotSatisfiableException extends RuntimeException {
+    /** Размер файла, сообщаемый клиенту в заголовке Content-Range. */
+    private final long size;
+
+    public RangeNotSatisfiableException(String message, long size) {
+        super(message);
+        this.size = size;
+    }
+}
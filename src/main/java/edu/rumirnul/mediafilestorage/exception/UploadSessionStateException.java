@@ -0,0 +1,7 @@
+package edu.rumirnul.mediafilestorage.exception;
+
+public class UploadSessionStateException extends RuntimeException {
+    public UploadSessionStateException(String message) {
+        super(message);
+    }
+}
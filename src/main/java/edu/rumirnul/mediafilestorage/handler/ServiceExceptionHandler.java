@@ -4,6 +4,7 @@ import edu.rumirnul.mediafilestorage.exception.*;
 import edu.rumirnul.mediafilestorage.response.BaseWebResponse;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -79,6 +80,104 @@ public class ServiceExceptionHandler {
                 .body(new BaseWebResponse(createErrorMessage(exc)));
     }
 
+    /**
+     * Отлавливает и обрабатывает ContentUpdateDisabledException.
+     *
+     * @param exc исключение.
+     * @return Возвращает ResponseEntity со статусом METHOD_NOT_ALLOWED и сообщением об ошибке.
+     */
+    @ExceptionHandler(ContentUpdateDisabledException.class)
+    public ResponseEntity<BaseWebResponse> handleContentUpdateDisabledException(@NonNull final ContentUpdateDisabledException exc) {
+        return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    /**
+     * Отлавливает и обрабатывает PresignedUrlDisabledException.
+     *
+     * @param exc исключение.
+     * @return Возвращает ResponseEntity со статусом METHOD_NOT_ALLOWED и сообщением об ошибке.
+     */
+    @ExceptionHandler(PresignedUrlDisabledException.class)
+    public ResponseEntity<BaseWebResponse> handlePresignedUrlDisabledException(@NonNull final PresignedUrlDisabledException exc) {
+        return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    /**
+     * Отлавливает и обрабатывает InvalidUploadRequestException.
+     *
+     * @param exc исключение.
+     * @return Возвращает ResponseEntity со статусом BAD_REQUEST и сообщением об ошибке.
+     */
+    @ExceptionHandler(InvalidUploadRequestException.class)
+    public ResponseEntity<BaseWebResponse> handleInvalidUploadRequestException(@NonNull final InvalidUploadRequestException exc) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    /**
+     * Отлавливает и обрабатывает InvalidDeleteRequestException.
+     *
+     * @param exc исключение.
+     * @return Возвращает ResponseEntity со статусом BAD_REQUEST и сообщением об ошибке.
+     */
+    @ExceptionHandler(InvalidDeleteRequestException.class)
+    public ResponseEntity<BaseWebResponse> handleInvalidDeleteRequestException(@NonNull final InvalidDeleteRequestException exc) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    /**
+     * Отлавливает и обрабатывает UploadSessionNotFoundException.
+     *
+     * @param exc исключение.
+     * @return Возвращает ResponseEntity со статусом NOT_FOUND и сообщением об ошибке.
+     */
+    @ExceptionHandler(UploadSessionNotFoundException.class)
+    public ResponseEntity<BaseWebResponse> handleUploadSessionNotFoundException(@NonNull final UploadSessionNotFoundException exc) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    /**
+     * Отлавливает и обрабатывает UploadSessionStateException.
+     *
+     * @param exc исключение.
+     * @return Возвращает ResponseEntity со статусом CONFLICT и сообщением об ошибке.
+     */
+    @ExceptionHandler(UploadSessionStateException.class)
+    public ResponseEntity<BaseWebResponse> handleUploadSessionStateException(@NonNull final UploadSessionStateException exc) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    /**
+     * Отлавливает и обрабатывает MissingFilePartException.
+     *
+     * @param exc исключение.
+     * @return Возвращает ResponseEntity со статусом BAD_REQUEST и сообщением об ошибке.
+     */
+    @ExceptionHandler(MissingFilePartException.class)
+    public ResponseEntity<BaseWebResponse> handleMissingFilePartException(@NonNull final MissingFilePartException exc) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    /**
+     * Отлавливает и обрабатывает RangeNotSatisfiableException.
+     *
+     * @param exc исключение.
+     * @return Возвращает ResponseEntity со статусом REQUESTED_RANGE_NOT_SATISFIABLE, размером файла
+     * в заголовке Content-Range и сообщением об ошибке.
+     */
+    @ExceptionHandler(RangeNotSatisfiableException.class)
+    public ResponseEntity<BaseWebResponse> handleRangeNotSatisfiableException(@NonNull final RangeNotSatisfiableException exc) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + exc.getSize())
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
     /**
      * Формирует сообщение об исключении для отправки клиенту.
      *
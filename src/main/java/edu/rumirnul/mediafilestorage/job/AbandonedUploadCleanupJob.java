@@ -0,0 +1,72 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import edu.rumirnul.mediafilestorage.service.impl.MinioShardRouter;
+import io.minio.messages.ListMultipartUploadsResult;
+import io.minio.messages.Upload;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Периодическая задача удаления брошенных multipart загрузок.
+ * Незавершённые загрузки остаются в хранилище, если приложение было остановлено во время загрузки
+ * или не смогло её отменить, и занимают место до явной отмены. Загрузки отменяются во всех шардах хранилища.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AbandonedUploadCleanupJob {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final MinioShardRouter minioShardRouter;
+    private final MinioConfiguration minioConfiguration;
+
+    /**
+     * Отменяет multipart загрузки, начатые раньше {@link MinioConfiguration#getAbandonedUploadTimeout()}.
+     */
+    @Scheduled(initialDelayString = "#{@minioConfiguration.abandonedUploadSweepInterval.toMillis()}",
+            fixedDelayString = "#{@minioConfiguration.abandonedUploadSweepInterval.toMillis()}")
+    public void abortAbandonedUploads() {
+        ZonedDateTime threshold = ZonedDateTime.now().minus(minioConfiguration.getAbandonedUploadTimeout());
+        log.info("Looking for multipart uploads started before {}", threshold);
+
+        int aborted = 0;
+        for (MinioShard shard : minioShardRouter.getShards()) {
+            aborted += abortAbandonedUploads(shard, threshold);
+        }
+        log.info("Aborted abandoned multipart uploads: {}", aborted);
+    }
+
+    private int abortAbandonedUploads(MinioShard shard, ZonedDateTime threshold) {
+        String bucket = shard.getBucket();
+        int aborted = 0;
+        try {
+            String keyMarker = null;
+            String uploadIdMarker = null;
+            ListMultipartUploadsResult page;
+            do {
+                page = shard.getMultipartClient().listMultipartUploads(bucket, keyMarker, uploadIdMarker, PAGE_SIZE);
+                for (Upload upload : page.uploads()) {
+                    if (upload.initiated() != null && upload.initiated().isBefore(threshold)) {
+                        shard.getMultipartClient().abortMultipartUpload(bucket, upload.objectName(), upload.uploadId());
+                        aborted++;
+                    }
+                }
+                keyMarker = page.nextKeyMarker();
+                uploadIdMarker = page.nextUploadIdMarker();
+            } while (page.isTruncated());
+        } catch (Exception e) {
+            log.error("Failed to clean up abandoned multipart uploads of shard {}", shard.getName(), e);
+        }
+        return aborted;
+    }
+}
@@ -0,0 +1,42 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import edu.rumirnul.mediafilestorage.config.ReconciliationConfiguration;
+import edu.rumirnul.mediafilestorage.service.impl.BucketReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая задача сверки bucket с метаданными файлов. Объекты без файлов и файлы без объектов
+ * накапливаются, так как запись в хранилище и в БД выполняется отдельными шагами без общей транзакции.
+ * За один запуск сверяется одна страница bucket, поэтому нагрузка на хранилище ограничена
+ * размером страницы и паузой между запусками.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BucketReconciliationJob {
+
+    private final BucketReconciliationService bucketReconciliationService;
+    private final ReconciliationConfiguration reconciliationConfiguration;
+
+    /**
+     * Сверяет следующую страницу bucket, продолжая проход с сохранённого места.
+     */
+    @Scheduled(initialDelayString = "#{@reconciliationConfiguration.interval.toMillis()}",
+            fixedDelayString = "#{@reconciliationConfiguration.interval.toMillis()}")
+    public void reconcile() {
+        if (!reconciliationConfiguration.isEnabled()) {
+            return;
+        }
+        try {
+            bucketReconciliationService.reconcilePage();
+        } catch (Exception e) {
+            log.error("Failed to reconcile bucket with file metadata", e);
+        }
+    }
+}
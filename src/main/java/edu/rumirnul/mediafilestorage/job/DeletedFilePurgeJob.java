@@ -0,0 +1,76 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import com.google.common.util.concurrent.RateLimiter;
+import edu.rumirnul.mediafilestorage.config.PurgeConfiguration;
+import edu.rumirnul.mediafilestorage.service.impl.FilePurgeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая задача физического удаления файлов, помеченных удалёнными, и файлов с истёкшим сроком хранения.
+ * Удаление файла только помечает строку, а содержимое и строки удаляются здесь пачками,
+ * поэтому всплеск удалений не занимает общий пул асинхронных задач. Частота удаления обоих видов файлов
+ * ограничена общим {@link PurgeConfiguration#getRate()}.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class DeletedFilePurgeJob {
+
+    private final FilePurgeService filePurgeService;
+    private final PurgeConfiguration purgeConfiguration;
+    private final RateLimiter rateLimiter;
+
+    public DeletedFilePurgeJob(FilePurgeService filePurgeService, PurgeConfiguration purgeConfiguration) {
+        this.filePurgeService = filePurgeService;
+        this.purgeConfiguration = purgeConfiguration;
+        this.rateLimiter = RateLimiter.create(purgeConfiguration.getRate());
+    }
+
+    /**
+     * Удаляет пачками файлы, пока не останется файлов, удалённых раньше {@link PurgeConfiguration#getDelay()}.
+     */
+    @Scheduled(initialDelayString = "#{@purgeConfiguration.interval.toMillis()}",
+            fixedDelayString = "#{@purgeConfiguration.interval.toMillis()}")
+    public void purgeDeletedFiles() {
+        int purged = 0;
+        try {
+            int batch;
+            do {
+                rateLimiter.acquire(purgeConfiguration.getBatchSize());
+                batch = filePurgeService.purgeDeleted();
+                purged += batch;
+            } while (batch == purgeConfiguration.getBatchSize());
+        } catch (Exception e) {
+            log.error("Failed to purge deleted files", e);
+        }
+        if (purged > 0) {
+            log.info("Purged deleted files: {}", purged);
+        }
+    }
+
+    /**
+     * Удаляет пачками файлы, пока не останется файлов с истёкшим сроком хранения.
+     */
+    @Scheduled(initialDelayString = "#{@purgeConfiguration.interval.toMillis()}",
+            fixedDelayString = "#{@purgeConfiguration.interval.toMillis()}")
+    public void purgeExpiredFiles() {
+        int purged = 0;
+        try {
+            int batch;
+            do {
+                rateLimiter.acquire(purgeConfiguration.getBatchSize());
+                batch = filePurgeService.purgeExpired();
+                purged += batch;
+            } while (batch == purgeConfiguration.getBatchSize());
+        } catch (Exception e) {
+            log.error("Failed to purge expired files", e);
+        }
+        if (purged > 0) {
+            log.info("Purged expired files: {}", purged);
+        }
+    }
+}
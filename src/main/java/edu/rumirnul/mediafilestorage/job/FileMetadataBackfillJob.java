@@ -0,0 +1,106 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import com.google.common.util.concurrent.RateLimiter;
+import edu.rumirnul.mediafilestorage.config.FileMetadataConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import edu.rumirnul.mediafilestorage.service.impl.FileDataService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Периодическая задача заполнения расширенных метаданных файлов, сохранённых до их появления.
+ * За один запуск обрабатывается одна пачка файлов по возрастанию id, сведения о каждом файле
+ * запрашиваются у хранилища с ограничением частоты запросов. Для файлов, сведения о которых получить не удалось,
+ * записывается количество попыток, они обрабатываются повторно при следующем проходе, пока количество попыток
+ * не достигнет {@link FileMetadataConfiguration#getBackfillMaxAttempts()}. Контрольная сумма таких файлов не заполняется,
+ * так как для неё нужно прочитать всё содержимое.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class FileMetadataBackfillJob {
+
+    private final FileDataRepository fileDataRepository;
+    private final FileDataService fileDataService;
+    private final S3Service s3Service;
+    private final FileMetadataConfiguration fileMetadataConfiguration;
+    private final RateLimiter rateLimiter;
+    private long lastId;
+
+    public FileMetadataBackfillJob(FileDataRepository fileDataRepository,
+                                   FileDataService fileDataService,
+                                   S3Service s3Service,
+                                   FileMetadataConfiguration fileMetadataConfiguration) {
+        this.fileDataRepository = fileDataRepository;
+        this.fileDataService = fileDataService;
+        this.s3Service = s3Service;
+        this.fileMetadataConfiguration = fileMetadataConfiguration;
+        this.rateLimiter = RateLimiter.create(fileMetadataConfiguration.getBackfillStatRate());
+    }
+
+    /**
+     * Заполняет метаданные следующей пачки файлов. Когда файлов без метаданных не остаётся,
+     * следующий запуск снова начинает с начала таблицы.
+     */
+    @Scheduled(initialDelayString = "#{@fileMetadataConfiguration.backfillDelay.toMillis()}",
+            fixedDelayString = "#{@fileMetadataConfiguration.backfillDelay.toMillis()}")
+    public void backfill() {
+        if (!fileMetadataConfiguration.isBackfillEnabled()) {
+            return;
+        }
+        List<FileData> batch = fileDataRepository.findBackfillBatch(lastId,
+                fileMetadataConfiguration.getBackfillMaxAttempts(),
+                PageRequest.of(0, fileMetadataConfiguration.getBackfillBatchSize()));
+        if (batch.isEmpty()) {
+            lastId = 0;
+            return;
+        }
+
+        for (FileData fileData : batch) {
+            rateLimiter.acquire();
+            fill(fileData);
+        }
+        try {
+            fileDataService.saveAll(batch);
+            log.info("Filled metadata of {} files", batch.size());
+        } catch (Exception e) {
+            log.error("Failed to save filled metadata of files", e);
+        }
+        lastId = batch.get(batch.size() - 1).getId();
+    }
+
+    private void fill(FileData fileData) {
+        try {
+            FileStatDto stat = s3Service.statFile(fileData.getFileName());
+            fileData.setSize(stat.getSize());
+            fileData.setContentType(MediaTypeFactory.getMediaType(fileData.getOriginalName())
+                    .map(MediaType::toString)
+                    .orElse(stat.getContentType()));
+            fileData.setCreatedAt(stat.getLastModified());
+            fileData.setStatus(FileStatus.STORED);
+        } catch (FileNotFoundException e) {
+            int attempts = fileData.getBackfillAttempts() != null ? fileData.getBackfillAttempts() + 1 : 1;
+            fileData.setBackfillAttempts(attempts);
+            if (attempts < fileMetadataConfiguration.getBackfillMaxAttempts()) {
+                log.warn("Couldn't get stat of file {}, attempt {}, it will be retried later",
+                        fileData.getFileName(), attempts);
+            } else {
+                log.error("Couldn't get stat of file {} after {} attempts, it will not be retried",
+                        fileData.getFileName(), attempts);
+            }
+        }
+    }
+}
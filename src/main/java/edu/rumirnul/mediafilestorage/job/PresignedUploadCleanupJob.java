@@ -0,0 +1,46 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import edu.rumirnul.mediafilestorage.config.PresignedUrlConfiguration;
+import edu.rumirnul.mediafilestorage.service.impl.PresignedUploadService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая задача проверки загрузок напрямую в хранилище, которые клиент не подтвердил.
+ * Загрузки, о которых не пришло ни подтверждение, ни уведомление хранилища, завершаются по наличию объекта,
+ * а файлы без содержимого удаляются.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PresignedUploadCleanupJob {
+
+    private final PresignedUploadService presignedUploadService;
+    private final PresignedUrlConfiguration presignedUrlConfiguration;
+
+    /**
+     * Проверяет пачками загрузки, ссылки на которые истекли.
+     */
+    @Scheduled(initialDelayString = "#{@presignedUrlConfiguration.gcInterval.toMillis()}",
+            fixedDelayString = "#{@presignedUrlConfiguration.gcInterval.toMillis()}")
+    public void checkExpiredUploads() {
+        int checked = 0;
+        try {
+            int batch;
+            do {
+                batch = presignedUploadService.deleteExpired();
+                checked += batch;
+            } while (batch == presignedUrlConfiguration.getGcBatchSize());
+        } catch (Exception e) {
+            log.error("Failed to check expired direct uploads", e);
+        }
+        if (checked > 0) {
+            log.info("Checked expired direct uploads: {}", checked);
+        }
+    }
+}
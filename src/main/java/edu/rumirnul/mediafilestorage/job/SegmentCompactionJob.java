@@ -0,0 +1,55 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.service.impl.SegmentCompactionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая задача уплотнения сегментов с упакованными маленькими файлами и удаления переписанных сегментов.
+ * Задача работает и при выключенной упаковке, чтобы освобождать место в уже записанных сегментах.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentCompactionJob {
+
+    private final SegmentCompactionService segmentCompactionService;
+    private final PackingConfiguration packingConfiguration;
+
+    /**
+     * Удаляет пачками сегменты, переписанные раньше {@link PackingConfiguration#getGcGracePeriod()},
+     * и переписывает сегменты, большая часть содержимого которых удалена.
+     */
+    @Scheduled(initialDelayString = "#{@packingConfiguration.compactionInterval.toMillis()}",
+            fixedDelayString = "#{@packingConfiguration.compactionInterval.toMillis()}")
+    public void compactSegments() {
+        int deleted = 0;
+        try {
+            int batch;
+            do {
+                batch = segmentCompactionService.deleteRetired();
+                deleted += batch;
+            } while (batch == packingConfiguration.getGcBatchSize());
+        } catch (Exception e) {
+            log.error("Failed to delete retired segments", e);
+        }
+        if (deleted > 0) {
+            log.info("Deleted retired segments: {}", deleted);
+        }
+
+        try {
+            int compacted = segmentCompactionService.compact();
+            if (compacted > 0) {
+                log.info("Compacted segments: {}", compacted);
+            }
+        } catch (Exception e) {
+            log.error("Failed to compact segments", e);
+        }
+    }
+}
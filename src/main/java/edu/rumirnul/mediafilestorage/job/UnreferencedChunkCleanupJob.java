@@ -0,0 +1,60 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.service.impl.ContentChunkService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая задача удаления из хранилища частей содержимого, на которые не ссылается ни один файл.
+ * Части остаются без ссылок после обновления или удаления файлов, хранимых частями.
+ * Так же удаляются объекты с прежним содержимым файлов, начавших храниться частями.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UnreferencedChunkCleanupJob {
+
+    private final ContentChunkService contentChunkService;
+    private final ChunkingConfiguration chunkingConfiguration;
+
+    /**
+     * Удаляет пачками части и объекты, освобождённые раньше {@link ChunkingConfiguration#getGcGracePeriod()}.
+     */
+    @Scheduled(initialDelayString = "#{@chunkingConfiguration.gcInterval.toMillis()}",
+            fixedDelayString = "#{@chunkingConfiguration.gcInterval.toMillis()}")
+    public void deleteUnreferencedChunks() {
+        int deleted = 0;
+        try {
+            int batch;
+            do {
+                batch = contentChunkService.deleteUnreferenced();
+                deleted += batch;
+            } while (batch == chunkingConfiguration.getGcBatchSize());
+        } catch (Exception e) {
+            log.error("Failed to delete unreferenced chunks", e);
+        }
+        if (deleted > 0) {
+            log.info("Deleted unreferenced chunks: {}", deleted);
+        }
+
+        int retired = 0;
+        try {
+            int batch;
+            do {
+                batch = contentChunkService.deleteRetired();
+                retired += batch;
+            } while (batch == chunkingConfiguration.getGcBatchSize());
+        } catch (Exception e) {
+            log.error("Failed to delete retired objects", e);
+        }
+        if (retired > 0) {
+            log.info("Deleted retired objects: {}", retired);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.service.impl.UploadSessionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая задача удаления истёкших сессий возобновляемой загрузки.
+ * Незавершённые multipart загрузки истёкших сессий отменяются, чтобы загруженные части не занимали место.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionCleanupJob {
+
+    private final UploadSessionService uploadSessionService;
+    private final UploadOutboxConfiguration uploadOutboxConfiguration;
+
+    /**
+     * Удаляет пачками сессии, истёкшие через {@link UploadOutboxConfiguration#getSessionTtl()} после создания.
+     */
+    @Scheduled(initialDelayString = "#{@uploadOutboxConfiguration.sessionGcInterval.toMillis()}",
+            fixedDelayString = "#{@uploadOutboxConfiguration.sessionGcInterval.toMillis()}")
+    public void deleteExpiredSessions() {
+        int deleted = 0;
+        try {
+            int batch;
+            do {
+                batch = uploadSessionService.deleteExpired();
+                deleted += batch;
+            } while (batch == uploadOutboxConfiguration.getSessionGcBatchSize());
+        } catch (Exception e) {
+            log.error("Failed to delete expired upload sessions", e);
+        }
+        if (deleted > 0) {
+            log.info("Deleted expired upload sessions: {}", deleted);
+        }
+    }
+}
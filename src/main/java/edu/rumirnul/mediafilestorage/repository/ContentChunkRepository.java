@@ -0,0 +1,52 @@
+package edu.rumirnul.mediafilestorage.repository;
+
+import edu.rumirnul.mediafilestorage.entity.ContentChunk;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ContentChunkRepository extends JpaRepository<ContentChunk, String> {
+
+    /**
+     * Поиск частей по контрольным суммам с блокировкой строк (SELECT ... FOR UPDATE).
+     * Строки блокируются в порядке контрольных сумм, чтобы одновременные обновления не блокировали друг друга.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<ContentChunk> findByHashInOrderByHashAsc(Collection<String> hashes);
+
+    /**
+     * Контрольные суммы из указанных, для которых есть записи частей.
+     */
+    @Query("select c.hash from ContentChunk c where c.hash in :hashes")
+    List<String> findHashesIn(@Param("hashes") Collection<String> hashes);
+
+    /**
+     * Шард, в который записана часть. Части, записанные до разделения на шарды, хранятся в шарде по умолчанию
+     * {@link edu.rumirnul.mediafilestorage.service.impl.MinioShardRouter#DEFAULT_SHARD}.
+     */
+    @Query("select coalesce(c.shard, 'default') from ContentChunk c where c.hash = :hash")
+    Optional<String> findShardByHash(@Param("hash") String hash);
+
+    /**
+     * Есть ли части, записанные в указанный шард или до разделения на шарды.
+     */
+    boolean existsByShardOrShardIsNull(String shard);
+
+    /**
+     * Части без ссылок, освобождённые раньше указанного времени, с блокировкой строк,
+     * пропуская строки, заблокированные другими транзакциями (SELECT ... FOR UPDATE SKIP LOCKED).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    List<ContentChunk> findByRefCountAndReleasedAtBefore(int refCount, Instant releasedAt, Pageable pageable);
+}
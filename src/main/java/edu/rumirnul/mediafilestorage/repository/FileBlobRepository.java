@@ -0,0 +1,67 @@
+package edu.rumirnul.mediafilestorage.repository;
+
+import edu.rumirnul.mediafilestorage.entity.FileBlob;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface FileBlobRepository extends JpaRepository<FileBlob, Long> {
+
+    /**
+     * Поиск объекта по контрольной сумме содержимого с блокировкой строки (SELECT ... FOR UPDATE).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<FileBlob> findByChecksum(String checksum);
+
+    /**
+     * Поиск объектов по контрольным суммам с блокировкой строк в порядке контрольных сумм.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<FileBlob> findByChecksumInOrderByChecksumAsc(Collection<String> checksums);
+
+    /**
+     * Поиск объекта по имени в хранилище с блокировкой строки (SELECT ... FOR UPDATE).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<FileBlob> findByObjectName(String objectName);
+
+    /**
+     * Поиск объектов по именам в хранилище с блокировкой строк в порядке имён.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<FileBlob> findByObjectNameInOrderByObjectNameAsc(Collection<String> objectNames);
+
+    /**
+     * Объекты, упакованные в сегмент, с блокировкой строк в порядке имён.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<FileBlob> findBySegmentNameOrderByObjectNameAsc(String segmentName);
+
+    /**
+     * Имена объектов из указанных, для которых есть запись об общем объекте.
+     */
+    @Query("select b.objectName from FileBlob b where b.objectName in :objectNames")
+    List<String> findObjectNamesIn(@Param("objectNames") Collection<String> objectNames);
+
+    @Modifying
+    @Query("update FileBlob b set b.status = :status where b.objectName = :objectName")
+    int updateStatus(@Param("objectName") String objectName, @Param("status") FileStatus status);
+
+    @Modifying
+    @Query("update FileBlob b set b.segmentName = :segmentName, b.segmentOffset = :segmentOffset, b.status = :status "
+            + "where b.objectName = :objectName")
+    int updateSegment(@Param("objectName") String objectName, @Param("segmentName") String segmentName,
+                      @Param("segmentOffset") Long segmentOffset, @Param("status") FileStatus status);
+
+    @Modifying
+    @Query("delete from FileBlob b where b.objectName = :objectName")
+    int deleteByObjectName(@Param("objectName") String objectName);
+}
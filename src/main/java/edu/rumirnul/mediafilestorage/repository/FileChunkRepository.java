@@ -0,0 +1,20 @@
+package edu.rumirnul.mediafilestorage.repository;
+
+import edu.rumirnul.mediafilestorage.entity.FileChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface FileChunkRepository extends JpaRepository<FileChunk, Long> {
+
+    /**
+     * Описание содержимого файла: части в порядке следования.
+     */
+    List<FileChunk> findByFileIdOrderBySeqAsc(Long fileId);
+
+    /**
+     * Части содержимого нескольких файлов.
+     */
+    List<FileChunk> findByFileIdIn(Collection<Long> fileIds);
+}
@@ -1,8 +1,175 @@
 package edu.rumirnul.mediafilestorage.repository;
 
+import edu.rumirnul.mediafilestorage.dto.FileMetadataDto;
 import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface FileDataRepository extends JpaRepository<FileData, Long> {
     FileData findFileDataByFileName(String fileName);
+
+    @Query("select new edu.rumirnul.mediafilestorage.dto.FileMetadataDto(f.id, f.fileName, f.originalName, f.extension, "
+            + "f.size, f.contentType, f.createdAt, f.status, f.objectName, f.segmentName, f.segmentOffset, "
+            + "f.chunked, f.version, f.updatedAt, f.expiresAt, f.shard) "
+            + "from FileData f where f.id = :id")
+    Optional<FileMetadataDto> findMetadataById(@Param("id") Long id);
+
+    /**
+     * Поиск файла по id с блокировкой строки (SELECT ... FOR UPDATE).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<FileData> findWithLockById(Long id);
+
+    /**
+     * Поиск файлов по id с блокировкой строк в порядке id.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<FileData> findWithLockByIdInOrderByIdAsc(Collection<Long> ids);
+
+    /**
+     * Файлы в указанном состоянии, созданные раньше указанного времени, с блокировкой строк,
+     * пропуская строки, заблокированные другими транзакциями (SELECT ... FOR UPDATE SKIP LOCKED).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    List<FileData> findByStatusAndCreatedAtBefore(FileStatus status, Instant createdBefore, Pageable pageable);
+
+    /**
+     * Следующая по id пачка файлов, сохранённых до появления расширенных метаданных,
+     * с меньшим указанного количеством неудачных попыток заполнения.
+     */
+    @Query("select f from FileData f where f.status is null and f.id > :id "
+            + "and (f.backfillAttempts is null or f.backfillAttempts < :maxAttempts) order by f.id asc")
+    List<FileData> findBackfillBatch(@Param("id") Long id, @Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update FileData f set f.status = :status where f.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") FileStatus status);
+
+    /**
+     * Файлы, содержимое которых хранится в объекте с указанным именем. Файлы, хранимые частями, не учитываются.
+     */
+    @Query("select f from FileData f "
+            + "where (f.objectName = :storageName or (f.objectName is null and f.fileName = :storageName)) "
+            + "and (f.chunked is null or f.chunked = false)")
+    List<FileData> findByStorageName(@Param("storageName") String storageName);
+
+    @Transactional
+    @Modifying
+    @Query("update FileData f set f.status = :status "
+            + "where (f.objectName = :storageName or (f.objectName is null and f.fileName = :storageName)) "
+            + "and (f.chunked is null or f.chunked = false)")
+    int updateStatusByStorageName(@Param("storageName") String storageName, @Param("status") FileStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("update FileData f set f.segmentName = :segmentName, f.segmentOffset = :segmentOffset, f.status = :status "
+            + "where (f.objectName = :storageName or (f.objectName is null and f.fileName = :storageName)) "
+            + "and (f.chunked is null or f.chunked = false)")
+    int updateSegmentByStorageName(@Param("storageName") String storageName, @Param("segmentName") String segmentName,
+                                   @Param("segmentOffset") Long segmentOffset, @Param("status") FileStatus status);
+
+    /**
+     * Имена объектов, на которые ссылаются файлы, из указанных. Файлы, хранимые частями, не учитываются.
+     */
+    @Query("select coalesce(f.objectName, f.fileName) from FileData f "
+            + "where (f.objectName in :names or (f.objectName is null and f.fileName in :names)) "
+            + "and (f.chunked is null or f.chunked = false)")
+    List<String> findStorageNamesIn(@Param("names") Collection<String> names);
+
+    /**
+     * Шард, в котором хранится объект, по метаданным любого ссылающегося на него файла,
+     * в том числе удалённого или истёкшего, но ещё не удалённого физически. Файлы, сохранённые до разделения
+     * на шарды, хранятся в шарде по умолчанию {@link edu.rumirnul.mediafilestorage.service.impl.MinioShardRouter#DEFAULT_SHARD}.
+     * При чтении шард берётся из метаданных файла, запрос нужен для объектов, которые удаляются по имени.
+     */
+    @Query(value = "select coalesce(f.shard, 'default') from file f "
+            + "where f.file_name = :name or f.object_name = :name limit 1", nativeQuery = true)
+    Optional<String> findShardByStorageName(@Param("name") String storageName);
+
+    /**
+     * Есть ли файлы, содержимое которых записано в указанный шард или до разделения на шарды.
+     */
+    @Query("select case when count(f) > 0 then true else false end from FileData f where f.shard = :shard "
+            + "or (f.shard is null and (f.chunked is null or f.chunked = false))")
+    boolean existsByShardOrUnsharded(@Param("shard") String shard);
+
+    /**
+     * Имена объектов сохранённых файлов после указанного имени в порядке байтов UTF-8, как в листинге S3.
+     * Учитываются только файлы, содержимое которых уже записано в хранилище и хранится отдельным объектом.
+     */
+    @Query(value = "select coalesce(f.object_name, f.file_name) from file f "
+            + "where coalesce(f.object_name, f.file_name) collate \"C\" > :after "
+            + "and (f.chunked is null or f.chunked = false) and f.segment_name is null "
+            + "and (f.status is null or f.status = 'STORED') and f.deleted_at is null "
+            + "and (f.created_at is null or f.created_at < :createdBefore) "
+            + "order by coalesce(f.object_name, f.file_name) collate \"C\" limit :limit", nativeQuery = true)
+    List<String> findStoredNamesAfter(@Param("after") String after, @Param("createdBefore") Instant createdBefore,
+                                      @Param("limit") int limit);
+
+    /**
+     * Имена объектов сохранённых файлов в диапазоне (after, upTo] в порядке байтов UTF-8,
+     * как {@link #findStoredNamesAfter(String, Instant, int)}.
+     */
+    @Query(value = "select coalesce(f.object_name, f.file_name) from file f "
+            + "where coalesce(f.object_name, f.file_name) collate \"C\" > :after "
+            + "and coalesce(f.object_name, f.file_name) collate \"C\" <= :upTo "
+            + "and (f.chunked is null or f.chunked = false) and f.segment_name is null "
+            + "and (f.status is null or f.status = 'STORED') and f.deleted_at is null "
+            + "and (f.created_at is null or f.created_at < :createdBefore) "
+            + "order by coalesce(f.object_name, f.file_name) collate \"C\" limit :limit", nativeQuery = true)
+    List<String> findStoredNamesBetween(@Param("after") String after, @Param("upTo") String upTo,
+                                        @Param("createdBefore") Instant createdBefore, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("update FileData f set f.deletedAt = :deletedAt where f.id = :id and f.deletedAt is null")
+    int markDeleted(@Param("id") Long id, @Param("deletedAt") Instant deletedAt);
+
+    /**
+     * Файлы, удалённые раньше указанного времени, с блокировкой строк, пропуская строки,
+     * заблокированные другими транзакциями. Удалённые файлы не читаются запросами через сущность,
+     * поэтому запрос нативный.
+     */
+    @Query(value = "select * from file f where f.deleted_at < :deletedBefore "
+            + "order by f.deleted_at limit :limit for update skip locked", nativeQuery = true)
+    List<FileData> findDeletedBefore(@Param("deletedBefore") Instant deletedBefore, @Param("limit") int limit);
+
+    /**
+     * Файлы, срок хранения которых истёк раньше указанного времени, с блокировкой строк, пропуская строки,
+     * заблокированные другими транзакциями. Истёкшие файлы не читаются запросами через сущность.
+     */
+    @Query(value = "select * from file f where f.expires_at < :expiredBefore and f.deleted_at is null "
+            + "order by f.expires_at limit :limit for update skip locked", nativeQuery = true)
+    List<FileData> findExpiredBefore(@Param("expiredBefore") Instant expiredBefore, @Param("limit") int limit);
+
+    /**
+     * Физическое удаление строк файлов, в том числе удалённых.
+     */
+    @Modifying
+    @Query(value = "delete from file where id in (:ids)", nativeQuery = true)
+    int hardDeleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select f.status from FileData f where f.id = :id")
+    Optional<FileStatus> findStatusById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("update FileData f set f.lastAccessedAt = :accessedAt where f.id in :ids")
+    int updateLastAccessedAt(@Param("ids") Collection<Long> ids, @Param("accessedAt") Instant accessedAt);
 }
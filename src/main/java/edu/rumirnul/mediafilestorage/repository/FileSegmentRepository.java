@@ -0,0 +1,56 @@
+package edu.rumirnul.mediafilestorage.repository;
+
+import edu.rumirnul.mediafilestorage.entity.FileSegment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface FileSegmentRepository extends JpaRepository<FileSegment, String> {
+
+    /**
+     * Используемые сегменты, живое содержимое которых составляет не больше указанной доли размера,
+     * с блокировкой строк, пропуская строки, заблокированные другими транзакциями.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select s from FileSegment s where s.retiredAt is null "
+            + "and (select coalesce(sum(b.size), 0) from FileBlob b where b.segmentName = s.name) <= s.size * :liveRatio "
+            + "order by s.createdAt")
+    List<FileSegment> findCompactable(@Param("liveRatio") double liveRatio, Pageable pageable);
+
+    /**
+     * Переписанные раньше указанного времени сегменты с блокировкой строк, пропуская строки,
+     * заблокированные другими транзакциями.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    List<FileSegment> findByRetiredAtBefore(Instant retiredBefore, Pageable pageable);
+
+    /**
+     * Шард, в который записан сегмент. Сегменты, записанные до разделения на шарды, хранятся в шарде по умолчанию
+     * {@link edu.rumirnul.mediafilestorage.service.impl.MinioShardRouter#DEFAULT_SHARD}.
+     */
+    @Query("select coalesce(s.shard, 'default') from FileSegment s where s.name = :name")
+    Optional<String> findShardByName(@Param("name") String name);
+
+    /**
+     * Есть ли сегменты, записанные в указанный шард или до разделения на шарды.
+     */
+    boolean existsByShardOrShardIsNull(String shard);
+
+    /**
+     * Имена сегментов из указанных, для которых есть запись.
+     */
+    @Query("select s.name from FileSegment s where s.name in :names")
+    List<String> findNamesIn(@Param("names") Collection<String> names);
+}
@@ -0,0 +1,17 @@
+package edu.rumirnul.mediafilestorage.repository;
+
+import edu.rumirnul.mediafilestorage.entity.ReconciliationCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+public interface ReconciliationCheckpointRepository extends JpaRepository<ReconciliationCheckpoint, String> {
+
+    /**
+     * Поиск состояния сверки с блокировкой строки (SELECT ... FOR UPDATE), чтобы сверку выполнял один экземпляр.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ReconciliationCheckpoint> findWithLockById(String id);
+}
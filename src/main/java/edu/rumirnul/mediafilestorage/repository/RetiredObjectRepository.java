@@ -0,0 +1,23 @@
+package edu.rumirnul.mediafilestorage.repository;
+
+import edu.rumirnul.mediafilestorage.entity.RetiredObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.List;
+
+public interface RetiredObjectRepository extends JpaRepository<RetiredObject, String> {
+
+    /**
+     * Объекты, на которые не осталось ссылок раньше указанного времени, с блокировкой строк,
+     * пропуская строки, заблокированные другими транзакциями (SELECT ... FOR UPDATE SKIP LOCKED).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    List<RetiredObject> findByRetiredAtBefore(Instant retiredBefore, Pageable pageable);
+}
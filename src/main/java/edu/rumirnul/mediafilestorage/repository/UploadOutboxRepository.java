@@ -0,0 +1,66 @@
+package edu.rumirnul.mediafilestorage.repository;
+
+import edu.rumirnul.mediafilestorage.entity.UploadOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadOutboxRepository extends JpaRepository<UploadOutbox, Long> {
+
+    /**
+     * Блокирует доступные для обработки записи указанных экземпляров с размером содержимого от minSize до maxSize
+     * включительно, пропуская уже заблокированные другими транзакциями (SELECT ... FOR UPDATE SKIP LOCKED).
+     * Записи, созданные до учёта экземпляров, доступны всем экземплярам. Резервные записи не выбираются.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select o from UploadOutbox o where o.availableAt <= :now and o.size between :minSize and :maxSize "
+            + "and (o.owner in :owners or o.owner is null) and o.standby = false order by o.availableAt")
+    List<UploadOutbox> findAvailableForUpdate(@Param("now") Instant now, @Param("owners") Collection<String> owners,
+                                              @Param("minSize") long minSize, @Param("maxSize") long maxSize,
+                                              Pageable pageable);
+
+    /**
+     * Поиск записи с блокировкой строки (SELECT ... FOR UPDATE).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<UploadOutbox> findWithLockById(Long id);
+
+    /**
+     * Продлевает захват записей, если они всё ещё захвачены с указанным токеном и не отменены.
+     */
+    @Transactional
+    @Modifying
+    @Query("update UploadOutbox o set o.availableAt = :leaseEnd "
+            + "where o.id in :ids and o.claimToken = :claimToken and o.cancelled = false")
+    int renewLease(@Param("ids") Collection<Long> ids, @Param("claimToken") String claimToken,
+                   @Param("leaseEnd") Instant leaseEnd);
+
+    /**
+     * Поиск записей по именам файлов.
+     */
+    List<UploadOutbox> findByFileNameIn(Collection<String> fileNames);
+
+    /**
+     * Поиск записей по именам файлов или по ссылкам на подготовленное содержимое.
+     */
+    List<UploadOutbox> findByFileNameInOrStagedPathIn(Collection<String> fileNames, Collection<String> stagedPaths);
+
+    /**
+     * Поиск резервных записей объекта с блокировкой строк (SELECT ... FOR UPDATE) в порядке id.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<UploadOutbox> findByFileNameAndStandbyTrueOrderByIdAsc(String fileName);
+}
@@ -0,0 +1,25 @@
+package edu.rumirnul.mediafilestorage.repository;
+
+import edu.rumirnul.mediafilestorage.entity.UploadSessionPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionPartRepository extends JpaRepository<UploadSessionPart, Long> {
+
+    /**
+     * Загруженные части сессии в порядке номеров.
+     */
+    List<UploadSessionPart> findBySessionIdOrderByChunkIndexAsc(String sessionId);
+
+    Optional<UploadSessionPart> findBySessionIdAndChunkIndex(String sessionId, int chunkIndex);
+
+    @Modifying
+    @Query("delete from UploadSessionPart p where p.sessionId in :sessionIds")
+    int deleteBySessionIdIn(@Param("sessionIds") Collection<String> sessionIds);
+}
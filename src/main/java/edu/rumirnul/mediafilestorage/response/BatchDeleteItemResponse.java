@@ -0,0 +1,18 @@
+package edu.rumirnul.mediafilestorage.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Класс ответа клиенту с ошибкой удаления одного файла пакетного удаления.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class BatchDeleteItemResponse {
+    /** Уникальный идентификатор файла. */
+    private Long id;
+    /** Причина, по которой файл не удалён полностью. */
+    private String error;
+}
@@ -0,0 +1,23 @@
+package edu.rumirnul.mediafilestorage.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Класс ответа клиенту с результатом пакетного удаления файлов.
+ * Ошибки возвращаются только для файлов, которые не удалось удалить, в порядке запроса.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class BatchDeleteResponse {
+    /** Количество удалённых файлов. */
+    private int deleted;
+    /** Количество файлов, которые не удалось удалить. */
+    private int failed;
+    /** Ошибки по файлам, которые не удалось удалить. */
+    private List<BatchDeleteItemResponse> failures;
+}
@@ -0,0 +1,20 @@
+package edu.rumirnul.mediafilestorage.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Класс ответа клиенту с результатом сохранения одного файла пакетной загрузки.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class BatchUploadItemResponse {
+    /** Оригинальное имя файла. */
+    private String originalName;
+    /** Уникальный идентификатор сохранённого файла или null, если файл не сохранён. */
+    private Long id;
+    /** Причина, по которой файл не сохранён, или null. */
+    private String error;
+}
@@ -0,0 +1,22 @@
+package edu.rumirnul.mediafilestorage.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Класс ответа клиенту с результатами пакетной загрузки файлов в порядке файлов запроса.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class BatchUploadResponse {
+    /** Количество сохранённых файлов. */
+    private int saved;
+    /** Количество файлов, которые не удалось сохранить. */
+    private int failed;
+    /** Результаты по каждому файлу. */
+    private List<BatchUploadItemResponse> files;
+}
@@ -0,0 +1,20 @@
+package edu.rumirnul.mediafilestorage.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Класс ответа клиенту, содержащий версию обновлённого содержимого файла.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class FileContentUpdateResponse {
+    /** Уникальный идентификатор. */
+    private Long id;
+    /** Номер версии содержимого. */
+    private Integer version;
+    /** Размер содержимого в байтах. */
+    private Long size;
+}
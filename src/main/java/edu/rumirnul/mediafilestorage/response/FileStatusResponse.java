@@ -0,0 +1,19 @@
+package edu.rumirnul.mediafilestorage.response;
+
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Класс ответа клиенту, содержащий состояние сохранения файла в хранилище.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class FileStatusResponse {
+    /** Уникальный идентификатор. */
+    private Long id;
+    /** Состояние сохранения файла. */
+    private FileStatus status;
+}
@@ -0,0 +1,22 @@
+package edu.rumirnul.mediafilestorage.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Класс ответа клиенту, содержащий подписанную ссылку для загрузки файла напрямую в хранилище.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class PresignedUploadResponse {
+    /** Уникальный идентификатор файла. */
+    private Long id;
+    /** Подписанная ссылка для загрузки содержимого запросом PUT. */
+    private String uploadUrl;
+    /** Время, после которого ссылка перестаёт действовать. */
+    private Instant expiresAt;
+}
@@ -0,0 +1,34 @@
+package edu.rumirnul.mediafilestorage.response;
+
+import edu.rumirnul.mediafilestorage.entity.UploadSessionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Класс ответа клиенту, содержащий состояние сессии возобновляемой загрузки файла.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class UploadSessionResponse {
+    /** Уникальный идентификатор сессии. */
+    private String sessionId;
+    /** Размер части в байтах. Последняя часть может быть меньше. */
+    private long chunkSize;
+    /** Количество частей файла. */
+    private int chunkCount;
+    /** Номера загруженных частей, начиная с 0. */
+    private List<Integer> receivedChunks;
+    /** Количество загруженных байт. */
+    private long receivedBytes;
+    /** Состояние сессии. */
+    private UploadSessionStatus status;
+    /** Идентификатор сохранённого файла. Заполняется после завершения сессии. */
+    private Long fileId;
+    /** Время, после которого сессия удаляется. */
+    private Instant expiresAt;
+}
@@ -1,14 +1,46 @@
 package edu.rumirnul.mediafilestorage.service;
 
+import edu.rumirnul.mediafilestorage.dto.BatchDeleteResultDto;
+import edu.rumirnul.mediafilestorage.dto.BatchUploadResultDto;
+import edu.rumirnul.mediafilestorage.dto.BucketNotificationDto;
+import edu.rumirnul.mediafilestorage.dto.FileDownloadDto;
+import edu.rumirnul.mediafilestorage.dto.FileMetadataDto;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.PresignedUploadDto;
+import edu.rumirnul.mediafilestorage.dto.UploadSessionDto;
 import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 
 public interface FileService {
     FileData saveFile(MultipartFile multipartFile);
+    FileData saveFile(MultipartFile multipartFile, Instant expiresAt);
+    FileData saveFile(String originalFileName, InputStream inputStream, long size);
+    FileData saveFile(String originalFileName, InputStream inputStream, long size, Instant expiresAt);
+    List<BatchUploadResultDto> saveFiles(List<MultipartFile> multipartFiles);
+    FileData updateFileContent(Long fileId, InputStream inputStream, long size);
+    UploadSessionDto createUploadSession(String originalFileName, long size);
+    UploadSessionDto uploadSessionChunk(String sessionId, int index, InputStream inputStream, long length);
+    UploadSessionDto getUploadSession(String sessionId);
+    FileData completeUploadSession(String sessionId);
+    void abortUploadSession(String sessionId);
+    PresignedUploadDto createPresignedUpload(String originalFileName, long size);
+    FileData completePresignedUpload(Long fileId);
+    int handleBucketNotification(String authorization, BucketNotificationDto notification);
+    Optional<String> getPresignedDownloadUrl(FileMetadataDto metadata);
     InputStream getFileById(Long fileId);
+    InputStream getFileById(Long fileId, long offset, long length);
+    FileStatDto getFileStat(Long fileId);
+    FileDownloadDto getFileForDownload(Long fileId);
+    FileDownloadDto getFileForDownload(FileMetadataDto metadata);
+    FileMetadataDto findFileMetadata(Long fileId);
     FileData getFileMetadata(Long fileId);
+    FileStatus getFileStatus(Long fileId);
     void deleteFileById(Long fileId);
+    List<BatchDeleteResultDto> deleteFiles(List<Long> fileIds);
 }
-
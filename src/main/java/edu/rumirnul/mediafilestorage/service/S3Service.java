@@ -1,11 +1,27 @@
 package edu.rumirnul.mediafilestorage.service;
 
 import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.StoredObjectDto;
 
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface S3Service {
-    void saveFile(FileDto fileDto);
+    long putFile(FileDto fileDto);
     InputStream getFileByName(String fileName);
+    InputStream getFileByName(String fileName, long offset, long length);
+    FileStatDto statFile(String fileName);
     void deleteFileByName(String fileName);
+    Map<String, String> deleteFiles(Collection<String> fileNames);
+    List<StoredObjectDto> listFiles(String startAfter, int limit);
+    String createMultipartUpload(String fileName);
+    String uploadPart(String fileName, String uploadId, int partNumber, InputStream inputStream, int length);
+    void completeMultipartUpload(String fileName, String uploadId, List<String> etags);
+    void abortMultipartUpload(String fileName, String uploadId);
+    String getPresignedUploadUrl(String fileName, Duration expiry);
+    String getPresignedDownloadUrl(String fileName, Duration expiry, Map<String, String> responseHeaders);
 }
@@ -0,0 +1,91 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Класс сервис удаляющий метаданные пачки файлов в одной транзакции.
+ * Строки файлов блокируются одним запросом в порядке id, ссылки на общие объекты и части содержимого
+ * удаляются пачками, а метаданные - одним запросом DELETE ... WHERE id IN (...).
+ * Содержимое из хранилища удаляет вызывающий после фиксации транзакции.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchDeleteService {
+
+    private final FileDataRepository fileDataRepository;
+    private final FileDataService fileDataService;
+    private final FileBlobService fileBlobService;
+    private final ContentChunkService contentChunkService;
+    private final UploadOutboxService uploadOutboxService;
+
+    /**
+     * Удаление метаданных файлов. Загрузки объектов, на которые больше никто не ссылается, отменяются.
+     *
+     * @param ids уникальные идентификаторы файлов.
+     * @return Возвращает удалённые файлы и объекты, которые нужно удалить из хранилища.
+     */
+    @Transactional
+    public DeletedFiles delete(Collection<Long> ids) {
+        List<FileData> files = fileDataRepository.findWithLockByIdInOrderByIdAsc(new TreeSet<>(ids));
+        if (files.isEmpty()) {
+            return new DeletedFiles(files, new TreeSet<>());
+        }
+        return new DeletedFiles(files, deleteLocked(files));
+    }
+
+    /**
+     * Удаление метаданных файлов, строки которых уже заблокированы вызывающим,
+     * в том числе файлов, помеченных удалёнными.
+     *
+     * @param files заблокированные файлы.
+     * @return Возвращает имена объектов, на которые больше никто не ссылается и которые нужно удалить из хранилища.
+     */
+    @Transactional
+    public Set<String> deleteLocked(List<FileData> files) {
+        List<Long> chunkedIds = new ArrayList<>();
+        Map<String, Integer> references = new HashMap<>();
+        for (FileData fileData : files) {
+            if (fileData.isChunkedContent()) {
+                chunkedIds.add(fileData.getId());
+            } else {
+                references.merge(fileData.getStorageName(), 1, Integer::sum);
+            }
+        }
+        contentChunkService.releaseManifests(chunkedIds);
+        Set<String> unreferenced = fileBlobService.releaseAll(references);
+        uploadOutboxService.cancelAll(unreferenced);
+        fileDataService.deleteAll(files);
+        log.info("Deleted metadata of {} files, objects to delete: {}", files.size(), unreferenced.size());
+        return unreferenced;
+    }
+
+    /**
+     * Результат удаления метаданных пачки файлов.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class DeletedFiles {
+        /** Удалённые файлы в порядке id. */
+        private final List<FileData> files;
+        /** Имена объектов, на которые больше никто не ссылается. */
+        private final Set<String> unreferenced;
+    }
+}
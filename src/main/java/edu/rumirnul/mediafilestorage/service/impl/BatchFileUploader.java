@@ -0,0 +1,128 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одновременная загрузка в хранилище файлов одного запроса пакетной загрузки.
+ * Файлы загружаются общим пулом из {@link UploadOutboxConfiguration#getBatchThreads()} потоков,
+ * контрольная сумма каждого файла считается при том же чтении содержимого.
+ * Ошибка загрузки одного файла не прерывает загрузку остальных.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class BatchFileUploader {
+
+    private final S3Service s3Service;
+    private final ThreadPoolExecutor executor;
+
+    public BatchFileUploader(S3Service s3Service, UploadOutboxConfiguration uploadOutboxConfiguration) {
+        this.s3Service = s3Service;
+
+        int threads = uploadOutboxConfiguration.getBatchThreads();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("batch-upload-"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Загружает содержимое файлов в хранилище одновременно и ожидает завершения всех загрузок.
+     *
+     * @param contents содержимое файлов по имени объекта в хранилище.
+     * @return Возвращает результаты загрузок по имени объекта в том же порядке.
+     */
+    public Map<String, StoredFile> upload(Map<String, ? extends InputStreamSource> contents) {
+        Map<String, Future<StoredFile>> uploads = new LinkedHashMap<>();
+        contents.forEach((objectName, content) ->
+                uploads.put(objectName, executor.submit(() -> store(objectName, content))));
+
+        Map<String, StoredFile> results = new LinkedHashMap<>();
+        boolean interrupted = false;
+        for (Map.Entry<String, Future<StoredFile>> upload : uploads.entrySet()) {
+            StoredFile result;
+            try {
+                result = upload.getValue().get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                upload.getValue().cancel(true);
+                result = StoredFile.failed(new S3Exception("Interrupted while saving file in s3(minio)"));
+            } catch (ExecutionException e) {
+                result = StoredFile.failed(e.getCause());
+            }
+            results.put(upload.getKey(), result);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    /**
+     * Останавливает пул потоков загрузки.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private StoredFile store(String objectName, InputStreamSource source) {
+        try (InputStream inputStream = source.getInputStream()) {
+            HashingInputStream content = new HashingInputStream(Hashing.sha256(), inputStream);
+            long size = s3Service.putFile(FileDto.builder()
+                    .name(objectName)
+                    .inputStream(content)
+                    .size(-1)
+                    .build());
+            return new StoredFile(size, content.hash().toString(), null);
+        } catch (Exception e) {
+            log.error("Failed to save file {} of a batch", objectName, e);
+            return StoredFile.failed(e);
+        }
+    }
+
+    /**
+     * Результат загрузки одного файла.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class StoredFile {
+        /** Размер сохранённого содержимого в байтах. */
+        private final long size;
+        /** Контрольная сумма SHA-256 содержимого в hex. */
+        private final String checksum;
+        /** Ошибка загрузки или null, если файл сохранён. */
+        private final Throwable error;
+
+        static StoredFile failed(Throwable error) {
+            return new StoredFile(-1, null, error);
+        }
+
+        public boolean isStored() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.primitives.UnsignedBytes;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import edu.rumirnul.mediafilestorage.config.ReconciliationConfiguration;
+import edu.rumirnul.mediafilestorage.dto.StoredObjectDto;
+import edu.rumirnul.mediafilestorage.entity.ReconciliationCheckpoint;
+import edu.rumirnul.mediafilestorage.repository.ContentChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileBlobRepository;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import edu.rumirnul.mediafilestorage.repository.ReconciliationCheckpointRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Класс сервис сверки содержимого bucket с метаданными файлов.
+ * Bucket читается страницами листинга, а имена объектов сохранённых файлов - пачками из БД в том же
+ * порядке байтов UTF-8, и обе последовательности сливаются по диапазону имён страницы. В памяти находится
+ * не больше одной страницы и одной пачки, имя последнего сверенного объекта сохраняется в
+ * {@link ReconciliationCheckpoint}, поэтому проход по bucket можно прервать и продолжить.
+ * Объекты без файлов удаляются или только учитываются, файлы без объектов только учитываются.
+ * Части содержимого {@link ContentChunkService} и сегменты с упакованными файлами {@link SegmentPacker}
+ * сверяются только в направлении объект - запись.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@Slf4j
+public class BucketReconciliationService {
+
+    private static final String METRIC_NAME = "storage.reconciliation.mismatches";
+    private static final Comparator<String> BYTE_ORDER =
+            Comparator.comparing(name -> name.getBytes(StandardCharsets.UTF_8), UnsignedBytes.lexicographicalComparator());
+
+    private final ReconciliationCheckpointRepository checkpointRepository;
+    private final FileDataRepository fileDataRepository;
+    private final FileBlobRepository fileBlobRepository;
+    private final ContentChunkRepository contentChunkRepository;
+    private final FileSegmentRepository fileSegmentRepository;
+    private final S3Service s3Service;
+    private final ReconciliationConfiguration reconciliationConfiguration;
+    private final MinioConfiguration minioConfiguration;
+    private final ChunkingConfiguration chunkingConfiguration;
+    private final PackingConfiguration packingConfiguration;
+    private final Counter orphanCounter;
+    private final Counter danglingCounter;
+
+    public BucketReconciliationService(ReconciliationCheckpointRepository checkpointRepository,
+                                       FileDataRepository fileDataRepository,
+                                       FileBlobRepository fileBlobRepository,
+                                       ContentChunkRepository contentChunkRepository,
+                                       FileSegmentRepository fileSegmentRepository,
+                                       S3Service s3Service,
+                                       ReconciliationConfiguration reconciliationConfiguration,
+                                       MinioConfiguration minioConfiguration,
+                                       ChunkingConfiguration chunkingConfiguration,
+                                       PackingConfiguration packingConfiguration,
+                                       MeterRegistry meterRegistry) {
+        this.checkpointRepository = checkpointRepository;
+        this.fileDataRepository = fileDataRepository;
+        this.fileBlobRepository = fileBlobRepository;
+        this.contentChunkRepository = contentChunkRepository;
+        this.fileSegmentRepository = fileSegmentRepository;
+        this.s3Service = s3Service;
+        this.reconciliationConfiguration = reconciliationConfiguration;
+        this.minioConfiguration = minioConfiguration;
+        this.chunkingConfiguration = chunkingConfiguration;
+        this.packingConfiguration = packingConfiguration;
+        this.orphanCounter = meterRegistry.counter(METRIC_NAME, "type", "orphan-object");
+        this.danglingCounter = meterRegistry.counter(METRIC_NAME, "type", "dangling-file");
+    }
+
+    /**
+     * Сверка следующей страницы bucket. Строка состояния сверки блокируется, поэтому страницу
+     * сверяет только один экземпляр приложения. Новый проход начинается не раньше
+     * {@link ReconciliationConfiguration#getPassInterval()} после завершения предыдущего.
+     *
+     * @return Возвращает true, если проход не завершён и есть следующая страница.
+     */
+    @Transactional
+    public boolean reconcilePage() {
+        String bucket = minioConfiguration.getBucket();
+        ReconciliationCheckpoint checkpoint = checkpointRepository.findWithLockById(bucket)
+                .orElseGet(() -> checkpointRepository.save(ReconciliationCheckpoint.builder().id(bucket).build()));
+        Instant now = Instant.now();
+        if (checkpoint.getLastKey() == null) {
+            if (checkpoint.getPassCompletedAt() != null
+                    && checkpoint.getPassCompletedAt().plus(reconciliationConfiguration.getPassInterval()).isAfter(now)) {
+                return false;
+            }
+            checkpoint.setPassStartedAt(now);
+            checkpoint.setOrphanObjects(0);
+            checkpoint.setDanglingFiles(0);
+            log.info("Started reconciliation of bucket {}", bucket);
+        }
+
+        int pageSize = reconciliationConfiguration.getPageSize();
+        Instant settledBefore = now.minus(reconciliationConfiguration.getGracePeriod());
+        String after = checkpoint.getLastKey();
+        List<StoredObjectDto> objects = s3Service.listFiles(after, pageSize);
+        boolean bucketEnd = objects.size() < pageSize;
+        String upTo = bucketEnd ? null : objects.get(objects.size() - 1).getName();
+        List<String> stored = upTo == null
+                ? fileDataRepository.findStoredNamesAfter(after != null ? after : "", settledBefore, pageSize)
+                : fileDataRepository.findStoredNamesBetween(after != null ? after : "", upTo, settledBefore, pageSize);
+
+        boolean complete = bucketEnd;
+        if (stored.size() == pageSize) {
+            // В диапазоне страницы больше файлов, чем помещается в пачку: страница обрезается по последнему файлу
+            upTo = stored.get(stored.size() - 1);
+            complete = false;
+        }
+        String bound = upTo;
+        List<StoredObjectDto> page = bound == null ? objects : objects.stream()
+                .filter(object -> BYTE_ORDER.compare(object.getName(), bound) <= 0)
+                .collect(Collectors.toList());
+
+        Set<String> listed = page.stream().map(StoredObjectDto::getName).collect(Collectors.toSet());
+        Set<String> dangling = new LinkedHashSet<>();
+        stored.stream().filter(name -> !listed.contains(name)).forEach(dangling::add);
+        List<String> orphans = findOrphans(page, settledBefore);
+        report(orphans, dangling);
+
+        checkpoint.setOrphanObjects(checkpoint.getOrphanObjects() + orphans.size());
+        checkpoint.setDanglingFiles(checkpoint.getDanglingFiles() + dangling.size());
+        checkpoint.setLastKey(complete ? null : bound);
+        if (complete) {
+            checkpoint.setPassCompletedAt(now);
+            log.info("Completed reconciliation of bucket {} started at {}, orphan objects: {}, dangling files: {}",
+                    bucket, checkpoint.getPassStartedAt(), checkpoint.getOrphanObjects(), checkpoint.getDanglingFiles());
+        }
+        return !complete;
+    }
+
+    /**
+     * Объекты страницы, на которые не ссылается ни файл, ни общий объект, ни часть содержимого, и сегменты без записи.
+     * Объекты, изменённые позже settledBefore, не проверяются.
+     */
+    private List<String> findOrphans(List<StoredObjectDto> page, Instant settledBefore) {
+        String chunkPrefix = chunkingConfiguration.getObjectPrefix();
+        String segmentPrefix = packingConfiguration.getObjectPrefix();
+        List<String> candidates = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        Set<String> hashes = new HashSet<>();
+        Set<String> segments = new HashSet<>();
+        for (StoredObjectDto object : page) {
+            if (!object.getLastModified().isBefore(settledBefore)) {
+                continue;
+            }
+            candidates.add(object.getName());
+            if (object.getName().startsWith(chunkPrefix)) {
+                hashes.add(object.getName().substring(chunkPrefix.length()));
+            } else if (object.getName().startsWith(segmentPrefix)) {
+                segments.add(object.getName());
+            } else {
+                names.add(object.getName());
+            }
+        }
+
+        Set<String> referenced = new HashSet<>();
+        if (!names.isEmpty()) {
+            referenced.addAll(fileDataRepository.findStorageNamesIn(names));
+            referenced.addAll(fileBlobRepository.findObjectNamesIn(names));
+        }
+        if (!hashes.isEmpty()) {
+            contentChunkRepository.findHashesIn(hashes).forEach(hash -> referenced.add(chunkPrefix + hash));
+        }
+        if (!segments.isEmpty()) {
+            referenced.addAll(fileSegmentRepository.findNamesIn(segments));
+        }
+        candidates.removeAll(referenced);
+        return candidates;
+    }
+
+    private void report(List<String> orphans, Set<String> dangling) {
+        if (!orphans.isEmpty()) {
+            orphanCounter.increment(orphans.size());
+            if (reconciliationConfiguration.isDeleteOrphans()) {
+                Map<String, String> errors = s3Service.deleteFiles(orphans);
+                log.warn("Deleted {} objects not referenced by any file, failed: {}",
+                        orphans.size() - errors.size(), errors.keySet());
+            } else {
+                log.warn("Found {} objects not referenced by any file: {}", orphans.size(), orphans);
+            }
+        }
+        if (!dangling.isEmpty()) {
+            danglingCounter.increment(dangling.size());
+            log.warn("Found {} objects referenced by files but missing in storage: {}", dangling.size(), dangling);
+        }
+    }
+}
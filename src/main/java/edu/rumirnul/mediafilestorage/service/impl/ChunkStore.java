@@ -0,0 +1,287 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.entity.FileChunk;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранение содержимого файлов частями, выделенными по содержимому {@link ContentDefinedChunker}.
+ * При записи в хранилище загружаются только части, которых там ещё нет, поэтому повторная загрузка
+ * файла с небольшими правками записывает только изменённые части. Части загружаются параллельно
+ * пачками по {@link ChunkingConfiguration#getUploadThreads()}, чтобы в памяти было не больше одной пачки.
+ * При чтении содержимое делится на диапазоны одного размера, которые скачиваются одновременно
+ * и собираются по порядку {@link ParallelRangeInputStream}.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class ChunkStore {
+
+    private final S3Service s3Service;
+    private final ContentChunkService contentChunkService;
+    private final ChunkingConfiguration chunkingConfiguration;
+    private final ThreadPoolExecutor uploadExecutor;
+    private final ThreadPoolExecutor downloadExecutor;
+
+    public ChunkStore(S3Service s3Service, ContentChunkService contentChunkService,
+                      ChunkingConfiguration chunkingConfiguration) {
+        this.s3Service = s3Service;
+        this.contentChunkService = contentChunkService;
+        this.chunkingConfiguration = chunkingConfiguration;
+
+        int uploadThreads = chunkingConfiguration.getUploadThreads();
+        this.uploadExecutor = new ThreadPoolExecutor(uploadThreads, uploadThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("chunk-upload-"));
+        this.uploadExecutor.allowCoreThreadTimeOut(true);
+
+        int downloadThreads = chunkingConfiguration.getDownloadThreads();
+        this.downloadExecutor = new ThreadPoolExecutor(downloadThreads, downloadThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(downloadThreads * chunkingConfiguration.getDownloadConcurrency()),
+                new CustomizableThreadFactory("chunk-download-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.downloadExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Делит содержимое на части и записывает в хранилище части, которых там нет.
+     * На все части содержимого добавляются ссылки, которые передаются описанию содержимого файла
+     * {@link ContentChunkService#replaceManifest} или удаляются {@link #release(StoredContent)}.
+     * Если записать содержимое не удалось, добавленные ссылки удаляются.
+     *
+     * @param inputStream содержимое файла.
+     * @return Возвращает описание содержимого из частей, его размер и контрольную сумму.
+     * @throws IOException не удалось прочитать содержимое.
+     * @throws S3Exception не удалось записать часть в хранилище.
+     */
+    public StoredContent store(InputStream inputStream) throws IOException {
+        HashingInputStream content = new HashingInputStream(Hashing.sha256(), inputStream);
+        ContentDefinedChunker chunker = new ContentDefinedChunker(content,
+                (int) chunkingConfiguration.getMinChunkSize().toBytes(),
+                (int) chunkingConfiguration.getAverageChunkSize().toBytes(),
+                (int) chunkingConfiguration.getMaxChunkSize().toBytes());
+
+        List<FileChunk> chunks = new ArrayList<>();
+        Map<String, Integer> acquired = new HashMap<>();
+        Map<String, byte[]> batch = new LinkedHashMap<>();
+        Map<String, Integer> batchReferences = new HashMap<>();
+        long offset = 0;
+        int uploaded = 0;
+        try {
+            byte[] data;
+            while ((data = chunker.next()) != null) {
+                String hash = Hashing.sha256().hashBytes(data).toString();
+                chunks.add(FileChunk.builder()
+                        .seq(chunks.size())
+                        .chunkHash(hash)
+                        .offset(offset)
+                        .length(data.length)
+                        .build());
+                offset += data.length;
+
+                batch.putIfAbsent(hash, data);
+                batchReferences.merge(hash, 1, Integer::sum);
+                if (batch.size() >= chunkingConfiguration.getUploadThreads()) {
+                    uploaded += flush(batch, batchReferences, acquired);
+                }
+            }
+            uploaded += flush(batch, batchReferences, acquired);
+        } catch (IOException | RuntimeException e) {
+            contentChunkService.release(acquired);
+            throw e;
+        }
+
+        log.info("Content was stored as {} chunks, uploaded: {}, size: {}", chunks.size(), uploaded, offset);
+        return new StoredContent(chunks, offset, content.hash().toString(), uploaded);
+    }
+
+    /**
+     * Удаляет ссылки на части записанного содержимого, которое не стало содержимым файла.
+     *
+     * @param content записанное содержимое.
+     */
+    public void release(StoredContent content) {
+        contentChunkService.release(ContentChunkService.countReferences(content.getChunks()));
+    }
+
+    /**
+     * Открывает поток чтения части содержимого, хранимого частями.
+     *
+     * @param chunks части содержимого в порядке следования.
+     * @param offset смещение начала читаемой части.
+     * @param length длина читаемой части.
+     * @return Возвращает поток с содержимым.
+     */
+    public InputStream open(List<FileChunk> chunks, long offset, long length) {
+        return new ParallelRangeInputStream(
+                (rangeOffset, rangeLength) -> fetchRange(chunks, rangeOffset, rangeLength),
+                downloadExecutor, offset, length,
+                (int) chunkingConfiguration.getDownloadRangeSize().toBytes(),
+                chunkingConfiguration.getDownloadConcurrency());
+    }
+
+    /**
+     * Останавливает пулы потоков загрузки и скачивания частей.
+     */
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+        downloadExecutor.shutdownNow();
+    }
+
+    /**
+     * Добавляет ссылки на части пачки и параллельно записывает в хранилище части, которых там нет.
+     *
+     * @param batch           содержимое различных частей пачки по контрольной сумме.
+     * @param batchReferences количество ссылок на части пачки.
+     * @param acquired        все добавленные ссылки, дополняются ссылками пачки.
+     * @return Возвращает количество записанных в хранилище частей.
+     */
+    private int flush(Map<String, byte[]> batch, Map<String, Integer> batchReferences,
+                      Map<String, Integer> acquired) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Set<String> missing = contentChunkService.acquire(batchReferences);
+        Map<String, Integer> missingReferences = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        batchReferences.forEach((hash, count) -> {
+            if (missing.contains(hash)) {
+                missingReferences.put(hash, count);
+                sizes.put(hash, batch.get(hash).length);
+            } else {
+                acquired.merge(hash, count, Integer::sum);
+            }
+        });
+
+        List<Future<Long>> uploads = new ArrayList<>(missing.size());
+        for (String hash : missing) {
+            byte[] data = batch.get(hash);
+            uploads.add(uploadExecutor.submit(() -> s3Service.putFile(FileDto.builder()
+                    .name(contentChunkService.objectName(hash))
+                    .inputStream(new ByteArrayInputStream(data))
+                    .size(data.length)
+                    .build())));
+        }
+        awaitUploads(uploads);
+
+        if (!missingReferences.isEmpty()) {
+            try {
+                contentChunkService.register(missingReferences, sizes);
+            } catch (DataIntegrityViolationException e) {
+                log.info("Same chunks were stored concurrently, retrying with the stored chunks");
+                contentChunkService.register(missingReferences, sizes);
+            }
+            missingReferences.forEach((hash, count) -> acquired.merge(hash, count, Integer::sum));
+        }
+        batch.clear();
+        batchReferences.clear();
+        return missing.size();
+    }
+
+    private static void awaitUploads(List<Future<Long>> uploads) {
+        try {
+            for (Future<Long> upload : uploads) {
+                upload.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            uploads.forEach(upload -> upload.cancel(true));
+            throw new S3Exception("Interrupted while saving chunks in s3(minio)");
+        } catch (ExecutionException e) {
+            uploads.forEach(upload -> upload.cancel(true));
+            log.error("Failed to save a chunk in s3(minio)", e.getCause());
+            throw new S3Exception("Failed to save file in s3(minio)");
+        }
+    }
+
+    /**
+     * Скачивание диапазона содержимого: диапазон собирается из пересекающихся с ним частей.
+     */
+    private byte[] fetchRange(List<FileChunk> chunks, long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        int index = findChunk(chunks, offset);
+        int filled = 0;
+        while (filled < length) {
+            if (index >= chunks.size()) {
+                throw new EOFException("Content is shorter than " + (offset + length));
+            }
+            FileChunk chunk = chunks.get(index++);
+            long chunkOffset = offset + filled - chunk.getOffset();
+            int pieceLength = (int) Math.min(length - filled, chunk.getLength() - chunkOffset);
+            try (InputStream inputStream = s3Service.getFileByName(
+                    contentChunkService.objectName(chunk.getChunkHash()), chunkOffset, pieceLength)) {
+                int read = ByteStreams.read(inputStream, data, filled, pieceLength);
+                if (read != pieceLength) {
+                    throw new EOFException("Chunk " + chunk.getChunkHash() + " is shorter than " + chunk.getLength());
+                }
+            }
+            filled += pieceLength;
+        }
+        return data;
+    }
+
+    /**
+     * Поиск части, содержащей байт с указанным смещением от начала содержимого.
+     */
+    private static int findChunk(List<FileChunk> chunks, long offset) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunks.get(middle).getOffset() <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Содержимое, записанное частями.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class StoredContent {
+        /** Части содержимого в порядке следования. */
+        private final List<FileChunk> chunks;
+        /** Размер содержимого в байтах. */
+        private final long size;
+        /** Контрольная сумма SHA-256 содержимого в hex. */
+        private final String checksum;
+        /** Количество частей, записанных в хранилище. Остальные части уже были в хранилище. */
+        private final int uploadedChunks;
+    }
+}
@@ -0,0 +1,70 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Кольцо consistent hashing. Каждый узел занимает на кольце несколько точек пропорционально весу,
+ * ключ принадлежит узлу первой точки по часовой стрелке от хэша ключа. При добавлении узла
+ * к нему переходит только доля ключей, пропорциональная его весу, остальные ключи остаются на своих узлах.
+ *
+ * @param <T> тип узла.
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public class ConsistentHashRing<T> {
+
+    /** Хэш-функция кольца. Должна быть одинаковой на всех экземплярах, поэтому seed постоянный. */
+    private static final HashFunction HASH = Hashing.murmur3_128(0);
+
+    private final int virtualNodes;
+    private final TreeMap<Long, T> points = new TreeMap<>();
+
+    /**
+     * @param virtualNodes количество точек на единицу веса узла.
+     */
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual nodes count must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Добавляет узел на кольцо. Точки узла зависят только от его имени, поэтому не меняются при перезапуске.
+     *
+     * @param name   уникальное имя узла.
+     * @param node   узел.
+     * @param weight вес узла.
+     */
+    public void add(String name, T node, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight of node " + name + " must be positive");
+        }
+        for (int i = 0; i < virtualNodes * weight; i++) {
+            points.putIfAbsent(hash(name + "#" + i), node);
+        }
+    }
+
+    /**
+     * Узел, которому принадлежит ключ.
+     *
+     * @param key ключ.
+     * @return Возвращает узел или null, если кольцо пустое.
+     */
+    public T get(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, T> point = points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        return HASH.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -0,0 +1,271 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.entity.ContentChunk;
+import edu.rumirnul.mediafilestorage.entity.FileChunk;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.entity.RetiredObject;
+import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.repository.ContentChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.repository.RetiredObjectRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Класс сервис работающий с частями содержимого файлов, хранимых частями.
+ * Одинаковые части всех файлов хранятся в хранилище один раз, у части хранится количество ссылок
+ * из описаний содержимого файлов {@link FileChunk}. Строки частей блокируются в порядке контрольных сумм
+ * на время изменения счётчиков, поэтому одновременные обновления и удаления файлов не теряют ссылки.
+ * Часть без ссылок удаляется из хранилища не сразу, а через {@link ChunkingConfiguration#getGcGracePeriod()},
+ * чтобы скачивания, начатые до обновления файла, успели прочитать старую версию содержимого.
+ * Так же удаляется объект с прежним содержимым файла, начавшего храниться частями {@link RetiredObject}.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContentChunkService {
+
+    private final ContentChunkRepository contentChunkRepository;
+    private final FileChunkRepository fileChunkRepository;
+    private final FileDataRepository fileDataRepository;
+    private final RetiredObjectRepository retiredObjectRepository;
+    private final FileDataService fileDataService;
+    private final FileBlobService fileBlobService;
+    private final S3Service s3Service;
+    private final ChunkingConfiguration chunkingConfiguration;
+    private final MinioShardRouter minioShardRouter;
+
+    /**
+     * Добавляет ссылки на части, которые уже есть в хранилище.
+     *
+     * @param references количество ссылок по контрольной сумме части.
+     * @return Возвращает контрольные суммы частей, которых нет в хранилище. Ссылки на них не добавляются.
+     */
+    @Transactional
+    public Set<String> acquire(Map<String, Integer> references) {
+        Set<String> missing = new HashSet<>(references.keySet());
+        for (ContentChunk chunk : contentChunkRepository.findByHashInOrderByHashAsc(new TreeSet<>(references.keySet()))) {
+            chunk.setRefCount(chunk.getRefCount() + references.get(chunk.getHash()));
+            chunk.setReleasedAt(null);
+            missing.remove(chunk.getHash());
+        }
+        return missing;
+    }
+
+    /**
+     * Сохраняет ссылки на части, только что записанные в хранилище. Если часть одновременно записала
+     * другая транзакция, ссылки добавляются к сохранённой ей части. При одновременной вставке той же части
+     * выбрасывается {@link org.springframework.dao.DataIntegrityViolationException}, вызов можно повторить.
+     *
+     * @param references количество ссылок по контрольной сумме части.
+     * @param sizes      размер части по контрольной сумме.
+     */
+    @Transactional
+    public void register(Map<String, Integer> references, Map<String, Integer> sizes) {
+        Set<String> missing = acquire(references);
+        List<ContentChunk> created = new ArrayList<>(missing.size());
+        for (String hash : missing) {
+            created.add(ContentChunk.builder()
+                    .hash(hash)
+                    .size(sizes.get(hash))
+                    .refCount(references.get(hash))
+                    .shard(minioShardRouter.route(objectName(hash)).getName())
+                    .created(true)
+                    .build());
+        }
+        contentChunkRepository.saveAll(created);
+    }
+
+    /**
+     * Удаляет ссылки на части. Части без ссылок удаляются из хранилища {@link #deleteUnreferenced()}.
+     *
+     * @param references количество ссылок по контрольной сумме части.
+     */
+    @Transactional
+    public void release(Map<String, Integer> references) {
+        if (references.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        for (ContentChunk chunk : contentChunkRepository.findByHashInOrderByHashAsc(new TreeSet<>(references.keySet()))) {
+            int refCount = chunk.getRefCount() - references.get(chunk.getHash());
+            chunk.setRefCount(Math.max(refCount, 0));
+            if (refCount <= 0) {
+                chunk.setReleasedAt(now);
+            }
+        }
+    }
+
+    /**
+     * Получение описания содержимого файла, хранимого частями.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @return Возвращает части файла в порядке следования.
+     */
+    public List<FileChunk> findManifest(Long fileId) {
+        return fileChunkRepository.findByFileIdOrderBySeqAsc(fileId);
+    }
+
+    /**
+     * Заменяет содержимое файла новым описанием из частей, ссылки на которые уже добавлены.
+     * Ссылки на части предыдущей версии удаляются, номер версии увеличивается.
+     * Если файл ещё не хранился частями, удаляется его ссылка на общий объект содержимого {@link FileBlobService}.
+     * Объект без ссылок удаляется из хранилища {@link #deleteRetired()} после периода ожидания.
+     *
+     * @param fileId   уникальный идентификатор файла.
+     * @param chunks   части нового содержимого в порядке следования.
+     * @param size     размер нового содержимого.
+     * @param checksum контрольная сумма SHA-256 нового содержимого в hex.
+     * @return Возвращает имя объекта с прежним содержимым, если на него больше никто не ссылается
+     * и его загрузку нужно отменить.
+     * @throws FileNotFoundException файла нет в БД.
+     */
+    @Transactional
+    public Optional<String> replaceManifest(Long fileId, List<FileChunk> chunks, long size, String checksum) {
+        FileData fileData = fileDataRepository.findWithLockById(fileId)
+                .orElseThrow(() -> new FileNotFoundException("File with id " + fileId + " not found"));
+
+        Optional<String> unreferenced = Optional.empty();
+        if (fileData.isChunkedContent()) {
+            List<FileChunk> previous = findManifest(fileId);
+            fileChunkRepository.deleteAllInBatch(previous);
+            release(countReferences(previous));
+        } else if (fileBlobService.release(fileData.getStorageName())) {
+            unreferenced = Optional.of(fileData.getStorageName());
+            retiredObjectRepository.save(new RetiredObject(fileData.getStorageName(), Instant.now()));
+        }
+
+        chunks.forEach(chunk -> chunk.setFileId(fileId));
+        fileChunkRepository.saveAll(chunks);
+
+        fileData.setChunked(true);
+        fileData.setObjectName(null);
+        fileData.setSegmentName(null);
+        fileData.setSegmentOffset(null);
+        fileData.setVersion(fileData.getVersion() != null ? fileData.getVersion() + 1 : 1);
+        fileData.setSize(size);
+        fileData.setChecksum(checksum);
+        fileData.setUpdatedAt(Instant.now());
+        fileData.setStatus(FileStatus.STORED);
+        fileDataService.save(fileData);
+        log.info("Content of file {} was replaced with {} chunks, version: {}",
+                fileId, chunks.size(), fileData.getVersion());
+        return unreferenced;
+    }
+
+    /**
+     * Удаляет описания содержимого нескольких файлов. Строки файлов должны быть заблокированы вызывающим,
+     * чтобы содержимое файлов не обновилось одновременно с удалением.
+     *
+     * @param fileIds уникальные идентификаторы файлов, хранимых частями.
+     */
+    @Transactional
+    public void releaseManifests(Collection<Long> fileIds) {
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        List<FileChunk> chunks = fileChunkRepository.findByFileIdIn(fileIds);
+        fileChunkRepository.deleteAllInBatch(chunks);
+        release(countReferences(chunks));
+    }
+
+    /**
+     * Удаление из хранилища пачки частей, на которые давно нет ссылок.
+     * Строки, заблокированные другими транзакциями, пропускаются. Объекты удаляются одним синхронным запросом,
+     * пока строки частей заблокированы, поэтому часть не может быть одновременно получена повторно.
+     * Если удалить хоть один объект не удалось, строки не удаляются, транзакция откатывается
+     * и части удаляются при следующем запуске.
+     *
+     * @return Возвращает количество удалённых частей.
+     * @throws S3Exception не удалось удалить объекты из хранилища.
+     */
+    @Transactional
+    public int deleteUnreferenced() {
+        Instant releasedBefore = Instant.now().minus(chunkingConfiguration.getGcGracePeriod());
+        List<ContentChunk> chunks = contentChunkRepository.findByRefCountAndReleasedAtBefore(0, releasedBefore,
+                PageRequest.of(0, chunkingConfiguration.getGcBatchSize()));
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+        Map<String, String> errors = s3Service.deleteFiles(chunks.stream()
+                .map(chunk -> objectName(chunk.getHash()))
+                .collect(Collectors.toList()));
+        if (!errors.isEmpty()) {
+            throw new S3Exception("Failed to delete " + errors.size() + " chunks from s3(minio)");
+        }
+        contentChunkRepository.deleteAllInBatch(chunks);
+        return chunks.size();
+    }
+
+    /**
+     * Удаление из хранилища пачки объектов с прежним содержимым файлов, на которые давно нет ссылок,
+     * как {@link #deleteUnreferenced()}.
+     *
+     * @return Возвращает количество удалённых объектов.
+     * @throws S3Exception не удалось удалить объекты из хранилища.
+     */
+    @Transactional
+    public int deleteRetired() {
+        Instant retiredBefore = Instant.now().minus(chunkingConfiguration.getGcGracePeriod());
+        List<RetiredObject> objects = retiredObjectRepository.findByRetiredAtBefore(retiredBefore,
+                PageRequest.of(0, chunkingConfiguration.getGcBatchSize()));
+        if (objects.isEmpty()) {
+            return 0;
+        }
+        Map<String, String> errors = s3Service.deleteFiles(objects.stream()
+                .map(RetiredObject::getName)
+                .collect(Collectors.toList()));
+        if (!errors.isEmpty()) {
+            throw new S3Exception("Failed to delete " + errors.size() + " retired objects from s3(minio)");
+        }
+        retiredObjectRepository.deleteAllInBatch(objects);
+        return objects.size();
+    }
+
+    /**
+     * Имя объекта части в хранилище.
+     *
+     * @param hash контрольная сумма части.
+     * @return Возвращает имя объекта.
+     */
+    public String objectName(String hash) {
+        return chunkingConfiguration.getObjectPrefix() + hash;
+    }
+
+    /**
+     * Количество ссылок на каждую часть из описания содержимого.
+     *
+     * @param chunks части содержимого файла.
+     * @return Возвращает количество ссылок по контрольной сумме части.
+     */
+    public static Map<String, Integer> countReferences(List<FileChunk> chunks) {
+        Map<String, Integer> references = new HashMap<>();
+        for (FileChunk chunk : chunks) {
+            references.merge(chunk.getChunkHash(), 1, Integer::sum);
+        }
+        return references;
+    }
+}
@@ -0,0 +1,128 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Деление потока на части, границы которых определяются содержимым (FastCDC).
+ * Граница ставится там, где скользящий gear-хэш последних байтов совпадает с маской, поэтому вставка или удаление
+ * байтов меняют только соседние части, а остальные части совпадают с частями предыдущей версии файла.
+ * До среднего размера используется более строгая маска, после него - более слабая, чтобы размеры частей
+ * группировались около среднего. Размер части ограничен минимальным и максимальным размером.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public class ContentDefinedChunker {
+
+    /** Таблица gear-хэша. Должна быть одинаковой на всех экземплярах, поэтому создаётся с постоянным seed. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6d6564696146L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final InputStream inputStream;
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long strictMask;
+    private final long looseMask;
+    private final byte[] buffer;
+    private int start;
+    private int end;
+    private boolean eof;
+
+    /**
+     * @param inputStream делимый поток.
+     * @param minSize     минимальный размер части.
+     * @param averageSize средний размер части.
+     * @param maxSize     максимальный размер части.
+     */
+    public ContentDefinedChunker(InputStream inputStream, int minSize, int averageSize, int maxSize) {
+        if (minSize <= 0 || minSize > averageSize || averageSize > maxSize) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min <= average <= max");
+        }
+        this.inputStream = inputStream;
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        this.strictMask = -1L << (64 - Math.min(bits + 1, 63));
+        this.looseMask = -1L << (64 - Math.max(bits - 1, 1));
+        this.buffer = new byte[maxSize];
+    }
+
+    /**
+     * Читает следующую часть потока.
+     *
+     * @return Возвращает содержимое части или null, если поток закончился.
+     * @throws IOException не удалось прочитать поток.
+     */
+    public byte[] next() throws IOException {
+        fill();
+        int available = end - start;
+        if (available == 0) {
+            return null;
+        }
+        int length = cut(start, available);
+        byte[] chunk = Arrays.copyOfRange(buffer, start, start + length);
+        start += length;
+        return chunk;
+    }
+
+    /**
+     * Поиск границы части в буфере.
+     *
+     * @param offset    начало части в буфере.
+     * @param available количество прочитанных байтов, не больше максимального размера части.
+     * @return Возвращает длину части.
+     */
+    private int cut(int offset, int available) {
+        if (available <= minSize) {
+            return available;
+        }
+        int normal = Math.min(averageSize, available);
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[buffer[offset + i] & 0xFF];
+            if ((hash & strictMask) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < available; i++) {
+            hash = (hash << 1) + GEAR[buffer[offset + i] & 0xFF];
+            if ((hash & looseMask) == 0) {
+                return i + 1;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Дочитывает поток, пока в буфере не окажется максимальный размер части или поток не закончится.
+     */
+    private void fill() throws IOException {
+        if (eof || end - start == maxSize) {
+            return;
+        }
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        int read = ByteStreams.read(inputStream, buffer, end, maxSize - end);
+        end += read;
+        if (end < maxSize) {
+            eof = true;
+        }
+    }
+}
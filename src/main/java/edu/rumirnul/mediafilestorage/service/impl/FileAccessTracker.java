@@ -0,0 +1,70 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.collect.Lists;
+import edu.rumirnul.mediafilestorage.config.FileMetadataConfiguration;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Учёт времени последнего обращения к файлам.
+ * Обращения накапливаются в памяти и периодически записываются в БД пачками,
+ * поэтому чтение файла не требует отдельного запроса на запись.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FileAccessTracker {
+
+    private final FileDataRepository fileDataRepository;
+    private final FileMetadataConfiguration fileMetadataConfiguration;
+    private final Set<Long> accessed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Запоминает обращение к файлу.
+     *
+     * @param fileId уникальный идентификатор файла.
+     */
+    public void recordAccess(Long fileId) {
+        if (fileId != null) {
+            accessed.add(fileId);
+        }
+    }
+
+    /**
+     * Записывает в БД время обращения ко всем файлам, к которым обращались с прошлой записи.
+     */
+    @Scheduled(initialDelayString = "#{@fileMetadataConfiguration.accessFlushInterval.toMillis()}",
+            fixedDelayString = "#{@fileMetadataConfiguration.accessFlushInterval.toMillis()}")
+    @PreDestroy
+    public void flush() {
+        if (accessed.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(accessed);
+        accessed.removeAll(ids);
+
+        Instant accessedAt = Instant.now();
+        int updated = 0;
+        try {
+            for (List<Long> batch : Lists.partition(ids, fileMetadataConfiguration.getAccessFlushBatchSize())) {
+                updated += fileDataRepository.updateLastAccessedAt(batch, accessedAt);
+            }
+        } catch (Exception e) {
+            log.error("Failed to save last access time of files", e);
+        }
+        log.info("Saved last access time of {} files", updated);
+    }
+}
@@ -0,0 +1,224 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.entity.FileBlob;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileSegment;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.repository.FileBlobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Класс сервис работающий с общими объектами содержимого файлов.
+ * Файлы с одинаковой контрольной суммой SHA-256 ссылаются на один объект в хранилище,
+ * у объекта хранится количество ссылок. Строка объекта блокируется на время изменения счётчика,
+ * поэтому одновременные загрузки и удаления файлов с одним содержимым не теряют ссылки.
+ * Объект, упакованный в сегмент {@link FileSegment}, отдельно из хранилища не удаляется: его содержимое
+ * перестаёт быть живым содержимым сегмента и освобождается при уплотнении сегмента.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FileBlobService {
+
+    private final FileBlobRepository fileBlobRepository;
+    private final FileDataService fileDataService;
+
+    /**
+     * Сохраняет метаданные файла со ссылкой на объект с таким же содержимым. Если такого объекта нет,
+     * создаётся новый объект с именем файла, и содержимое нужно записать в хранилище.
+     * При одновременном создании объекта с тем же содержимым другой транзакцией выбрасывается
+     * {@link org.springframework.dao.DataIntegrityViolationException}, вызов можно повторить.
+     *
+     * @param fileData  метаданные файла с заполненной контрольной суммой.
+     * @param newStatus состояние нового объекта и файла, если объекта с таким содержимым нет.
+     * @return Возвращает true, если содержимое уже есть и записывать его в хранилище не нужно.
+     */
+    @Transactional
+    public boolean saveDeduplicated(FileData fileData, FileStatus newStatus) {
+        // Идентификатор мог быть выделен в откаченной транзакции предыдущей попытки
+        fileData.setId(null);
+        Optional<FileBlob> existing = fileBlobRepository.findByChecksum(fileData.getChecksum());
+        if (existing.isPresent()) {
+            FileBlob blob = existing.get();
+            blob.setRefCount(blob.getRefCount() + 1);
+            fileData.setObjectName(blob.getObjectName());
+            fileData.setSegmentName(blob.getSegmentName());
+            fileData.setSegmentOffset(blob.getSegmentOffset());
+            fileData.setStatus(blob.getStatus());
+            fileDataService.save(fileData);
+            log.info("File {} has the same content as object {}, references: {}",
+                    fileData.getFileName(), blob.getObjectName(), blob.getRefCount());
+            return true;
+        }
+
+        fileBlobRepository.save(FileBlob.builder()
+                .checksum(fileData.getChecksum())
+                .objectName(fileData.getFileName())
+                .size(fileData.getSize())
+                .refCount(1)
+                .status(newStatus)
+                .createdAt(Instant.now())
+                .build());
+        fileData.setObjectName(fileData.getFileName());
+        fileData.setStatus(newStatus);
+        fileDataService.save(fileData);
+        return false;
+    }
+
+    /**
+     * Сохраняет метаданные пачки файлов со ссылками на объекты с таким же содержимым, как
+     * {@link #saveDeduplicated(FileData, FileStatus)}. Объекты ищутся одним запросом, а новые объекты
+     * и метаданные файлов вставляются JDBC пакетами. Файлы пачки с одинаковым содержимым ссылаются на один объект.
+     * При одновременном создании объекта с тем же содержимым другой транзакцией выбрасывается
+     * {@link org.springframework.dao.DataIntegrityViolationException}, вызов можно повторить.
+     *
+     * @param files     метаданные файлов с заполненными контрольными суммами.
+     * @param newStatus состояние новых объектов и их файлов.
+     * @return Возвращает файлы, содержимое которых уже было сохранено и записывать его в хранилище не нужно.
+     */
+    @Transactional
+    public List<FileData> saveAllDeduplicated(List<FileData> files, FileStatus newStatus) {
+        Set<String> checksums = new TreeSet<>();
+        files.forEach(fileData -> checksums.add(fileData.getChecksum()));
+        Map<String, FileBlob> blobs = new HashMap<>();
+        fileBlobRepository.findByChecksumInOrderByChecksumAsc(checksums)
+                .forEach(blob -> blobs.put(blob.getChecksum(), blob));
+
+        List<FileBlob> created = new ArrayList<>();
+        List<FileData> duplicates = new ArrayList<>();
+        Instant now = Instant.now();
+        for (FileData fileData : files) {
+            // Идентификатор мог быть выделен в откаченной транзакции предыдущей попытки
+            fileData.setId(null);
+            FileBlob blob = blobs.get(fileData.getChecksum());
+            if (blob != null) {
+                blob.setRefCount(blob.getRefCount() + 1);
+                fileData.setObjectName(blob.getObjectName());
+                fileData.setSegmentName(blob.getSegmentName());
+                fileData.setSegmentOffset(blob.getSegmentOffset());
+                fileData.setStatus(blob.getStatus());
+                duplicates.add(fileData);
+                continue;
+            }
+            blob = FileBlob.builder()
+                    .checksum(fileData.getChecksum())
+                    .objectName(fileData.getFileName())
+                    .size(fileData.getSize())
+                    .refCount(1)
+                    .status(newStatus)
+                    .createdAt(now)
+                    .build();
+            blobs.put(blob.getChecksum(), blob);
+            created.add(blob);
+            fileData.setObjectName(fileData.getFileName());
+            fileData.setStatus(newStatus);
+        }
+        fileBlobRepository.saveAll(created);
+        fileDataService.saveAll(files);
+        log.info("Saved {} files, new objects: {}, duplicates: {}", files.size(), created.size(), duplicates.size());
+        return duplicates;
+    }
+
+    /**
+     * Удаляет ссылку файла на объект. Объект удаляется, когда на него не осталось ссылок.
+     *
+     * @param storageName имя объекта в хранилище.
+     * @return Возвращает true, если на объект больше никто не ссылается и его нужно удалить из хранилища.
+     * Для файлов, сохранённых до дедупликации, всегда возвращает true, для упакованных в сегмент - false.
+     */
+    @Transactional
+    public boolean release(String storageName) {
+        Optional<FileBlob> existing = fileBlobRepository.findByObjectName(storageName);
+        if (!existing.isPresent()) {
+            return true;
+        }
+        FileBlob blob = existing.get();
+        blob.setRefCount(blob.getRefCount() - 1);
+        if (blob.getRefCount() > 0) {
+            log.info("Object {} is still referenced by {} files", storageName, blob.getRefCount());
+            return false;
+        }
+        fileBlobRepository.delete(blob);
+        log.info("Object {} is no longer referenced", storageName);
+        return blob.getSegmentName() == null;
+    }
+
+    /**
+     * Удаляет ссылки пачки файлов на объекты, как {@link #release(String)}. Строки объектов блокируются
+     * одним запросом в порядке имён, объекты без ссылок удаляются одним запросом.
+     *
+     * @param references количество удаляемых ссылок по имени объекта в хранилище.
+     * @return Возвращает имена объектов, на которые больше никто не ссылается и которые нужно удалить из хранилища.
+     * Упакованные в сегмент объекты не возвращаются.
+     */
+    @Transactional
+    public Set<String> releaseAll(Map<String, Integer> references) {
+        Set<String> unreferenced = new TreeSet<>(references.keySet());
+        if (references.isEmpty()) {
+            return unreferenced;
+        }
+        List<FileBlob> deleted = new ArrayList<>();
+        for (FileBlob blob : fileBlobRepository.findByObjectNameInOrderByObjectNameAsc(new TreeSet<>(references.keySet()))) {
+            blob.setRefCount(blob.getRefCount() - references.get(blob.getObjectName()));
+            if (blob.getRefCount() > 0 || blob.getSegmentName() != null) {
+                unreferenced.remove(blob.getObjectName());
+            }
+            if (blob.getRefCount() <= 0) {
+                deleted.add(blob);
+            }
+        }
+        fileBlobRepository.deleteAllInBatch(deleted);
+        log.info("Released {} objects, no longer referenced: {}", references.size(), unreferenced.size());
+        return unreferenced;
+    }
+
+    /**
+     * Обновление состояния сохранения объекта в хранилище.
+     *
+     * @param storageName имя объекта в хранилище.
+     * @param status      новое состояние.
+     */
+    @Transactional
+    public void updateStatus(String storageName, FileStatus status) {
+        fileBlobRepository.updateStatus(storageName, status);
+    }
+
+    /**
+     * Запись расположения содержимого объекта, упакованного в сегмент. Объект переводится
+     * в состояние {@link FileStatus#STORED}.
+     *
+     * @param storageName   имя объекта.
+     * @param segmentName   имя сегмента с содержимым.
+     * @param segmentOffset смещение содержимого в сегменте.
+     */
+    @Transactional
+    public void updateSegment(String storageName, String segmentName, long segmentOffset) {
+        fileBlobRepository.updateSegment(storageName, segmentName, segmentOffset, FileStatus.STORED);
+    }
+
+    /**
+     * Удаление объекта, содержимое которого не удалось сохранить в хранилище.
+     * Следующая загрузка того же содержимого создаст новый объект.
+     *
+     * @param storageName имя объекта в хранилище.
+     */
+    @Transactional
+    public void delete(String storageName) {
+        fileBlobRepository.deleteByObjectName(storageName);
+    }
+}
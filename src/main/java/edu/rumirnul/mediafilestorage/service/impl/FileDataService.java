@@ -1,55 +1,192 @@
 package edu.rumirnul.mediafilestorage.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import edu.rumirnul.mediafilestorage.config.FileDataCacheConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileMetadataDto;
 import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
 import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 
 /**
  * Класс сервис работающий с данными о файлах.
+ * Метаданные файла меняются только через этот сервис, поэтому результаты чтения по id и по имени кэшируются,
+ * а при изменении удаляются из кэша.
+ * Отсутствие файла с заданным id тоже кэшируется на короткое время.
+ * Файлы с прошедшим сроком хранения не возвращаются, даже если их метаданные ещё в кэше.
+ * Одновременные запросы одного ключа ожидают одну загрузку из БД.
  *
  * @author Alexey Svistunov
  * @version 1.0
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class FileDataService {
 
+    private static final String CACHE_BY_ID_NAME = "file-data-by-id";
+    private static final String CACHE_BY_NAME_NAME = "file-data-by-name";
+
     private final FileDataRepository fileDataRepository;
+    private final MinioShardRouter minioShardRouter;
+    private final Cache<Long, Optional<FileMetadataDto>> cacheById;
+    private final Cache<String, FileMetadataDto> cacheByName;
+
+    public FileDataService(FileDataRepository fileDataRepository,
+                           MinioShardRouter minioShardRouter,
+                           FileDataCacheConfiguration cacheConfiguration,
+                           MeterRegistry meterRegistry) {
+        this.fileDataRepository = fileDataRepository;
+        this.minioShardRouter = minioShardRouter;
+        this.cacheById = Caffeine.newBuilder()
+                .maximumSize(cacheConfiguration.getMaximumSize())
+                .expireAfter(new MetadataExpiry(cacheConfiguration))
+                .recordStats()
+                .build();
+        this.cacheByName = Caffeine.newBuilder()
+                .maximumSize(cacheConfiguration.getMaximumSize())
+                .expireAfterWrite(cacheConfiguration.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cacheById, CACHE_BY_ID_NAME);
+        CaffeineCacheMetrics.monitor(meterRegistry, cacheByName, CACHE_BY_NAME_NAME);
+    }
 
     /**
-     * Сохранение метаинформации о файле.
+     * Сохранение метаинформации о файле. Если шард объекта содержимого ещё не сохранён, он определяется
+     * {@link MinioShardRouter}.
      *
      * @param entity сущность для сохранения.
      * @return Возвращает сохранённую сущность.
      */
     public FileData save(FileData entity) {
         log.info("Saving an entity: {}", entity);
+        assignShard(entity);
 
         FileData savedEntity = fileDataRepository.save(entity);
         log.info("Saved entity: {}", savedEntity);
 
+        evict(savedEntity);
         return savedEntity;
     }
 
+    /**
+     * Сохранение пачки метаинформации о файлах.
+     *
+     * @param entities сущности для сохранения.
+     * @return Возвращает сохранённые сущности.
+     */
+    public List<FileData> saveAll(List<FileData> entities) {
+        log.info("Saving {} entities", entities.size());
+        entities.forEach(this::assignShard);
+
+        List<FileData> savedEntities = fileDataRepository.saveAll(entities);
+        savedEntities.forEach(this::evict);
+        return savedEntities;
+    }
+
+    /**
+     * Обновление состояния сохранения содержимого файла.
+     *
+     * @param id       уникальный идентификатор.
+     * @param fileName имя файла в хранилище.
+     * @param status   новое состояние.
+     */
+    public void updateStatus(Long id, String fileName, FileStatus status) {
+        log.info("Updating status of an entity with id {} to {}", id, status);
+
+        int updated = fileDataRepository.updateStatus(id, status);
+        if (updated == 0) {
+            log.warn("Entity with id {} not found, status was not updated", id);
+        }
+        evict(id, fileName);
+    }
+
+    /**
+     * Обновление состояния сохранения всех файлов, содержимое которых хранится в одном объекте хранилища.
+     *
+     * @param storageName имя объекта в хранилище.
+     * @param status      новое состояние.
+     */
+    public void updateStatusByStorageName(String storageName, FileStatus status) {
+        log.info("Updating status of entities stored as {} to {}", storageName, status);
+
+        List<FileData> entities = fileDataRepository.findByStorageName(storageName);
+        fileDataRepository.updateStatusByStorageName(storageName, status);
+        entities.forEach(this::evict);
+    }
+
+    /**
+     * Запись расположения упакованного содержимого всех файлов, которые ссылаются на один общий объект.
+     * Файлы переводятся в состояние {@link FileStatus#STORED}.
+     *
+     * @param storageName   имя общего объекта.
+     * @param segmentName   имя сегмента с содержимым.
+     * @param segmentOffset смещение содержимого в сегменте.
+     */
+    public void updateSegmentByStorageName(String storageName, String segmentName, long segmentOffset) {
+        log.info("Updating entities stored as {} to segment {} at offset {}", storageName, segmentName, segmentOffset);
+
+        List<FileData> entities = fileDataRepository.findByStorageName(storageName);
+        fileDataRepository.updateSegmentByStorageName(storageName, segmentName, segmentOffset, FileStatus.STORED);
+        entities.forEach(this::evict);
+    }
+
     /**
      * Получение метаинформации о файле по id.
+     * Возвращаемая сущность не связана с контекстом персистентности.
      *
      * @param id уникальный идентификатор.
-     * @return Возвращает найденную сущность.
+     * @return Возвращает найденную сущность или null, если её нет в БД.
      */
     public FileData getById(Long id) {
         log.info("Getting an entity with id: {}", id);
 
-        FileData result = fileDataRepository.getReferenceById(id);
+        FileData result = findMetadataById(id).map(FileDataService::toEntity).orElse(null);
         log.info("Received entity: {}", result);
 
         return result;
     }
 
+    /**
+     * Поиск метаинформации о файле по id в виде DTO проекции, без загрузки сущности.
+     *
+     * @param id уникальный идентификатор.
+     * @return Возвращает найденные метаданные или пустой Optional, если их нет в БД.
+     */
+    public Optional<FileMetadataDto> findMetadataById(Long id) {
+        log.info("Finding metadata with id: {}", id);
+
+        Optional<FileMetadataDto> result = cacheById.get(id, fileDataRepository::findMetadataById)
+                .filter(metadata -> !metadata.isExpired());
+        result.ifPresent(this::placeContent);
+        return result;
+    }
+
+    /**
+     * Получение состояния сохранения содержимого файла напрямую из БД, без кэша.
+     *
+     * @param id уникальный идентификатор.
+     * @return Возвращает состояние или пустой Optional, если файла нет в БД.
+     */
+    public Optional<FileStatus> findStatusById(Long id) {
+        log.info("Finding status of an entity with id: {}", id);
+
+        return fileDataRepository.findStatusById(id);
+    }
+
     /**
      * Удаление метаинформации из БД.
      *
@@ -59,6 +196,34 @@ public class FileDataService {
         log.info("Deleting an entity: {}", entity);
 
         fileDataRepository.delete(entity);
+        evict(entity);
+    }
+
+    /**
+     * Удаление метаинформации пачки файлов из БД одним запросом, в том числе уже помеченных удалёнными.
+     *
+     * @param entities сущности, которые нужно удалить.
+     */
+    public void deleteAll(List<FileData> entities) {
+        log.info("Deleting {} entities", entities.size());
+
+        fileDataRepository.hardDeleteByIdIn(entities.stream().map(FileData::getId).collect(Collectors.toList()));
+        entities.forEach(this::evict);
+    }
+
+    /**
+     * Пометка файла удалённым. Файл сразу перестаёт читаться, а его содержимое и строка
+     * удаляются физически позже {@link FilePurgeService}.
+     *
+     * @param entity сущность, которую нужно пометить удалённой.
+     * @return Возвращает true, если файл был помечен, false - если его уже нет.
+     */
+    public boolean markDeleted(FileData entity) {
+        log.info("Marking an entity as deleted: {}", entity);
+
+        int updated = fileDataRepository.markDeleted(entity.getId(), Instant.now());
+        evict(entity);
+        return updated > 0;
     }
 
     /**
@@ -70,22 +235,137 @@ public class FileDataService {
     public boolean existsById(Long id) {
         log.info("Checking for the existence of an entity with id: {}", id);
 
-        return fileDataRepository.existsById(id);
+        return findMetadataById(id).isPresent();
     }
 
     /**
      * Возвращает метаинформацию о файле по имени файла.
+     * Возвращаемая сущность не связана с контекстом персистентности.
      *
      * @param name имя файла.
-     * @return Возвращает найденную сущность.
+     * @return Возвращает найденную сущность или null, если её нет в БД.
      */
     public FileData getByName(String name) {
         log.info("Getting an entity with name: {}", name);
 
-        FileData result = fileDataRepository.findFileDataByFileName(name);
+        FileMetadataDto metadata = cacheByName.get(name, fileName -> {
+            FileData fileData = fileDataRepository.findFileDataByFileName(fileName);
+            return fileData != null ? toMetadata(fileData) : null;
+        });
+        FileData result = null;
+        if (metadata != null && !metadata.isExpired()) {
+            placeContent(metadata);
+            result = toEntity(metadata);
+        }
         log.info("Received entity: {}", result);
 
         return result;
     }
 
+    /**
+     * Удаляет из кэша записи о файле. Если вызов выполняется в транзакции, записи удаляются
+     * повторно после её завершения, чтобы в кэш не попали данные, прочитанные до фиксации.
+     *
+     * @param entity сущность, записи о которой нужно удалить.
+     */
+    private void evict(FileData entity) {
+        Long id = entity.getId();
+        String fileName = entity.getFileName();
+        evict(id, fileName);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id, fileName);
+                }
+            });
+        }
+    }
+
+    private void assignShard(FileData entity) {
+        if (entity.getShard() == null && !entity.isChunkedContent()) {
+            entity.setShard(minioShardRouter.route(entity.getStorageName()).getName());
+        }
+    }
+
+    /**
+     * Передаёт шард содержимого файла из метаданных в {@link MinioShardRouter}, чтобы чтение файла
+     * не запрашивало шард из БД.
+     */
+    private void placeContent(FileMetadataDto metadata) {
+        if (!metadata.isChunkedContent()) {
+            minioShardRouter.place(metadata.getStorageName(), metadata.getShard());
+        }
+    }
+
+    private void evict(Long id, String fileName) {
+        if (id != null) {
+            cacheById.invalidate(id);
+        }
+        if (fileName != null) {
+            cacheByName.invalidate(fileName);
+        }
+    }
+
+    private static FileMetadataDto toMetadata(FileData fileData) {
+        return new FileMetadataDto(fileData.getId(), fileData.getFileName(),
+                fileData.getOriginalName(), fileData.getExtension(), fileData.getSize(),
+                fileData.getContentType(), fileData.getCreatedAt(), fileData.getStatus(),
+                fileData.getObjectName(), fileData.getSegmentName(), fileData.getSegmentOffset(),
+                fileData.getChunked(), fileData.getVersion(), fileData.getUpdatedAt(), fileData.getExpiresAt(),
+                fileData.getShard());
+    }
+
+    private static FileData toEntity(FileMetadataDto metadata) {
+        return FileData.builder()
+                .id(metadata.getId())
+                .fileName(metadata.getFileName())
+                .originalName(metadata.getOriginalName())
+                .extension(metadata.getExtension())
+                .size(metadata.getSize())
+                .contentType(metadata.getContentType())
+                .createdAt(metadata.getCreatedAt())
+                .status(metadata.getStatus())
+                .objectName(metadata.getObjectName())
+                .segmentName(metadata.getSegmentName())
+                .segmentOffset(metadata.getSegmentOffset())
+                .chunked(metadata.getChunked())
+                .version(metadata.getVersion())
+                .updatedAt(metadata.getUpdatedAt())
+                .expiresAt(metadata.getExpiresAt())
+                .shard(metadata.getShard())
+                .build();
+    }
+
+    /**
+     * Время жизни записей кэша по id: найденные метаданные хранятся ttl, отсутствие файла - negativeTtl.
+     */
+    private static class MetadataExpiry implements Expiry<Long, Optional<FileMetadataDto>> {
+
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        MetadataExpiry(FileDataCacheConfiguration cacheConfiguration) {
+            this.ttlNanos = cacheConfiguration.getTtl().toNanos();
+            this.negativeTtlNanos = cacheConfiguration.getNegativeTtl().toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Long key, Optional<FileMetadataDto> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Long key, Optional<FileMetadataDto> value, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long key, Optional<FileMetadataDto> value, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.PurgeConfiguration;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Класс сервис физического удаления файлов, помеченных удалёнными, и файлов с истёкшим сроком хранения.
+ * Пачка строк блокируется, пропуская строки, заблокированные другими экземплярами приложения,
+ * объекты без ссылок удаляются из хранилища запросами DeleteObjects, а строки - одним запросом.
+ * Если удалить объекты не удалось, транзакция откатывается и пачка удаляется при следующем запуске.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FilePurgeService {
+
+    private final FileDataRepository fileDataRepository;
+    private final BatchDeleteService batchDeleteService;
+    private final S3Service s3Service;
+    private final LocalDiskObjectCache localDiskObjectCache;
+    private final PurgeConfiguration purgeConfiguration;
+
+    /**
+     * Физическое удаление пачки файлов, помеченных удалёнными раньше {@link PurgeConfiguration#getDelay()}.
+     *
+     * @return Возвращает количество удалённых файлов.
+     * @throws S3Exception не удалось удалить объекты из хранилища.
+     */
+    @Transactional
+    public int purgeDeleted() {
+        List<FileData> files = fileDataRepository.findDeletedBefore(
+                Instant.now().minus(purgeConfiguration.getDelay()), purgeConfiguration.getBatchSize());
+        int purged = purge(files);
+        if (purged > 0) {
+            log.info("Purged {} deleted files", purged);
+        }
+        return purged;
+    }
+
+    /**
+     * Физическое удаление пачки файлов, срок хранения которых истёк. Такие файлы уже не читаются,
+     * поэтому удаляются без задержки.
+     *
+     * @return Возвращает количество удалённых файлов.
+     * @throws S3Exception не удалось удалить объекты из хранилища.
+     */
+    @Transactional
+    public int purgeExpired() {
+        List<FileData> files = fileDataRepository.findExpiredBefore(Instant.now(), purgeConfiguration.getBatchSize());
+        int purged = purge(files);
+        if (purged > 0) {
+            log.info("Purged {} expired files", purged);
+        }
+        return purged;
+    }
+
+    /**
+     * Удаление заблокированных строк файлов и объектов, на которые больше никто не ссылается.
+     */
+    private int purge(List<FileData> files) {
+        if (files.isEmpty()) {
+            return 0;
+        }
+        Set<String> unreferenced = batchDeleteService.deleteLocked(files);
+        if (!unreferenced.isEmpty()) {
+            Map<String, String> errors = s3Service.deleteFiles(unreferenced);
+            if (!errors.isEmpty()) {
+                throw new S3Exception("Failed to delete " + errors.size() + " files from s3(minio)");
+            }
+            unreferenced.forEach(localDiskObjectCache::invalidate);
+        }
+        log.info("Deleted objects of purged files: {}", unreferenced.size());
+        return files.size();
+    }
+}
@@ -1,24 +1,76 @@
 package edu.rumirnul.mediafilestorage.service.impl;
 
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.CountingInputStream;
 import com.google.common.io.Files;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.config.FileMetadataConfiguration;
 import edu.rumirnul.mediafilestorage.config.FileTypeWhitelistConfiguration;
+import edu.rumirnul.mediafilestorage.config.PresignedUrlConfiguration;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.dto.BatchDeleteResultDto;
+import edu.rumirnul.mediafilestorage.dto.BatchUploadResultDto;
+import edu.rumirnul.mediafilestorage.dto.BucketNotificationDto;
+import edu.rumirnul.mediafilestorage.dto.FileDownloadDto;
 import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.dto.FileMetadataDto;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.PresignedUploadDto;
+import edu.rumirnul.mediafilestorage.dto.UploadSessionDto;
+import edu.rumirnul.mediafilestorage.entity.FileChunk;
 import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.entity.UploadOutbox;
+import edu.rumirnul.mediafilestorage.entity.UploadSession;
+import edu.rumirnul.mediafilestorage.exception.ContentUpdateDisabledException;
 import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
 import edu.rumirnul.mediafilestorage.exception.ForbiddenFileFormatException;
 import edu.rumirnul.mediafilestorage.exception.IOAccessException;
+import edu.rumirnul.mediafilestorage.exception.InvalidDeleteRequestException;
+import edu.rumirnul.mediafilestorage.exception.InvalidUploadRequestException;
 import edu.rumirnul.mediafilestorage.exception.NoAccessException;
+import edu.rumirnul.mediafilestorage.exception.PresignedUrlDisabledException;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.exception.UploadSessionNotFoundException;
+import edu.rumirnul.mediafilestorage.exception.UploadSessionStateException;
 import edu.rumirnul.mediafilestorage.service.FileService;
 import edu.rumirnul.mediafilestorage.service.S3Service;
+import edu.rumirnul.mediafilestorage.service.impl.BatchDeleteService.DeletedFiles;
+import edu.rumirnul.mediafilestorage.service.impl.BatchFileUploader.StoredFile;
+import edu.rumirnul.mediafilestorage.service.impl.ChunkStore.StoredContent;
+import edu.rumirnul.mediafilestorage.service.impl.LocalDiskObjectCache.CachedObject;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Класс сервис работающий с файлами.
@@ -35,9 +87,30 @@ public class FileServiceImpl implements FileService {
     private final S3Service s3Service;
     private final FileDataService fileDataService;
     private final FileTypeWhitelistConfiguration fileTypeWhitelistConfiguration;
+    private final LocalDiskObjectCache localDiskObjectCache;
+    private final FileAccessTracker fileAccessTracker;
+    private final UploadOutboxService uploadOutboxService;
+    private final UploadOutboxProcessor uploadOutboxProcessor;
+    private final FileBlobService fileBlobService;
+    private final ContentChunkService contentChunkService;
+    private final ChunkStore chunkStore;
+    private final ChunkingConfiguration chunkingConfiguration;
+    private final UploadSessionService uploadSessionService;
+    private final PresignedUploadService presignedUploadService;
+    private final PresignedUrlConfiguration presignedUrlConfiguration;
+    private final BatchFileUploader batchFileUploader;
+    private final UploadOutboxConfiguration uploadOutboxConfiguration;
+    private final BatchDeleteService batchDeleteService;
+    private final FileMetadataConfiguration fileMetadataConfiguration;
 
     /**
      * Сохранение метаданных файла в БД и самого файла в S3 хранилище.
+     * Содержимое сохраняется в локальный каталог подготовки, при этом считается его контрольная сумма.
+     * Затем метаданные в состоянии {@link FileStatus#PENDING} и запись outbox сохраняются в одной транзакции,
+     * а загрузку в хранилище выполняет {@link UploadOutboxProcessor}. Незавершённые загрузки
+     * продолжаются после перезапуска приложения.
+     * Если содержимое с такой же контрольной суммой уже сохранено, файл ссылается на него {@link FileBlobService}
+     * и в хранилище не загружается.
      * Сохраняются только файлы с расширением из белого списка {@link FileTypeWhitelistConfiguration}
      *
      * @param multipartFile файл от клиента.
@@ -47,38 +120,487 @@ public class FileServiceImpl implements FileService {
      */
     @Override
     public FileData saveFile(MultipartFile multipartFile) {
+        return saveFile(multipartFile, null);
+    }
+
+    /**
+     * Сохранение файла со сроком хранения {@link #saveFile(MultipartFile)}. После срока хранения файл
+     * перестаёт быть доступен и удаляется {@link FilePurgeService#purgeExpired()}.
+     *
+     * @param multipartFile файл от клиента.
+     * @param expiresAt     время, после которого файл удаляется, или null для бессрочного файла.
+     * @return Возвращает метаданные файла.
+     * @throws InvalidUploadRequestException срок хранения уже прошёл.
+     * @throws ForbiddenFileFormatException  в белом списке нет такого расширения файла.
+     * @throws IOAccessException             не удалось получить содержимое файла из запроса.
+     */
+    @Override
+    public FileData saveFile(MultipartFile multipartFile, Instant expiresAt) {
+        checkExpiresAt(expiresAt);
         FileData fileData = new FileData();
 
         String originalFileName = multipartFile.getOriginalFilename() != null
                 ? multipartFile.getOriginalFilename() : fileData.getFileName();
 
-        String extension = Files.getFileExtension(originalFileName);
-        if (!fileTypeWhitelistConfiguration.getExtensions().contains(StringUtils.lowerCase(extension))) {
-            throw new ForbiddenFileFormatException("The file format is not supported");
+        String extension = getAllowedExtension(originalFileName);
+        String fileName = getFileName(fileData.getFileName(), extension);
+
+        fileData.setFileName(fileName);
+        fileData.setOriginalName(originalFileName);
+        fileData.setExtension(extension);
+        fileData.setContentType(getContentType(originalFileName));
+        fileData.setCreatedAt(Instant.now());
+        fileData.setExpiresAt(expiresAt);
+
+        try (InputStream inputStream = Objects.requireNonNull(multipartFile.getInputStream())) {
+            stageAndEnqueue(fileData, inputStream, -1);
+        } catch (IOException e) {
+            throw new IOAccessException("Couldn't access the contents of the file");
+        }
+
+        log.info("Saved file with file data: {}", fileData);
+        return fileData;
+    }
+
+    /**
+     * Потоковое сохранение файла в S3 хранилище и его метаданных в БД.
+     * Содержимое читается из потока и сразу передаётся в хранилище, не сохраняясь на локальный диск.
+     * Размер и контрольная сумма считаются при том же чтении потока.
+     * Метаданные сохраняются только после успешной записи файла в хранилище.
+     * Если включён локальный журнал {@link UploadOutboxConfiguration#isJournalEnabled()}, содержимое
+     * записывается в журнал, а в хранилище загружается в фоне, как при загрузке multipart файла.
+     * Если такое содержимое уже было сохранено, записанная в хранилище копия удаляется,
+     * а файл ссылается на сохранённый объект.
+     * Сохраняются только файлы с расширением из белого списка {@link FileTypeWhitelistConfiguration}
+     *
+     * @param originalFileName оригинальное имя файла.
+     * @param inputStream      содержимое файла.
+     * @param size             размер содержимого файла или -1, если размер неизвестен.
+     * @return Возвращает метаданные файла.
+     * @throws ForbiddenFileFormatException в белом списке нет такого расширения файла.
+     * @throws S3Exception                  не удалось сохранить файл в хранилище.
+     * @throws IOAccessException            не удалось записать содержимое в журнал.
+     */
+    @Override
+    public FileData saveFile(String originalFileName, InputStream inputStream, long size) {
+        return saveFile(originalFileName, inputStream, size, null);
+    }
+
+    /**
+     * Потоковое сохранение файла со сроком хранения {@link #saveFile(String, InputStream, long)}.
+     *
+     * @param originalFileName оригинальное имя файла.
+     * @param inputStream      содержимое файла.
+     * @param size             размер содержимого файла или -1, если размер неизвестен.
+     * @param expiresAt        время, после которого файл удаляется, или null для бессрочного файла.
+     * @return Возвращает метаданные файла.
+     * @throws InvalidUploadRequestException срок хранения уже прошёл.
+     * @throws ForbiddenFileFormatException  в белом списке нет такого расширения файла.
+     * @throws S3Exception                   не удалось сохранить файл в хранилище.
+     * @throws IOAccessException             не удалось записать содержимое в журнал.
+     */
+    @Override
+    public FileData saveFile(String originalFileName, InputStream inputStream, long size, Instant expiresAt) {
+        checkExpiresAt(expiresAt);
+        FileData fileData = new FileData();
+
+        if (originalFileName == null) {
+            originalFileName = fileData.getFileName();
         }
+
+        String extension = getAllowedExtension(originalFileName);
         String fileName = getFileName(fileData.getFileName(), extension);
 
+        if (uploadOutboxService.isJournalEnabled()) {
+            fileData.setFileName(fileName);
+            fileData.setOriginalName(originalFileName);
+            fileData.setExtension(extension);
+            fileData.setContentType(getContentType(originalFileName));
+            fileData.setCreatedAt(Instant.now());
+            fileData.setExpiresAt(expiresAt);
+            try {
+                stageAndEnqueue(fileData, inputStream, size);
+            } catch (IOException e) {
+                throw new IOAccessException("Couldn't write the contents of the file to the staging journal");
+            }
+            log.info("Saved file with file data: {}", fileData);
+            return fileData;
+        }
+
+        HashingInputStream content = new HashingInputStream(Hashing.sha256(), inputStream);
+        FileDto fileDto = FileDto.builder()
+                .name(fileName)
+                .inputStream(content)
+                .size(size)
+                .build();
+        long storedSize = s3Service.putFile(fileDto);
+        log.info("File {} was streamed to s3, size: {}", fileName, storedSize);
+
+        fileData.setFileName(fileName);
+        fileData.setOriginalName(originalFileName);
+        fileData.setExtension(extension);
+        fileData.setSize(storedSize);
+        fileData.setContentType(getContentType(originalFileName));
+        fileData.setChecksum(content.hash().toString());
+        fileData.setCreatedAt(Instant.now());
+        fileData.setExpiresAt(expiresAt);
+
+        if (retryOnConcurrentContent(() -> fileBlobService.saveDeduplicated(fileData, FileStatus.STORED))) {
+            s3Service.deleteFileByName(fileName);
+            log.info("File {} duplicates stored content, streamed copy was deleted", fileName);
+        }
+
+        log.info("Saved file with file data: {}", fileData);
+        return fileData;
+    }
+
+    /**
+     * Пакетное сохранение нескольких файлов одного запроса. Содержимое всех файлов загружается в хранилище
+     * одновременно {@link BatchFileUploader}, а метаданные сохранённых файлов вставляются в БД одним
+     * JDBC пакетом {@link FileBlobService#saveAllDeduplicated}. Файлы, содержимое которых уже сохранено,
+     * ссылаются на сохранённый объект, а их загруженные копии удаляются.
+     * Ошибка одного файла не прерывает сохранение остальных и возвращается в его результате.
+     * Сохраняются только файлы с расширением из белого списка {@link FileTypeWhitelistConfiguration}
+     *
+     * @param multipartFiles файлы от клиента.
+     * @return Возвращает результаты сохранения в порядке файлов запроса.
+     * @throws InvalidUploadRequestException файлов больше {@link UploadOutboxConfiguration#getBatchMaxFiles()}.
+     */
+    @Override
+    public List<BatchUploadResultDto> saveFiles(List<MultipartFile> multipartFiles) {
+        if (multipartFiles.size() > uploadOutboxConfiguration.getBatchMaxFiles()) {
+            throw new InvalidUploadRequestException("At most " + uploadOutboxConfiguration.getBatchMaxFiles()
+                    + " files can be uploaded in one request");
+        }
+
+        List<BatchUploadResultDto> results = new ArrayList<>(multipartFiles.size());
+        Map<String, BatchUploadResultDto> resultsByName = new HashMap<>();
+        Map<String, FileData> accepted = new LinkedHashMap<>();
+        Map<String, MultipartFile> contents = new LinkedHashMap<>();
+        for (MultipartFile multipartFile : multipartFiles) {
+            FileData fileData = new FileData();
+            String originalFileName = multipartFile.getOriginalFilename() != null
+                    ? multipartFile.getOriginalFilename() : fileData.getFileName();
+            BatchUploadResultDto result = BatchUploadResultDto.builder().originalName(originalFileName).build();
+            results.add(result);
+
+            String extension;
+            try {
+                extension = getAllowedExtension(originalFileName);
+            } catch (ForbiddenFileFormatException e) {
+                result.setError(e.getMessage());
+                continue;
+            }
+            fileData.setFileName(getFileName(fileData.getFileName(), extension));
+            fileData.setOriginalName(originalFileName);
+            fileData.setExtension(extension);
+            fileData.setContentType(getContentType(originalFileName));
+
+            resultsByName.put(fileData.getFileName(), result);
+            accepted.put(fileData.getFileName(), fileData);
+            contents.put(fileData.getFileName(), multipartFile);
+        }
+
+        List<FileData> storedFiles = new ArrayList<>(accepted.size());
+        batchFileUploader.upload(contents).forEach((fileName, storedFile) -> {
+            if (!storedFile.isStored()) {
+                resultsByName.get(fileName).setError(storedFile.getError() instanceof S3Exception
+                        ? storedFile.getError().getMessage() : "Couldn't access the contents of the file");
+                return;
+            }
+            FileData fileData = accepted.get(fileName);
+            fileData.setSize(storedFile.getSize());
+            fileData.setChecksum(storedFile.getChecksum());
+            fileData.setCreatedAt(Instant.now());
+            storedFiles.add(fileData);
+        });
+        if (!storedFiles.isEmpty()) {
+            saveBatchMetadata(storedFiles, resultsByName);
+        }
+
+        log.info("Saved {} of {} files of a batch", storedFiles.size(), multipartFiles.size());
+        return results;
+    }
+
+    /**
+     * Обновление содержимого сохранённого файла. Новое содержимое делится на части по содержимому
+     * {@link ContentDefinedChunker}, в хранилище записываются только части, которых там ещё нет,
+     * поэтому повторная загрузка файла с небольшими правками записывает только изменённые части.
+     * Файл начинает храниться частями, номер версии содержимого увеличивается. Прежнее содержимое удаляется
+     * из хранилища, если на него больше никто не ссылается.
+     *
+     * @param fileId      уникальный идентификатор файла.
+     * @param inputStream новое содержимое файла.
+     * @param size        размер нового содержимого или -1, если размер неизвестен.
+     * @return Возвращает обновлённые метаданные файла.
+     * @throws ContentUpdateDisabledException обновление содержимого файлов выключено.
+     * @throws FileNotFoundException          файла нет в БД.
+     * @throws IOAccessException              не удалось получить содержимое из запроса.
+     * @throws S3Exception                    не удалось сохранить части в хранилище.
+     */
+    @Override
+    public FileData updateFileContent(Long fileId, InputStream inputStream, long size) {
+        if (!chunkingConfiguration.isEnabled()) {
+            throw new ContentUpdateDisabledException("Updating file content is disabled");
+        }
+        findMetadata(fileId);
+
+        StoredContent content;
         try {
-            FileDto fileDto = FileDto.builder()
-                    .name(fileName)
-                    .inputStream(multipartFile.getInputStream())
-                    .size(multipartFile.getInputStream().available())
-                    .build();
-            s3Service.saveFile(fileDto);
+            content = chunkStore.store(inputStream);
         } catch (IOException e) {
             throw new IOAccessException("Couldn't access the contents of the file");
         }
+        if (size >= 0 && content.getSize() != size) {
+            chunkStore.release(content);
+            throw new IOAccessException("Expected " + size + " bytes, got " + content.getSize());
+        }
 
-        fileData.setFileName(fileName);
+        Optional<String> unreferenced;
+        try {
+            unreferenced = contentChunkService.replaceManifest(fileId, content.getChunks(),
+                    content.getSize(), content.getChecksum());
+        } catch (RuntimeException e) {
+            chunkStore.release(content);
+            throw e;
+        }
+        unreferenced.ifPresent(this::retireUnreferencedObject);
+
+        FileData fileData = getFileMetadata(fileId);
+        log.info("Updated content of file with id {}: {} chunks, {} uploaded, version: {}",
+                fileId, content.getChunks().size(), content.getUploadedChunks(), fileData.getVersion());
+        return fileData;
+    }
+
+    /**
+     * Создание сессии возобновляемой загрузки файла. Файл загружается частями {@link #uploadSessionChunk}
+     * в любом порядке, каждая часть сразу записывается в хранилище как часть multipart загрузки.
+     * Сохраняются только файлы с расширением из белого списка {@link FileTypeWhitelistConfiguration}
+     *
+     * @param originalFileName оригинальное имя файла.
+     * @param size             размер файла в байтах.
+     * @return Возвращает состояние сессии с размером и количеством частей.
+     * @throws ForbiddenFileFormatException  в белом списке нет такого расширения файла.
+     * @throws InvalidUploadRequestException размер файла не положительный или файл слишком большой.
+     * @throws S3Exception                   не удалось начать загрузку в хранилище.
+     */
+    @Override
+    public UploadSessionDto createUploadSession(String originalFileName, long size) {
+        FileData fileData = new FileData();
+
+        if (originalFileName == null) {
+            originalFileName = fileData.getFileName();
+        }
+
+        String extension = getAllowedExtension(originalFileName);
+        String fileName = getFileName(fileData.getFileName(), extension);
+
+        return uploadSessionService.create(fileName, originalFileName, extension,
+                getContentType(originalFileName), size);
+    }
+
+    /**
+     * Загрузка одной части файла в сессии возобновляемой загрузки. Часть записывается в хранилище
+     * как часть multipart загрузки, повторная загрузка части заменяет её.
+     *
+     * @param sessionId   уникальный идентификатор сессии.
+     * @param index       номер части, начиная с 0.
+     * @param inputStream содержимое части.
+     * @param length      размер содержимого части или -1, если размер неизвестен.
+     * @return Возвращает состояние сессии.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     * @throws UploadSessionStateException    сессия завершена или истекла.
+     * @throws InvalidUploadRequestException  неверный номер или размер части.
+     * @throws S3Exception                    не удалось записать часть в хранилище.
+     */
+    @Override
+    public UploadSessionDto uploadSessionChunk(String sessionId, int index, InputStream inputStream, long length) {
+        UploadSession session = uploadSessionService.getActive(sessionId);
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new InvalidUploadRequestException("Chunk index must be between 0 and " + (session.getChunkCount() - 1));
+        }
+        int chunkLength = session.getChunkLength(index);
+        if (length >= 0 && length != chunkLength) {
+            throw new InvalidUploadRequestException("Chunk " + index + " must be " + chunkLength + " bytes long");
+        }
+
+        String etag = s3Service.uploadPart(session.getFileName(), session.getUploadId(), index + 1,
+                inputStream, chunkLength);
+        uploadSessionService.recordPart(sessionId, index, chunkLength, etag);
+        log.info("Chunk {} of upload session {} was stored", index, sessionId);
+
+        return uploadSessionService.getProgress(sessionId);
+    }
+
+    /**
+     * Получение состояния сессии возобновляемой загрузки: загруженные части и идентификатор сохранённого файла.
+     *
+     * @param sessionId уникальный идентификатор сессии.
+     * @return Возвращает состояние сессии.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     */
+    @Override
+    public UploadSessionDto getUploadSession(String sessionId) {
+        return uploadSessionService.getProgress(sessionId);
+    }
+
+    /**
+     * Завершение сессии возобновляемой загрузки: файл собирается из частей на стороне хранилища.
+     * Содержимое, загруженное частями, не дедуплицируется: контрольная сумма всего файла не считается.
+     *
+     * @param sessionId уникальный идентификатор сессии.
+     * @return Возвращает метаданные сохранённого файла.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     * @throws UploadSessionStateException    сессия истекла или загружены не все части.
+     * @throws S3Exception                    не удалось собрать файл в хранилище.
+     */
+    @Override
+    public FileData completeUploadSession(String sessionId) {
+        FileData fileData = uploadSessionService.complete(sessionId);
+        log.info("Saved file with file data: {}", fileData);
+        return fileData;
+    }
+
+    /**
+     * Отмена сессии возобновляемой загрузки. Загруженные части удаляются из хранилища.
+     *
+     * @param sessionId уникальный идентификатор сессии.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     * @throws UploadSessionStateException    сессия уже завершена.
+     */
+    @Override
+    public void abortUploadSession(String sessionId) {
+        uploadSessionService.abort(sessionId);
+    }
+
+    /**
+     * Регистрация файла, содержимое которого клиент загружает напрямую в хранилище по подписанной ссылке.
+     * Содержимое не проходит через приложение. Загрузка завершается подтверждением клиента
+     * {@link #completePresignedUpload(Long)} или уведомлением хранилища {@link #handleBucketNotification}.
+     * Ссылка выдаётся только для файлов с расширением из белого списка {@link FileTypeWhitelistConfiguration}
+     *
+     * @param originalFileName оригинальное имя файла.
+     * @param size             размер файла в байтах или -1, если размер неизвестен.
+     * @return Возвращает идентификатор файла и подписанную ссылку для загрузки запросом PUT.
+     * @throws PresignedUrlDisabledException загрузка по подписанным ссылкам выключена.
+     * @throws ForbiddenFileFormatException  в белом списке нет такого расширения файла.
+     * @throws S3Exception                   не удалось подписать ссылку.
+     */
+    @Override
+    public PresignedUploadDto createPresignedUpload(String originalFileName, long size) {
+        if (!presignedUrlConfiguration.isEnabled()) {
+            throw new PresignedUrlDisabledException("Direct upload to storage is disabled");
+        }
+        FileData fileData = new FileData();
+
+        if (originalFileName == null) {
+            originalFileName = fileData.getFileName();
+        }
+
+        String extension = getAllowedExtension(originalFileName);
+        fileData.setFileName(getFileName(fileData.getFileName(), extension));
         fileData.setOriginalName(originalFileName);
         fileData.setExtension(extension);
+        fileData.setContentType(getContentType(originalFileName));
+        fileData.setSize(size >= 0 ? size : null);
 
-        fileData = fileDataService.save(fileData);
+        return presignedUploadService.register(fileData);
+    }
 
+    /**
+     * Завершение загрузки файла напрямую в хранилище по подтверждению клиента.
+     * Содержимое, загруженное напрямую, не дедуплицируется: контрольная сумма файла не считается.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @return Возвращает метаданные сохранённого файла.
+     * @throws FileNotFoundException         файла нет в БД.
+     * @throws UploadSessionStateException   содержимое ещё не загружено.
+     * @throws InvalidUploadRequestException размер загруженного содержимого не совпал с заявленным.
+     */
+    @Override
+    public FileData completePresignedUpload(Long fileId) {
+        FileData fileData = presignedUploadService.complete(fileId);
+        if (fileData.getStatus() == FileStatus.FAILED) {
+            throw new InvalidUploadRequestException("Uploaded content of file " + fileId
+                    + " does not match the declared size");
+        }
         log.info("Saved file with file data: {}", fileData);
         return fileData;
     }
 
+    /**
+     * Обработка уведомления хранилища о событиях с объектами. Загрузки файлов напрямую в хранилище,
+     * объекты которых созданы, завершаются. Остальные события пропускаются.
+     *
+     * @param authorization значение заголовка Authorization уведомления.
+     * @param notification  уведомление в формате событий S3.
+     * @return Возвращает количество завершённых загрузок.
+     * @throws PresignedUrlDisabledException приём уведомлений выключен.
+     * @throws NoAccessException             токен уведомления не совпал с настроенным.
+     */
+    @Override
+    public int handleBucketNotification(String authorization, BucketNotificationDto notification) {
+        String token = presignedUrlConfiguration.getNotificationToken();
+        if (StringUtils.isEmpty(token)) {
+            throw new PresignedUrlDisabledException("Bucket notifications are disabled");
+        }
+        String received = StringUtils.removeStart(StringUtils.defaultString(authorization), "Bearer ");
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), received.getBytes(StandardCharsets.UTF_8))) {
+            throw new NoAccessException("Bucket notification is not authorized");
+        }
+
+        int completed = 0;
+        for (BucketNotificationDto.Record record : notification.getRecords()) {
+            if (record.getEventName() == null || !record.getEventName().startsWith("s3:ObjectCreated:")
+                    || record.getS3() == null || record.getS3().getObject() == null) {
+                continue;
+            }
+            String fileName;
+            try {
+                fileName = URLDecoder.decode(record.getS3().getObject().getKey(), String.valueOf(StandardCharsets.UTF_8));
+            } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                log.warn("Skipping notification with malformed object key: {}", record.getS3().getObject().getKey());
+                continue;
+            }
+            try {
+                if (presignedUploadService.completeByName(fileName)) {
+                    completed++;
+                }
+            } catch (Exception e) {
+                log.error("Couldn't complete direct upload of {} on bucket notification", fileName, e);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Подписанная ссылка на скачивание файла напрямую из хранилища. Заголовки Content-Type и Content-Disposition
+     * ответа хранилища задаются ссылкой. Файлы, которые ещё загружаются, хранятся частями или упакованы
+     * в сегмент, скачиваются через приложение.
+     *
+     * @param metadata метаданные файла.
+     * @return Возвращает ссылку или пустой Optional, если файл нужно отдать через приложение.
+     * @throws S3Exception не удалось подписать ссылку.
+     */
+    @Override
+    public Optional<String> getPresignedDownloadUrl(FileMetadataDto metadata) {
+        if (!presignedUrlConfiguration.isRedirectDownloads() || metadata.isChunkedContent() || metadata.isPacked()
+                || (metadata.getStatus() != null && metadata.getStatus() != FileStatus.STORED)) {
+            return Optional.empty();
+        }
+        Map<String, String> responseHeaders = new HashMap<>();
+        responseHeaders.put("response-content-type", metadata.getContentType() != null
+                ? metadata.getContentType() : getContentType(metadata.getOriginalName()));
+        try {
+            responseHeaders.put("response-content-disposition", "attachment; filename*=UTF-8''"
+                    + URLEncoder.encode(metadata.getOriginalName(), String.valueOf(StandardCharsets.UTF_8)));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return Optional.of(s3Service.getPresignedDownloadUrl(metadata.getStorageName(),
+                presignedUrlConfiguration.getDownloadUrlTtl(), responseHeaders));
+    }
+
     /**
      * Получение файла по уникальному идентификатору.
      *
@@ -86,19 +608,177 @@ public class FileServiceImpl implements FileService {
      * @return Возвращает содержимое файла.
      */
     @Override
-    @Transactional
     public InputStream getFileById(Long fileId) {
         log.info("Getting a file with id: {}", fileId);
 
-        FileData fileData = getFileMetadata(fileId);
-        log.info("File data was received from DB: {}", fileData);
+        FileMetadataDto metadata = findMetadata(fileId);
+
+        if (metadata.isChunkedContent()) {
+            return chunkStore.open(contentChunkService.findManifest(fileId), 0, metadata.getSize());
+        }
+        InputStream staged = openStaged(metadata, 0, Long.MAX_VALUE);
+        if (staged != null) {
+            return staged;
+        }
+        if (metadata.isPacked()) {
+            return openPacked(metadata, 0, metadata.getSize());
+        }
 
-        InputStream inputStream = s3Service.getFileByName(fileData.getFileName());
+        Optional<CachedObject> cached = localDiskObjectCache.acquire(metadata.getStorageName());
+        if (cached.isPresent()) {
+            try (CachedObject cachedObject = cached.get()) {
+                return LocalDiskObjectCache.open(cachedObject.getPath(), 0, cachedObject.getStat().getSize());
+            }
+        }
+        InputStream inputStream = metadata.getSize() != null
+                ? s3Service.getFileByName(metadata.getStorageName(), 0, metadata.getSize())
+                : s3Service.getFileByName(metadata.getStorageName());
         log.info("File was received from s3");
 
         return inputStream;
     }
 
+    /**
+     * Получение части файла по уникальному идентификатору.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @param offset смещение начала части.
+     * @param length длина части.
+     * @return Возвращает содержимое части файла.
+     */
+    @Override
+    public InputStream getFileById(Long fileId, long offset, long length) {
+        log.info("Getting {} bytes at offset {} of a file with id: {}", length, offset, fileId);
+
+        FileMetadataDto metadata = findMetadata(fileId);
+
+        if (metadata.isChunkedContent()) {
+            long available = Math.max(metadata.getSize() - offset, 0);
+            return chunkStore.open(contentChunkService.findManifest(fileId), offset, Math.min(length, available));
+        }
+        InputStream staged = openStaged(metadata, offset, length);
+        if (staged != null) {
+            return staged;
+        }
+        if (metadata.isPacked()) {
+            return openPacked(metadata, offset, length);
+        }
+
+        Optional<CachedObject> cached = localDiskObjectCache.acquire(metadata.getStorageName());
+        if (cached.isPresent()) {
+            try (CachedObject cachedObject = cached.get()) {
+                return LocalDiskObjectCache.open(cachedObject.getPath(), offset, length);
+            }
+        }
+        return s3Service.getFileByName(metadata.getStorageName(), offset, length);
+    }
+
+    /**
+     * Получение сведений о содержимом файла в хранилище по уникальному идентификатору.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @return Возвращает размер, etag, время изменения и тип содержимого файла.
+     * @throws FileNotFoundException файла нет в хранилище и/или БД.
+     */
+    @Override
+    public FileStatDto getFileStat(Long fileId) {
+        log.info("Getting a file stat with id: {}", fileId);
+
+        return getStat(findMetadata(fileId));
+    }
+
+    /**
+     * Получение всего необходимого для скачивания файла по уникальному идентификатору.
+     * Метаданные читаются из БД одним запросом, содержимое открывается только по запросу.
+     * Если включён локальный дисковый кэш, файл читается из него, а при промахе читается из хранилища
+     * и копируется в кэш в фоне.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @return Возвращает метаданные файла, сведения об объекте в хранилище и доступ к содержимому.
+     * @throws FileNotFoundException файла нет в хранилище и/или БД.
+     */
+    @Override
+    public FileDownloadDto getFileForDownload(Long fileId) {
+        log.info("Getting a file for download with id: {}", fileId);
+
+        return getFileForDownload(findMetadata(fileId));
+    }
+
+    /**
+     * Получение всего необходимого для скачивания файла по уже полученным метаданным.
+     * Файл, который ещё не загружен в хранилище, читается из подготовленного на этом экземпляре содержимого.
+     * Файл, хранимый частями, собирается из частей по описанию его содержимого.
+     * Файл, упакованный в сегмент, читается диапазоном сегмента без локального дискового кэша.
+     * Файл из локального дискового кэша закреплён, пока скачивание не закрыто. При промахе кэша файл
+     * копируется в кэш в фоне, только если его содержимое читается целиком, диапазоны файл в кэш не добавляют.
+     *
+     * @param metadata метаданные файла.
+     * @return Возвращает метаданные файла, сведения об объекте в хранилище и доступ к содержимому.
+     * @throws FileNotFoundException файла нет в хранилище.
+     */
+    @Override
+    public FileDownloadDto getFileForDownload(FileMetadataDto metadata) {
+        if (metadata.isChunkedContent()) {
+            List<FileChunk> chunks = contentChunkService.findManifest(metadata.getId());
+            return FileDownloadDto.builder()
+                    .metadata(metadata)
+                    .stat(getStat(metadata))
+                    .content((offset, length) -> chunkStore.open(chunks, offset, length))
+                    .build();
+        }
+
+        String fileName = metadata.getStorageName();
+
+        long stagedSize = metadata.getStatus() == FileStatus.PENDING ? uploadOutboxService.findStagedSize(fileName) : -1;
+        if (stagedSize >= 0) {
+            return FileDownloadDto.builder()
+                    .metadata(metadata)
+                    .stat(FileStatDto.builder()
+                            .size(stagedSize)
+                            .lastModified(metadata.getCreatedAt())
+                            .contentType(metadata.getContentType())
+                            .build())
+                    .content((offset, length) -> {
+                        InputStream staged = uploadOutboxService.openStaged(fileName, offset, length);
+                        return staged != null ? staged : s3Service.getFileByName(fileName, offset, length);
+                    })
+                    .build();
+        }
+
+        if (metadata.isPacked()) {
+            return FileDownloadDto.builder()
+                    .metadata(metadata)
+                    .stat(getStat(metadata))
+                    .content((offset, length) -> openPacked(metadata, offset, length))
+                    .build();
+        }
+
+        CachedObject cached = localDiskObjectCache.acquire(fileName).orElse(null);
+        if (cached == null) {
+            FileStatDto stat = getStat(metadata);
+            return FileDownloadDto.builder()
+                    .metadata(metadata)
+                    .stat(stat)
+                    .content((offset, length) -> {
+                        if (offset == 0 && length == stat.getSize()) {
+                            localDiskObjectCache.fill(fileName, stat,
+                                    () -> s3Service.getFileByName(fileName, 0, stat.getSize()));
+                        }
+                        return s3Service.getFileByName(fileName, offset, length);
+                    })
+                    .build();
+        }
+
+        Path path = cached.getPath();
+        return FileDownloadDto.builder()
+                .metadata(metadata)
+                .stat(cached.getStat())
+                .content((offset, length) -> LocalDiskObjectCache.open(path, offset, length))
+                .localFile(path)
+                .resource(cached)
+                .build();
+    }
+
     /**
      * Получение метаданных файла по уникальному идентификатору.
      *
@@ -112,34 +792,53 @@ public class FileServiceImpl implements FileService {
         log.info("Getting a file data with id: {}", fileId);
 
         try {
-            if (fileDataService.existsById(fileId)) {
-                FileData fileData = fileDataService.getById(fileId);
-                log.info("File data was received from DB: {}", fileData);
-
-                return fileData;
-            } else {
+            FileData fileData = fileDataService.getById(fileId);
+            if (fileData == null) {
                 throw new FileNotFoundException("File with id " + fileId + " not found");
             }
+            log.info("File data was received from DB: {}", fileData);
+
+            return fileData;
         } catch (Exception e) {
             throw new FileNotFoundException("File with id " + fileId + " not found");
         }
     }
 
+    /**
+     * Получение состояния сохранения файла в хранилище. Состояние читается из БД без кэша,
+     * так как меняется после завершения загрузки.
+     * Для файлов, сохранённых до появления состояния, возвращается {@link FileStatus#STORED}.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @return Возвращает состояние сохранения файла.
+     * @throws FileNotFoundException файла нет в БД.
+     */
+    @Override
+    public FileStatus getFileStatus(Long fileId) {
+        log.info("Getting a file status with id: {}", fileId);
+
+        if (fileId == null || !fileDataService.existsById(fileId)) {
+            throw new FileNotFoundException("File with id " + fileId + " not found");
+        }
+        return fileDataService.findStatusById(fileId).orElse(FileStatus.STORED);
+    }
+
     /**
      * Удаление файла по уникальному идентификатору.
+     * Файл только помечается удалённым и сразу перестаёт читаться. Содержимое и метаданные удаляются
+     * физически пачками {@link FilePurgeService}, содержимое - если на него больше никто не ссылается.
      *
      * @param fileId уникальный идентификатор файла.
      */
     @Override
-    @Transactional
     public void deleteFileById(Long fileId) {
 
         try {
             FileData fileData = getFileMetadata(fileId);
 
-            s3Service.deleteFileByName(fileData.getFileName());
-            fileDataService.delete(fileData);
-            log.info("Deleted file with id: {}", fileId);
+            if (fileDataService.markDeleted(fileData)) {
+                log.info("Deleted file with id: {}", fileId);
+            }
         } catch (NoAccessException ex) {
             throw ex;
         } catch (Exception ignore) {
@@ -147,6 +846,287 @@ public class FileServiceImpl implements FileService {
         }
     }
 
+    /**
+     * Пакетное удаление файлов. Метаданные всех файлов удаляются в одной транзакции одним запросом,
+     * затем объекты, на которые больше никто не ссылается, удаляются из хранилища запросами DeleteObjects.
+     * Повторяющиеся id учитываются один раз.
+     *
+     * @param fileIds уникальные идентификаторы файлов.
+     * @return Возвращает результаты удаления в порядке различных id запроса.
+     * @throws InvalidDeleteRequestException список пуст, содержит null или превышает
+     *                                       {@link FileMetadataConfiguration#getBatchDeleteMaxIds()}.
+     */
+    @Override
+    public List<BatchDeleteResultDto> deleteFiles(List<Long> fileIds) {
+        if (fileIds == null || fileIds.isEmpty() || fileIds.contains(null)) {
+            throw new InvalidDeleteRequestException("File ids must be a non-empty list of ids");
+        }
+        Set<Long> ids = new LinkedHashSet<>(fileIds);
+        if (ids.size() > fileMetadataConfiguration.getBatchDeleteMaxIds()) {
+            throw new InvalidDeleteRequestException("At most " + fileMetadataConfiguration.getBatchDeleteMaxIds()
+                    + " files can be deleted in one request");
+        }
+
+        DeletedFiles deleted = batchDeleteService.delete(ids);
+        Map<String, String> errors = deleted.getUnreferenced().isEmpty()
+                ? Collections.emptyMap() : s3Service.deleteFiles(deleted.getUnreferenced());
+        deleted.getUnreferenced().forEach(localDiskObjectCache::invalidate);
+
+        Map<Long, String> storageNames = new HashMap<>();
+        deleted.getFiles().forEach(fileData -> storageNames.put(fileData.getId(),
+                fileData.isChunkedContent() ? null : fileData.getStorageName()));
+        List<BatchDeleteResultDto> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            String error = null;
+            if (!storageNames.containsKey(id)) {
+                error = "File with id " + id + " not found";
+            } else if (storageNames.get(id) != null && errors.containsKey(storageNames.get(id))) {
+                error = "File metadata was deleted, but its content was not deleted from storage";
+            }
+            results.add(new BatchDeleteResultDto(id, error));
+        }
+        log.info("Deleted {} of {} files, content not deleted: {}", deleted.getFiles().size(), ids.size(), errors.size());
+        return results;
+    }
+
+    /**
+     * Сохранение метаданных файлов пакетной загрузки, уже загруженных в хранилище.
+     * Если сохранить метаданные не удалось, загруженное содержимое удаляется из хранилища.
+     *
+     * @param storedFiles   метаданные загруженных файлов.
+     * @param resultsByName результаты сохранения по имени файла в хранилище, дополняются идентификаторами или ошибками.
+     */
+    private void saveBatchMetadata(List<FileData> storedFiles, Map<String, BatchUploadResultDto> resultsByName) {
+        List<FileData> duplicates;
+        try {
+            duplicates = retryOnConcurrentContent(() -> fileBlobService.saveAllDeduplicated(storedFiles, FileStatus.STORED));
+        } catch (RuntimeException e) {
+            log.error("Failed to save metadata of {} files of a batch", storedFiles.size(), e);
+            for (FileData fileData : storedFiles) {
+                resultsByName.get(fileData.getFileName()).setError("Failed to save file metadata");
+            }
+            deleteBatchObjects(storedFiles);
+            return;
+        }
+        deleteBatchObjects(duplicates);
+        for (FileData fileData : storedFiles) {
+            resultsByName.get(fileData.getFileName()).setFileId(fileData.getId());
+        }
+    }
+
+    /**
+     * Удаление из хранилища объектов пакетной загрузки, метаданные которых не сохранены, запросами DeleteObjects.
+     * Объекты, которые не удалось удалить, остаются сверке хранилища с метаданными {@link BucketReconciliationService}.
+     *
+     * @param files метаданные файлов, объекты которых нужно удалить.
+     */
+    private void deleteBatchObjects(List<FileData> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, String> errors = s3Service.deleteFiles(files.stream()
+                    .map(FileData::getFileName)
+                    .collect(Collectors.toList()));
+            if (!errors.isEmpty()) {
+                log.error("Couldn't delete {} objects of a batch from storage: {}", errors.size(), errors);
+            }
+        } catch (Exception e) {
+            log.error("Couldn't delete {} objects of a batch from storage", files.size(), e);
+        }
+    }
+
+    /**
+     * Вывод из использования объекта с прежним содержимым файла, начавшего храниться частями.
+     * Если объект ещё загружается, загрузка отменяется. Из хранилища объект удаляется после периода ожидания
+     * {@link ContentChunkService#deleteRetired()}, чтобы начатые скачивания успели его прочитать.
+     *
+     * @param storageName имя объекта в хранилище.
+     */
+    private void retireUnreferencedObject(String storageName) {
+        try {
+            uploadOutboxService.cancel(storageName);
+            localDiskObjectCache.invalidate(storageName);
+        } catch (Exception e) {
+            log.error("Couldn't retire previous content {} of an updated file", storageName, e);
+        }
+    }
+
+    /**
+     * Сохранение содержимого файла до загрузки в хранилище и постановка загрузки в очередь.
+     * При записи содержимого считаются его размер и контрольная сумма. Загрузку в хранилище
+     * выполняет {@link UploadOutboxProcessor}.
+     *
+     * @param fileData     метаданные файла без размера и контрольной суммы.
+     * @param inputStream  содержимое файла.
+     * @param expectedSize ожидаемый размер содержимого или -1, если размер неизвестен.
+     * @throws IOException не удалось прочитать содержимое, записать его на диск
+     *                     или размер содержимого не совпал с ожидаемым.
+     */
+    private void stageAndEnqueue(FileData fileData, InputStream inputStream, long expectedSize) throws IOException {
+        HashingInputStream hashing = new HashingInputStream(Hashing.sha256(), inputStream);
+        CountingInputStream content = new CountingInputStream(hashing);
+        String stagedPath = uploadOutboxService.stage(fileData.getFileName(), content);
+        if (expectedSize >= 0 && content.getCount() != expectedSize) {
+            uploadOutboxService.deleteStaged(stagedPath);
+            throw new IOException("Expected " + expectedSize + " bytes, got " + content.getCount());
+        }
+        fileData.setSize(content.getCount());
+        fileData.setChecksum(hashing.hash().toString());
+
+        Optional<UploadOutbox> entry;
+        try {
+            entry = retryOnConcurrentContent(() -> uploadOutboxService.enqueue(fileData, stagedPath));
+        } catch (RuntimeException e) {
+            uploadOutboxService.deleteStaged(stagedPath);
+            throw e;
+        }
+        if (entry.isPresent()) {
+            if (!entry.get().isStandby()) {
+                uploadOutboxProcessor.submit(entry.get());
+            }
+        } else {
+            uploadOutboxService.deleteStaged(stagedPath);
+        }
+    }
+
+    /**
+     * Сохранение метаданных файла со ссылкой на общий объект содержимого. Если объект с тем же содержимым
+     * одновременно создала другая загрузка, сохранение повторяется и файл ссылается на созданный объект.
+     *
+     * @param save сохранение метаданных.
+     * @return Возвращает результат сохранения.
+     */
+    private static <T> T retryOnConcurrentContent(Supplier<T> save) {
+        try {
+            return save.get();
+        } catch (DataIntegrityViolationException e) {
+            log.info("Same content was saved concurrently, retrying with the saved object");
+            return save.get();
+        }
+    }
+
+    /**
+     * Открытие части файла, который ещё не загружен в хранилище, из подготовленного на этом экземпляре содержимого.
+     *
+     * @param metadata метаданные файла.
+     * @param offset   смещение начала части.
+     * @param length   длина части.
+     * @return Возвращает содержимое части или null, если файл уже загружен или подготовлен на другом экземпляре.
+     */
+    private InputStream openStaged(FileMetadataDto metadata, long offset, long length) {
+        if (metadata.getStatus() != FileStatus.PENDING) {
+            return null;
+        }
+        return uploadOutboxService.openStaged(metadata.getStorageName(), offset, length);
+    }
+
+    /**
+     * Открывает часть содержимого файла, упакованного в сегмент, ranged GET запросом к сегменту.
+     *
+     * @param metadata метаданные упакованного файла.
+     * @param offset   смещение начала части от начала файла.
+     * @param length   длина части.
+     * @return Возвращает содержимое части, не выходящей за конец файла.
+     */
+    private InputStream openPacked(FileMetadataDto metadata, long offset, long length) {
+        long available = Math.max(metadata.getSize() - offset, 0);
+        return s3Service.getFileByName(metadata.getSegmentName(), metadata.getSegmentOffset() + offset,
+                Math.min(length, available));
+    }
+
+    /**
+     * Получение метаданных файла по уникальному идентификатору без обращения к хранилищу.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @return Возвращает метаданные файла.
+     * @throws FileNotFoundException файла нет в БД.
+     */
+    @Override
+    public FileMetadataDto findFileMetadata(Long fileId) {
+        log.info("Finding a file metadata with id: {}", fileId);
+
+        return findMetadata(fileId);
+    }
+
+    /**
+     * Получение метаданных файла по уникальному идентификатору одним запросом к БД.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @return Возвращает метаданные файла.
+     * @throws FileNotFoundException файла нет в БД.
+     */
+    private FileMetadataDto findMetadata(Long fileId) {
+        try {
+            FileMetadataDto metadata = fileDataService.findMetadataById(fileId)
+                    .orElseThrow(() -> new FileNotFoundException("File with id " + fileId + " not found"));
+            log.info("File metadata was received from DB: {}", metadata);
+            fileAccessTracker.recordAccess(fileId);
+
+            return metadata;
+        } catch (Exception e) {
+            throw new FileNotFoundException("File with id " + fileId + " not found");
+        }
+    }
+
+    /**
+     * Получение сведений о содержимом файла. Для сохранённых файлов с заполненными метаданными
+     * сведения берутся из БД, иначе запрашиваются у хранилища.
+     *
+     * @param metadata метаданные файла.
+     * @return Возвращает размер, время изменения и тип содержимого файла.
+     * @throws FileNotFoundException файла нет в хранилище.
+     */
+    private FileStatDto getStat(FileMetadataDto metadata) {
+        if (metadata.getStatus() == FileStatus.STORED && metadata.getSize() != null) {
+            return FileStatDto.builder()
+                    .size(metadata.getSize())
+                    .lastModified(metadata.getLastModified())
+                    .contentType(metadata.getContentType())
+                    .build();
+        }
+        return s3Service.statFile(metadata.getStorageName());
+    }
+
+    /**
+     * Определение типа содержимого по расширению оригинального имени файла.
+     *
+     * @param originalFileName оригинальное имя файла.
+     * @return Возвращает тип содержимого или application/octet-stream, если тип неизвестен.
+     */
+    private static String getContentType(String originalFileName) {
+        return MediaTypeFactory.getMediaType(originalFileName)
+                .map(MediaType::toString)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    /**
+     * Проверка срока хранения загружаемого файла.
+     *
+     * @param expiresAt время, после которого файл удаляется, или null для бессрочного файла.
+     * @throws InvalidUploadRequestException срок хранения уже прошёл.
+     */
+    private static void checkExpiresAt(Instant expiresAt) {
+        if (expiresAt != null && !expiresAt.isAfter(Instant.now())) {
+            throw new InvalidUploadRequestException("Expiration time must be in the future: " + expiresAt);
+        }
+    }
+
+    /**
+     * Получение расширения файла с проверкой по белому списку {@link FileTypeWhitelistConfiguration}.
+     *
+     * @param originalFileName оригинальное имя файла.
+     * @return Возвращает расширение файла.
+     * @throws ForbiddenFileFormatException в белом списке нет такого расширения файла.
+     */
+    private String getAllowedExtension(String originalFileName) {
+        String extension = Files.getFileExtension(originalFileName);
+        if (!fileTypeWhitelistConfiguration.getExtensions().contains(StringUtils.lowerCase(extension))) {
+            throw new ForbiddenFileFormatException("The file format is not supported");
+        }
+        return extension;
+    }
+
     /**
      * Получение полного имени файла по имени файла и расширению файла.
      *
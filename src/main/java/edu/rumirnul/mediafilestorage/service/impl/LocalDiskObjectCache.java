@@ -0,0 +1,320 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.DiskCacheConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Локальный дисковый кэш содержимого файлов из хранилища.
+ * Файлы хранятся в каталоге {@link DiskCacheConfiguration#getDirectory()}, у каждой записи свой файл.
+ * Суммарный размер ограничен {@link DiskCacheConfiguration#getMaxSize()}, при превышении вытесняются
+ * редко и давно используемые файлы (W-TinyLFU). Файл вытесненной записи удаляется с диска, только когда
+ * его больше не читает ни одно скачивание {@link #acquire(String)}. Содержимое каталога очищается при запуске.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class LocalDiskObjectCache {
+
+    private static final String CACHE_NAME = "object-disk-cache";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final DiskCacheConfiguration diskCacheConfiguration;
+    private final Cache<String, CachedObject> cache;
+    private final ThreadPoolExecutor fillExecutor;
+    private final Set<String> filling = ConcurrentHashMap.newKeySet();
+
+    public LocalDiskObjectCache(DiskCacheConfiguration diskCacheConfiguration, MeterRegistry meterRegistry) {
+        this.diskCacheConfiguration = diskCacheConfiguration;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(toKilobytes(diskCacheConfiguration.getMaxSize().toBytes()))
+                .weigher((String fileName, CachedObject cachedObject) ->
+                        (int) Math.min(Integer.MAX_VALUE, toKilobytes(cachedObject.getStat().getSize())))
+                .removalListener(this::onRemoval)
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+
+        int threads = diskCacheConfiguration.getFillThreads();
+        this.fillExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(diskCacheConfiguration.getFillQueueSize()),
+                new CustomizableThreadFactory("disk-cache-fill-"));
+
+        if (diskCacheConfiguration.isEnabled()) {
+            prepareDirectory(diskCacheConfiguration.getDirectory());
+        }
+    }
+
+    /**
+     * Проверяет, включён ли кэш и подходит ли для него файл указанного размера.
+     *
+     * @param size размер файла.
+     * @return Возвращает true, если файл можно положить в кэш.
+     */
+    public boolean isCacheable(long size) {
+        return diskCacheConfiguration.isEnabled()
+                && size <= diskCacheConfiguration.getMaxObjectSize().toBytes();
+    }
+
+    /**
+     * Поиск файла в кэше с закреплением записи. Пока запись закреплена, её файл не удаляется с диска,
+     * даже если запись вытеснена. Закреплённую запись нужно освободить {@link CachedObject#close()}.
+     *
+     * @param fileName имя файла в хранилище.
+     * @return Возвращает закреплённый закэшированный файл или пустой Optional.
+     */
+    public Optional<CachedObject> acquire(String fileName) {
+        if (!diskCacheConfiguration.isEnabled()) {
+            return Optional.empty();
+        }
+        CachedObject cachedObject = cache.getIfPresent(fileName);
+        if (cachedObject == null || !cachedObject.pin()) {
+            return Optional.empty();
+        }
+        if (!Files.isRegularFile(cachedObject.getPath())) {
+            cachedObject.close();
+            cache.asMap().remove(fileName, cachedObject);
+            return Optional.empty();
+        }
+        return Optional.of(cachedObject);
+    }
+
+    /**
+     * Сохраняет содержимое файла в кэш в фоновом потоке, как {@link #put}. Файл не сохраняется,
+     * если он уже в кэше или сохраняется, а также если очередь сохранения заполнена.
+     *
+     * @param fileName имя файла в хранилище.
+     * @param stat     сведения о файле в хранилище.
+     * @param content  поставщик потока с содержимым файла.
+     */
+    public void fill(String fileName, FileStatDto stat, Supplier<InputStream> content) {
+        if (!isCacheable(stat.getSize()) || cache.getIfPresent(fileName) != null || !filling.add(fileName)) {
+            return;
+        }
+        try {
+            fillExecutor.execute(() -> {
+                try {
+                    put(fileName, stat, content);
+                } catch (RuntimeException e) {
+                    log.error("File {} was not cached", fileName, e);
+                } finally {
+                    filling.remove(fileName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            filling.remove(fileName);
+            log.info("File {} was not cached, fill queue is full", fileName);
+        }
+    }
+
+    /**
+     * Сохраняет содержимое файла в кэш. Содержимое пишется во временный файл,
+     * который атомарно переименовывается в файл записи после полной записи.
+     *
+     * @param fileName имя файла в хранилище.
+     * @param stat     сведения о файле в хранилище.
+     * @param content  поставщик потока с содержимым файла.
+     * @return Возвращает закэшированный файл, не закреплённый за вызывающим.
+     * @throws UncheckedIOException не удалось записать файл на диск.
+     */
+    public CachedObject put(String fileName, FileStatDto stat, Supplier<InputStream> content) {
+        Path directory = diskCacheConfiguration.getDirectory();
+        Path target = directory.resolve(fileName + "." + UUID.randomUUID());
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, fileName, TEMP_FILE_SUFFIX);
+            try (InputStream inputStream = content.get();
+                 OutputStream outputStream = Files.newOutputStream(temp)) {
+                long copied = ByteStreams.copy(inputStream, outputStream);
+                if (copied != stat.getSize()) {
+                    throw new IOException("Expected " + stat.getSize() + " bytes of " + fileName + ", got " + copied);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Couldn't cache file " + fileName, e);
+        }
+
+        CachedObject cachedObject = new CachedObject(target, stat);
+        cache.put(fileName, cachedObject);
+        log.info("File {} was cached on disk, size: {}", fileName, stat.getSize());
+        return cachedObject;
+    }
+
+    /**
+     * Удаляет файл из кэша.
+     *
+     * @param fileName имя файла в хранилище.
+     */
+    public void invalidate(String fileName) {
+        cache.invalidate(fileName);
+    }
+
+    /**
+     * Открывает поток чтения части закэшированного файла.
+     *
+     * @param path   путь к закэшированному файлу.
+     * @param offset смещение начала части.
+     * @param length длина части.
+     * @return Возвращает поток с содержимым части файла.
+     * @throws UncheckedIOException не удалось открыть файл.
+     */
+    public static InputStream open(Path path, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            channel.position(offset);
+            return ByteStreams.limit(Channels.newInputStream(channel), length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't open cached file " + path, e);
+        }
+    }
+
+    /**
+     * Передаёт часть файла в поток ответа через {@link FileChannel#transferTo}, без копирования через heap буферы.
+     *
+     * @param path         путь к файлу.
+     * @param offset       смещение начала части.
+     * @param length       длина части.
+     * @param outputStream поток ответа.
+     * @throws IOException не удалось прочитать файл или записать ответ.
+     */
+    public static void transferTo(Path path, long offset, long length, OutputStream outputStream) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("Unexpected end of cached file " + path);
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Останавливает пул потоков сохранения файлов в кэш.
+     */
+    @PreDestroy
+    public void shutdown() {
+        fillExecutor.shutdownNow();
+    }
+
+    /**
+     * Удаляет файл с диска при вытеснении, замене или удалении записи из кэша,
+     * когда запись больше не закреплена ни одним скачиванием.
+     */
+    private void onRemoval(String fileName, CachedObject cachedObject, RemovalCause cause) {
+        if (cachedObject == null) {
+            return;
+        }
+        log.info("File {} was removed from disk cache: {}", fileName, cause);
+        cachedObject.retire();
+    }
+
+    private static void prepareDirectory(Path directory) {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't prepare disk cache directory " + directory, e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.error("Couldn't delete cached file {}", path, e);
+        }
+    }
+
+    private static long toKilobytes(long bytes) {
+        return Math.max(1, (bytes + 1023) / 1024);
+    }
+
+    /**
+     * Закэшированный на диске файл. Файл удаляется с диска, когда запись удалена из кэша
+     * и не закреплена ни одним скачиванием.
+     */
+    @RequiredArgsConstructor
+    public static class CachedObject implements Closeable {
+        /** Путь к файлу на диске. */
+        @Getter
+        private final Path path;
+        /** Сведения о файле в хранилище на момент кэширования. */
+        @Getter
+        private final FileStatDto stat;
+        /** Количество скачиваний, читающих файл. */
+        private int pins;
+        /** Удалена ли запись из кэша. */
+        private boolean retired;
+
+        /**
+         * Освобождает запись, закреплённую {@link LocalDiskObjectCache#acquire(String)}.
+         */
+        @Override
+        public synchronized void close() {
+            if (--pins == 0 && retired) {
+                deleteQuietly(path);
+            }
+        }
+
+        synchronized boolean pin() {
+            if (retired) {
+                return false;
+            }
+            pins++;
+            return true;
+        }
+
+        synchronized void retire() {
+            retired = true;
+            if (pins == 0) {
+                deleteQuietly(path);
+            }
+        }
+    }
+}
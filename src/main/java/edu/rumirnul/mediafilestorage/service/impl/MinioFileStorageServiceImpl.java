@@ -1,23 +1,40 @@
 package edu.rumirnul.mediafilestorage.service.impl;
 
-import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.UnsignedBytes;
+import edu.rumirnul.mediafilestorage.client.MinioShard;
 import edu.rumirnul.mediafilestorage.dto.FileDto;
-import edu.rumirnul.mediafilestorage.event.FileSaveFailedEvent;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.StoredObjectDto;
 import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
 import edu.rumirnul.mediafilestorage.exception.S3Exception;
 import edu.rumirnul.mediafilestorage.service.S3Service;
 import io.minio.*;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Класс сервис работающий с хранилищем файлов minio.
+ * Объекты распределены по шардам хранилища, шард каждого объекта выбирает {@link MinioShardRouter}.
  *
  * @author Alexey Svistunov
  * @version 1.0
@@ -27,64 +44,71 @@ import java.io.InputStream;
 @Slf4j
 public class MinioFileStorageServiceImpl implements S3Service {
 
-    private final MinioClient minioClient;
-    private final MinioConfiguration minioConfiguration;
-    private final ApplicationEventPublisher applicationEventPublisher;
+    /** Максимальное количество объектов в одном запросе DeleteObjects S3. */
+    private static final int MAX_DELETE_OBJECTS = 1000;
+    private static final Comparator<String> BYTE_ORDER =
+            Comparator.comparing(name -> name.getBytes(StandardCharsets.UTF_8), UnsignedBytes.lexicographicalComparator());
+
+    private final MinioShardRouter minioShardRouter;
+    private final MinioMultipartUploader minioMultipartUploader;
+    private final MinioRangeDownloader minioRangeDownloader;
+    private final MinioUrlPresigner minioUrlPresigner;
 
     /**
-     * Создание bucket в s3(minio), если его нет во время запуска приложения.
+     * Создание bucket каждого шарда в s3(minio), если его нет во время запуска приложения.
      *
      * @throws RuntimeException ошибка при создании ведра.
      */
     @PostConstruct
     private void createBucketIfNotExists() {
-        try {
-            String bucketName = minioConfiguration.getBucket();
-            if (!minioClient.bucketExists(BucketExistsArgs.builder()
-                    .bucket(bucketName)
-                    .build())) {
+        for (MinioShard shard : minioShardRouter.getShards()) {
+            try {
+                String bucketName = shard.getBucket();
+                if (!shard.getClient().bucketExists(BucketExistsArgs.builder()
+                        .bucket(bucketName)
+                        .build())) {
 
-                log.info("No bucket with a name = {}, trying to create it.", bucketName);
+                    log.info("No bucket with a name = {}, trying to create it.", bucketName);
 
-                minioClient.makeBucket(MakeBucketArgs.builder()
-                        .bucket(bucketName)
-                        .build());
+                    shard.getClient().makeBucket(MakeBucketArgs.builder()
+                            .bucket(bucketName)
+                            .build());
 
-                log.info("Bucket with name: {} was created.", bucketName);
+                    log.info("Bucket with name: {} was created.", bucketName);
+                }
+            } catch (Exception e) {
+                log.info("Failed when create bucket of shard {}.", shard.getName());
+                throw new RuntimeException(e);
             }
-        } catch (Exception e) {
-            log.info("Failed when create bucket.");
-            throw new RuntimeException(e);
         }
     }
 
     /**
-     * Асинхронное сохранение файла в хранилище.
+     * Синхронное потоковое сохранение файла в хранилище.
+     * Большие файлы загружаются частями параллельно, см. {@link MinioMultipartUploader}.
      *
      * @param fileDto содержимое и информация о сохраняемом файле.
+     * @return Возвращает количество байт, прочитанных из потока и сохранённых в хранилище.
      * @throws S3Exception произошла ошибка при работе с хранилищем.
      */
-    @Async
     @Override
-    public void saveFile(FileDto fileDto) {
-        log.info("Saving a file to s3(minio): {}", fileDto);
+    public long putFile(FileDto fileDto) {
+        log.info("Streaming a file to s3(minio): {}", fileDto);
         try {
-            minioClient.putObject(PutObjectArgs.builder()
-                    .bucket(minioConfiguration.getBucket())
-                    .object(fileDto.getName())
-                    .stream(fileDto.getInputStream(), fileDto.getSize(), -1)
-                    .build());
+            long size = minioMultipartUploader.upload(fileDto.getName(), fileDto.getInputStream(), fileDto.getSize());
 
-            log.info("File has been saved in s3(minio)");
+            log.info("File has been streamed to s3(minio), size: {}", size);
+            return size;
         } catch (Exception e) {
-            log.error("Failed to save file in s3(minio)");
-            applicationEventPublisher.publishEvent(new FileSaveFailedEvent(fileDto.getName()));
+            log.error("Failed to stream file to s3(minio)", e);
             throw new S3Exception("Failed to save file in s3(minio)");
         }
     }
 
     /**
-     * Получение файла по имени.
+     * Получение файла по имени одним GET запросом, без отдельного запроса размера файла.
+     * Файл, размер которого известен, скачивается {@link #getFileByName(String, long, long)},
+     * большие файлы при этом скачиваются несколькими диапазонами одновременно, см. {@link MinioRangeDownloader}.
      *
      * @param fileName имя файла.
      * @return Возвращает содержимое файла.
@@ -94,8 +118,9 @@ public class MinioFileStorageServiceImpl implements S3Service {
     public InputStream getFileByName(String fileName) {
         log.info("Getting from s3(minio) a file with file name: {}", fileName);
         try {
-            InputStream result = minioClient.getObject(GetObjectArgs.builder()
-                    .bucket(minioConfiguration.getBucket())
+            MinioShard shard = minioShardRouter.route(fileName);
+            InputStream result = shard.getClient().getObject(GetObjectArgs.builder()
+                    .bucket(shard.getBucket())
                     .object(fileName)
                     .build());
             log.info("Received file InputStream: {}", result);
@@ -105,6 +130,65 @@ public class MinioFileStorageServiceImpl implements S3Service {
         }
     }
 
+    /**
+     * Получение части файла по имени. Часть скачивается одним ranged GET запросом,
+     * а большие части - несколькими параллельными, см. {@link MinioRangeDownloader}.
+     *
+     * @param fileName имя файла.
+     * @param offset   смещение начала части.
+     * @param length   длина части.
+     * @return Возвращает содержимое части файла.
+     * @throws FileNotFoundException не удалось найти файл в хранилище.
+     */
+    @Override
+    public InputStream getFileByName(String fileName, long offset, long length) {
+        log.info("Getting from s3(minio) {} bytes at offset {} of a file with file name: {}", length, offset, fileName);
+        if (length == 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        if (minioRangeDownloader.isParallel(length)) {
+            return minioRangeDownloader.open(fileName, offset, length);
+        }
+        try {
+            MinioShard shard = minioShardRouter.route(fileName);
+            return shard.getClient().getObject(GetObjectArgs.builder()
+                    .bucket(shard.getBucket())
+                    .object(fileName)
+                    .offset(offset)
+                    .length(length)
+                    .build());
+        } catch (Exception e) {
+            throw new FileNotFoundException("File not found in storage.");
+        }
+    }
+
+    /**
+     * Получение сведений о файле в хранилище без скачивания содержимого.
+     *
+     * @param fileName имя файла.
+     * @return Возвращает размер, etag, время изменения и тип содержимого файла.
+     * @throws FileNotFoundException не удалось найти файл в хранилище.
+     */
+    @Override
+    public FileStatDto statFile(String fileName) {
+        log.info("Getting from s3(minio) stat of a file with file name: {}", fileName);
+        try {
+            MinioShard shard = minioShardRouter.route(fileName);
+            StatObjectResponse stat = shard.getClient().statObject(StatObjectArgs.builder()
+                    .bucket(shard.getBucket())
+                    .object(fileName)
+                    .build());
+            return FileStatDto.builder()
+                    .size(stat.size())
+                    .etag(stat.etag())
+                    .lastModified(stat.lastModified() != null ? stat.lastModified().toInstant() : null)
+                    .contentType(stat.contentType())
+                    .build();
+        } catch (Exception e) {
+            throw new FileNotFoundException("File not found in storage.");
+        }
+    }
+
     /**
      * Асинхронное удаление файла из хранилища.
      *
@@ -115,8 +199,9 @@ public class MinioFileStorageServiceImpl implements S3Service {
     public void deleteFileByName(String fileName) {
         log.info("Deleting from s3(minio) file with file name: {}", fileName);
         try {
-            minioClient.removeObject(RemoveObjectArgs.builder()
-                    .bucket(minioConfiguration.getBucket())
+            MinioShard shard = minioShardRouter.route(fileName);
+            shard.getClient().removeObject(RemoveObjectArgs.builder()
+                    .bucket(shard.getBucket())
                     .object(fileName)
                     .build());
             log.info("File was deleted from s3(minio). File name: {}", fileName);
@@ -125,4 +210,178 @@ public class MinioFileStorageServiceImpl implements S3Service {
         }
 
     }
+
+    /**
+     * Удаление пачки файлов из хранилища. Файлы удаляются из своих шардов запросами DeleteObjects
+     * по {@link #MAX_DELETE_OBJECTS} объектов, отсутствие файла в хранилище ошибкой не считается.
+     *
+     * @param fileNames имена файлов.
+     * @return Возвращает ошибки удаления по имени файла. Пустой результат означает, что удалены все файлы.
+     */
+    @Override
+    public Map<String, String> deleteFiles(Collection<String> fileNames) {
+        log.info("Deleting from s3(minio) {} files", fileNames.size());
+        Map<MinioShard, List<String>> namesByShard = fileNames.stream()
+                .collect(Collectors.groupingBy(minioShardRouter::route, LinkedHashMap::new, Collectors.toList()));
+        Map<String, String> errors = new HashMap<>();
+        namesByShard.forEach((shard, shardNames) -> {
+            for (List<String> names : Iterables.partition(shardNames, MAX_DELETE_OBJECTS)) {
+                List<DeleteObject> objects = names.stream().map(DeleteObject::new).collect(Collectors.toList());
+                try {
+                    Iterable<Result<DeleteError>> results = shard.getClient().removeObjects(RemoveObjectsArgs.builder()
+                            .bucket(shard.getBucket())
+                            .objects(objects)
+                            .build());
+                    for (Result<DeleteError> result : results) {
+                        DeleteError error = result.get();
+                        log.error("File with name {} was not deleted from s3(minio): {}", error.objectName(), error.message());
+                        errors.put(error.objectName(), error.message());
+                    }
+                } catch (Exception e) {
+                    log.error("Failed to delete {} files from s3(minio) shard {}", names.size(), shard.getName(), e);
+                    names.forEach(name -> errors.putIfAbsent(name, "Failed to delete file from s3(minio)"));
+                }
+            }
+        });
+        log.info("Deleted from s3(minio) {} files, failed: {}", fileNames.size() - errors.size(), errors.size());
+        return errors;
+    }
+
+    /**
+     * Получение страницы листинга хранилища. Объекты возвращаются в порядке байтов UTF-8 их имён,
+     * из каждого шарда запрашивается не больше одной страницы. Страницы шардов объединяются,
+     * шард каждого объекта запоминается {@link MinioShardRouter#remember}, поэтому объект из листинга
+     * удаляется из шарда, в котором найден.
+     *
+     * @param startAfter имя, после которого начинается страница, или null для начала bucket.
+     * @param limit      максимальное количество объектов.
+     * @return Возвращает объекты страницы. Страница короче limit, если все bucket закончились.
+     * @throws S3Exception произошла ошибка при работе с хранилищем.
+     */
+    @Override
+    public List<StoredObjectDto> listFiles(String startAfter, int limit) {
+        Collection<MinioShard> shards = minioShardRouter.getShards();
+        if (shards.size() == 1) {
+            return listFiles(shards.iterator().next(), startAfter, limit);
+        }
+        List<StoredObjectDto> objects = new ArrayList<>();
+        Map<String, MinioShard> placements = new HashMap<>();
+        for (MinioShard shard : shards) {
+            for (StoredObjectDto object : listFiles(shard, startAfter, limit)) {
+                objects.add(object);
+                placements.put(object.getName(), shard);
+            }
+        }
+        objects.sort(Comparator.comparing(StoredObjectDto::getName, BYTE_ORDER));
+        List<StoredObjectDto> page = new ArrayList<>(objects.subList(0, Math.min(limit, objects.size())));
+        page.forEach(object -> minioShardRouter.remember(object.getName(), placements.get(object.getName())));
+        return page;
+    }
+
+    private List<StoredObjectDto> listFiles(MinioShard shard, String startAfter, int limit) {
+        ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                .bucket(shard.getBucket())
+                .recursive(true)
+                .maxKeys(limit);
+        if (startAfter != null) {
+            args.startAfter(startAfter);
+        }
+        List<StoredObjectDto> objects = new ArrayList<>(limit);
+        try {
+            for (Result<Item> result : shard.getClient().listObjects(args.build())) {
+                Item item = result.get();
+                objects.add(StoredObjectDto.builder()
+                        .name(item.objectName())
+                        .size(item.size())
+                        .lastModified(item.lastModified().toInstant())
+                        .build());
+                if (objects.size() == limit) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to list files in s3(minio) shard {} after {}", shard.getName(), startAfter, e);
+            throw new S3Exception("Failed to list files in s3(minio)");
+        }
+        return objects;
+    }
+
+    /**
+     * Начало multipart загрузки, части которой загружаются отдельными запросами.
+     *
+     * @param fileName имя файла.
+     * @return Возвращает идентификатор multipart загрузки.
+     * @throws S3Exception произошла ошибка при работе с хранилищем.
+     */
+    @Override
+    public String createMultipartUpload(String fileName) {
+        return minioMultipartUploader.startUpload(fileName);
+    }
+
+    /**
+     * Загрузка одной части multipart загрузки.
+     *
+     * @param fileName    имя файла.
+     * @param uploadId    идентификатор multipart загрузки.
+     * @param partNumber  номер части, начиная с 1.
+     * @param inputStream содержимое части.
+     * @param length      размер части.
+     * @return Возвращает etag загруженной части.
+     * @throws S3Exception произошла ошибка при работе с хранилищем.
+     */
+    @Override
+    public String uploadPart(String fileName, String uploadId, int partNumber, InputStream inputStream, int length) {
+        return minioMultipartUploader.uploadPart(fileName, uploadId, partNumber, inputStream, length);
+    }
+
+    /**
+     * Завершение multipart загрузки: файл собирается из частей на стороне хранилища.
+     *
+     * @param fileName имя файла.
+     * @param uploadId идентификатор multipart загрузки.
+     * @param etags    etag частей по порядку, начиная с части 1.
+     * @throws S3Exception произошла ошибка при работе с хранилищем.
+     */
+    @Override
+    public void completeMultipartUpload(String fileName, String uploadId, List<String> etags) {
+        minioMultipartUploader.completeUpload(fileName, uploadId, etags);
+    }
+
+    /**
+     * Отмена multipart загрузки.
+     *
+     * @param fileName имя файла.
+     * @param uploadId идентификатор multipart загрузки.
+     */
+    @Override
+    public void abortMultipartUpload(String fileName, String uploadId) {
+        minioMultipartUploader.abortUpload(fileName, uploadId);
+    }
+
+    /**
+     * Подписанная ссылка, по которой клиент загружает файл напрямую в хранилище запросом PUT.
+     *
+     * @param fileName имя файла.
+     * @param expiry   время действия ссылки.
+     * @return Возвращает подписанную ссылку.
+     * @throws S3Exception не удалось подписать ссылку.
+     */
+    @Override
+    public String getPresignedUploadUrl(String fileName, Duration expiry) {
+        return minioUrlPresigner.presignUpload(fileName, expiry);
+    }
+
+    /**
+     * Подписанная ссылка, по которой клиент скачивает файл напрямую из хранилища.
+     *
+     * @param fileName        имя файла.
+     * @param expiry          время действия ссылки.
+     * @param responseHeaders заголовки ответа хранилища, заменяемые по ссылке, например response-content-type.
+     * @return Возвращает подписанную ссылку.
+     * @throws S3Exception не удалось подписать ссылку.
+     */
+    @Override
+    public String getPresignedDownloadUrl(String fileName, Duration expiry, Map<String, String> responseHeaders) {
+        return minioUrlPresigner.presignDownload(fileName, expiry, responseHeaders);
+    }
 }
@@ -0,0 +1,380 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Uninterruptibles;
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import io.minio.PutObjectArgs;
+import io.minio.messages.Part;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Загрузчик файлов в minio, разбивающий поток на части и загружающий несколько частей одновременно.
+ * <p>
+ * Поток, размер которого не превышает размер части, загружается одним запросом putObject.
+ * Более крупные потоки загружаются через multipart загрузку: части читаются из потока по очереди,
+ * а отправляются в хранилище параллельно, не более {@link MinioConfiguration#getUploadConcurrency()}
+ * частей одного файла одновременно. При ошибке multipart загрузка отменяется.
+ * <p>
+ * Буферы частей переиспользуются и ограничены общим пулом размером {@link MinioConfiguration#getUploadBufferMemory()},
+ * поэтому объём памяти под загрузки не зависит от количества одновременных запросов.
+ * Объект загружается в шард, выбранный {@link MinioShardRouter}.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class MinioMultipartUploader {
+
+    /** Максимальное количество частей в multipart загрузке S3. */
+    private static final int MAX_PARTS = 10000;
+
+    private final MinioShardRouter minioShardRouter;
+    private final MinioConfiguration minioConfiguration;
+    private final ThreadPoolExecutor executor;
+    private final BufferPool bufferPool;
+
+    public MinioMultipartUploader(MinioShardRouter minioShardRouter, MinioConfiguration minioConfiguration) {
+        this.minioShardRouter = minioShardRouter;
+        this.minioConfiguration = minioConfiguration;
+
+        int threads = minioConfiguration.getUploadThreads();
+        // При заполнении очереди часть загружает поток, который её прочитал: чтение входящих данных
+        // замедляется до скорости записи в хранилище.
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads),
+                new CustomizableThreadFactory("minio-upload-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        int partSize = (int) minioConfiguration.getPartSize().toBytes();
+        int maxBuffers = (int) Math.max(minioConfiguration.getUploadConcurrency() + 1,
+                minioConfiguration.getUploadBufferMemory().toBytes() / partSize);
+        this.bufferPool = new BufferPool(partSize, maxBuffers);
+    }
+
+    /**
+     * Загружает поток в хранилище.
+     *
+     * @param objectName имя объекта в хранилище.
+     * @param inputStream содержимое объекта.
+     * @param size размер содержимого или -1, если размер неизвестен.
+     * @return Возвращает количество загруженных байт.
+     * @throws S3Exception не удалось прочитать поток или загрузить его в хранилище.
+     */
+    public long upload(String objectName, InputStream inputStream, long size) {
+        MinioShard shard = minioShardRouter.route(objectName);
+        int partSize = bufferPool.getBufferSize();
+        if (size > (long) partSize * MAX_PARTS) {
+            throw new S3Exception("File is too large for configured part size: " + size);
+        }
+
+        byte[] buffer = bufferPool.acquire();
+        int read;
+        try {
+            read = ByteStreams.read(inputStream, buffer, 0, partSize);
+            if (read < partSize) {
+                if (size >= 0 && read != size) {
+                    throw new S3Exception("File size mismatch, expected " + size + " but was " + read);
+                }
+                putObject(shard, objectName, buffer, read);
+                bufferPool.release(buffer);
+                return read;
+            }
+        } catch (IOException | RuntimeException e) {
+            bufferPool.release(buffer);
+            throw e instanceof S3Exception ? (S3Exception) e : new S3Exception("Failed to read file content", e);
+        }
+        return uploadMultipart(shard, objectName, inputStream, size, buffer, read);
+    }
+
+    /**
+     * Начинает multipart загрузку, части которой загружаются отдельными вызовами {@link #uploadPart}.
+     *
+     * @param objectName имя объекта в хранилище.
+     * @return Возвращает идентификатор multipart загрузки.
+     * @throws S3Exception не удалось начать загрузку.
+     */
+    public String startUpload(String objectName) {
+        try {
+            MinioShard shard = minioShardRouter.route(objectName);
+            String uploadId = shard.getMultipartClient().createMultipartUpload(shard.getBucket(), objectName);
+            log.info("Started multipart upload {} for object {}", uploadId, objectName);
+            return uploadId;
+        } catch (Exception e) {
+            throw new S3Exception("Failed to start multipart upload in s3(minio)", e);
+        }
+    }
+
+    /**
+     * Загружает одну часть multipart загрузки. Часть читается из потока в буфер из общего пула.
+     *
+     * @param objectName  имя объекта в хранилище.
+     * @param uploadId    идентификатор multipart загрузки.
+     * @param partNumber  номер части, начиная с 1.
+     * @param inputStream содержимое части.
+     * @param length      размер части, не больше {@link MinioConfiguration#getPartSize()}.
+     * @return Возвращает etag загруженной части.
+     * @throws S3Exception не удалось прочитать часть или загрузить её в хранилище.
+     */
+    public String uploadPart(String objectName, String uploadId, int partNumber, InputStream inputStream, int length) {
+        if (length > bufferPool.getBufferSize()) {
+            throw new S3Exception("Part is larger than configured part size: " + length);
+        }
+        byte[] buffer = bufferPool.acquire();
+        try {
+            int read = ByteStreams.read(inputStream, buffer, 0, length);
+            if (read != length) {
+                throw new S3Exception("Part size mismatch, expected " + length + " but was " + read);
+            }
+            MinioShard shard = minioShardRouter.route(objectName);
+            return shard.getMultipartClient().uploadPart(shard.getBucket(), objectName, uploadId,
+                    partNumber, buffer, length);
+        } catch (S3Exception e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3Exception("Failed to upload part to s3(minio)", e);
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Завершает multipart загрузку, собирая объект из загруженных частей на стороне хранилища.
+     *
+     * @param objectName имя объекта в хранилище.
+     * @param uploadId   идентификатор multipart загрузки.
+     * @param etags      etag частей по порядку, начиная с части 1.
+     * @throws S3Exception не удалось собрать объект.
+     */
+    public void completeUpload(String objectName, String uploadId, List<String> etags) {
+        Part[] parts = new Part[etags.size()];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new Part(i + 1, etags.get(i));
+        }
+        try {
+            MinioShard shard = minioShardRouter.route(objectName);
+            shard.getMultipartClient().completeMultipartUpload(shard.getBucket(), objectName, uploadId, parts);
+            log.info("Completed multipart upload {} for object {}, parts: {}", uploadId, objectName, parts.length);
+        } catch (Exception e) {
+            throw new S3Exception("Failed to complete multipart upload in s3(minio)", e);
+        }
+    }
+
+    /**
+     * Отменяет multipart загрузку и освобождает загруженные части.
+     *
+     * @param objectName имя объекта в хранилище.
+     * @param uploadId   идентификатор multipart загрузки.
+     */
+    public void abortUpload(String objectName, String uploadId) {
+        abort(minioShardRouter.route(objectName), objectName, uploadId);
+    }
+
+    /**
+     * Останавливает пул потоков загрузки, дождавшись завершения начатых загрузок.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void putObject(MinioShard shard, String objectName, byte[] data, int length) {
+        try {
+            shard.getClient().putObject(PutObjectArgs.builder()
+                    .bucket(shard.getBucket())
+                    .object(objectName)
+                    .stream(new ByteArrayInputStream(data, 0, length), length, -1)
+                    .build());
+        } catch (Exception e) {
+            throw new S3Exception("Failed to save file in s3(minio)", e);
+        }
+    }
+
+    /**
+     * Multipart загрузка потока. Первая часть уже прочитана в буфер, владение которым переходит этому методу.
+     */
+    private long uploadMultipart(MinioShard shard, String objectName, InputStream inputStream, long size,
+                                 byte[] firstBuffer, int firstRead) {
+        String uploadId;
+        try {
+            uploadId = shard.getMultipartClient().createMultipartUpload(shard.getBucket(), objectName);
+        } catch (Exception e) {
+            bufferPool.release(firstBuffer);
+            throw new S3Exception("Failed to start multipart upload in s3(minio)", e);
+        }
+        log.info("Started multipart upload {} for object {}", uploadId, objectName);
+
+        int partSize = bufferPool.getBufferSize();
+        Semaphore inFlight = new Semaphore(minioConfiguration.getUploadConcurrency());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<Part>> parts = new ArrayList<>();
+        long total = 0;
+        try {
+            byte[] buffer = firstBuffer;
+            int read = firstRead;
+            while (read > 0) {
+                if (parts.size() == MAX_PARTS) {
+                    bufferPool.release(buffer);
+                    throw new S3Exception("File exceeds maximum number of parts: " + MAX_PARTS);
+                }
+                inFlight.acquire();
+                if (failure.get() != null) {
+                    inFlight.release();
+                    bufferPool.release(buffer);
+                    throw new S3Exception("Failed to upload part to s3(minio)", failure.get());
+                }
+                parts.add(submitPart(shard, objectName, uploadId, parts.size() + 1, buffer, read,
+                        inFlight, failure));
+                total += read;
+
+                buffer = bufferPool.acquire();
+                try {
+                    read = read < partSize ? 0 : ByteStreams.read(inputStream, buffer, 0, partSize);
+                } catch (IOException e) {
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+            }
+            bufferPool.release(buffer);
+
+            Part[] completedParts = new Part[parts.size()];
+            for (int i = 0; i < completedParts.length; i++) {
+                completedParts[i] = parts.get(i).get();
+            }
+            if (size >= 0 && total != size) {
+                throw new S3Exception("File size mismatch, expected " + size + " but was " + total);
+            }
+            shard.getMultipartClient().completeMultipartUpload(shard.getBucket(), objectName, uploadId, completedParts);
+            log.info("Completed multipart upload {} for object {}, parts: {}, size: {}",
+                    uploadId, objectName, completedParts.length, total);
+            return total;
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            awaitParts(parts);
+            abort(shard, objectName, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (e instanceof S3Exception) {
+                throw (S3Exception) e;
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new S3Exception("Failed to save file in s3(minio)", cause);
+        }
+    }
+
+    private Future<Part> submitPart(MinioShard shard, String objectName, String uploadId, int partNumber,
+                                    byte[] data, int length, Semaphore inFlight, AtomicReference<Throwable> failure) {
+        return executor.submit(() -> {
+            try {
+                if (failure.get() != null) {
+                    throw new S3Exception("Multipart upload " + uploadId + " failed, part " + partNumber + " skipped");
+                }
+                String etag = shard.getMultipartClient().uploadPart(shard.getBucket(), objectName, uploadId,
+                        partNumber, data, length);
+                return new Part(partNumber, etag);
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            } finally {
+                bufferPool.release(data);
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Дожидается завершения всех отправленных частей. Части не отменяются: часть, не начавшая загрузку,
+     * должна сама освободить свой буфер и разрешение, увидев ошибку загрузки.
+     */
+    private void awaitParts(List<Future<Part>> parts) {
+        for (Future<Part> part : parts) {
+            try {
+                Uninterruptibles.getUninterruptibly(part);
+            } catch (ExecutionException e) {
+                log.debug("Part of failed multipart upload finished with error", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Количество буферов, которые можно получить из пула без ожидания.
+     */
+    int availableBuffers() {
+        return bufferPool.available();
+    }
+
+    private void abort(MinioShard shard, String objectName, String uploadId) {
+        try {
+            shard.getMultipartClient().abortMultipartUpload(shard.getBucket(), objectName, uploadId);
+            log.info("Aborted multipart upload {} for object {}", uploadId, objectName);
+        } catch (Exception e) {
+            log.error("Failed to abort multipart upload {} for object {}", uploadId, objectName, e);
+        }
+    }
+
+    /**
+     * Пул буферов частей. Ограничивает общее количество буферов, созданных загрузчиком.
+     */
+    private static class BufferPool {
+        private final int bufferSize;
+        private final BlockingQueue<byte[]> free = new LinkedBlockingQueue<>();
+        private final AtomicInteger created = new AtomicInteger();
+        private final int maxBuffers;
+
+        BufferPool(int bufferSize, int maxBuffers) {
+            this.bufferSize = bufferSize;
+            this.maxBuffers = maxBuffers;
+        }
+
+        int getBufferSize() {
+            return bufferSize;
+        }
+
+        byte[] acquire() {
+            byte[] buffer = free.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+            if (created.incrementAndGet() <= maxBuffers) {
+                return new byte[bufferSize];
+            }
+            created.decrementAndGet();
+            try {
+                return free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new S3Exception("Interrupted while waiting for upload buffer");
+            }
+        }
+
+        void release(byte[] buffer) {
+            free.offer(buffer);
+        }
+
+        int available() {
+            return free.size() + maxBuffers - created.get();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import io.minio.GetObjectArgs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скачивание больших объектов из minio несколькими параллельными ranged GET запросами.
+ * Один поток TCP ограничивает скорость скачивания, поэтому объект делится на диапазоны размером
+ * {@link MinioConfiguration#getDownloadRangeSize()}, которые скачиваются одновременно и собираются по порядку.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class MinioRangeDownloader {
+
+    private final MinioShardRouter minioShardRouter;
+    private final MinioConfiguration minioConfiguration;
+    private final ThreadPoolExecutor executor;
+
+    public MinioRangeDownloader(MinioShardRouter minioShardRouter, MinioConfiguration minioConfiguration) {
+        this.minioShardRouter = minioShardRouter;
+        this.minioConfiguration = minioConfiguration;
+
+        int threads = minioConfiguration.getDownloadThreads();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * minioConfiguration.getDownloadConcurrency()),
+                new CustomizableThreadFactory("minio-download-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Проверяет, нужно ли скачивать часть объекта указанной длины параллельными диапазонами.
+     *
+     * @param length длина скачиваемой части объекта.
+     * @return Возвращает true, если параллельное скачивание включено и часть достаточно велика.
+     */
+    public boolean isParallel(long length) {
+        return minioConfiguration.getDownloadConcurrency() > 1
+                && length >= minioConfiguration.getDownloadParallelThreshold().toBytes();
+    }
+
+    /**
+     * Открывает поток чтения части объекта, скачиваемой параллельными диапазонами.
+     *
+     * @param objectName имя объекта.
+     * @param offset     смещение начала части.
+     * @param length     длина части.
+     * @return Возвращает поток с содержимым части объекта.
+     */
+    public InputStream open(String objectName, long offset, long length) {
+        MinioShard shard = minioShardRouter.route(objectName);
+        log.info("Downloading {} bytes of object {} with parallel ranges", length, objectName);
+        return new ParallelRangeInputStream(
+                (rangeOffset, rangeLength) -> fetchRange(shard, objectName, rangeOffset, rangeLength),
+                executor, offset, length,
+                (int) minioConfiguration.getDownloadRangeSize().toBytes(),
+                minioConfiguration.getDownloadConcurrency());
+    }
+
+    /**
+     * Останавливает пул потоков скачивания.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private byte[] fetchRange(MinioShard shard, String objectName, long offset, int length) throws Exception {
+        try (InputStream inputStream = shard.getClient().getObject(GetObjectArgs.builder()
+                .bucket(shard.getBucket())
+                .object(objectName)
+                .offset(offset)
+                .length((long) length)
+                .build())) {
+            byte[] data = new byte[length];
+            int read = ByteStreams.read(inputStream, data, 0, length);
+            if (read != length) {
+                throw new EOFException("Range at offset " + offset + " is shorter than " + length);
+            }
+            return data;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.client.MultipartMinioClient;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.PresignedUrlConfiguration;
+import edu.rumirnul.mediafilestorage.config.ShardingConfiguration;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.repository.ContentChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Выбор шарда хранилища для объекта.
+ * Новые объекты распределяются по шардам кольцом consistent hashing {@link ConsistentHashRing} по имени объекта.
+ * Шард файла, части содержимого и сегмента сохраняется в их метаданных, поэтому после добавления шардов
+ * объекты читаются из шарда, в который были записаны, без поиска по всем шардам.
+ * Шард файла передаётся вместе с его метаданными через {@link #place(String, String)}, шарды частей и сегментов
+ * читаются из БД по имени объекта. Расположение запоминается. Объекты, которых ещё нет в метаданных
+ * (загружаемые файлы, части и сегменты), ищутся на кольце.
+ * Если шарды не заданы, единственный шард - ведро из {@link MinioConfiguration}, и метаданные не читаются.
+ * Объекты, записанные до разделения на шарды, хранятся в шарде {@link #DEFAULT_SHARD} и не имеют шарда
+ * в метаданных: если в метаданных
+ * есть такие объекты, шард с этим именем должен быть задан, иначе приложение не запускается.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class MinioShardRouter {
+
+    /** Имя шарда из {@link MinioConfiguration}, если шарды не заданы. */
+    public static final String DEFAULT_SHARD = "default";
+
+    /** Отметка объекта, которого нет в метаданных. */
+    private static final String UNPLACED = "";
+
+    private final Map<String, MinioShard> shards = new LinkedHashMap<>();
+    private final ConsistentHashRing<MinioShard> ring;
+    private final FileDataRepository fileDataRepository;
+    private final ContentChunkRepository contentChunkRepository;
+    private final FileSegmentRepository fileSegmentRepository;
+    private final String chunkPrefix;
+    private final String segmentPrefix;
+    private final Cache<String, String> placements;
+
+    @Autowired
+    public MinioShardRouter(MinioClient minioClient,
+                            MultipartMinioClient multipartMinioClient,
+                            MinioConfiguration minioConfiguration,
+                            PresignedUrlConfiguration presignedUrlConfiguration,
+                            ShardingConfiguration shardingConfiguration,
+                            FileDataRepository fileDataRepository,
+                            ContentChunkRepository contentChunkRepository,
+                            FileSegmentRepository fileSegmentRepository,
+                            ChunkingConfiguration chunkingConfiguration,
+                            PackingConfiguration packingConfiguration) {
+        this(createShards(minioClient, multipartMinioClient, minioConfiguration, presignedUrlConfiguration,
+                        shardingConfiguration),
+                shardingConfiguration, fileDataRepository, contentChunkRepository, fileSegmentRepository,
+                chunkingConfiguration, packingConfiguration);
+    }
+
+    MinioShardRouter(List<MinioShard> shards, ShardingConfiguration shardingConfiguration,
+                     FileDataRepository fileDataRepository,
+                     ContentChunkRepository contentChunkRepository,
+                     FileSegmentRepository fileSegmentRepository,
+                     ChunkingConfiguration chunkingConfiguration,
+                     PackingConfiguration packingConfiguration) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one storage shard must be configured");
+        }
+        this.ring = new ConsistentHashRing<>(shardingConfiguration.getVirtualNodes());
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        shardingConfiguration.getShards().forEach(shard -> weights.put(shard.getName(), shard.getWeight()));
+        for (MinioShard shard : shards) {
+            if (this.shards.put(shard.getName(), shard) != null) {
+                throw new IllegalArgumentException("Duplicate storage shard name: " + shard.getName());
+            }
+            ring.add(shard.getName(), shard, weights.getOrDefault(shard.getName(), 1));
+        }
+        this.fileDataRepository = fileDataRepository;
+        this.contentChunkRepository = contentChunkRepository;
+        this.fileSegmentRepository = fileSegmentRepository;
+        this.chunkPrefix = chunkingConfiguration.getObjectPrefix();
+        this.segmentPrefix = packingConfiguration.getObjectPrefix();
+        this.placements = Caffeine.newBuilder()
+                .maximumSize(shardingConfiguration.getPlacementCacheSize())
+                .build();
+        log.info("Storage shards: {}", this.shards.values());
+    }
+
+    /**
+     * Проверяет, что объекты, записанные до разделения на шарды, доступны: шард {@link #DEFAULT_SHARD} задан,
+     * если в метаданных есть объекты в нём.
+     *
+     * @throws IllegalStateException в метаданных есть объекты в шарде по умолчанию, но он не задан.
+     */
+    @PostConstruct
+    void checkDefaultShard() {
+        if (shards.containsKey(DEFAULT_SHARD)) {
+            return;
+        }
+        if (fileDataRepository.existsByShardOrUnsharded(DEFAULT_SHARD)
+                || contentChunkRepository.existsByShardOrShardIsNull(DEFAULT_SHARD)
+                || fileSegmentRepository.existsByShardOrShardIsNull(DEFAULT_SHARD)) {
+            throw new IllegalStateException("Objects stored before sharding are in shard '" + DEFAULT_SHARD
+                    + "', configure a storage shard with this name and the bucket of app.minio");
+        }
+    }
+
+    /**
+     * Шард, в котором хранится или будет храниться объект: шард из метаданных файла, части содержимого
+     * или сегмента, а если объекта в метаданных нет - шард кольца.
+     *
+     * @param objectName имя объекта.
+     * @return Возвращает шард.
+     * @throws S3Exception объект хранится в шарде, которого нет в конфигурации.
+     */
+    public MinioShard route(String objectName) {
+        if (shards.size() == 1) {
+            return shards.values().iterator().next();
+        }
+        String placement = placements.get(objectName, this::findPlacement);
+        if (UNPLACED.equals(placement)) {
+            return ring.get(objectName);
+        }
+        MinioShard shard = shards.get(placement);
+        if (shard == null) {
+            throw new S3Exception("Object " + objectName + " is stored in unknown storage shard " + placement);
+        }
+        return shard;
+    }
+
+    /**
+     * Запоминает шард объекта содержимого файла из метаданных файла.
+     *
+     * @param objectName имя объекта.
+     * @param shard      имя шарда из метаданных или null, если файл сохранён до разделения на шарды.
+     */
+    public void place(String objectName, String shard) {
+        if (shards.size() > 1) {
+            placements.put(objectName, shard != null ? shard : DEFAULT_SHARD);
+        }
+    }
+
+    /**
+     * Запоминает шард, в котором найден объект, например при листинге хранилища.
+     * Запоминается только расположение, отличающееся от кольца, чтобы не вытеснять расположения файлов.
+     *
+     * @param objectName имя объекта.
+     * @param shard      шард, в котором хранится объект.
+     */
+    public void remember(String objectName, MinioShard shard) {
+        if (shards.size() > 1 && ring.get(objectName) != shard) {
+            placements.put(objectName, shard.getName());
+        }
+    }
+
+    /**
+     * Все шарды хранилища в порядке конфигурации.
+     *
+     * @return Возвращает шарды.
+     */
+    public Collection<MinioShard> getShards() {
+        return Collections.unmodifiableCollection(shards.values());
+    }
+
+    private String findPlacement(String objectName) {
+        Optional<String> placement;
+        if (objectName.startsWith(chunkPrefix)) {
+            placement = contentChunkRepository.findShardByHash(objectName.substring(chunkPrefix.length()));
+        } else if (objectName.startsWith(segmentPrefix)) {
+            placement = fileSegmentRepository.findShardByName(objectName);
+        } else {
+            // Шард файла при чтении передаётся из метаданных, запрос нужен для объектов, удаляемых по имени
+            placement = fileDataRepository.findShardByStorageName(objectName);
+        }
+        return placement.orElse(UNPLACED);
+    }
+
+    private static List<MinioShard> createShards(MinioClient minioClient,
+                                                 MultipartMinioClient multipartMinioClient,
+                                                 MinioConfiguration minioConfiguration,
+                                                 PresignedUrlConfiguration presignedUrlConfiguration,
+                                                 ShardingConfiguration shardingConfiguration) {
+        if (shardingConfiguration.getShards().isEmpty()) {
+            return Collections.singletonList(new MinioShard(DEFAULT_SHARD, minioConfiguration.getBucket(),
+                    minioClient, multipartMinioClient,
+                    presignClient(StringUtils.defaultIfBlank(presignedUrlConfiguration.getPublicUrl(),
+                                    minioConfiguration.getUrl()),
+                            minioConfiguration.getAccessKey(), minioConfiguration.getSecretKey(),
+                            presignedUrlConfiguration.getRegion())));
+        }
+
+        List<MinioShard> result = new ArrayList<>(shardingConfiguration.getShards().size());
+        for (ShardingConfiguration.Shard shard : shardingConfiguration.getShards()) {
+            if (StringUtils.isAnyBlank(shard.getName(), shard.getBucket())) {
+                throw new IllegalArgumentException("Storage shard must have a name and a bucket");
+            }
+            String url = StringUtils.defaultIfBlank(shard.getUrl(), minioConfiguration.getUrl());
+            String accessKey = StringUtils.defaultIfBlank(shard.getAccessKey(), minioConfiguration.getAccessKey());
+            String secretKey = StringUtils.defaultIfBlank(shard.getSecretKey(), minioConfiguration.getSecretKey());
+            result.add(new MinioShard(shard.getName(), shard.getBucket(),
+                    MinioClient.builder()
+                            .credentials(accessKey, secretKey)
+                            .endpoint(url)
+                            .build(),
+                    new MultipartMinioClient(MinioAsyncClient.builder()
+                            .credentials(accessKey, secretKey)
+                            .endpoint(url)
+                            .build()),
+                    presignClient(StringUtils.defaultIfBlank(shard.getPublicUrl(), url), accessKey, secretKey,
+                            presignedUrlConfiguration.getRegion())));
+        }
+        return result;
+    }
+
+    private static MinioClient presignClient(String url, String accessKey, String secretKey, String region) {
+        return MinioClient.builder()
+                .credentials(accessKey, secretKey)
+                .endpoint(url)
+                .region(region)
+                .build();
+    }
+}
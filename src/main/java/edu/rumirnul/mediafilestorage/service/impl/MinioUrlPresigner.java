@@ -0,0 +1,78 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.config.PresignedUrlConfiguration;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.http.Method;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подпись ссылок, по которым клиенты загружают и скачивают объекты напрямую из minio.
+ * Хост входит в подпись, поэтому ссылки подписываются отдельным клиентом с URL хранилища, доступным клиентам
+ * {@link PresignedUrlConfiguration#getPublicUrl()}, у каждого шарда хранилища свой клиент {@link MinioShard}.
+ * Регион задан явно, поэтому подпись вычисляется локально и не требует запросов к хранилищу.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MinioUrlPresigner {
+
+    private final MinioShardRouter minioShardRouter;
+
+    /**
+     * Подписывает ссылку на загрузку объекта запросом PUT.
+     *
+     * @param objectName имя объекта.
+     * @param expiry     время действия ссылки.
+     * @return Возвращает подписанную ссылку.
+     * @throws S3Exception не удалось подписать ссылку.
+     */
+    public String presignUpload(String objectName, Duration expiry) {
+        MinioShard shard = minioShardRouter.route(objectName);
+        return presign(shard, GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket(shard.getBucket())
+                .object(objectName)
+                .expiry((int) expiry.getSeconds(), TimeUnit.SECONDS)
+                .build());
+    }
+
+    /**
+     * Подписывает ссылку на скачивание объекта запросом GET.
+     *
+     * @param objectName      имя объекта.
+     * @param expiry          время действия ссылки.
+     * @param responseHeaders заголовки ответа хранилища, заменяемые по ссылке, например response-content-type.
+     * @return Возвращает подписанную ссылку.
+     * @throws S3Exception не удалось подписать ссылку.
+     */
+    public String presignDownload(String objectName, Duration expiry, Map<String, String> responseHeaders) {
+        MinioShard shard = minioShardRouter.route(objectName);
+        return presign(shard, GetPresignedObjectUrlArgs.builder()
+                .method(Method.GET)
+                .bucket(shard.getBucket())
+                .object(objectName)
+                .expiry((int) expiry.getSeconds(), TimeUnit.SECONDS)
+                .extraQueryParams(responseHeaders)
+                .build());
+    }
+
+    private String presign(MinioShard shard, GetPresignedObjectUrlArgs args) {
+        try {
+            return shard.getPresignClient().getPresignedObjectUrl(args);
+        } catch (Exception e) {
+            log.error("Failed to presign {} url of object {}", args.method(), args.object(), e);
+            throw new S3Exception("Failed to presign url in s3(minio)");
+        }
+    }
+}
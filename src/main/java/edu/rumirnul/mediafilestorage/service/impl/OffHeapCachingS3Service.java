@@ -0,0 +1,284 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.MemoryCacheConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.StoredObjectDto;
+import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import edu.rumirnul.mediafilestorage.service.impl.OffHeapSlabStore.Segment;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кэш небольших файлов в памяти вне heap перед хранилищем файлов.
+ * Файлы не больше {@link MemoryCacheConfiguration#getMaxObjectSize()} хранятся в {@link OffHeapSlabStore}
+ * вместе со сведениями о них, поэтому повторные запросы не обращаются к хранилищу.
+ * Файл попадает в кэш только при повторном запросе, чтобы однократно запрошенные файлы не вытесняли популярные.
+ * Остальные операции передаются хранилищу без изменений.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@Primary
+@Slf4j
+public class OffHeapCachingS3Service implements S3Service {
+
+    private static final String CACHE_NAME = "object-memory-cache";
+
+    private final S3Service s3Service;
+    private final MemoryCacheConfiguration memoryCacheConfiguration;
+    private final OffHeapSlabStore slabStore;
+    private final Cache<String, CachedObject> cache;
+    private final Cache<String, Boolean> admissionCandidates;
+
+    public OffHeapCachingS3Service(@Qualifier("singleFlightS3Service") S3Service s3Service,
+                                   MemoryCacheConfiguration memoryCacheConfiguration,
+                                   MeterRegistry meterRegistry) {
+        this.s3Service = s3Service;
+        this.memoryCacheConfiguration = memoryCacheConfiguration;
+
+        long capacity = memoryCacheConfiguration.isEnabled() ? memoryCacheConfiguration.getMaxSize().toBytes() : 0;
+        this.slabStore = new OffHeapSlabStore(capacity, (int) memoryCacheConfiguration.getPageSize().toBytes());
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(slabStore.getTotalPages())
+                .weigher((String fileName, CachedObject cachedObject) -> cachedObject.getSegment().getPageCount())
+                .removalListener((String fileName, CachedObject cachedObject, RemovalCause cause) -> {
+                    if (cachedObject != null) {
+                        cachedObject.getSegment().release();
+                    }
+                })
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        this.admissionCandidates = Caffeine.newBuilder()
+                .maximumSize(memoryCacheConfiguration.getAdmissionCandidates())
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("cache.memory.used", slabStore, OffHeapSlabStore::getUsedBytes)
+                .tag("cache", CACHE_NAME)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long putFile(FileDto fileDto) {
+        return s3Service.putFile(fileDto);
+    }
+
+    /**
+     * Получение файла по имени из кэша или из хранилища.
+     *
+     * @param fileName имя файла.
+     * @return Возвращает содержимое файла.
+     * @throws FileNotFoundException файла нет в хранилище.
+     */
+    @Override
+    public InputStream getFileByName(String fileName) {
+        InputStream cached = openCached(fileName, 0, Long.MAX_VALUE);
+        if (cached != null) {
+            return cached;
+        }
+        CachedObject loaded = loadIfAdmitted(fileName);
+        if (loaded != null) {
+            InputStream inputStream = loaded.getSegment().open(0, loaded.getSegment().getLength());
+            if (inputStream != null) {
+                return inputStream;
+            }
+        }
+        return s3Service.getFileByName(fileName);
+    }
+
+    /**
+     * Получение части файла по имени из кэша или из хранилища.
+     *
+     * @param fileName имя файла.
+     * @param offset   смещение начала части.
+     * @param length   длина части.
+     * @return Возвращает содержимое части файла.
+     * @throws FileNotFoundException файла нет в хранилище.
+     */
+    @Override
+    public InputStream getFileByName(String fileName, long offset, long length) {
+        InputStream cached = openCached(fileName, offset, length);
+        if (cached != null) {
+            return cached;
+        }
+        CachedObject loaded = loadIfAdmitted(fileName);
+        if (loaded != null) {
+            InputStream inputStream = loaded.getSegment().open(offset, length);
+            if (inputStream != null) {
+                return inputStream;
+            }
+        }
+        return s3Service.getFileByName(fileName, offset, length);
+    }
+
+    /**
+     * Получение сведений о файле из кэша или из хранилища.
+     *
+     * @param fileName имя файла.
+     * @return Возвращает сведения о файле.
+     */
+    @Override
+    public FileStatDto statFile(String fileName) {
+        if (memoryCacheConfiguration.isEnabled()) {
+            CachedObject cachedObject = cache.getIfPresent(fileName);
+            if (cachedObject != null) {
+                return cachedObject.getStat();
+            }
+        }
+        return s3Service.statFile(fileName);
+    }
+
+    /**
+     * Удаление файла из хранилища и из кэша.
+     *
+     * @param fileName имя файла.
+     */
+    @Override
+    public void deleteFileByName(String fileName) {
+        s3Service.deleteFileByName(fileName);
+        cache.invalidate(fileName);
+        admissionCandidates.invalidate(fileName);
+    }
+
+    /**
+     * Удаление пачки файлов из хранилища и из кэша.
+     *
+     * @param fileNames имена файлов.
+     * @return Возвращает ошибки удаления по имени файла.
+     */
+    @Override
+    public Map<String, String> deleteFiles(Collection<String> fileNames) {
+        Map<String, String> errors = s3Service.deleteFiles(fileNames);
+        cache.invalidateAll(fileNames);
+        admissionCandidates.invalidateAll(fileNames);
+        return errors;
+    }
+
+    @Override
+    public List<StoredObjectDto> listFiles(String startAfter, int limit) {
+        return s3Service.listFiles(startAfter, limit);
+    }
+
+    @Override
+    public String createMultipartUpload(String fileName) {
+        return s3Service.createMultipartUpload(fileName);
+    }
+
+    @Override
+    public String uploadPart(String fileName, String uploadId, int partNumber, InputStream inputStream, int length) {
+        return s3Service.uploadPart(fileName, uploadId, partNumber, inputStream, length);
+    }
+
+    @Override
+    public void completeMultipartUpload(String fileName, String uploadId, List<String> etags) {
+        s3Service.completeMultipartUpload(fileName, uploadId, etags);
+    }
+
+    @Override
+    public void abortMultipartUpload(String fileName, String uploadId) {
+        s3Service.abortMultipartUpload(fileName, uploadId);
+    }
+
+    @Override
+    public String getPresignedUploadUrl(String fileName, Duration expiry) {
+        return s3Service.getPresignedUploadUrl(fileName, expiry);
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String fileName, Duration expiry, Map<String, String> responseHeaders) {
+        return s3Service.getPresignedDownloadUrl(fileName, expiry, responseHeaders);
+    }
+
+    private InputStream openCached(String fileName, long offset, long length) {
+        if (!memoryCacheConfiguration.isEnabled()) {
+            return null;
+        }
+        CachedObject cachedObject = cache.getIfPresent(fileName);
+        return cachedObject != null ? cachedObject.getSegment().open(offset, length) : null;
+    }
+
+    /**
+     * Загружает небольшой файл из хранилища в кэш, если он запрашивается повторно.
+     * Первый запрос только запоминает имя файла. Файлы, оказавшиеся слишком большими,
+     * запоминаются как недопустимые, чтобы не запрашивать их размер повторно.
+     *
+     * @param fileName имя файла.
+     * @return Возвращает закэшированный файл или null, если файл не допущен в кэш.
+     */
+    private CachedObject loadIfAdmitted(String fileName) {
+        if (!memoryCacheConfiguration.isEnabled()) {
+            return null;
+        }
+        Boolean admissible = admissionCandidates.getIfPresent(fileName);
+        if (admissible == null) {
+            admissionCandidates.put(fileName, Boolean.TRUE);
+            return null;
+        }
+        if (!admissible) {
+            return null;
+        }
+
+        FileStatDto stat = s3Service.statFile(fileName);
+        if (stat.getSize() > memoryCacheConfiguration.getMaxObjectSize().toBytes()) {
+            admissionCandidates.put(fileName, Boolean.FALSE);
+            return null;
+        }
+        admissionCandidates.invalidate(fileName);
+
+        byte[] data;
+        try (InputStream inputStream = s3Service.getFileByName(fileName, 0, stat.getSize())) {
+            data = ByteStreams.toByteArray(inputStream);
+        } catch (IOException e) {
+            throw new FileNotFoundException("File " + fileName + " not found");
+        }
+        if (data.length != stat.getSize()) {
+            log.error("File {} has {} bytes instead of {}, it is not cached", fileName, data.length, stat.getSize());
+            return null;
+        }
+
+        Segment segment = slabStore.store(data, data.length);
+        if (segment == null) {
+            log.info("No free memory to cache file {}", fileName);
+            return null;
+        }
+        CachedObject cachedObject = new CachedObject(segment, stat);
+        cache.put(fileName, cachedObject);
+        log.info("File {} was cached in memory, size: {}", fileName, stat.getSize());
+        return cachedObject;
+    }
+
+    /**
+     * Закэшированный в памяти файл.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class CachedObject {
+        /** Содержимое файла. */
+        private final Segment segment;
+        /** Сведения о файле в хранилище на момент кэширования. */
+        private final FileStatDto stat;
+    }
+}
@@ -0,0 +1,236 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Хранилище байтов в памяти вне heap.
+ * Память выделяется один раз крупными direct буферами (slab) и делится на страницы фиксированного размера.
+ * Содержимое занимает целое число страниц, освобождённые страницы переиспользуются, поэтому
+ * кэшированные данные не создают нагрузку на сборщик мусора.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public class OffHeapSlabStore {
+
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+
+    private final int pageSize;
+    private final int pagesPerSlab;
+    private final ByteBuffer[] slabs;
+    private final int[] freePages;
+    private int freeCount;
+
+    /**
+     * @param capacity объём памяти в байтах.
+     * @param pageSize размер страницы в байтах.
+     */
+    public OffHeapSlabStore(long capacity, int pageSize) {
+        this.pageSize = pageSize;
+        this.pagesPerSlab = MAX_SLAB_SIZE / pageSize;
+
+        int totalPages = (int) Math.min(Integer.MAX_VALUE, capacity / pageSize);
+        int slabCount = (totalPages + pagesPerSlab - 1) / pagesPerSlab;
+        this.slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            int pages = Math.min(pagesPerSlab, totalPages - i * pagesPerSlab);
+            slabs[i] = ByteBuffer.allocateDirect(pages * pageSize);
+        }
+
+        this.freePages = new int[totalPages];
+        for (int i = 0; i < totalPages; i++) {
+            freePages[i] = totalPages - 1 - i;
+        }
+        this.freeCount = totalPages;
+    }
+
+    /**
+     * Количество страниц, которое займёт содержимое указанной длины.
+     *
+     * @param length длина содержимого.
+     * @return Возвращает количество страниц.
+     */
+    public int pagesFor(int length) {
+        return Math.max(1, (length + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * Общее количество страниц.
+     *
+     * @return Возвращает общее количество страниц.
+     */
+    public int getTotalPages() {
+        return freePages.length;
+    }
+
+    /**
+     * Количество занятых байтов с учётом округления до страниц.
+     *
+     * @return Возвращает количество занятых байтов.
+     */
+    public synchronized long getUsedBytes() {
+        return (long) (freePages.length - freeCount) * pageSize;
+    }
+
+    /**
+     * Копирует содержимое в память вне heap.
+     *
+     * @param data   содержимое.
+     * @param length длина содержимого.
+     * @return Возвращает сегмент с содержимым или null, если свободных страниц недостаточно.
+     */
+    public Segment store(byte[] data, int length) {
+        int[] pages = allocate(pagesFor(length));
+        if (pages == null) {
+            return null;
+        }
+        int written = 0;
+        for (int page : pages) {
+            int count = Math.min(pageSize, length - written);
+            if (count <= 0) {
+                break;
+            }
+            ByteBuffer buffer = pageBuffer(page);
+            buffer.put(data, written, count);
+            written += count;
+        }
+        return new Segment(pages, length);
+    }
+
+    private synchronized int[] allocate(int count) {
+        if (count > freeCount) {
+            return null;
+        }
+        int[] pages = new int[count];
+        for (int i = 0; i < count; i++) {
+            pages[i] = freePages[--freeCount];
+        }
+        return pages;
+    }
+
+    private synchronized void free(int[] pages) {
+        for (int page : pages) {
+            freePages[freeCount++] = page;
+        }
+    }
+
+    /**
+     * Возвращает независимый буфер, позиционированный на начало страницы.
+     */
+    private ByteBuffer pageBuffer(int page) {
+        ByteBuffer buffer = slabs[page / pagesPerSlab].duplicate();
+        buffer.position((page % pagesPerSlab) * pageSize);
+        return buffer;
+    }
+
+    /**
+     * Содержимое, размещённое в страницах памяти.
+     * Страницы освобождаются, когда сегмент удалён из кэша и закрыты все открытые на него потоки.
+     */
+    public class Segment {
+
+        private final int[] pages;
+        private final int length;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Segment(int[] pages, int length) {
+            this.pages = pages;
+            this.length = length;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public int getPageCount() {
+            return pages.length;
+        }
+
+        /**
+         * Открывает поток чтения части содержимого. Пока поток не закрыт, страницы сегмента не освобождаются.
+         *
+         * @param offset смещение начала части.
+         * @param count  длина части.
+         * @return Возвращает поток или null, если сегмент уже освобождён.
+         */
+        public InputStream open(long offset, long count) {
+            if (!retain()) {
+                return null;
+            }
+            return new SegmentInputStream(this, (int) offset, (int) Math.min(count, length - offset));
+        }
+
+        /**
+         * Освобождает ссылку на сегмент. Страницы возвращаются в хранилище после освобождения последней ссылки.
+         */
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                free(pages);
+            }
+        }
+
+        private boolean retain() {
+            while (true) {
+                int current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Поток чтения части сегмента напрямую из страниц памяти.
+     */
+    private class SegmentInputStream extends InputStream {
+
+        private final Segment segment;
+        private final int end;
+        private int position;
+        private boolean closed;
+
+        SegmentInputStream(Segment segment, int offset, int count) {
+            this.segment = segment;
+            this.position = offset;
+            this.end = offset + Math.max(0, count);
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= end) {
+                return -1;
+            }
+            int inPage = position % pageSize;
+            int count = Math.min(len, Math.min(pageSize - inPage, end - position));
+            ByteBuffer buffer = pageBuffer(segment.pages[position / pageSize]);
+            buffer.position(buffer.position() + inPage);
+            buffer.get(b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return end - position;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                segment.release();
+            }
+        }
+    }
+}
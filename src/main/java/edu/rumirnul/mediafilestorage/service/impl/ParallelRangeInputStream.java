@@ -0,0 +1,156 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Поток, собирающий содержимое объекта из диапазонов, которые скачиваются параллельно.
+ * <p>
+ * Одновременно скачивается не больше {@code window} диапазонов, следующие за читаемым.
+ * Диапазоны возвращаются читателю строго по порядку: скачанный раньше времени диапазон ждёт в очереди,
+ * поэтому память потока ограничена {@code (window + 1) * rangeSize} байт.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public class ParallelRangeInputStream extends InputStream {
+
+    /**
+     * Функция скачивания одного диапазона объекта.
+     */
+    @FunctionalInterface
+    public interface RangeFetcher {
+        byte[] fetch(long offset, int length) throws Exception;
+    }
+
+    private final RangeFetcher fetcher;
+    private final ExecutorService executor;
+    private final long end;
+    private final int rangeSize;
+    private final int window;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private long nextOffset;
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean closed;
+
+    /**
+     * @param fetcher   функция скачивания диапазона.
+     * @param executor  пул потоков для скачивания диапазонов.
+     * @param offset    смещение начала читаемой части объекта.
+     * @param length    длина читаемой части объекта.
+     * @param rangeSize размер одного диапазона.
+     * @param window    количество диапазонов, скачиваемых одновременно.
+     */
+    public ParallelRangeInputStream(RangeFetcher fetcher, ExecutorService executor,
+                                    long offset, long length, int rangeSize, int window) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.nextOffset = offset;
+        this.end = offset + length;
+        this.rangeSize = rangeSize;
+        this.window = window;
+        schedule();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending.forEach(future -> future.cancel(true));
+        pending.clear();
+        current = new byte[0];
+    }
+
+    /**
+     * Переходит к следующему диапазону, если текущий прочитан.
+     *
+     * @return Возвращает false, если объект прочитан полностью.
+     */
+    private boolean ensureData() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (position == current.length) {
+            Future<byte[]> next = pending.poll();
+            if (next == null) {
+                return false;
+            }
+            current = await(next);
+            position = 0;
+            schedule();
+        }
+        return true;
+    }
+
+    private byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Interrupted while waiting for file range");
+        } catch (ExecutionException e) {
+            close();
+            throw new IOException("Failed to download file range", e.getCause());
+        }
+    }
+
+    /**
+     * Запускает скачивание следующих диапазонов, пока очередь не заполнена.
+     */
+    private void schedule() {
+        while (pending.size() < window && nextOffset < end) {
+            final long offset = nextOffset;
+            final int length = (int) Math.min(rangeSize, end - offset);
+            Callable<byte[]> task = () -> {
+                byte[] data = fetcher.fetch(offset, length);
+                if (data.length != length) {
+                    throw new S3Exception("Unexpected range length " + data.length + " at offset " + offset);
+                }
+                return data;
+            };
+            pending.add(executor.submit(task));
+            nextOffset += length;
+        }
+    }
+}
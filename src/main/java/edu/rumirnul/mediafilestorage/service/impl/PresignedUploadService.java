@@ -0,0 +1,158 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.PresignedUrlConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.PresignedUploadDto;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.exception.UploadSessionStateException;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Класс сервис работающий с файлами, содержимое которых клиент загружает напрямую в хранилище по подписанной ссылке.
+ * Файл регистрируется в состоянии {@link FileStatus#AWAITING_UPLOAD}, а после загрузки содержимого переводится
+ * в {@link FileStatus#STORED} по подтверждению клиента или по уведомлению хранилища о создании объекта.
+ * Строка файла блокируется на время проверки, поэтому подтверждение, уведомление и проверка незавершённых загрузок
+ * могут приходить одновременно и в любом порядке.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PresignedUploadService {
+
+    private final FileDataRepository fileDataRepository;
+    private final FileDataService fileDataService;
+    private final S3Service s3Service;
+    private final PresignedUrlConfiguration presignedUrlConfiguration;
+
+    /**
+     * Регистрация файла и подпись ссылки на загрузку его содержимого.
+     *
+     * @param fileData метаданные файла без состояния. Размер заполняется, если клиент его указал.
+     * @return Возвращает идентификатор файла и подписанную ссылку.
+     * @throws S3Exception не удалось подписать ссылку.
+     */
+    @Transactional
+    public PresignedUploadDto register(FileData fileData) {
+        Instant now = Instant.now();
+        fileData.setStatus(FileStatus.AWAITING_UPLOAD);
+        fileData.setCreatedAt(now);
+        String uploadUrl = s3Service.getPresignedUploadUrl(fileData.getFileName(),
+                presignedUrlConfiguration.getUploadUrlTtl());
+        FileData savedFileData = fileDataService.save(fileData);
+        log.info("Registered file for direct upload: {}", savedFileData);
+
+        return PresignedUploadDto.builder()
+                .fileId(savedFileData.getId())
+                .uploadUrl(uploadUrl)
+                .expiresAt(now.plus(presignedUrlConfiguration.getUploadUrlTtl()))
+                .build();
+    }
+
+    /**
+     * Завершение загрузки по подтверждению клиента. Повторное подтверждение возвращает сохранённый файл.
+     *
+     * @param fileId уникальный идентификатор файла.
+     * @return Возвращает метаданные файла. Если размер загруженного содержимого не совпал с заявленным,
+     * содержимое удаляется, а файл переводится в {@link FileStatus#FAILED}.
+     * @throws FileNotFoundException       файла нет в БД.
+     * @throws UploadSessionStateException содержимое ещё не загружено или загрузка уже завершилась ошибкой.
+     */
+    @Transactional
+    public FileData complete(Long fileId) {
+        FileData fileData = fileDataRepository.findWithLockById(fileId)
+                .orElseThrow(() -> new FileNotFoundException("File with id " + fileId + " not found"));
+        if (fileData.getStatus() == FileStatus.STORED) {
+            return fileData;
+        }
+        if (fileData.getStatus() != FileStatus.AWAITING_UPLOAD) {
+            throw new UploadSessionStateException("Upload of file " + fileId + " is " + fileData.getStatus());
+        }
+        if (!finish(fileData)) {
+            throw new UploadSessionStateException("Content of file " + fileId + " was not uploaded yet");
+        }
+        return fileData;
+    }
+
+    /**
+     * Завершение загрузки по уведомлению хранилища о создании объекта.
+     * Объекты, которые не являются содержимым ожидаемых файлов, пропускаются.
+     *
+     * @param fileName имя объекта в хранилище.
+     * @return Возвращает true, если загрузка файла завершена.
+     */
+    @Transactional
+    public boolean completeByName(String fileName) {
+        FileData found = fileDataRepository.findFileDataByFileName(fileName);
+        if (found == null || found.getStatus() != FileStatus.AWAITING_UPLOAD) {
+            return false;
+        }
+        FileData fileData = fileDataRepository.findWithLockById(found.getId()).orElse(null);
+        return fileData != null && fileData.getStatus() == FileStatus.AWAITING_UPLOAD && finish(fileData);
+    }
+
+    /**
+     * Проверка пачки загрузок, не завершённых за время действия ссылки и {@link PresignedUrlConfiguration#getUploadGracePeriod()}.
+     * Загрузки, содержимое которых есть в хранилище, завершаются, остальные файлы удаляются.
+     * Строки, заблокированные другими транзакциями, пропускаются.
+     *
+     * @return Возвращает количество проверенных файлов.
+     */
+    @Transactional
+    public int deleteExpired() {
+        Instant createdBefore = Instant.now()
+                .minus(presignedUrlConfiguration.getUploadUrlTtl())
+                .minus(presignedUrlConfiguration.getUploadGracePeriod());
+        List<FileData> expired = fileDataRepository.findByStatusAndCreatedAtBefore(FileStatus.AWAITING_UPLOAD,
+                createdBefore, PageRequest.of(0, presignedUrlConfiguration.getGcBatchSize()));
+        for (FileData fileData : expired) {
+            if (!finish(fileData)) {
+                fileDataService.delete(fileData);
+                log.info("Direct upload of file {} was not completed, file was deleted", fileData.getId());
+            }
+        }
+        return expired.size();
+    }
+
+    /**
+     * Переводит файл в {@link FileStatus#STORED}, если его содержимое есть в хранилище.
+     * Размер берётся из хранилища и сверяется с заявленным клиентом размером.
+     *
+     * @param fileData заблокированная сущность файла в состоянии {@link FileStatus#AWAITING_UPLOAD}.
+     * @return Возвращает false, если содержимого ещё нет в хранилище.
+     */
+    private boolean finish(FileData fileData) {
+        FileStatDto stat;
+        try {
+            stat = s3Service.statFile(fileData.getFileName());
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        if (fileData.getSize() != null && fileData.getSize() != stat.getSize()) {
+            log.warn("File {} was uploaded with size {} instead of {}, content is deleted",
+                    fileData.getId(), stat.getSize(), fileData.getSize());
+            s3Service.deleteFileByName(fileData.getFileName());
+            fileData.setStatus(FileStatus.FAILED);
+        } else {
+            fileData.setSize(stat.getSize());
+            fileData.setStatus(FileStatus.STORED);
+        }
+        fileDataService.save(fileData);
+        log.info("Direct upload of file {} finished with status {}", fileData.getId(), fileData.getStatus());
+        return true;
+    }
+}
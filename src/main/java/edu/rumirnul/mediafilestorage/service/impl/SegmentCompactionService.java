@@ -0,0 +1,167 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.entity.FileBlob;
+import edu.rumirnul.mediafilestorage.entity.FileSegment;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.repository.FileBlobRepository;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Класс сервис уплотнения сегментов с упакованными маленькими файлами.
+ * Живое содержимое сегментов, большая часть которых удалена, переписывается в один новый сегмент,
+ * а старые сегменты помечаются переписанными. Соседние живые файлы сегмента читаются одним диапазоном.
+ * Строки объектов переписываемых сегментов заблокированы до конца транзакции, поэтому их файлы
+ * не удаляются одновременно с переносом. Переписанные сегменты удаляются из хранилища после
+ * {@link PackingConfiguration#getGcGracePeriod()}, чтобы чтения по старому расположению успели завершиться.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentCompactionService {
+
+    private final FileSegmentRepository fileSegmentRepository;
+    private final FileBlobRepository fileBlobRepository;
+    private final FileDataService fileDataService;
+    private final S3Service s3Service;
+    private final PackingConfiguration packingConfiguration;
+    private final MinioShardRouter minioShardRouter;
+
+    /**
+     * Переписывает живое содержимое не больше {@link PackingConfiguration#getCompactionMaxSegments()} сегментов,
+     * доля живого содержимого которых не больше {@link PackingConfiguration#getCompactionLiveRatio()},
+     * в один новый сегмент. Сегменты, заблокированные другими транзакциями, пропускаются.
+     *
+     * @return Возвращает количество переписанных сегментов.
+     * @throws S3Exception не удалось прочитать старые сегменты или записать новый.
+     */
+    @Transactional
+    public int compact() {
+        List<FileSegment> segments = fileSegmentRepository.findCompactable(packingConfiguration.getCompactionLiveRatio(),
+                PageRequest.of(0, packingConfiguration.getCompactionMaxSegments()));
+        if (segments.isEmpty()) {
+            return 0;
+        }
+
+        long maxSegmentSize = packingConfiguration.getMaxSegmentSize().toBytes();
+        Instant now = Instant.now();
+        List<FileBlob> moved = new ArrayList<>();
+        List<LiveRange> ranges = new ArrayList<>();
+        long size = 0;
+        int retired = 0;
+        for (FileSegment segment : segments) {
+            List<FileBlob> blobs = new ArrayList<>(fileBlobRepository.findBySegmentNameOrderByObjectNameAsc(segment.getName()));
+            long liveSize = blobs.stream().mapToLong(FileBlob::getSize).sum();
+            if (size > 0 && size + liveSize > maxSegmentSize) {
+                break;
+            }
+            blobs.sort(Comparator.comparing(FileBlob::getSegmentOffset));
+            for (FileBlob blob : blobs) {
+                LiveRange last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+                if (last != null && last.getSegmentName().equals(segment.getName())
+                        && last.getOffset() + last.getLength() == blob.getSegmentOffset()) {
+                    last.setLength(last.getLength() + blob.getSize());
+                } else {
+                    ranges.add(new LiveRange(segment.getName(), blob.getSegmentOffset(), blob.getSize()));
+                }
+            }
+            moved.addAll(blobs);
+            size += liveSize;
+            segment.setRetiredAt(now);
+            retired++;
+        }
+        if (moved.isEmpty()) {
+            log.info("Retired {} segments without live content", retired);
+            return retired;
+        }
+
+        String segmentName = packingConfiguration.getObjectPrefix() + UUID.randomUUID();
+        try (InputStream inputStream = SegmentPacker.concat(ranges,
+                range -> s3Service.getFileByName(range.getSegmentName(), range.getOffset(), range.getLength()))) {
+            s3Service.putFile(FileDto.builder()
+                    .name(segmentName)
+                    .inputStream(inputStream)
+                    .size(size)
+                    .build());
+        } catch (IOException e) {
+            throw new S3Exception("Failed to rewrite segments in s3(minio)");
+        }
+
+        long offset = 0;
+        for (FileBlob blob : moved) {
+            blob.setSegmentName(segmentName);
+            blob.setSegmentOffset(offset);
+            fileDataService.updateSegmentByStorageName(blob.getObjectName(), segmentName, offset);
+            offset += blob.getSize();
+        }
+        fileSegmentRepository.save(FileSegment.builder()
+                .name(segmentName)
+                .size(size)
+                .shard(minioShardRouter.route(segmentName).getName())
+                .createdAt(now)
+                .build());
+        log.info("Rewrote live content of {} segments into segment {}: {} objects, {} bytes",
+                retired, segmentName, moved.size(), size);
+        return retired;
+    }
+
+    /**
+     * Удаление из хранилища пачки сегментов, переписанных раньше {@link PackingConfiguration#getGcGracePeriod()}.
+     * Строки, заблокированные другими транзакциями, пропускаются. Если удалить сегменты из хранилища не удалось,
+     * транзакция откатывается и сегменты удаляются при следующем запуске.
+     *
+     * @return Возвращает количество удалённых сегментов.
+     * @throws S3Exception не удалось удалить сегменты из хранилища.
+     */
+    @Transactional
+    public int deleteRetired() {
+        Instant retiredBefore = Instant.now().minus(packingConfiguration.getGcGracePeriod());
+        List<FileSegment> segments = fileSegmentRepository.findByRetiredAtBefore(retiredBefore,
+                PageRequest.of(0, packingConfiguration.getGcBatchSize()));
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Map<String, String> errors = s3Service.deleteFiles(
+                segments.stream().map(FileSegment::getName).collect(Collectors.toList()));
+        if (!errors.isEmpty()) {
+            throw new S3Exception("Failed to delete " + errors.size() + " segments from s3(minio)");
+        }
+        fileSegmentRepository.deleteAllInBatch(segments);
+        return segments.size();
+    }
+
+    /**
+     * Непрерывный диапазон живого содержимого сегмента.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class LiveRange {
+        private final String segmentName;
+        private final long offset;
+        @Setter
+        private long length;
+    }
+}
@@ -0,0 +1,166 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.entity.UploadOutbox;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Упаковка маленьких файлов из outbox в общие объекты-сегменты.
+ * Подготовленное содержимое файлов записывается в хранилище подряд одним объектом, а в метаданных
+ * сохраняется смещение каждого файла в сегменте, поэтому на много маленьких файлов приходится один запрос
+ * записи и один объект хранилища. Читаются упакованные файлы диапазоном из сегмента.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentPacker {
+
+    private final UploadOutboxService uploadOutboxService;
+    private final S3Service s3Service;
+    private final PackingConfiguration packingConfiguration;
+
+    /**
+     * Включена ли упаковка маленьких файлов.
+     *
+     * @return Возвращает true, если маленькие файлы упаковываются в сегменты.
+     */
+    public boolean isEnabled() {
+        return packingConfiguration.isEnabled();
+    }
+
+    /**
+     * Делит записи на группы, содержимое каждой из которых помещается в один сегмент.
+     *
+     * @param entries записи outbox маленьких файлов.
+     * @return Возвращает группы записей.
+     */
+    public List<List<UploadOutbox>> group(List<UploadOutbox> entries) {
+        long maxSegmentSize = packingConfiguration.getMaxSegmentSize().toBytes();
+        List<List<UploadOutbox>> groups = new ArrayList<>();
+        List<UploadOutbox> group = new ArrayList<>();
+        long size = 0;
+        for (UploadOutbox entry : entries) {
+            if (!group.isEmpty() && size + entry.getSize() > maxSegmentSize) {
+                groups.add(group);
+                group = new ArrayList<>();
+                size = 0;
+            }
+            group.add(entry);
+            size += entry.getSize();
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Записывает подготовленное содержимое группы файлов одним сегментом и завершает их загрузки.
+     * Файлы, содержимого которых нет на этом экземпляре, в сегмент не попадают и записываются как неудачная попытка.
+     * Если записать сегмент не удалось, неудачная попытка записывается всем файлам группы.
+     *
+     * @param entries захваченные записи outbox.
+     */
+    public void pack(List<UploadOutbox> entries) {
+        List<UploadOutbox> packed = new ArrayList<>(entries.size());
+        for (UploadOutbox entry : entries) {
+            if (uploadOutboxService.findStagedSize(entry.getFileName()) < 0) {
+                fail(entry, new IOException("File " + entry.getFileName() + " is not staged on this instance"));
+            } else {
+                packed.add(entry);
+            }
+        }
+        if (packed.isEmpty()) {
+            return;
+        }
+        packed.sort(Comparator.comparing(UploadOutbox::getId));
+
+        String segmentName = packingConfiguration.getObjectPrefix() + UUID.randomUUID();
+        long[] offsets = new long[packed.size()];
+        long size = 0;
+        for (int i = 0; i < packed.size(); i++) {
+            offsets[i] = size;
+            size += packed.get(i).getSize();
+        }
+
+        try {
+            try (InputStream inputStream = concat(packed, entry -> uploadOutboxService.openForUpload(entry.getStagedPath()))) {
+                s3Service.putFile(FileDto.builder()
+                        .name(segmentName)
+                        .inputStream(inputStream)
+                        .size(size)
+                        .build());
+            }
+            if (uploadOutboxService.completePacked(segmentName, size, packed, offsets) == 0) {
+                s3Service.deleteFileByName(segmentName);
+            }
+            packed.forEach(entry -> uploadOutboxService.deleteStaged(entry.getStagedPath()));
+        } catch (Exception e) {
+            log.error("Failed to upload segment {} of {} files", segmentName, packed.size(), e);
+            packed.forEach(entry -> fail(entry, e));
+        }
+    }
+
+    private void fail(UploadOutbox entry, Exception error) {
+        try {
+            if (uploadOutboxService.fail(entry, error)) {
+                uploadOutboxService.deleteStaged(entry.getStagedPath());
+            }
+        } catch (Exception failError) {
+            log.error("Failed to record failed upload of file {}, it will be retried after the lease",
+                    entry.getFileName(), failError);
+        }
+    }
+
+    /**
+     * Поток, последовательно читающий содержимое частей. Часть открывается, когда дочитана предыдущая.
+     *
+     * @param parts  части в порядке следования.
+     * @param opener открытие содержимого части.
+     * @return Возвращает поток с содержимым всех частей.
+     */
+    static <T> InputStream concat(List<T> parts, PartOpener<T> opener) {
+        Iterator<T> iterator = parts.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return opener.open(iterator.next());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Открытие содержимого части сегмента.
+     */
+    @FunctionalInterface
+    interface PartOpener<T> {
+        InputStream open(T part) throws IOException;
+    }
+}
@@ -0,0 +1,313 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Одно скачивание части объекта из хранилища, содержимое которого раздаётся нескольким читателям.
+ * Скачанные байты хранятся в окне ограниченного размера. Скачивание идёт со скоростью самого быстрого
+ * читателя и не опережает его больше чем на размер окна. Читатель, отставший за начало окна,
+ * отключается от общего скачивания и дочитывает содержимое собственным запросом к хранилищу,
+ * поэтому медленный клиент не задерживает остальных.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Slf4j
+public class SharedFetch {
+
+    private static final int DETACHED = -2;
+
+    /**
+     * Открытие собственного потока чтения для отключённого читателя.
+     */
+    @FunctionalInterface
+    public interface Fallback {
+        /**
+         * @param position позиция относительно начала части, с которой нужно продолжить чтение.
+         * @return Возвращает поток с оставшимся содержимым части.
+         */
+        InputStream open(long position);
+    }
+
+    private final long length;
+    private final int windowSize;
+    private final int chunkSize;
+    private final Fallback fallback;
+    private final Consumer<SharedFetch> onUnjoinable;
+
+    private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+    private final Set<Subscriber> subscribers = new HashSet<>();
+    private long head;
+    private long tail;
+    private boolean completed;
+    private boolean cancelled;
+    private Throwable failure;
+    private InputStream upstream;
+
+    /**
+     * @param length       длина скачиваемой части.
+     * @param windowSize   максимальный объём хранимых скачанных байтов.
+     * @param chunkSize    размер блока чтения из хранилища.
+     * @param fallback     открытие собственного потока для отключённого читателя.
+     * @param onUnjoinable вызывается, когда к скачиванию больше нельзя присоединиться.
+     */
+    public SharedFetch(long length, int windowSize, int chunkSize, Fallback fallback,
+                       Consumer<SharedFetch> onUnjoinable) {
+        this.length = length;
+        this.windowSize = Math.max(windowSize, chunkSize);
+        this.chunkSize = chunkSize;
+        this.fallback = fallback;
+        this.onUnjoinable = onUnjoinable;
+    }
+
+    /**
+     * Добавляет читателя. Присоединиться можно, пока из окна не удалено начало содержимого.
+     *
+     * @return Возвращает поток читателя или null, если присоединиться уже нельзя.
+     */
+    public synchronized InputStream subscribe() {
+        if (head > 0 || cancelled || failure != null) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber();
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Прерывает скачивание, которое не удалось начать. Присоединившиеся читатели дочитывают собственными запросами.
+     *
+     * @param cause причина прерывания.
+     */
+    public void abort(Exception cause) {
+        synchronized (this) {
+            failure = cause;
+            notifyAll();
+        }
+        onUnjoinable.accept(this);
+    }
+
+    /**
+     * Читает поток из хранилища в окно, пока он не закончится, не произойдёт ошибка или не отключатся все читатели.
+     * Выполняется в отдельном потоке.
+     *
+     * @param inputStream поток с содержимым части из хранилища.
+     */
+    public void pump(InputStream inputStream) {
+        synchronized (this) {
+            upstream = inputStream;
+        }
+        try (InputStream content = inputStream) {
+            while (true) {
+                byte[] buffer = new byte[chunkSize];
+                int read = ByteStreams.read(content, buffer, 0, chunkSize);
+                if (read > 0 && !append(read == chunkSize ? buffer : Arrays.copyOf(buffer, read))) {
+                    return;
+                }
+                if (read < chunkSize) {
+                    break;
+                }
+            }
+            synchronized (this) {
+                if (tail != length) {
+                    throw new IOException("Expected " + length + " bytes, got " + tail);
+                }
+                completed = true;
+                notifyAll();
+            }
+        } catch (Exception e) {
+            synchronized (this) {
+                if (!cancelled) {
+                    log.warn("Shared fetch failed, readers continue with their own requests", e);
+                }
+                failure = e;
+                notifyAll();
+            }
+        } finally {
+            onUnjoinable.accept(this);
+        }
+    }
+
+    /**
+     * Добавляет блок в окно. Ждёт, пока самый быстрый читатель не приблизится к концу окна,
+     * и удаляет из окна блоки, которые не помещаются в его размер.
+     *
+     * @return Возвращает false, если скачивание отменено.
+     */
+    private synchronized boolean append(byte[] chunk) throws InterruptedException {
+        while (!cancelled && !subscribers.isEmpty() && tail + chunk.length - fastestPosition() > windowSize) {
+            wait();
+        }
+        if (cancelled || subscribers.isEmpty()) {
+            cancelled = true;
+            return false;
+        }
+        chunks.addLast(chunk);
+        tail += chunk.length;
+
+        boolean joinable = head == 0;
+        while (tail - head > windowSize) {
+            head += chunks.removeFirst().length;
+        }
+        if (joinable && head > 0) {
+            onUnjoinable.accept(this);
+        }
+        notifyAll();
+        return true;
+    }
+
+    private long fastestPosition() {
+        long fastest = 0;
+        for (Subscriber subscriber : subscribers) {
+            fastest = Math.max(fastest, subscriber.position);
+        }
+        return fastest;
+    }
+
+    /**
+     * Копирует байты из окна, начиная с позиции. Вызывается под блокировкой.
+     */
+    private int copy(long position, byte[] b, int off, int len) {
+        long chunkStart = head;
+        Iterator<byte[]> iterator = chunks.iterator();
+        while (iterator.hasNext()) {
+            byte[] chunk = iterator.next();
+            if (position < chunkStart + chunk.length) {
+                int inChunk = (int) (position - chunkStart);
+                int count = Math.min(len, chunk.length - inChunk);
+                System.arraycopy(chunk, inChunk, b, off, count);
+                return count;
+            }
+            chunkStart += chunk.length;
+        }
+        throw new IllegalStateException("Position " + position + " is outside of the window");
+    }
+
+    private synchronized void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        if (subscribers.isEmpty() && !completed && failure == null && !cancelled) {
+            cancelled = true;
+            closeUpstream();
+        }
+        notifyAll();
+    }
+
+    private void closeUpstream() {
+        if (upstream != null) {
+            try {
+                upstream.close();
+            } catch (IOException e) {
+                log.debug("Couldn't close cancelled upstream", e);
+            }
+        }
+    }
+
+    /**
+     * Поток одного читателя общего скачивания.
+     */
+    private class Subscriber extends InputStream {
+
+        private long position;
+        private InputStream own;
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (own == null) {
+                int read = readShared(b, off, len);
+                if (read != DETACHED) {
+                    return read;
+                }
+                own = openOwn();
+            }
+            int read = own.read(b, off, len);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        /**
+         * Ждёт появления байтов на текущей позиции и копирует их из окна.
+         *
+         * @return Возвращает количество прочитанных байтов, -1 в конце содержимого или {@link #DETACHED},
+         * если читатель должен дочитывать собственным запросом.
+         */
+        private int readShared(byte[] b, int off, int len) throws IOException {
+            synchronized (SharedFetch.this) {
+                while (true) {
+                    if (position >= length) {
+                        return -1;
+                    }
+                    if (position >= head && position < tail) {
+                        int count = copy(position, b, off, len);
+                        position += count;
+                        SharedFetch.this.notifyAll();
+                        return count;
+                    }
+                    if (position < head || failure != null || cancelled) {
+                        subscribers.remove(this);
+                        SharedFetch.this.notifyAll();
+                        return DETACHED;
+                    }
+                    try {
+                        SharedFetch.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for shared fetch", e);
+                    }
+                }
+            }
+        }
+
+        private InputStream openOwn() throws IOException {
+            log.info("Reader left the shared fetch at position {}", position);
+            try {
+                return fallback.open(position);
+            } catch (RuntimeException e) {
+                throw new IOException("Couldn't continue reading with own request", e);
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (own != null) {
+                return own.available();
+            }
+            synchronized (SharedFetch.this) {
+                return (int) Math.max(0, Math.min(Integer.MAX_VALUE, tail - Math.max(position, head)));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            unsubscribe(this);
+            if (own != null) {
+                own.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.CoalescingConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.StoredObjectDto;
+import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Объединение одновременных скачиваний одной и той же части файла.
+ * Первый запрос открывает поток из хранилища, остальные присоединяются к нему и получают те же байты
+ * через {@link SharedFetch}. Остальные операции передаются хранилищу без изменений.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@Slf4j
+public class SingleFlightS3Service implements S3Service {
+
+    private static final String METRIC_NAME = "file.fetch.coalescing";
+
+    private final S3Service s3Service;
+    private final CoalescingConfiguration coalescingConfiguration;
+    private final ConcurrentMap<String, SharedFetch> fetches = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final Counter leaderCounter;
+    private final Counter joinedCounter;
+
+    public SingleFlightS3Service(@Qualifier("minioFileStorageServiceImpl") S3Service s3Service,
+                                 CoalescingConfiguration coalescingConfiguration,
+                                 MeterRegistry meterRegistry) {
+        this.s3Service = s3Service;
+        this.coalescingConfiguration = coalescingConfiguration;
+        int threads = coalescingConfiguration.getThreads();
+        this.executor = new ThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new CustomizableThreadFactory("shared-fetch-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.leaderCounter = meterRegistry.counter(METRIC_NAME, "result", "leader");
+        this.joinedCounter = meterRegistry.counter(METRIC_NAME, "result", "joined");
+    }
+
+    @Override
+    public long putFile(FileDto fileDto) {
+        return s3Service.putFile(fileDto);
+    }
+
+    @Override
+    public InputStream getFileByName(String fileName) {
+        return s3Service.getFileByName(fileName);
+    }
+
+    /**
+     * Получение части файла по имени. Если такая же часть уже скачивается, запрос присоединяется к скачиванию.
+     *
+     * @param fileName имя файла.
+     * @param offset   смещение начала части.
+     * @param length   длина части.
+     * @return Возвращает содержимое части файла.
+     * @throws FileNotFoundException файла нет в хранилище.
+     */
+    @Override
+    public InputStream getFileByName(String fileName, long offset, long length) {
+        if (!coalescingConfiguration.isEnabled() || length == 0) {
+            return s3Service.getFileByName(fileName, offset, length);
+        }
+
+        String key = fileName + ":" + offset + ":" + length;
+        while (true) {
+            SharedFetch existing = fetches.get(key);
+            if (existing != null) {
+                InputStream subscriber = existing.subscribe();
+                if (subscriber != null) {
+                    joinedCounter.increment();
+                    return subscriber;
+                }
+                fetches.remove(key, existing);
+            }
+
+            SharedFetch created = new SharedFetch(length,
+                    (int) coalescingConfiguration.getWindowSize().toBytes(),
+                    (int) coalescingConfiguration.getChunkSize().toBytes(),
+                    position -> s3Service.getFileByName(fileName, offset + position, length - position),
+                    fetch -> fetches.remove(key, fetch));
+            if (fetches.putIfAbsent(key, created) == null) {
+                return start(created, fileName, offset, length);
+            }
+        }
+    }
+
+    /**
+     * Открывает поток из хранилища и запускает его чтение для всех читателей общего скачивания.
+     * Если свободных потоков нет, часть скачивается без объединения.
+     */
+    private InputStream start(SharedFetch fetch, String fileName, long offset, long length) {
+        InputStream subscriber = fetch.subscribe();
+        InputStream upstream;
+        try {
+            upstream = s3Service.getFileByName(fileName, offset, length);
+        } catch (RuntimeException e) {
+            fetch.abort(e);
+            closeQuietly(subscriber);
+            throw e;
+        }
+
+        try {
+            executor.execute(() -> fetch.pump(upstream));
+        } catch (RejectedExecutionException e) {
+            log.info("No free threads for shared fetch of {}, reading it directly", fileName);
+            fetch.abort(e);
+            closeQuietly(subscriber);
+            return upstream;
+        }
+        leaderCounter.increment();
+        return subscriber;
+    }
+
+    @Override
+    public FileStatDto statFile(String fileName) {
+        return s3Service.statFile(fileName);
+    }
+
+    @Override
+    public void deleteFileByName(String fileName) {
+        s3Service.deleteFileByName(fileName);
+    }
+
+    @Override
+    public Map<String, String> deleteFiles(Collection<String> fileNames) {
+        return s3Service.deleteFiles(fileNames);
+    }
+
+    @Override
+    public List<StoredObjectDto> listFiles(String startAfter, int limit) {
+        return s3Service.listFiles(startAfter, limit);
+    }
+
+    @Override
+    public String createMultipartUpload(String fileName) {
+        return s3Service.createMultipartUpload(fileName);
+    }
+
+    @Override
+    public String uploadPart(String fileName, String uploadId, int partNumber, InputStream inputStream, int length) {
+        return s3Service.uploadPart(fileName, uploadId, partNumber, inputStream, length);
+    }
+
+    @Override
+    public void completeMultipartUpload(String fileName, String uploadId, List<String> etags) {
+        s3Service.completeMultipartUpload(fileName, uploadId, etags);
+    }
+
+    @Override
+    public void abortMultipartUpload(String fileName, String uploadId) {
+        s3Service.abortMultipartUpload(fileName, uploadId);
+    }
+
+    @Override
+    public String getPresignedUploadUrl(String fileName, Duration expiry) {
+        return s3Service.getPresignedUploadUrl(fileName, expiry);
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String fileName, Duration expiry, Map<String, String> responseHeaders) {
+        return s3Service.getPresignedDownloadUrl(fileName, expiry, responseHeaders);
+    }
+
+    /**
+     * Останавливает пул потоков общих скачиваний.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            log.debug("Couldn't close stream", e);
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Локальный журнал содержимого файлов, ожидающих загрузки в хранилище.
+ * Содержимое дописывается в конец текущего сегмента блоками, каждый блок защищён контрольной суммой.
+ * Файл считается записанным после записи завершающей записи и сброса журнала на диск. Сброс выполняется
+ * группами: пока один поток ждёт fsync, записи остальных потоков накапливаются и сбрасываются следующим
+ * вызовом, поэтому при одновременных загрузках fsync выполняется реже, чем записываются файлы.
+ * Сегмент удаляется, когда все файлы в нём загружены в хранилище и удалены из журнала записью об удалении.
+ * При открытии журнал читается заново, записи без завершающей записи и повреждённый конец сегмента отбрасываются.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Slf4j
+public class StagingJournal implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final byte DATA = 1;
+    private static final byte COMMIT = 2;
+    private static final byte REMOVE = 3;
+    /** Тип записи, длина имени, длина данных и контрольная сумма. */
+    private static final int HEADER_SIZE = 1 + 2 + 4 + 4;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int chunkSize;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private volatile Segment active;
+    private long written;
+    private long synced;
+
+    /**
+     * Открывает журнал и восстанавливает записанные файлы.
+     *
+     * @param directory   каталог сегментов журнала.
+     * @param segmentSize размер сегмента, после которого начинается новый сегмент.
+     * @param chunkSize   размер блока содержимого.
+     * @throws UncheckedIOException не удалось прочитать журнал.
+     */
+    public StagingJournal(Path directory, long segmentSize, int chunkSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.chunkSize = chunkSize;
+        try {
+            Files.createDirectories(directory);
+            long lastId = replay();
+            active = openSegment(lastId + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't open staging journal " + directory, e);
+        }
+    }
+
+    /**
+     * Записывает содержимое файла в журнал и ждёт, пока оно не будет сброшено на диск.
+     *
+     * @param fileName    имя файла в хранилище.
+     * @param inputStream содержимое файла.
+     * @return Возвращает размер записанного содержимого.
+     * @throws IOException не удалось прочитать содержимое или записать его в журнал.
+     */
+    public long append(String fileName, InputStream inputStream) throws IOException {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        List<Chunk> chunks = new ArrayList<>();
+        Set<Segment> pinned = new LinkedHashSet<>();
+        boolean committed = false;
+        try {
+            byte[] buffer = new byte[chunkSize];
+            long size = 0;
+            while (true) {
+                int read = ByteStreams.read(inputStream, buffer, 0, chunkSize);
+                if (read > 0) {
+                    chunks.add(write(DATA, name, buffer, read, pinned));
+                    size += read;
+                }
+                if (read < chunkSize) {
+                    break;
+                }
+            }
+            byte[] commit = ByteBuffer.allocate(Long.BYTES).putLong(size).array();
+            write(COMMIT, name, commit, commit.length, pinned);
+            sync();
+
+            Entry entry = new Entry(Collections.unmodifiableList(chunks), size, pinned);
+            if (entries.putIfAbsent(fileName, entry) != null) {
+                throw new IOException("File " + fileName + " is already staged");
+            }
+            committed = true;
+            return size;
+        } finally {
+            if (!committed) {
+                pinned.forEach(this::unpin);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что содержимое файла есть в журнале.
+     *
+     * @param fileName имя файла в хранилище.
+     * @return Возвращает true, если файл записан в журнал и ещё не удалён из него.
+     */
+    public boolean contains(String fileName) {
+        return entries.containsKey(fileName);
+    }
+
+    /**
+     * Размер содержимого файла в журнале.
+     *
+     * @param fileName имя файла в хранилище.
+     * @return Возвращает размер или -1, если файла нет в журнале.
+     */
+    public long size(String fileName) {
+        Entry entry = entries.get(fileName);
+        return entry != null ? entry.getSize() : -1;
+    }
+
+    /**
+     * Имена всех файлов в журнале.
+     *
+     * @return Возвращает имена файлов.
+     */
+    public Set<String> fileNames() {
+        return new HashSet<>(entries.keySet());
+    }
+
+    /**
+     * Открывает часть содержимого файла из журнала. Файлы сегментов открываются сразу,
+     * поэтому удаление файла из журнала не прерывает уже начатое чтение. На время открытия сегменты закрепляются:
+     * если файл одновременно удалён из журнала, возвращается null, а не ошибка открытия удалённого сегмента.
+     *
+     * @param fileName имя файла в хранилище.
+     * @param offset   смещение начала части.
+     * @param length   длина части.
+     * @return Возвращает содержимое части или null, если файла нет в журнале.
+     * @throws UncheckedIOException не удалось открыть сегмент журнала.
+     */
+    public InputStream open(String fileName, long offset, long length) {
+        Entry entry = entries.get(fileName);
+        if (entry == null) {
+            return null;
+        }
+        entry.getSegments().forEach(Segment::pin);
+        Map<Long, FileChannel> channels = new HashMap<>();
+        try {
+            if (entries.get(fileName) != entry) {
+                return null;
+            }
+            for (Segment segment : entry.getSegments()) {
+                channels.put(segment.getId(), FileChannel.open(segment.getPath(), StandardOpenOption.READ));
+            }
+        } catch (IOException e) {
+            closeQuietly(channels.values());
+            throw new UncheckedIOException("Couldn't open staged file " + fileName, e);
+        } finally {
+            entry.getSegments().forEach(this::unpin);
+        }
+        long end = length > entry.getSize() - offset ? entry.getSize() : offset + length;
+        return new EntryInputStream(entry.getChunks(), channels, offset, end);
+    }
+
+    /**
+     * Удаляет файл из журнала. Сегменты, в которых не осталось файлов, удаляются с диска.
+     * Запись об удалении не сбрасывается на диск отдельно: если она потеряется, файл будет восстановлен
+     * при следующем открытии журнала и удалён как не ожидающий загрузки.
+     *
+     * @param fileName имя файла в хранилище.
+     */
+    public void remove(String fileName) {
+        Entry entry = entries.remove(fileName);
+        if (entry == null) {
+            return;
+        }
+        try {
+            Set<Segment> pinned = new LinkedHashSet<>();
+            write(REMOVE, fileName.getBytes(StandardCharsets.UTF_8), new byte[0], 0, pinned);
+            pinned.forEach(this::unpin);
+        } catch (IOException e) {
+            log.warn("Couldn't write removal of staged file {} to the journal", fileName, e);
+        }
+        entry.getSegments().forEach(this::unpin);
+    }
+
+    /**
+     * Закрывает текущий сегмент.
+     */
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            closeQuietly(Collections.singletonList(active.getChannel()));
+        }
+    }
+
+    /**
+     * Дописывает запись в текущий сегмент. Если запись не помещается, начинается новый сегмент,
+     * а заполненный сегмент сбрасывается на диск.
+     */
+    private Chunk write(byte type, byte[] name, byte[] data, int length, Set<Segment> pinned) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(name);
+        crc.update(data, 0, length);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + name.length)
+                .put(type)
+                .putShort((short) name.length)
+                .putInt(length)
+                .putInt((int) crc.getValue())
+                .put(name);
+        header.flip();
+        ByteBuffer body = ByteBuffer.wrap(data, 0, length);
+        long recordSize = header.remaining() + (long) length;
+
+        synchronized (writeLock) {
+            if (active.getPosition() > 0 && active.getPosition() + recordSize > segmentSize) {
+                Segment full = active;
+                full.getChannel().force(false);
+                full.getChannel().close();
+                active = openSegment(full.getId() + 1);
+                if (full.getPins() == 0) {
+                    deleteSegment(full);
+                }
+            }
+            Segment segment = active;
+            if (pinned.add(segment)) {
+                segment.pin();
+            }
+            long dataPosition = segment.getPosition() + header.remaining();
+            while (header.hasRemaining() || body.hasRemaining()) {
+                segment.getChannel().write(new ByteBuffer[]{header, body});
+            }
+            segment.setPosition(segment.getPosition() + recordSize);
+            written += recordSize;
+            return new Chunk(segment, dataPosition, length);
+        }
+    }
+
+    /**
+     * Ждёт, пока всё записанное до вызова не будет сброшено на диск. Поток, первым получивший блокировку,
+     * выполняет fsync за всех, кто успел дописать данные к этому моменту. Остальные потоки за время fsync
+     * дописывают свои записи и сбрасываются следующим вызовом одной группой.
+     */
+    private void sync() throws IOException {
+        long target;
+        synchronized (writeLock) {
+            target = written;
+        }
+        synchronized (syncLock) {
+            if (synced >= target) {
+                return;
+            }
+            long syncTarget;
+            FileChannel channel;
+            synchronized (writeLock) {
+                syncTarget = written;
+                channel = active.getChannel();
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Сегмент закрыт при переходе к следующему, перед закрытием он был сброшен на диск.
+            }
+            synced = syncTarget;
+        }
+    }
+
+    private void unpin(Segment segment) {
+        if (segment.unpin() == 0 && segment != active) {
+            deleteSegment(segment);
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        if (segments.remove(segment.getId()) != null) {
+            try {
+                Files.deleteIfExists(segment.getPath());
+                log.info("Staging journal segment {} was deleted", segment.getPath());
+            } catch (IOException e) {
+                log.warn("Couldn't delete staging journal segment {}", segment.getPath(), e);
+            }
+        }
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Читает все сегменты журнала и восстанавливает файлы с завершающей записью.
+     * Сегменты без таких файлов удаляются.
+     *
+     * @return Возвращает наибольший номер сегмента или 0, если журнал пуст.
+     */
+    private long replay() throws IOException {
+        TreeMap<Long, Path> paths = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                paths.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), path);
+            }
+        }
+
+        Map<String, List<Chunk>> uncommitted = new HashMap<>();
+        for (Map.Entry<Long, Path> path : paths.entrySet()) {
+            Segment segment = new Segment(path.getKey(), path.getValue(), null);
+            segments.put(segment.getId(), segment);
+            replaySegment(segment, uncommitted);
+        }
+        if (!uncommitted.isEmpty()) {
+            log.warn("Staging journal has {} incomplete files, they are discarded", uncommitted.size());
+        }
+
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment.getPins() == 0) {
+                deleteSegment(segment);
+            }
+        }
+        log.info("Staging journal {} was opened with {} staged files", directory, entries.size());
+        return paths.isEmpty() ? 0 : paths.lastKey();
+    }
+
+    private void replaySegment(Segment segment, Map<String, List<Chunk>> uncommitted) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.getPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (position + HEADER_SIZE <= fileSize) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+                byte type = header.get();
+                int nameLength = header.getShort() & 0xFFFF;
+                int length = header.getInt();
+                int expectedCrc = header.getInt();
+                long dataPosition = position + HEADER_SIZE + nameLength;
+                if ((type != DATA && type != COMMIT && type != REMOVE) || length < 0 || dataPosition + length > fileSize) {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.allocate(nameLength + length);
+                readFully(channel, record, position + HEADER_SIZE);
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(record.array());
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+
+                String fileName = new String(record.array(), 0, nameLength, StandardCharsets.UTF_8);
+                if (type == DATA) {
+                    uncommitted.computeIfAbsent(fileName, key -> new ArrayList<>())
+                            .add(new Chunk(segment, dataPosition, length));
+                } else if (type == REMOVE) {
+                    Entry removed = entries.remove(fileName);
+                    if (removed != null) {
+                        removed.getSegments().forEach(Segment::unpin);
+                    }
+                } else {
+                    List<Chunk> chunks = uncommitted.remove(fileName);
+                    chunks = chunks != null ? chunks : Collections.emptyList();
+                    long size = ByteBuffer.wrap(record.array(), nameLength, length).getLong();
+                    Set<Segment> pinned = new LinkedHashSet<>();
+                    chunks.forEach(chunk -> pinned.add(chunk.getSegment()));
+                    pinned.add(segment);
+                    pinned.forEach(Segment::pin);
+                    entries.put(fileName, new Entry(Collections.unmodifiableList(chunks), size, pinned));
+                }
+                position = dataPosition + length;
+            }
+            if (position < fileSize) {
+                log.warn("Staging journal segment {} has a damaged tail at {}, it is ignored",
+                        segment.getPath(), position);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new IOException("Unexpected end of staging journal segment");
+            }
+            current += read;
+        }
+    }
+
+    private static void closeQuietly(Iterable<? extends Closeable> closeables) {
+        for (Closeable closeable : closeables) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log.debug("Couldn't close staging journal channel", e);
+            }
+        }
+    }
+
+    /**
+     * Сегмент журнала. Счётчик ссылок - количество файлов, содержимое которых есть в сегменте.
+     */
+    @Getter
+    private static class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private long position;
+        private int pins;
+
+        Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        void setPosition(long position) {
+            this.position = position;
+        }
+
+        synchronized void pin() {
+            pins++;
+        }
+
+        synchronized int unpin() {
+            return --pins;
+        }
+
+        synchronized int getPins() {
+            return pins;
+        }
+    }
+
+    /**
+     * Блок содержимого файла в сегменте.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class Chunk {
+        private final Segment segment;
+        private final long position;
+        private final int length;
+    }
+
+    /**
+     * Записанный в журнал файл.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final List<Chunk> chunks;
+        private final long size;
+        private final Set<Segment> segments;
+    }
+
+    /**
+     * Поток чтения части содержимого файла по его блокам.
+     */
+    private static class EntryInputStream extends InputStream {
+
+        private final List<Chunk> chunks;
+        private final Map<Long, FileChannel> channels;
+        private final long end;
+        private long position;
+        private int chunkIndex;
+        private long chunkStart;
+
+        EntryInputStream(List<Chunk> chunks, Map<Long, FileChannel> channels, long offset, long end) {
+            this.chunks = chunks;
+            this.channels = channels;
+            this.position = offset;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            while (position >= chunkStart + chunks.get(chunkIndex).getLength()) {
+                chunkStart += chunks.get(chunkIndex).getLength();
+                chunkIndex++;
+            }
+            Chunk chunk = chunks.get(chunkIndex);
+            long inChunk = position - chunkStart;
+            int count = (int) Math.min(len, Math.min(chunk.getLength() - inChunk, end - position));
+            FileChannel channel = channels.get(chunk.getSegment().getId());
+            int read = channel.read(ByteBuffer.wrap(b, off, count), chunk.getPosition() + inChunk);
+            if (read < 0) {
+                throw new IOException("Unexpected end of staging journal segment");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(channels.values());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.entity.UploadOutbox;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пул потоков, загружающих файлы из outbox в хранилище.
+ * Только что поставленные в очередь файлы передаются в пул сразу, остальные записи
+ * (повторные попытки, записи остановившихся экземпляров) периодически захватываются из БД пачками,
+ * пока в пуле есть место. Маленькие файлы, если включена упаковка, захватываются только опросом
+ * и загружаются группами, одним сегментом на задачу пула {@link SegmentPacker}.
+ * Пока загрузка выполняется, захват её записей периодически продлевается, чтобы долгую загрузку
+ * не захватил другой обработчик.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Component
+@Slf4j
+public class UploadOutboxProcessor {
+
+    private final UploadOutboxService uploadOutboxService;
+    private final S3Service s3Service;
+    private final SegmentPacker segmentPacker;
+    private final PackingConfiguration packingConfiguration;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService leaseRenewer;
+    private final long leaseRenewalMillis;
+
+    public UploadOutboxProcessor(UploadOutboxService uploadOutboxService,
+                                 S3Service s3Service,
+                                 SegmentPacker segmentPacker,
+                                 UploadOutboxConfiguration uploadOutboxConfiguration,
+                                 PackingConfiguration packingConfiguration) {
+        this.uploadOutboxService = uploadOutboxService;
+        this.s3Service = s3Service;
+        this.segmentPacker = segmentPacker;
+        this.packingConfiguration = packingConfiguration;
+        int threads = uploadOutboxConfiguration.getWorkerThreads();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(uploadOutboxConfiguration.getQueueCapacity()),
+                new CustomizableThreadFactory("upload-outbox-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.leaseRenewer = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("upload-outbox-lease-"));
+        this.leaseRenewalMillis = Math.max(1, uploadOutboxConfiguration.getLease().toMillis() / 3);
+    }
+
+    /**
+     * Передаёт захваченную запись в пул. Если пул заполнен, запись освобождается и будет взята при следующем опросе.
+     *
+     * Запись маленького файла, который будет упакован в сегмент, не передаётся: её захватит опрос.
+     *
+     * @param entry запись outbox.
+     */
+    public void submit(UploadOutbox entry) {
+        if (uploadOutboxService.isPackable(entry.getSize())) {
+            return;
+        }
+        try {
+            executor.execute(() -> withLease(Collections.singletonList(entry), () -> process(entry)));
+        } catch (RejectedExecutionException e) {
+            log.info("Upload queue is full, file {} will be uploaded later", entry.getFileName());
+            uploadOutboxService.release(entry);
+        }
+    }
+
+    /**
+     * После запуска приложения сразу продолжает загрузку файлов, подготовленных до остановки.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        try {
+            uploadOutboxService.recoverStaged();
+        } catch (Exception e) {
+            log.error("Failed to recover staged uploads, they will be uploaded after the lease", e);
+        }
+        poll();
+    }
+
+    /**
+     * Захватывает доступные записи outbox, пока в пуле есть свободное место.
+     */
+    @Scheduled(fixedDelayString = "#{@uploadOutboxConfiguration.pollInterval.toMillis()}")
+    public void poll() {
+        if (segmentPacker.isEnabled()) {
+            pollPackable();
+        }
+        try {
+            while (true) {
+                int free = executor.getQueue().remainingCapacity();
+                if (free == 0) {
+                    return;
+                }
+                List<UploadOutbox> entries = uploadOutboxService.claim(free);
+                entries.forEach(this::submit);
+                if (entries.size() < free) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to claim queued uploads", e);
+        }
+    }
+
+    /**
+     * Захватывает записи маленьких файлов и передаёт их в пул группами, пока в пуле есть свободное место.
+     */
+    private void pollPackable() {
+        try {
+            int limit = packingConfiguration.getMaxSegmentFiles();
+            while (executor.getQueue().remainingCapacity() > 0) {
+                List<UploadOutbox> entries = uploadOutboxService.claimPackable(limit);
+                segmentPacker.group(entries).forEach(this::submitPacked);
+                if (entries.size() < limit) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to claim queued uploads for packing", e);
+        }
+    }
+
+    private void submitPacked(List<UploadOutbox> entries) {
+        try {
+            executor.execute(() -> withLease(entries, () -> segmentPacker.pack(entries)));
+        } catch (RejectedExecutionException e) {
+            log.info("Upload queue is full, {} small files will be packed later", entries.size());
+            entries.forEach(uploadOutboxService::release);
+        }
+    }
+
+    /**
+     * Выполняет загрузку, продлевая захват её записей каждую треть {@link UploadOutboxConfiguration#getLease()}.
+     */
+    private void withLease(List<UploadOutbox> entries, Runnable upload) {
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(() -> renewLease(entries),
+                leaseRenewalMillis, leaseRenewalMillis, TimeUnit.MILLISECONDS);
+        try {
+            upload.run();
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+
+    private void renewLease(List<UploadOutbox> entries) {
+        try {
+            int renewed = uploadOutboxService.renew(entries);
+            if (renewed < entries.size()) {
+                log.warn("Lease on {} of {} uploads was lost or cancelled", entries.size() - renewed, entries.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to renew lease on {} uploads", entries.size(), e);
+        }
+    }
+
+    /**
+     * Загружает подготовленное содержимое файла в хранилище и записывает результат.
+     * Объект удаляется из хранилища, только если загрузка была явно отменена. Если захват записи перешёл
+     * к другому обработчику, объект и подготовленное содержимое остаются ему.
+     */
+    void process(UploadOutbox entry) {
+        String stagedPath = entry.getStagedPath();
+        try {
+            try (InputStream inputStream = uploadOutboxService.openForUpload(stagedPath)) {
+                s3Service.putFile(FileDto.builder()
+                        .name(entry.getFileName())
+                        .inputStream(inputStream)
+                        .size(entry.getSize())
+                        .build());
+            }
+            UploadOutboxService.Completion completion = uploadOutboxService.complete(entry);
+            if (completion == UploadOutboxService.Completion.LEASE_LOST) {
+                return;
+            }
+            if (completion == UploadOutboxService.Completion.CANCELLED) {
+                s3Service.deleteFileByName(entry.getFileName());
+            }
+            uploadOutboxService.deleteStaged(stagedPath);
+        } catch (Exception e) {
+            try {
+                if (uploadOutboxService.fail(entry, e)) {
+                    uploadOutboxService.deleteStaged(stagedPath);
+                }
+            } catch (Exception failError) {
+                log.error("Failed to record failed upload of file {}, it will be retried after the lease",
+                        entry.getFileName(), failError);
+            }
+        }
+    }
+
+    /**
+     * Останавливает пул. Незавершённые загрузки будут взяты из outbox после истечения захвата.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        leaseRenewer.shutdownNow();
+    }
+}
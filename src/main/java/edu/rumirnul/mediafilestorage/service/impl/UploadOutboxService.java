@@ -0,0 +1,683 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileSegment;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.entity.UploadOutbox;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import edu.rumirnul.mediafilestorage.repository.UploadOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Класс сервис работающий с outbox загрузок файлов в хранилище.
+ * Каждый шаг жизненного цикла записи выполняется отдельной транзакцией: постановка в очередь
+ * вместе с метаданными файла, захват пачки записей, завершение и неудачная попытка.
+ * Содержимое до загрузки хранится в каталоге подготовки отдельными файлами или, если включён
+ * {@link UploadOutboxConfiguration#isJournalEnabled()}, в локальном журнале {@link StagingJournal}.
+ * Если включена упаковка {@link PackingConfiguration#isEnabled()}, маленькие файлы захватываются отдельно
+ * и записываются в хранилище общими сегментами {@link SegmentPacker}.
+ * Подготовленное содержимое есть только на экземпляре, который его записал, поэтому запись outbox принадлежит
+ * этому экземпляру {@link UploadOutboxConfiguration#getNodeId()} и захватывается только им. Записи выведенного
+ * из работы экземпляра передаются экземпляру, у которого он указан в {@link UploadOutboxConfiguration#getAdoptedNodes()}.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadOutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 1024;
+    private static final String JOURNAL_PREFIX = "journal:";
+    private static final int RECOVERY_BATCH_SIZE = 1000;
+
+    private final UploadOutboxRepository uploadOutboxRepository;
+    private final FileDataService fileDataService;
+    private final FileBlobService fileBlobService;
+    private final FileSegmentRepository fileSegmentRepository;
+    private final UploadOutboxConfiguration uploadOutboxConfiguration;
+    private final PackingConfiguration packingConfiguration;
+    private final MinioShardRouter minioShardRouter;
+    private StagingJournal journal;
+    /** Файлы, содержимое которых было подготовлено до запуска приложения. */
+    private Set<String> stagedBeforeStart = Collections.emptySet();
+
+    /**
+     * Сохраняет метаданные файла в состоянии {@link FileStatus#PENDING} и запись outbox в одной транзакции.
+     * Если содержимое с такой же контрольной суммой уже сохранено, файл ссылается на него, а запись outbox
+     * не создаётся. Если такое содержимое ещё загружается, файл ссылается на него, а его подготовленное содержимое
+     * сохраняется резервной записью {@link UploadOutbox#isStandby()}: по ней содержимое загружается повторно,
+     * если загрузка по основной записи окончательно не удалась.
+     * Транзакция всегда новая, чтобы после возврата из метода запись была видна обработчикам.
+     * Запись сразу захватывается на время {@link UploadOutboxConfiguration#getLease()} для обработки этим экземпляром.
+     * Запись маленького файла, который будет упакован в сегмент, не захватывается, а ждёт ближайшего опроса.
+     * Захваченная запись получает токен захвата {@link UploadOutbox#getClaimToken()}.
+     *
+     * @param fileData   метаданные файла.
+     * @param stagedPath ссылка на подготовленное содержимое файла, полученная от {@link #stage(String, InputStream)}.
+     * @return Возвращает сохранённую запись outbox, в том числе резервную, или пустой Optional,
+     * если содержимое загружать не нужно.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Optional<UploadOutbox> enqueue(FileData fileData, String stagedPath) {
+        if (fileBlobService.saveDeduplicated(fileData, FileStatus.PENDING)) {
+            if (fileData.getStatus() != FileStatus.PENDING) {
+                return Optional.empty();
+            }
+            UploadOutbox standby = uploadOutboxRepository.save(UploadOutbox.builder()
+                    .fileId(fileData.getId())
+                    .fileName(fileData.getStorageName())
+                    .owner(uploadOutboxConfiguration.getNodeId())
+                    .stagedPath(stagedPath)
+                    .size(fileData.getSize())
+                    .availableAt(Instant.now())
+                    .standby(true)
+                    .build());
+            log.info("File {} duplicates content being uploaded, its copy is kept: {}",
+                    fileData.getFileName(), standby);
+            return Optional.of(standby);
+        }
+
+        UploadOutbox entry = UploadOutbox.builder()
+                .fileId(fileData.getId())
+                .fileName(fileData.getStorageName())
+                .owner(uploadOutboxConfiguration.getNodeId())
+                .stagedPath(stagedPath)
+                .size(fileData.getSize())
+                .availableAt(isPackable(fileData.getSize())
+                        ? Instant.now() : Instant.now().plus(uploadOutboxConfiguration.getLease()))
+                .claimToken(isPackable(fileData.getSize()) ? null : UUID.randomUUID().toString())
+                .build();
+        UploadOutbox savedEntry = uploadOutboxRepository.save(entry);
+        log.info("Upload of file {} was queued: {}", fileData.getFileName(), savedEntry);
+        return Optional.of(savedEntry);
+    }
+
+    /**
+     * Захватывает пачку доступных записей файлов, загружаемых отдельными объектами.
+     * Записи, заблокированные другими экземплярами, пропускаются.
+     * Захваченные записи становятся недоступны другим обработчикам на время {@link UploadOutboxConfiguration#getLease()}
+     * и получают новый токен захвата: результат загрузки обработчика, захват которого истёк, не записывается.
+     * Отменённые записи, захват которых истёк, удаляются и не возвращаются.
+     * Захватываются записи этого экземпляра и переданных ему экземпляров: переданные записи становятся записями
+     * этого экземпляра, их содержимое читается из его каталога подготовки.
+     *
+     * @param limit максимальное количество записей.
+     * @return Возвращает захваченные записи.
+     */
+    @Transactional
+    public List<UploadOutbox> claim(int limit) {
+        long minSize = packingConfiguration.isEnabled() ? packingConfiguration.getMaxFileSize().toBytes() + 1 : 0;
+        return claim(limit, minSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * Захватывает пачку доступных записей маленьких файлов для упаковки в сегменты, как {@link #claim(int)}.
+     *
+     * @param limit максимальное количество записей.
+     * @return Возвращает захваченные записи или пустой список, если упаковка выключена.
+     */
+    @Transactional
+    public List<UploadOutbox> claimPackable(int limit) {
+        if (!packingConfiguration.isEnabled()) {
+            return Collections.emptyList();
+        }
+        return claim(limit, 0, packingConfiguration.getMaxFileSize().toBytes());
+    }
+
+    private List<UploadOutbox> claim(int limit, long minSize, long maxSize) {
+        Instant now = Instant.now();
+        String nodeId = uploadOutboxConfiguration.getNodeId();
+        List<String> owners = new ArrayList<>(uploadOutboxConfiguration.getAdoptedNodes());
+        owners.add(nodeId);
+        List<UploadOutbox> entries = uploadOutboxRepository.findAvailableForUpdate(now, owners, minSize, maxSize,
+                PageRequest.of(0, limit));
+        Instant leaseEnd = now.plus(uploadOutboxConfiguration.getLease());
+        String claimToken = UUID.randomUUID().toString();
+        List<UploadOutbox> claimed = new ArrayList<>(entries.size());
+        for (UploadOutbox entry : entries) {
+            if (entry.isCancelled()) {
+                uploadOutboxRepository.delete(entry);
+                deleteStagedAfterCommit(entry.getStagedPath());
+                log.info("Cancelled upload of file {} was removed from the queue", entry.getFileName());
+                continue;
+            }
+            if (entry.getOwner() != null && !entry.getOwner().equals(nodeId)) {
+                adopt(entry);
+            }
+            entry.setAvailableAt(leaseEnd);
+            entry.setClaimToken(claimToken);
+            claimed.add(entry);
+        }
+        return claimed;
+    }
+
+    /**
+     * Передаёт запись выведенного из работы экземпляра этому экземпляру. Содержимое журнала не переносится,
+     * поэтому экземпляр с журналом нужно дождаться опустошения очереди перед выводом из работы.
+     */
+    private void adopt(UploadOutbox entry) {
+        log.info("Upload of file {} was handed over from node {} to node {}",
+                entry.getFileName(), entry.getOwner(), uploadOutboxConfiguration.getNodeId());
+        entry.setOwner(uploadOutboxConfiguration.getNodeId());
+        if (!entry.getStagedPath().startsWith(JOURNAL_PREFIX)) {
+            entry.setStagedPath(uploadOutboxConfiguration.getStagingDirectory()
+                    .resolve(stagedName(entry.getStagedPath())).toString());
+        }
+    }
+
+    /**
+     * Продлевает захват записей, загрузка которых ещё выполняется, на {@link UploadOutboxConfiguration#getLease()}.
+     * Захват, перешедший к другому обработчику, и отменённые записи не продлеваются.
+     *
+     * @param entries захваченные записи outbox.
+     * @return Возвращает количество продлённых записей.
+     */
+    public int renew(Collection<UploadOutbox> entries) {
+        Instant leaseEnd = Instant.now().plus(uploadOutboxConfiguration.getLease());
+        Map<String, List<Long>> idsByToken = entries.stream()
+                .filter(entry -> entry.getClaimToken() != null)
+                .collect(Collectors.groupingBy(UploadOutbox::getClaimToken,
+                        Collectors.mapping(UploadOutbox::getId, Collectors.toList())));
+        int renewed = 0;
+        for (Map.Entry<String, List<Long>> claim : idsByToken.entrySet()) {
+            renewed += uploadOutboxRepository.renewLease(claim.getValue(), claim.getKey(), leaseEnd);
+        }
+        return renewed;
+    }
+
+    /**
+     * Упаковывается ли файл указанного размера в сегмент.
+     *
+     * @param size размер содержимого файла.
+     * @return Возвращает true, если упаковка включена и файл не больше {@link PackingConfiguration#getMaxFileSize()}.
+     */
+    public boolean isPackable(long size) {
+        return packingConfiguration.isEnabled() && size <= packingConfiguration.getMaxFileSize().toBytes();
+    }
+
+    /**
+     * Делает захваченную запись снова доступной, если её не удалось передать на обработку.
+     *
+     * @param entry запись outbox.
+     */
+    @Transactional
+    public void release(UploadOutbox entry) {
+        uploadOutboxRepository.findById(entry.getId())
+                .filter(saved -> isClaimedBy(saved, entry))
+                .ifPresent(saved -> saved.setAvailableAt(Instant.now()));
+    }
+
+    /**
+     * Завершает загрузку: объект и все ссылающиеся на него файлы переводятся в состояние
+     * {@link FileStatus#STORED}, запись outbox удаляется, резервные записи объекта отменяются.
+     * Загрузка завершается, только если запись всё ещё захвачена этим обработчиком.
+     *
+     * @param entry запись outbox.
+     * @return Возвращает результат завершения загрузки.
+     */
+    @Transactional
+    public Completion complete(UploadOutbox entry) {
+        Optional<UploadOutbox> saved = uploadOutboxRepository.findWithLockById(entry.getId());
+        if (!saved.isPresent() || !isClaimedBy(saved.get(), entry)) {
+            log.warn("Lease on upload of file {} was lost, result is discarded", entry.getFileName());
+            return Completion.LEASE_LOST;
+        }
+        uploadOutboxRepository.delete(saved.get());
+        if (saved.get().isCancelled()) {
+            log.info("Upload of file {} was cancelled", entry.getFileName());
+            return Completion.CANCELLED;
+        }
+        fileBlobService.updateStatus(entry.getFileName(), FileStatus.STORED);
+        fileDataService.updateStatusByStorageName(entry.getFileName(), FileStatus.STORED);
+        dropStandby(entry.getFileName());
+        log.info("Upload of file {} was completed", entry.getFileName());
+        return Completion.COMPLETED;
+    }
+
+    /**
+     * Завершает загрузки, содержимое которых записано в хранилище одним сегментом: объекты и все ссылающиеся
+     * на них файлы получают расположение содержимого в сегменте и переходят в состояние {@link FileStatus#STORED},
+     * записи outbox удаляются. Строки outbox блокируются в порядке id.
+     * Записи, захват которых перешёл к другому обработчику, и отменённые записи не завершаются.
+     *
+     * @param segmentName имя записанного сегмента.
+     * @param size        размер сегмента.
+     * @param entries     записи outbox в порядке id.
+     * @param offsets     смещения содержимого записей в сегменте.
+     * @return Возвращает количество завершённых загрузок. Если все загрузки были отменены, сегмент не сохраняется.
+     */
+    @Transactional
+    public int completePacked(String segmentName, long size, List<UploadOutbox> entries, long[] offsets) {
+        int completed = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            UploadOutbox entry = entries.get(i);
+            Optional<UploadOutbox> saved = uploadOutboxRepository.findWithLockById(entry.getId());
+            if (!saved.isPresent() || !isClaimedBy(saved.get(), entry)) {
+                log.warn("Lease on upload of file {} was lost, it is not packed", entry.getFileName());
+                continue;
+            }
+            uploadOutboxRepository.delete(saved.get());
+            if (saved.get().isCancelled()) {
+                log.info("Upload of file {} was cancelled", entry.getFileName());
+                continue;
+            }
+            fileBlobService.updateSegment(entry.getFileName(), segmentName, offsets[i]);
+            fileDataService.updateSegmentByStorageName(entry.getFileName(), segmentName, offsets[i]);
+            dropStandby(entry.getFileName());
+            completed++;
+        }
+        if (completed > 0) {
+            fileSegmentRepository.save(FileSegment.builder()
+                    .name(segmentName)
+                    .size(size)
+                    .shard(minioShardRouter.route(segmentName).getName())
+                    .createdAt(Instant.now())
+                    .build());
+        }
+        log.info("Uploads of {} files were completed in segment {}", completed, segmentName);
+        return completed;
+    }
+
+    /**
+     * Отменяет загрузку объекта, на который больше не ссылается ни один файл.
+     * Запись помечается отменённой: обработчик, который её захватил, удалит загруженный объект и запись,
+     * а если захват истёк, запись удалит следующий захват.
+     * Подготовленное содержимое удаляется после фиксации транзакции.
+     *
+     * @param storageName имя объекта в хранилище.
+     */
+    @Transactional
+    public void cancel(String storageName) {
+        cancelAll(Collections.singleton(storageName));
+    }
+
+    /**
+     * Отменяет загрузки нескольких объектов одним запросом, как {@link #cancel(String)}.
+     *
+     * @param storageNames имена объектов в хранилище.
+     */
+    @Transactional
+    public void cancelAll(Collection<String> storageNames) {
+        if (storageNames.isEmpty()) {
+            return;
+        }
+        for (UploadOutbox entry : uploadOutboxRepository.findByFileNameIn(storageNames)) {
+            entry.setCancelled(true);
+            entry.setStandby(false);
+            log.info("Upload of file {} was cancelled", entry.getFileName());
+            deleteStagedAfterCommit(entry.getStagedPath());
+        }
+    }
+
+    /**
+     * Отменяет резервные записи объекта, содержимое которого загружено. Записи удаляет следующий захват
+     * на экземпляре, где подготовлено их содержимое.
+     */
+    private void dropStandby(String storageName) {
+        for (UploadOutbox standby : uploadOutboxRepository.findByFileNameAndStandbyTrueOrderByIdAsc(storageName)) {
+            standby.setStandby(false);
+            standby.setCancelled(true);
+            standby.setAvailableAt(Instant.now());
+        }
+    }
+
+    /**
+     * Удаляет подготовленное содержимое после фиксации транзакции или сразу, если транзакции нет.
+     */
+    private void deleteStagedAfterCommit(String stagedPath) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteStaged(stagedPath);
+                }
+            });
+        } else {
+            deleteStaged(stagedPath);
+        }
+    }
+
+    /**
+     * Записывает неудачную попытку загрузки. Следующая попытка откладывается экспоненциально,
+     * после {@link UploadOutboxConfiguration#getMaxAttempts()} попыток все файлы с этим содержимым
+     * переводятся в состояние {@link FileStatus#FAILED}, а объект и запись outbox удаляются.
+     * Если у объекта есть резервная запись, файлы не переводятся в FAILED: загрузка продолжается
+     * с подготовленного содержимого резервной записи.
+     * Попытка записывается, только если запись всё ещё захвачена этим обработчиком. Отменённая запись удаляется.
+     *
+     * @param entry запись outbox.
+     * @param error ошибка попытки.
+     * @return Возвращает true, если запись удалена и подготовленное содержимое больше не нужно.
+     */
+    @Transactional
+    public boolean fail(UploadOutbox entry, Exception error) {
+        Optional<UploadOutbox> saved = uploadOutboxRepository.findWithLockById(entry.getId());
+        if (!saved.isPresent() || !isClaimedBy(saved.get(), entry)) {
+            log.warn("Lease on upload of file {} was lost, failed attempt is discarded", entry.getFileName(), error);
+            return false;
+        }
+        if (saved.get().isCancelled()) {
+            log.info("Upload of file {} was cancelled", entry.getFileName());
+            uploadOutboxRepository.delete(saved.get());
+            return true;
+        }
+
+        int attempts = saved.get().getAttempts() + 1;
+        if (attempts >= uploadOutboxConfiguration.getMaxAttempts()) {
+            List<UploadOutbox> standby = uploadOutboxRepository.findByFileNameAndStandbyTrueOrderByIdAsc(entry.getFileName());
+            if (!standby.isEmpty()) {
+                log.error("Upload of file {} failed after {} attempts, it is retried from a duplicate copy",
+                        entry.getFileName(), attempts, error);
+                UploadOutbox promoted = standby.get(0);
+                promoted.setStandby(false);
+                promoted.setAvailableAt(Instant.now());
+                uploadOutboxRepository.delete(saved.get());
+                return true;
+            }
+            log.error("Upload of file {} failed after {} attempts", entry.getFileName(), attempts, error);
+            fileBlobService.delete(entry.getFileName());
+            fileDataService.updateStatusByStorageName(entry.getFileName(), FileStatus.FAILED);
+            uploadOutboxRepository.delete(saved.get());
+            return true;
+        }
+
+        Duration backoff = backoff(attempts);
+        log.warn("Upload of file {} failed, attempt {} will be retried in {}", entry.getFileName(), attempts, backoff, error);
+        saved.get().setAttempts(attempts);
+        saved.get().setAvailableAt(Instant.now().plus(backoff));
+        saved.get().setLastError(StringUtils.abbreviate(String.valueOf(error.getMessage()), MAX_ERROR_LENGTH));
+        return false;
+    }
+
+    private static boolean isClaimedBy(UploadOutbox saved, UploadOutbox entry) {
+        return saved.getClaimToken() != null && saved.getClaimToken().equals(entry.getClaimToken());
+    }
+
+    /**
+     * Пауза перед повторной попыткой: удваивается с каждой попыткой, не превышает максимума
+     * и случайно уменьшается до 20%, чтобы повторные попытки разных файлов не совпадали.
+     */
+    Duration backoff(int attempts) {
+        Duration max = uploadOutboxConfiguration.getMaxBackoff();
+        Duration backoff = uploadOutboxConfiguration.getInitialBackoff();
+        for (int i = 1; i < attempts && backoff.compareTo(max) < 0; i++) {
+            backoff = backoff.multipliedBy(2);
+        }
+        if (backoff.compareTo(max) > 0) {
+            backoff = max;
+        }
+        long jitter = (long) (backoff.toMillis() * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return backoff.minusMillis(jitter);
+    }
+
+    /**
+     * Возвращает записи файлов, подготовленных до запуска приложения, в очередь сразу, не дожидаясь
+     * окончания захвата, оставшегося от остановленного экземпляра. Подготовленное содержимое,
+     * для которого нет записи outbox, удаляется: загрузка не была подтверждена клиенту.
+     */
+    @Transactional
+    public void recoverStaged() {
+        if (stagedBeforeStart.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        int released = 0;
+        for (List<String> fileNames : Lists.partition(new ArrayList<>(stagedBeforeStart), RECOVERY_BATCH_SIZE)) {
+            Set<String> orphans = new HashSet<>(fileNames);
+            List<String> stagedPaths = new ArrayList<>(fileNames.size() * 2);
+            for (String fileName : fileNames) {
+                stagedPaths.add(uploadOutboxConfiguration.getStagingDirectory().resolve(fileName).toString());
+                stagedPaths.add(JOURNAL_PREFIX + fileName);
+            }
+            for (UploadOutbox entry : uploadOutboxRepository.findByFileNameInOrStagedPathIn(fileNames, stagedPaths)) {
+                orphans.remove(entry.getFileName());
+                orphans.remove(stagedName(entry.getStagedPath()));
+                if (entry.getAvailableAt().isAfter(now)) {
+                    entry.setAvailableAt(now);
+                    released++;
+                }
+            }
+            orphans.forEach(this::deleteOrphan);
+        }
+        log.info("Recovered {} staged files, {} uploads were released", stagedBeforeStart.size(), released);
+        stagedBeforeStart = Collections.emptySet();
+    }
+
+    /**
+     * Проверяет, что содержимое файлов сохраняется в локальный журнал.
+     *
+     * @return Возвращает true, если журнал включён.
+     */
+    public boolean isJournalEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Сохраняет содержимое файла до загрузки в хранилище: в журнал, если он включён,
+     * иначе в отдельный файл каталога подготовки. Метод возвращает управление после сброса содержимого на диск.
+     *
+     * @param fileName    имя файла в хранилище.
+     * @param inputStream содержимое файла.
+     * @return Возвращает ссылку на подготовленное содержимое.
+     * @throws IOException не удалось прочитать содержимое или записать его на диск.
+     */
+    public String stage(String fileName, InputStream inputStream) throws IOException {
+        if (journal != null) {
+            journal.append(fileName, inputStream);
+            return JOURNAL_PREFIX + fileName;
+        }
+
+        Path stagedFile = uploadOutboxConfiguration.getStagingDirectory().resolve(fileName);
+        try (FileChannel channel = FileChannel.open(stagedFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteStreams.copy(inputStream, Channels.newOutputStream(channel));
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(stagedFile);
+            throw e;
+        }
+        return stagedFile.toString();
+    }
+
+    /**
+     * Открывает подготовленное содержимое файла для загрузки в хранилище.
+     *
+     * @param stagedPath ссылка на подготовленное содержимое.
+     * @return Возвращает содержимое файла.
+     * @throws IOException подготовленного содержимого нет или его не удалось открыть.
+     */
+    public InputStream openForUpload(String stagedPath) throws IOException {
+        if (stagedPath.startsWith(JOURNAL_PREFIX)) {
+            String fileName = stagedPath.substring(JOURNAL_PREFIX.length());
+            InputStream inputStream = journal != null ? journal.open(fileName, 0, Long.MAX_VALUE) : null;
+            if (inputStream == null) {
+                throw new IOException("File " + fileName + " is not in the staging journal");
+            }
+            return inputStream;
+        }
+        return Files.newInputStream(Paths.get(stagedPath));
+    }
+
+    /**
+     * Размер подготовленного, но ещё не загруженного в хранилище содержимого файла.
+     *
+     * @param fileName имя файла в хранилище.
+     * @return Возвращает размер или -1, если содержимого нет на этом экземпляре.
+     */
+    public long findStagedSize(String fileName) {
+        if (journal != null && journal.contains(fileName)) {
+            return journal.size(fileName);
+        }
+        Path stagedFile = uploadOutboxConfiguration.getStagingDirectory().resolve(fileName);
+        try {
+            return Files.size(stagedFile);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Открывает часть подготовленного, но ещё не загруженного в хранилище содержимого файла.
+     *
+     * @param fileName имя файла в хранилище.
+     * @param offset   смещение начала части.
+     * @param length   длина части.
+     * @return Возвращает содержимое части или null, если содержимого уже нет на этом экземпляре.
+     */
+    public InputStream openStaged(String fileName, long offset, long length) {
+        if (journal != null) {
+            InputStream inputStream = journal.open(fileName, offset, length);
+            if (inputStream != null) {
+                return inputStream;
+            }
+        }
+        Path stagedFile = uploadOutboxConfiguration.getStagingDirectory().resolve(fileName);
+        try {
+            FileChannel channel = FileChannel.open(stagedFile, StandardOpenOption.READ);
+            channel.position(offset);
+            return ByteStreams.limit(Channels.newInputStream(channel), length);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Удаляет подготовленное содержимое файла.
+     *
+     * @param stagedPath ссылка на подготовленное содержимое.
+     */
+    public void deleteStaged(String stagedPath) {
+        if (stagedPath.startsWith(JOURNAL_PREFIX)) {
+            if (journal != null) {
+                journal.remove(stagedPath.substring(JOURNAL_PREFIX.length()));
+            }
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(stagedPath));
+        } catch (IOException e) {
+            log.warn("Couldn't delete staged file {}", stagedPath, e);
+        }
+    }
+
+    /**
+     * Имя подготовленного содержимого в каталоге подготовки или журнале. У резервной записи оно совпадает
+     * с именем файла-копии, а не с именем объекта записи.
+     */
+    private static String stagedName(String stagedPath) {
+        return stagedPath.startsWith(JOURNAL_PREFIX)
+                ? stagedPath.substring(JOURNAL_PREFIX.length())
+                : Paths.get(stagedPath).getFileName().toString();
+    }
+
+    private void deleteOrphan(String fileName) {
+        log.warn("Staged file {} has no queued upload, it is deleted", fileName);
+        if (journal != null && journal.contains(fileName)) {
+            journal.remove(fileName);
+        } else {
+            deleteStaged(uploadOutboxConfiguration.getStagingDirectory().resolve(fileName).toString());
+        }
+    }
+
+    /**
+     * Создаёт каталог подготовки и открывает журнал, если он включён. Подготовленное ранее содержимое
+     * сохраняется: в нём могут быть файлы, загрузка которых не завершилась до остановки приложения.
+     *
+     * @throws IllegalStateException не задан идентификатор экземпляра, каталог подготовки или каталог включённого журнала.
+     */
+    @PostConstruct
+    void createStagingDirectory() {
+        if (StringUtils.isBlank(uploadOutboxConfiguration.getNodeId())) {
+            throw new IllegalStateException("app.upload.node-id must be set to an id that is stable across restarts");
+        }
+        Path stagingDirectory = uploadOutboxConfiguration.getStagingDirectory();
+        if (stagingDirectory == null) {
+            throw new IllegalStateException("app.upload.staging-directory must be set to a persistent directory");
+        }
+        if (stagingDirectory.toAbsolutePath().startsWith(Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath())) {
+            log.warn("Staging directory {} is in the temp directory, set app.upload.staging-directory to a persistent "
+                    + "volume so that queued uploads survive restarts", stagingDirectory);
+        }
+        Set<String> staged = new HashSet<>();
+        try {
+            Files.createDirectories(stagingDirectory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(stagingDirectory)) {
+                stream.forEach(path -> staged.add(path.getFileName().toString()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't create staging directory " + stagingDirectory, e);
+        }
+
+        if (uploadOutboxConfiguration.isJournalEnabled()) {
+            if (uploadOutboxConfiguration.getJournalDirectory() == null) {
+                throw new IllegalStateException("app.upload.journal-directory must be set to a persistent directory");
+            }
+            journal = new StagingJournal(uploadOutboxConfiguration.getJournalDirectory(),
+                    uploadOutboxConfiguration.getJournalSegmentSize().toBytes(),
+                    (int) uploadOutboxConfiguration.getJournalChunkSize().toBytes());
+            staged.addAll(journal.fileNames());
+        }
+        stagedBeforeStart = staged;
+    }
+
+    /**
+     * Закрывает журнал.
+     */
+    @PreDestroy
+    void closeJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Результат завершения загрузки {@link #complete(UploadOutbox)}.
+     */
+    public enum Completion {
+        /** Загрузка завершена. */
+        COMPLETED,
+        /** Загрузка отменена удалением всех файлов с этим содержимым, загруженный объект нужно удалить. */
+        CANCELLED,
+        /** Запись захвачена другим обработчиком или уже обработана им, результат не записан. */
+        LEASE_LOST
+    }
+}
@@ -0,0 +1,261 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.dto.UploadSessionDto;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.entity.UploadSession;
+import edu.rumirnul.mediafilestorage.entity.UploadSessionPart;
+import edu.rumirnul.mediafilestorage.entity.UploadSessionStatus;
+import edu.rumirnul.mediafilestorage.exception.InvalidUploadRequestException;
+import edu.rumirnul.mediafilestorage.exception.UploadSessionNotFoundException;
+import edu.rumirnul.mediafilestorage.exception.UploadSessionStateException;
+import edu.rumirnul.mediafilestorage.repository.UploadSessionPartRepository;
+import edu.rumirnul.mediafilestorage.repository.UploadSessionRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Класс сервис работающий с сессиями возобновляемой загрузки файлов.
+ * Размер части сессии равен размеру части multipart загрузки {@link MinioConfiguration#getPartSize()},
+ * часть с номером n становится частью n + 1 multipart загрузки. Части могут загружаться параллельно
+ * и в любом порядке, повторная загрузка части заменяет её. Строка сессии блокируется при сохранении части
+ * и завершении, поэтому часть не может быть сохранена в уже завершённую сессию.
+ *
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionService {
+
+    /** Максимальное количество частей в multipart загрузке S3. */
+    private static final int MAX_PARTS = 10000;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadSessionPartRepository uploadSessionPartRepository;
+    private final FileDataService fileDataService;
+    private final S3Service s3Service;
+    private final MinioConfiguration minioConfiguration;
+    private final UploadOutboxConfiguration uploadOutboxConfiguration;
+
+    /**
+     * Создание сессии и multipart загрузки в хранилище.
+     *
+     * @param fileName     имя файла в хранилище.
+     * @param originalName оригинальное имя файла.
+     * @param extension    расширение файла.
+     * @param contentType  тип содержимого файла.
+     * @param size         размер файла в байтах.
+     * @return Возвращает состояние созданной сессии.
+     * @throws InvalidUploadRequestException размер файла не положительный или файл слишком большой.
+     */
+    @Transactional
+    public UploadSessionDto create(String fileName, String originalName, String extension, String contentType,
+                                   long size) {
+        long chunkSize = minioConfiguration.getPartSize().toBytes();
+        if (size <= 0) {
+            throw new InvalidUploadRequestException("File size must be positive");
+        }
+        if (size > chunkSize * MAX_PARTS) {
+            throw new InvalidUploadRequestException("File is too large for configured part size: " + size);
+        }
+
+        Instant now = Instant.now();
+        UploadSession session = uploadSessionRepository.save(UploadSession.builder()
+                .id(UUID.randomUUID().toString())
+                .fileName(fileName)
+                .originalName(originalName)
+                .extension(extension)
+                .contentType(contentType)
+                .uploadId(s3Service.createMultipartUpload(fileName))
+                .size(size)
+                .chunkSize(chunkSize)
+                .chunkCount((int) ((size + chunkSize - 1) / chunkSize))
+                .status(UploadSessionStatus.ACTIVE)
+                .createdAt(now)
+                .expiresAt(now.plus(uploadOutboxConfiguration.getSessionTtl()))
+                .build());
+        log.info("Created upload session: {}", session);
+        return toDto(session, Collections.emptyList());
+    }
+
+    /**
+     * Получение сессии, принимающей части файла.
+     *
+     * @param sessionId уникальный идентификатор сессии.
+     * @return Возвращает сессию.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     * @throws UploadSessionStateException    сессия завершена или истекла.
+     */
+    public UploadSession getActive(String sessionId) {
+        UploadSession session = uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new UploadSessionNotFoundException("Upload session " + sessionId + " not found"));
+        checkActive(session);
+        return session;
+    }
+
+    /**
+     * Получение состояния сессии и номеров загруженных частей.
+     *
+     * @param sessionId уникальный идентификатор сессии.
+     * @return Возвращает состояние сессии.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     */
+    @Transactional(readOnly = true)
+    public UploadSessionDto getProgress(String sessionId) {
+        UploadSession session = uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new UploadSessionNotFoundException("Upload session " + sessionId + " not found"));
+        return toDto(session, uploadSessionPartRepository.findBySessionIdOrderByChunkIndexAsc(sessionId));
+    }
+
+    /**
+     * Сохранение загруженной в хранилище части. Ранее загруженная часть с тем же номером заменяется.
+     *
+     * @param sessionId уникальный идентификатор сессии.
+     * @param index     номер части, начиная с 0.
+     * @param size      размер части.
+     * @param etag      etag части multipart загрузки.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     * @throws UploadSessionStateException    сессия завершена или истекла.
+     */
+    @Transactional
+    public void recordPart(String sessionId, int index, long size, String etag) {
+        UploadSession session = lock(sessionId);
+        checkActive(session);
+
+        UploadSessionPart part = uploadSessionPartRepository.findBySessionIdAndChunkIndex(sessionId, index)
+                .orElseGet(() -> UploadSessionPart.builder().sessionId(sessionId).chunkIndex(index).build());
+        part.setSize(size);
+        part.setEtag(etag);
+        uploadSessionPartRepository.save(part);
+    }
+
+    /**
+     * Завершение сессии: файл собирается из загруженных частей на стороне хранилища и сохраняются его метаданные.
+     * Повторное завершение возвращает уже сохранённый файл.
+     *
+     * @param sessionId уникальный идентификатор сессии.
+     * @return Возвращает метаданные сохранённого файла.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     * @throws UploadSessionStateException    сессия истекла или загружены не все части.
+     */
+    @Transactional
+    public FileData complete(String sessionId) {
+        UploadSession session = lock(sessionId);
+        if (session.getStatus() == UploadSessionStatus.COMPLETED) {
+            FileData fileData = fileDataService.getById(session.getFileId());
+            if (fileData == null) {
+                throw new UploadSessionStateException("File of upload session " + sessionId + " was deleted");
+            }
+            return fileData;
+        }
+        checkActive(session);
+
+        List<UploadSessionPart> parts = uploadSessionPartRepository.findBySessionIdOrderByChunkIndexAsc(sessionId);
+        if (parts.size() != session.getChunkCount()) {
+            throw new UploadSessionStateException("Upload session " + sessionId + " has " + parts.size()
+                    + " of " + session.getChunkCount() + " chunks");
+        }
+        s3Service.completeMultipartUpload(session.getFileName(), session.getUploadId(),
+                parts.stream().map(UploadSessionPart::getEtag).collect(Collectors.toList()));
+
+        FileData fileData = fileDataService.save(FileData.builder()
+                .fileName(session.getFileName())
+                .originalName(session.getOriginalName())
+                .extension(session.getExtension())
+                .size(session.getSize())
+                .contentType(session.getContentType())
+                .createdAt(Instant.now())
+                .status(FileStatus.STORED)
+                .build());
+        session.setStatus(UploadSessionStatus.COMPLETED);
+        session.setFileId(fileData.getId());
+        log.info("Completed upload session {}, file: {}", sessionId, fileData);
+        return fileData;
+    }
+
+    /**
+     * Отмена сессии и её multipart загрузки.
+     *
+     * @param sessionId уникальный идентификатор сессии.
+     * @throws UploadSessionNotFoundException сессии нет в БД.
+     * @throws UploadSessionStateException    сессия уже завершена.
+     */
+    @Transactional
+    public void abort(String sessionId) {
+        UploadSession session = lock(sessionId);
+        if (session.getStatus() != UploadSessionStatus.ACTIVE) {
+            throw new UploadSessionStateException("Upload session " + sessionId + " is already completed");
+        }
+        s3Service.abortMultipartUpload(session.getFileName(), session.getUploadId());
+        uploadSessionPartRepository.deleteBySessionIdIn(Collections.singleton(sessionId));
+        uploadSessionRepository.delete(session);
+        log.info("Aborted upload session {}", sessionId);
+    }
+
+    /**
+     * Удаление пачки истёкших сессий. Незавершённые multipart загрузки истёкших сессий отменяются.
+     * Сессии, заблокированные другими транзакциями, пропускаются.
+     *
+     * @return Возвращает количество удалённых сессий.
+     */
+    @Transactional
+    public int deleteExpired() {
+        List<UploadSession> sessions = uploadSessionRepository.findByExpiresAtBefore(Instant.now(),
+                PageRequest.of(0, uploadOutboxConfiguration.getSessionGcBatchSize()));
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+        for (UploadSession session : sessions) {
+            if (session.getStatus() == UploadSessionStatus.ACTIVE) {
+                s3Service.abortMultipartUpload(session.getFileName(), session.getUploadId());
+            }
+        }
+        uploadSessionPartRepository.deleteBySessionIdIn(
+                sessions.stream().map(UploadSession::getId).collect(Collectors.toList()));
+        uploadSessionRepository.deleteAllInBatch(sessions);
+        return sessions.size();
+    }
+
+    private UploadSession lock(String sessionId) {
+        return uploadSessionRepository.findWithLockById(sessionId)
+                .orElseThrow(() -> new UploadSessionNotFoundException("Upload session " + sessionId + " not found"));
+    }
+
+    private static void checkActive(UploadSession session) {
+        if (session.getStatus() != UploadSessionStatus.ACTIVE) {
+            throw new UploadSessionStateException("Upload session " + session.getId() + " is already completed");
+        }
+        if (session.getExpiresAt().isBefore(Instant.now())) {
+            throw new UploadSessionStateException("Upload session " + session.getId() + " has expired");
+        }
+    }
+
+    private static UploadSessionDto toDto(UploadSession session, List<UploadSessionPart> parts) {
+        return UploadSessionDto.builder()
+                .id(session.getId())
+                .originalName(session.getOriginalName())
+                .size(session.getSize())
+                .chunkSize(session.getChunkSize())
+                .chunkCount(session.getChunkCount())
+                .receivedChunks(parts.stream().map(UploadSessionPart::getChunkIndex).collect(Collectors.toList()))
+                .receivedBytes(parts.stream().mapToLong(UploadSessionPart::getSize).sum())
+                .status(session.getStatus())
+                .fileId(session.getFileId())
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package edu.rumirnul.mediafilestorage.util;
+
+import edu.rumirnul.mediafilestorage.dto.ByteRangeDto;
+import edu.rumirnul.mediafilestorage.exception.RangeNotSatisfiableException;
+import org.springframework.http.HttpRange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Утилитарный класс для разбора заголовка Range (RFC 7233).
+ * @author Alexey Svistunov
+ * @version 1.0
+ */
+public final class ByteRangeUtils {
+    /** Максимальное количество диапазонов в заголовке. При большем количестве возвращается файл целиком. */
+    public static final int MAX_RANGES = 16;
+
+    private ByteRangeUtils() {
+    }
+
+    /**
+     * Переводит заголовок Range в диапазоны байт файла заданного размера.
+     * Синтаксически неверный заголовок игнорируется, как того требует RFC 7233, и запрашивается весь файл.
+     * Невыполнимые диапазоны отбрасываются. Пересекающиеся и соседние диапазоны объединяются
+     * и возвращаются по возрастанию смещения. Заголовок с количеством диапазонов больше {@link #MAX_RANGES}
+     * игнорируется, чтобы один запрос не порождал множество запросов к хранилищу.
+     *
+     * @param rangeHeader значение заголовка Range.
+     * @param size        размер файла.
+     * @return Возвращает выполнимые диапазоны или пустой список, если нужно вернуть файл целиком.
+     * @throws RangeNotSatisfiableException ни один из диапазонов не выполним.
+     */
+    public static List<ByteRangeDto> resolve(String rangeHeader, long size) {
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+        if (httpRanges.isEmpty() || httpRanges.size() > MAX_RANGES) {
+            return Collections.emptyList();
+        }
+
+        List<ByteRangeDto> ranges = new ArrayList<>(httpRanges.size());
+        for (HttpRange httpRange : httpRanges) {
+            try {
+                long start = httpRange.getRangeStart(size);
+                long end = httpRange.getRangeEnd(size);
+                if (start <= end) {
+                    ranges.add(new ByteRangeDto(start, end));
+                }
+            } catch (IllegalArgumentException ignored) {
+                // Диапазон начинается за концом файла.
+            }
+        }
+        if (ranges.isEmpty()) {
+            throw new RangeNotSatisfiableException("Requested range not satisfiable", size);
+        }
+        return coalesce(ranges);
+    }
+
+    /**
+     * Объединяет пересекающиеся и соседние диапазоны.
+     *
+     * @param ranges выполнимые диапазоны в любом порядке.
+     * @return Возвращает непересекающиеся диапазоны по возрастанию смещения.
+     */
+    private static List<ByteRangeDto> coalesce(List<ByteRangeDto> ranges) {
+        ranges.sort(Comparator.comparingLong(ByteRangeDto::getStart));
+        List<ByteRangeDto> coalesced = new ArrayList<>(ranges.size());
+        ByteRangeDto current = ranges.get(0);
+        for (ByteRangeDto range : ranges.subList(1, ranges.size())) {
+            if (range.getStart() <= current.getEnd() + 1) {
+                current = new ByteRangeDto(current.getStart(), Math.max(current.getEnd(), range.getEnd()));
+            } else {
+                coalesced.add(current);
+                current = range;
+            }
+        }
+        coalesced.add(current);
+        return coalesced;
+    }
+}
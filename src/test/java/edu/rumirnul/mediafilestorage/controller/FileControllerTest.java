@@ -6,6 +6,7 @@ import edu.rumirnul.mediafilestorage.constant.WebConstant;
 import edu.rumirnul.mediafilestorage.entity.FileData;
 import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
 import edu.rumirnul.mediafilestorage.exception.ForbiddenFileFormatException;
+import edu.rumirnul.mediafilestorage.exception.MissingFilePartException;
 import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
 import edu.rumirnul.mediafilestorage.service.impl.FileServiceImpl;
 import lombok.SneakyThrows;
@@ -15,6 +16,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
@@ -24,12 +27,18 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Random;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -53,6 +62,7 @@ class FileControllerTest {
     private static final Random RANDOM = new Random();
     private static final String baseUrl = WebConstant.VERSION_URL + "/file";
     private final static String DEFAULT_ORIGINAL_FILE_NAME = "testOriginalFileName.pdf";
+    private final static String BOUNDARY = "testBoundary";
     private final static byte[] BYTE_DATA = new byte[]{1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2, 3, 4, 5};
 
 
@@ -90,6 +100,53 @@ class FileControllerTest {
                         .equals(ForbiddenFileFormatException.class));
     }
 
+    @DisplayName("Потоковое сохранение файла. Должно пройти успешно.")
+    @Test
+    void fileStreamUpload_whenCorrectRequest_thenStatus201AndReturnFileUploadResponse() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(baseUrl + "/stream/create")
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(createMultipartBody("file", "cartina.pdf", "test data".getBytes())))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").isNotEmpty());
+    }
+
+    @DisplayName("Потоковое сохранение без части file. Должно вернуть код 400 и сообщение об ошибке.")
+    @Test
+    void fileStreamUpload_whenFilePartMissing_thenStatus400AndExceptionMessage() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post(baseUrl + "/stream/create")
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(createMultipartBody("other", "cartina.pdf", "test data".getBytes())))
+                .andExpect(status().isBadRequest())
+                .andExpect(mvcResult -> mvcResult.getResolvedException()
+                        .getClass()
+                        .equals(MissingFilePartException.class));
+    }
+
+    @DisplayName("Сохранение файла из тела PUT запроса. Должно пройти успешно.")
+    @Test
+    void fileBinaryUpload_whenCorrectRequest_thenStatus201AndReturnFileUploadResponse() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put(baseUrl + "/upload")
+                        .header(WebConstant.FILE_NAME_HEADER, DEFAULT_ORIGINAL_FILE_NAME)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(BYTE_DATA))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").isNotEmpty());
+    }
+
+    @DisplayName("Сохранение файла из тела PUT запроса с неразрешенным расширением. Должно вернуть код 415.")
+    @Test
+    void fileBinaryUpload_whenUnauthorizedFileExtension_thenStatus415() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put(baseUrl + "/upload")
+                        .header(WebConstant.FILE_NAME_HEADER, "cartina.pdfabcdef")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(BYTE_DATA))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
     @DisplayName("Получение файла. Должно пройти успешно.")
     @Test
     void fileDownload_whenDownload_thenStatus200AndReturnContentAsByteArray() throws Exception {
@@ -105,6 +162,85 @@ class FileControllerTest {
         assertArrayEquals(ByteStreams.toByteArray(multipartFile.getInputStream()), result.getResponse().getContentAsByteArray());
     }
 
+    @DisplayName("Получение диапазона файла. Должно вернуть код 206 и запрошенные байты.")
+    @Test
+    void fileDownload_whenRangeRequested_thenStatus206AndReturnRange() throws Exception {
+        MultipartFile multipartFile = getCorrectMultipartFile();
+
+        FileData fileData = fileService.saveFile(multipartFile);
+        Thread.sleep(1000);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                        .get(baseUrl + "/get/" + fileData.getId())
+                        .header(HttpHeaders.RANGE, "bytes=5-14"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 5-14/" + BYTE_DATA.length))
+                .andReturn();
+
+        assertArrayEquals(Arrays.copyOfRange(BYTE_DATA, 5, 15), result.getResponse().getContentAsByteArray());
+    }
+
+    @DisplayName("Получение диапазона за концом файла. Должно вернуть код 416 без заголовка Cache-Control.")
+    @Test
+    void fileDownload_whenRangeNotSatisfiable_thenStatus416() throws Exception {
+        MultipartFile multipartFile = getCorrectMultipartFile();
+
+        FileData fileData = fileService.saveFile(multipartFile);
+        Thread.sleep(1000);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(baseUrl + "/get/" + fileData.getId())
+                        .header(HttpHeaders.RANGE, "bytes=1000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + BYTE_DATA.length))
+                .andExpect(header().doesNotExist(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @DisplayName("Повторное получение файла с известным ETag. Должно вернуть код 304 без содержимого.")
+    @Test
+    void fileDownload_whenIfNoneMatchMatches_thenStatus304() throws Exception {
+        MultipartFile multipartFile = getCorrectMultipartFile();
+
+        FileData fileData = fileService.saveFile(multipartFile);
+        Thread.sleep(1000);
+
+        MvcResult first = mockMvc.perform(MockMvcRequestBuilders
+                        .get(baseUrl + "/get/" + fileData.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PDF_VALUE))
+                .andReturn();
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                        .get(baseUrl + "/get/" + fileData.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, first.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andReturn();
+
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+    }
+
+    @DisplayName("Запрос HEAD файла. Должен вернуть заголовки без содержимого.")
+    @Test
+    void fileDownload_whenHead_thenStatus200AndNoContent() throws Exception {
+        MultipartFile multipartFile = getCorrectMultipartFile();
+
+        FileData fileData = fileService.saveFile(multipartFile);
+        Thread.sleep(1000);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                        .head(baseUrl + "/get/" + fileData.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, String.valueOf(BYTE_DATA.length)))
+                .andReturn();
+
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+    }
+
     @DisplayName("Получение файла, которого нет. Должно вернуть код 404 и сообщение об ошибке.")
     @Test
     void fileDownload_whenFileNotExist_thenStatus404AndExceptionMessage() throws Exception {
@@ -131,6 +267,25 @@ class FileControllerTest {
                 .andExpect(jsonPath("$.originalFileName").value(fileData.getOriginalName()));
     }
 
+    @DisplayName("Повторное получение метаинформации с известным ETag. Должно вернуть код 304.")
+    @Test
+    void getFileData_whenIfNoneMatchMatches_thenStatus304() throws Exception {
+        MultipartFile multipartFile = getCorrectMultipartFile();
+
+        FileData fileData = fileService.saveFile(multipartFile);
+
+        MvcResult first = mockMvc.perform(MockMvcRequestBuilders
+                        .get(baseUrl + "/data/get/" + fileData.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(baseUrl + "/data/get/" + fileData.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, first.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+    }
+
     @DisplayName("Получение метаинформации о файле, которого нет. Должно вернуть код 404 и сообщение об ошибке.")
     @Test
     void getFileData_whenFileDataNotExist_thenStatus404AndExceptionMessage() throws Exception {
@@ -144,6 +299,20 @@ class FileControllerTest {
                         .equals(FileNotFoundException.class));
     }
 
+    @DisplayName("Получение состояния сохранённого файла. Должно вернуть STORED после завершения загрузки.")
+    @Test
+    void getFileStatus_whenUploadCompleted_thenStatusStored() throws Exception {
+        MultipartFile multipartFile = getCorrectMultipartFile();
+
+        FileData fileData = fileService.saveFile(multipartFile);
+        Thread.sleep(1000);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get(baseUrl + "/status/" + fileData.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("STORED"));
+    }
+
     @DisplayName("Удаление файла. Должно пройти успешно.")
     @Test
     void fileDelete_whenDelete_thenReturnStatus200() throws Exception {
@@ -157,6 +326,16 @@ class FileControllerTest {
                 .andExpect(status().isOk());
     }
 
+    private static byte[] createMultipartBody(String partName, String fileName, byte[] content) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + partName + "\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
     private static MultipartFile getCorrectMultipartFile() {
 
         return new MultipartFile() {
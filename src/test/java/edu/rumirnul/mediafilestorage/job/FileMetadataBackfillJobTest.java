@@ -0,0 +1,129 @@
+package edu.rumirnul.mediafilestorage.job;
+
+import edu.rumirnul.mediafilestorage.config.FileMetadataConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import edu.rumirnul.mediafilestorage.service.impl.FileDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование заполнения метаданных в {@link FileMetadataBackfillJob}
+ */
+class FileMetadataBackfillJobTest {
+
+    private static final Instant LAST_MODIFIED = Instant.parse("2022-11-01T10:15:30Z");
+
+    FileDataRepository fileDataRepository;
+    FileDataService fileDataService;
+    S3Service s3Service;
+    FileMetadataConfiguration configuration;
+    FileMetadataBackfillJob job;
+
+    @BeforeEach
+    void setUp() {
+        fileDataRepository = mock(FileDataRepository.class);
+        fileDataService = mock(FileDataService.class);
+        s3Service = mock(S3Service.class);
+        configuration = new FileMetadataConfiguration();
+        configuration.setBackfillStatRate(1000);
+        job = new FileMetadataBackfillJob(fileDataRepository, fileDataService, s3Service, configuration);
+    }
+
+    @DisplayName("Заполнение пачки файлов. Метаданные должны быть взяты из сведений хранилища.")
+    @Test
+    void backfill_whenFilesWithoutMetadata_thenFillsFromStat() {
+        //Given
+        FileData found = FileData.builder().id(1L).fileName("found.pdf").originalName("a.pdf").build();
+        FileData missing = FileData.builder().id(2L).fileName("missing.pdf").originalName("b.pdf").build();
+        when(fileDataRepository.findBackfillBatch(eq(0L), eq(5), any(Pageable.class)))
+                .thenReturn(Arrays.asList(found, missing));
+        when(s3Service.statFile("found.pdf")).thenReturn(FileStatDto.builder()
+                .size(45)
+                .lastModified(LAST_MODIFIED)
+                .contentType("application/octet-stream")
+                .build());
+        when(s3Service.statFile("missing.pdf")).thenThrow(new FileNotFoundException("File not found in storage."));
+
+        //When
+        job.backfill();
+
+        //Then
+        assertEquals(45L, found.getSize());
+        assertEquals("application/pdf", found.getContentType());
+        assertEquals(LAST_MODIFIED, found.getCreatedAt());
+        assertEquals(FileStatus.STORED, found.getStatus());
+        assertNull(missing.getStatus());
+        assertEquals(1, missing.getBackfillAttempts());
+        assertNull(found.getBackfillAttempts());
+        verify(fileDataService).saveAll(Arrays.asList(found, missing));
+    }
+
+    @DisplayName("Последняя неудачная попытка заполнения. Количество попыток должно достигнуть максимального.")
+    @Test
+    void backfill_whenLastAttemptFails_thenRecordsMaxAttempts() {
+        //Given
+        FileData missing = FileData.builder().id(2L).fileName("missing.pdf").originalName("b.pdf")
+                .backfillAttempts(4).build();
+        when(fileDataRepository.findBackfillBatch(eq(0L), eq(5), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(missing));
+        when(s3Service.statFile("missing.pdf")).thenThrow(new FileNotFoundException("File not found in storage."));
+
+        //When
+        job.backfill();
+
+        //Then
+        assertEquals(5, missing.getBackfillAttempts());
+        assertNull(missing.getStatus());
+        verify(fileDataService).saveAll(Collections.singletonList(missing));
+    }
+
+    @DisplayName("Следующий запуск заполнения. Должен продолжить после последнего обработанного id.")
+    @Test
+    void backfill_whenCalledAgain_thenContinuesAfterLastId() {
+        //Given
+        FileData fileData = FileData.builder().id(7L).fileName("file.pdf").originalName("a.pdf").build();
+        when(fileDataRepository.findBackfillBatch(eq(0L), eq(5), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(fileData));
+        when(s3Service.statFile("file.pdf")).thenReturn(FileStatDto.builder().size(1).build());
+
+        //When
+        job.backfill();
+        job.backfill();
+
+        //Then
+        verify(fileDataRepository).findBackfillBatch(eq(7L), eq(5), any(Pageable.class));
+    }
+
+    @DisplayName("Заполнение выключено. Запросов к БД и хранилищу быть не должно.")
+    @Test
+    void backfill_whenDisabled_thenDoesNothing() {
+        //Given
+        configuration.setBackfillEnabled(false);
+
+        //When
+        job.backfill();
+
+        //Then
+        verify(fileDataRepository, never()).findBackfillBatch(anyLong(), anyInt(), any(Pageable.class));
+        verifyNoInteractions(s3Service);
+    }
+}
@@ -2,6 +2,7 @@ package edu.rumirnul.mediafilestorage.repository;
 
 import com.vladmihalcea.sql.SQLStatementCountValidator;
 import edu.rumirnul.mediafilestorage.config.SystemJpaTest;
+import edu.rumirnul.mediafilestorage.dto.FileMetadataDto;
 import edu.rumirnul.mediafilestorage.entity.FileData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -11,6 +12,8 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.util.Optional;
+
 import static com.vladmihalcea.sql.SQLStatementCountValidator.*;
 import static com.vladmihalcea.sql.SQLStatementCountValidator.assertDeleteCount;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -247,5 +250,44 @@ class FileDataRepositoryTest {
         assertDeleteCount(0);
     }
 
+    @DisplayName("Получение проекции метаданных файла по id. Число select должно быть равно 1.")
+    @Test
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql",
+            "classpath:sql/2_insert_file_data.sql"})
+    void findMetadataById_whenExistsId_thenReturnMetadataAndAssertDmlCount() {
+        //When
+        Optional<FileMetadataDto> result = fileDataRepository.findMetadataById(DEFAULT_ID);
+
+        //Then
+        assertThat(result).contains(FileMetadataDto.builder()
+                .id(DEFAULT_ID)
+                .fileName(DEFAULT_FILE_NAME)
+                .originalName(DEFAULT_ORIGINAL_NAME)
+                .extension(DEFAULT_EXTENSION)
+                .build());
 
+        assertSelectCount(1);
+        assertInsertCount(0);
+        assertUpdateCount(0);
+        assertDeleteCount(0);
+    }
+
+    @DisplayName("Получение проекции метаданных файла по id, которого нет в БД. Должно вернуть пустой Optional.")
+    @Test
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql",
+            "classpath:sql/2_insert_file_data.sql"})
+    void findMetadataById_whenNotExistsId_thenReturnEmptyAndAssertDmlCount() {
+        //When
+        Optional<FileMetadataDto> result = fileDataRepository.findMetadataById(1509L);
+
+        //Then
+        assertThat(result).isEmpty();
+
+        assertSelectCount(1);
+        assertInsertCount(0);
+        assertUpdateCount(0);
+        assertDeleteCount(0);
+    }
 }
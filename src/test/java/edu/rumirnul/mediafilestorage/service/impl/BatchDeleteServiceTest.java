@@ -0,0 +1,86 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.service.impl.BatchDeleteService.DeletedFiles;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование пакетного удаления метаданных файлов в {@link BatchDeleteService}
+ */
+class BatchDeleteServiceTest {
+
+    FileDataRepository fileDataRepository;
+    FileDataService fileDataService;
+    FileBlobService fileBlobService;
+    ContentChunkService contentChunkService;
+    UploadOutboxService uploadOutboxService;
+    BatchDeleteService batchDeleteService;
+
+    @BeforeEach
+    void setUp() {
+        fileDataRepository = mock(FileDataRepository.class);
+        fileDataService = mock(FileDataService.class);
+        fileBlobService = mock(FileBlobService.class);
+        contentChunkService = mock(ContentChunkService.class);
+        uploadOutboxService = mock(UploadOutboxService.class);
+        batchDeleteService = new BatchDeleteService(fileDataRepository, fileDataService, fileBlobService,
+                contentChunkService, uploadOutboxService);
+    }
+
+    @DisplayName("Удаление пачки файлов. Ссылки должны удаляться пачками, метаданные - одним вызовом.")
+    @Test
+    void delete_whenFilesExist_thenReleasesReferencesInBulk() {
+        //Given
+        FileData first = FileData.builder().id(1L).fileName("first.pdf").objectName("shared.pdf").build();
+        FileData second = FileData.builder().id(2L).fileName("second.pdf").objectName("shared.pdf").build();
+        FileData chunked = FileData.builder().id(3L).fileName("chunked.pdf").chunked(true).build();
+        List<FileData> files = Arrays.asList(first, second, chunked);
+        when(fileDataRepository.findWithLockByIdInOrderByIdAsc(new TreeSet<>(Arrays.asList(1L, 2L, 3L, 4L))))
+                .thenReturn(files);
+        Map<String, Integer> references = new HashMap<>();
+        references.put("shared.pdf", 2);
+        Set<String> unreferenced = new TreeSet<>(Collections.singleton("shared.pdf"));
+        when(fileBlobService.releaseAll(references)).thenReturn(unreferenced);
+
+        //When
+        DeletedFiles deleted = batchDeleteService.delete(Arrays.asList(4L, 3L, 2L, 1L));
+
+        //Then
+        assertEquals(files, deleted.getFiles());
+        assertEquals(unreferenced, deleted.getUnreferenced());
+        verify(contentChunkService).releaseManifests(Collections.singletonList(3L));
+        verify(uploadOutboxService).cancelAll(unreferenced);
+        verify(fileDataService).deleteAll(files);
+    }
+
+    @DisplayName("Удаление пачки отсутствующих файлов. Ничего не должно удаляться.")
+    @Test
+    void delete_whenNoFilesFound_thenDeletesNothing() {
+        //Given
+        when(fileDataRepository.findWithLockByIdInOrderByIdAsc(any())).thenReturn(Collections.emptyList());
+
+        //When
+        DeletedFiles deleted = batchDeleteService.delete(Collections.singletonList(1L));
+
+        //Then
+        assertTrue(deleted.getFiles().isEmpty());
+        assertTrue(deleted.getUnreferenced().isEmpty());
+        verifyNoInteractions(fileBlobService, contentChunkService, uploadOutboxService, fileDataService);
+    }
+}
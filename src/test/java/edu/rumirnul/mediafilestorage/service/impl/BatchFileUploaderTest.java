@@ -0,0 +1,73 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import edu.rumirnul.mediafilestorage.service.impl.BatchFileUploader.StoredFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование одновременной загрузки файлов пакета в {@link BatchFileUploader}
+ */
+class BatchFileUploaderTest {
+
+    S3Service s3Service;
+    BatchFileUploader batchFileUploader;
+
+    @BeforeEach
+    void setUp() {
+        s3Service = mock(S3Service.class);
+        when(s3Service.putFile(any())).thenAnswer(invocation -> {
+            FileDto fileDto = invocation.getArgument(0);
+            if (fileDto.getName().startsWith("broken")) {
+                throw new S3Exception("Failed to save file in s3(minio)");
+            }
+            return ByteStreams.exhaust(fileDto.getInputStream());
+        });
+        UploadOutboxConfiguration configuration = new UploadOutboxConfiguration();
+        configuration.setBatchThreads(2);
+        batchFileUploader = new BatchFileUploader(s3Service, configuration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchFileUploader.shutdown();
+    }
+
+    @DisplayName("Загрузка пакета с ошибкой одного файла. Остальные файлы должны сохраниться с размером и контрольной суммой.")
+    @Test
+    void upload_whenOneFileFails_thenOtherFilesAreStored() {
+        //Given
+        byte[] content = new byte[]{1, 2, 3, 4, 5};
+        Map<String, ByteArrayResource> contents = new LinkedHashMap<>();
+        contents.put("first.pdf", new ByteArrayResource(content));
+        contents.put("broken.pdf", new ByteArrayResource(content));
+        contents.put("third.pdf", new ByteArrayResource(content));
+
+        //When
+        Map<String, StoredFile> results = batchFileUploader.upload(contents);
+
+        //Then
+        assertEquals(Arrays.asList("first.pdf", "broken.pdf", "third.pdf"), Arrays.asList(results.keySet().toArray()));
+        assertTrue(results.get("first.pdf").isStored());
+        assertEquals(content.length, results.get("first.pdf").getSize());
+        assertEquals(Hashing.sha256().hashBytes(content).toString(), results.get("third.pdf").getChecksum());
+        assertFalse(results.get("broken.pdf").isStored());
+        assertInstanceOf(S3Exception.class, results.get("broken.pdf").getError());
+    }
+}
@@ -0,0 +1,157 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import edu.rumirnul.mediafilestorage.config.ReconciliationConfiguration;
+import edu.rumirnul.mediafilestorage.dto.StoredObjectDto;
+import edu.rumirnul.mediafilestorage.entity.ReconciliationCheckpoint;
+import edu.rumirnul.mediafilestorage.repository.ContentChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileBlobRepository;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import edu.rumirnul.mediafilestorage.repository.ReconciliationCheckpointRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование сверки bucket с метаданными файлов в {@link BucketReconciliationService}
+ */
+class BucketReconciliationServiceTest {
+
+    private static final String BUCKET = "files";
+    private static final Instant OLD = Instant.now().minus(Duration.ofDays(2));
+
+    ReconciliationCheckpointRepository checkpointRepository;
+    FileDataRepository fileDataRepository;
+    FileBlobRepository fileBlobRepository;
+    ContentChunkRepository contentChunkRepository;
+    FileSegmentRepository fileSegmentRepository;
+    S3Service s3Service;
+    ReconciliationConfiguration configuration;
+    ReconciliationCheckpoint checkpoint;
+    BucketReconciliationService bucketReconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        checkpointRepository = mock(ReconciliationCheckpointRepository.class);
+        fileDataRepository = mock(FileDataRepository.class);
+        fileBlobRepository = mock(FileBlobRepository.class);
+        contentChunkRepository = mock(ContentChunkRepository.class);
+        fileSegmentRepository = mock(FileSegmentRepository.class);
+        s3Service = mock(S3Service.class);
+        configuration = new ReconciliationConfiguration();
+        configuration.setPageSize(3);
+        configuration.setDeleteOrphans(true);
+        MinioConfiguration minioConfiguration = new MinioConfiguration();
+        minioConfiguration.setBucket(BUCKET);
+        checkpoint = ReconciliationCheckpoint.builder().id(BUCKET).build();
+        when(checkpointRepository.findWithLockById(BUCKET)).thenReturn(Optional.of(checkpoint));
+        when(s3Service.deleteFiles(any())).thenReturn(Collections.emptyMap());
+        bucketReconciliationService = new BucketReconciliationService(checkpointRepository, fileDataRepository,
+                fileBlobRepository, contentChunkRepository, fileSegmentRepository, s3Service, configuration,
+                minioConfiguration, new ChunkingConfiguration(), new PackingConfiguration(), new SimpleMeterRegistry());
+    }
+
+    @DisplayName("Сверка страницы. Объект без файла должен быть удалён, файл без объекта учтён, место сохранено.")
+    @Test
+    void reconcilePage_whenMismatches_thenDeletesOrphansAndAdvancesCheckpoint() {
+        //Given
+        when(s3Service.listFiles(null, 3)).thenReturn(Arrays.asList(
+                object("a.pdf"), object("b.pdf"), object("chunks/hash")));
+        when(fileDataRepository.findStoredNamesBetween(eq(""), eq("chunks/hash"), any(), eq(3)))
+                .thenReturn(Arrays.asList("a.pdf", "a0.pdf"));
+        when(fileDataRepository.findStorageNamesIn(any())).thenReturn(Collections.singletonList("a.pdf"));
+        when(contentChunkRepository.findHashesIn(Collections.singleton("hash")))
+                .thenReturn(Collections.singletonList("hash"));
+
+        //When
+        boolean hasMore = bucketReconciliationService.reconcilePage();
+
+        //Then
+        assertTrue(hasMore);
+        verify(s3Service).deleteFiles(Collections.singletonList("b.pdf"));
+        assertEquals("chunks/hash", checkpoint.getLastKey());
+        assertEquals(1, checkpoint.getOrphanObjects());
+        assertEquals(1, checkpoint.getDanglingFiles());
+    }
+
+    @DisplayName("Сверка страницы, в диапазоне которой пачка файлов заполнена. Страница должна быть обрезана по последнему файлу.")
+    @Test
+    void reconcilePage_whenStoredNamesFillBatch_thenCutsPageAtLastName() {
+        //Given
+        checkpoint.setLastKey("a.pdf");
+        when(s3Service.listFiles("a.pdf", 3)).thenReturn(Arrays.asList(
+                object("b.pdf"), object("c.pdf"), object("z.pdf")));
+        when(fileDataRepository.findStoredNamesBetween(eq("a.pdf"), eq("z.pdf"), any(), eq(3)))
+                .thenReturn(Arrays.asList("b.pdf", "c.pdf", "d.pdf"));
+        when(fileDataRepository.findStorageNamesIn(any())).thenReturn(Arrays.asList("b.pdf", "c.pdf"));
+
+        //When
+        boolean hasMore = bucketReconciliationService.reconcilePage();
+
+        //Then
+        assertTrue(hasMore);
+        assertEquals("d.pdf", checkpoint.getLastKey());
+        assertEquals(1, checkpoint.getDanglingFiles());
+        verify(s3Service, never()).deleteFiles(any());
+    }
+
+    @DisplayName("Сверка последней страницы. Проход должен быть завершён.")
+    @Test
+    void reconcilePage_whenBucketEnds_thenCompletesPass() {
+        //Given
+        checkpoint.setLastKey("a.pdf");
+        when(s3Service.listFiles("a.pdf", 3)).thenReturn(Collections.singletonList(object("b.pdf")));
+        when(fileDataRepository.findStoredNamesAfter(eq("a.pdf"), any(), eq(3)))
+                .thenReturn(Collections.singletonList("b.pdf"));
+        when(fileDataRepository.findStorageNamesIn(any())).thenReturn(Collections.singletonList("b.pdf"));
+
+        //When
+        boolean hasMore = bucketReconciliationService.reconcilePage();
+
+        //Then
+        assertFalse(hasMore);
+        assertNull(checkpoint.getLastKey());
+        assertNotNull(checkpoint.getPassCompletedAt());
+    }
+
+    @DisplayName("Сверка после недавно завершённого прохода. Bucket не должен читаться.")
+    @Test
+    void reconcilePage_whenPassRecentlyCompleted_thenSkips() {
+        //Given
+        checkpoint.setPassCompletedAt(Instant.now());
+
+        //When
+        boolean hasMore = bucketReconciliationService.reconcilePage();
+
+        //Then
+        assertFalse(hasMore);
+        verify(s3Service, never()).listFiles(anyString(), anyInt());
+        verify(s3Service, never()).listFiles(isNull(), anyInt());
+    }
+
+    private static StoredObjectDto object(String name) {
+        return StoredObjectDto.builder().name(name).size(1).lastModified(OLD).build();
+    }
+}
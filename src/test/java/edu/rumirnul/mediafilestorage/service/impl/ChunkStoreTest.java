@@ -0,0 +1,154 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.entity.FileChunk;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import edu.rumirnul.mediafilestorage.service.impl.ChunkStore.StoredContent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование записи и чтения содержимого частями в {@link ChunkStore}
+ */
+class ChunkStoreTest {
+
+    S3Service s3Service;
+    ContentChunkService contentChunkService;
+    ChunkStore chunkStore;
+    Map<String, byte[]> objects;
+
+    @BeforeEach
+    void setUp() {
+        s3Service = mock(S3Service.class);
+        contentChunkService = mock(ContentChunkService.class);
+        ChunkingConfiguration configuration = new ChunkingConfiguration();
+        configuration.setMinChunkSize(DataSize.ofKilobytes(1));
+        configuration.setAverageChunkSize(DataSize.ofKilobytes(4));
+        configuration.setMaxChunkSize(DataSize.ofKilobytes(16));
+        configuration.setDownloadRangeSize(DataSize.ofKilobytes(3));
+        chunkStore = new ChunkStore(s3Service, contentChunkService, configuration);
+
+        objects = new ConcurrentHashMap<>();
+        when(contentChunkService.objectName(anyString())).thenAnswer(invocation -> "chunks/" + invocation.getArgument(0));
+        when(s3Service.putFile(any())).thenAnswer(invocation -> {
+            FileDto fileDto = invocation.getArgument(0);
+            objects.put(fileDto.getName(), ByteStreams.toByteArray(fileDto.getInputStream()));
+            return fileDto.getSize();
+        });
+        when(s3Service.getFileByName(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            byte[] object = objects.get(invocation.<String>getArgument(0));
+            long offset = invocation.getArgument(1);
+            long length = invocation.getArgument(2);
+            return new ByteArrayInputStream(object, (int) offset, (int) length);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        chunkStore.shutdown();
+    }
+
+    @DisplayName("Запись содержимого, часть которого уже есть в хранилище. Должны загрузиться только новые части.")
+    @Test
+    void store_whenSomeChunksExist_thenUploadsOnlyMissing() throws IOException {
+        //Given
+        byte[] content = randomContent(200_000);
+        Set<String> existing = new HashSet<>();
+        when(contentChunkService.acquire(anyMap())).thenAnswer(invocation -> {
+            Set<String> missing = new HashSet<>(invocation.<Map<String, Integer>>getArgument(0).keySet());
+            missing.removeAll(existing);
+            return missing;
+        });
+        StoredContent first = chunkStore.store(new ByteArrayInputStream(content));
+        first.getChunks().forEach(chunk -> existing.add(chunk.getChunkHash()));
+        content[100_000] ^= 1;
+
+        //When
+        StoredContent second = chunkStore.store(new ByteArrayInputStream(content));
+
+        //Then
+        assertEquals(content.length, second.getSize());
+        assertEquals(first.getChunks().size(), second.getChunks().size());
+        assertEquals(1, second.getUploadedChunks());
+        verify(s3Service, times(first.getChunks().size() + 1)).putFile(any());
+        assertThat(second.getChecksum()).isNotEqualTo(first.getChecksum());
+    }
+
+    @DisplayName("Чтение части содержимого на границах частей. Должно вернуться исходное содержимое.")
+    @Test
+    void open_whenRangeSpansChunks_thenReassemblesContent() throws IOException {
+        //Given
+        byte[] content = randomContent(100_000);
+        when(contentChunkService.acquire(anyMap())).thenAnswer(invocation ->
+                new HashSet<>(invocation.<Map<String, Integer>>getArgument(0).keySet()));
+        List<FileChunk> chunks = chunkStore.store(new ByteArrayInputStream(content)).getChunks();
+
+        //When
+        byte[] whole;
+        byte[] range;
+        try (InputStream inputStream = chunkStore.open(chunks, 0, content.length)) {
+            whole = ByteStreams.toByteArray(inputStream);
+        }
+        try (InputStream inputStream = chunkStore.open(chunks, 12_345, 50_000)) {
+            range = ByteStreams.toByteArray(inputStream);
+        }
+
+        //Then
+        assertArrayEquals(content, whole);
+        assertArrayEquals(Arrays.copyOfRange(content, 12_345, 62_345), range);
+    }
+
+    @DisplayName("Ошибка загрузки части. Добавленные ссылки на части должны быть удалены.")
+    @Test
+    void store_whenUploadFails_thenReleasesAcquired() {
+        //Given
+        when(contentChunkService.acquire(anyMap())).thenReturn(Collections.emptySet())
+                .thenAnswer(invocation -> new HashSet<>(invocation.<Map<String, Integer>>getArgument(0).keySet()));
+        doThrow(new S3Exception("Failed to save file in s3(minio)")).when(s3Service).putFile(any());
+
+        //When
+        assertThrows(S3Exception.class, () -> chunkStore.store(new ByteArrayInputStream(randomContent(200_000))));
+
+        //Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Integer>> released = ArgumentCaptor.forClass(Map.class);
+        verify(contentChunkService).release(released.capture());
+        assertThat(released.getValue()).isNotEmpty();
+        verify(contentChunkService, never()).register(anyMap(), anyMap());
+    }
+
+    private static byte[] randomContent(int size) {
+        byte[] content = new byte[size];
+        new Random(7).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,79 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Тестирование распределения ключей {@link ConsistentHashRing}
+ */
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 10000;
+
+    @DisplayName("Добавление узла на кольцо. К новому узлу должна перейти только его доля ключей.")
+    @Test
+    void add_whenNodeAdded_thenOnlyItsShareOfKeysMoves() {
+        //Given
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(128);
+        ring.add("first", "first", 1);
+        ring.add("second", "second", 1);
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            before.put("file-" + i, ring.get("file-" + i));
+        }
+
+        //When
+        ring.add("third", "third", 1);
+
+        //Then
+        int moved = 0;
+        for (Map.Entry<String, String> placement : before.entrySet()) {
+            String node = ring.get(placement.getKey());
+            if (!node.equals(placement.getValue())) {
+                assertEquals("third", node);
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(KEYS / 4, KEYS / 2);
+    }
+
+    @DisplayName("Распределение ключей по узлам разного веса. Доля ключей узла должна быть пропорциональна весу.")
+    @Test
+    void get_whenNodesWeighted_thenDistributesByWeight() {
+        //Given
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(128);
+        ring.add("light", "light", 1);
+        ring.add("heavy", "heavy", 3);
+
+        //When
+        int heavy = 0;
+        for (int i = 0; i < KEYS; i++) {
+            if ("heavy".equals(ring.get("file-" + i))) {
+                heavy++;
+            }
+        }
+
+        //Then
+        assertThat(heavy).isBetween(KEYS * 65 / 100, KEYS * 85 / 100);
+    }
+
+    @DisplayName("Поиск узла на пустом кольце. Должен вернуться null.")
+    @Test
+    void get_whenRingEmpty_thenReturnsNull() {
+        //Given
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(16);
+
+        //When
+        String node = ring.get("file");
+
+        //Then
+        assertNull(node);
+    }
+}
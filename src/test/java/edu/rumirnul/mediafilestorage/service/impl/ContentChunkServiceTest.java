@@ -0,0 +1,223 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.entity.ContentChunk;
+import edu.rumirnul.mediafilestorage.entity.FileChunk;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.entity.RetiredObject;
+import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.repository.ContentChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.repository.RetiredObjectRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование подсчёта ссылок на части содержимого в {@link ContentChunkService}
+ */
+class ContentChunkServiceTest {
+
+    private static final Long FILE_ID = 100L;
+
+    ContentChunkRepository contentChunkRepository;
+    FileChunkRepository fileChunkRepository;
+    FileDataRepository fileDataRepository;
+    RetiredObjectRepository retiredObjectRepository;
+    FileDataService fileDataService;
+    FileBlobService fileBlobService;
+    S3Service s3Service;
+    MinioShardRouter minioShardRouter;
+    ContentChunkService contentChunkService;
+
+    @BeforeEach
+    void setUp() {
+        contentChunkRepository = mock(ContentChunkRepository.class);
+        fileChunkRepository = mock(FileChunkRepository.class);
+        fileDataRepository = mock(FileDataRepository.class);
+        retiredObjectRepository = mock(RetiredObjectRepository.class);
+        fileDataService = mock(FileDataService.class);
+        fileBlobService = mock(FileBlobService.class);
+        s3Service = mock(S3Service.class);
+        minioShardRouter = mock(MinioShardRouter.class);
+        contentChunkService = new ContentChunkService(contentChunkRepository, fileChunkRepository, fileDataRepository,
+                retiredObjectRepository, fileDataService, fileBlobService, s3Service, new ChunkingConfiguration(), minioShardRouter);
+    }
+
+    @DisplayName("Первое обновление содержимого файла. Ссылка на общий объект должна быть удалена, "
+            + "объект выведен из использования.")
+    @Test
+    void replaceManifest_whenNotChunked_thenReleasesBlob() {
+        //Given
+        FileData fileData = FileData.builder().id(FILE_ID).fileName("first.pdf").objectName("first.pdf")
+                .status(FileStatus.PENDING).build();
+        when(fileDataRepository.findWithLockById(FILE_ID)).thenReturn(Optional.of(fileData));
+        when(fileBlobService.release("first.pdf")).thenReturn(true);
+        List<FileChunk> chunks = Collections.singletonList(chunk(0, "a"));
+
+        //When
+        Optional<String> unreferenced = contentChunkService.replaceManifest(FILE_ID, chunks, 10, "checksum");
+
+        //Then
+        assertEquals(Optional.of("first.pdf"), unreferenced);
+        assertTrue(fileData.isChunkedContent());
+        assertNull(fileData.getObjectName());
+        assertEquals(1, fileData.getVersion());
+        assertEquals(10L, fileData.getSize());
+        assertEquals(FileStatus.STORED, fileData.getStatus());
+        assertEquals(FILE_ID, chunks.get(0).getFileId());
+        verify(fileChunkRepository).saveAll(chunks);
+        verify(fileDataService).save(fileData);
+        ArgumentCaptor<RetiredObject> retired = ArgumentCaptor.forClass(RetiredObject.class);
+        verify(retiredObjectRepository).save(retired.capture());
+        assertEquals("first.pdf", retired.getValue().getName());
+        assertNotNull(retired.getValue().getRetiredAt());
+    }
+
+    @DisplayName("Повторное обновление содержимого файла. Ссылки на части прежней версии должны быть удалены.")
+    @Test
+    void replaceManifest_whenChunked_thenReleasesPreviousChunks() {
+        //Given
+        FileData fileData = FileData.builder().id(FILE_ID).fileName("first.pdf").chunked(true).version(1).build();
+        List<FileChunk> previous = Arrays.asList(chunk(0, "a"), chunk(1, "b"));
+        ContentChunk a = ContentChunk.builder().hash("a").refCount(2).build();
+        ContentChunk b = ContentChunk.builder().hash("b").refCount(1).build();
+        when(fileDataRepository.findWithLockById(FILE_ID)).thenReturn(Optional.of(fileData));
+        when(fileChunkRepository.findByFileIdOrderBySeqAsc(FILE_ID)).thenReturn(previous);
+        when(contentChunkRepository.findByHashInOrderByHashAsc(any())).thenReturn(Arrays.asList(a, b));
+
+        //When
+        Optional<String> unreferenced = contentChunkService.replaceManifest(FILE_ID,
+                Arrays.asList(chunk(0, "a"), chunk(1, "c")), 20, "checksum");
+
+        //Then
+        assertFalse(unreferenced.isPresent());
+        assertEquals(2, fileData.getVersion());
+        assertEquals(1, a.getRefCount());
+        assertNull(a.getReleasedAt());
+        assertEquals(0, b.getRefCount());
+        assertNotNull(b.getReleasedAt());
+        verify(fileChunkRepository).deleteAllInBatch(previous);
+        verify(fileBlobService, never()).release(anyString());
+        verify(retiredObjectRepository, never()).save(any());
+    }
+
+    @DisplayName("Обновление содержимого удалённого файла. Должно выбрасываться исключение FileNotFoundException.")
+    @Test
+    void replaceManifest_whenFileDeleted_thenThrowsException() {
+        //Given
+        when(fileDataRepository.findWithLockById(FILE_ID)).thenReturn(Optional.empty());
+
+        //When
+        assertThrows(FileNotFoundException.class,
+                () -> contentChunkService.replaceManifest(FILE_ID, Collections.emptyList(), 0, "checksum"));
+
+        //Then
+        verify(fileChunkRepository, never()).saveAll(any());
+    }
+
+    @DisplayName("Регистрация новой части. Часть должна сохраниться с шардом, в который она записана.")
+    @Test
+    void register_whenChunkIsNew_thenSavesChunkWithShard() {
+        //Given
+        when(minioShardRouter.route("chunks/a")).thenReturn(new MinioShard("second", "bucket", null, null, null));
+        when(contentChunkRepository.findByHashInOrderByHashAsc(any())).thenReturn(Collections.emptyList());
+
+        //When
+        contentChunkService.register(Collections.singletonMap("a", 2), Collections.singletonMap("a", 10));
+
+        //Then
+        ArgumentCaptor<List<ContentChunk>> saved = ArgumentCaptor.forClass(List.class);
+        verify(contentChunkRepository).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        assertEquals("second", saved.getValue().get(0).getShard());
+        assertEquals(2, saved.getValue().get(0).getRefCount());
+    }
+
+    @DisplayName("Удаление частей без ссылок. Части должны быть удалены из хранилища и из БД.")
+    @Test
+    void deleteUnreferenced_whenReleasedChunks_thenDeletesObjects() {
+        //Given
+        List<ContentChunk> released = Collections.singletonList(ContentChunk.builder().hash("a").build());
+        when(contentChunkRepository.findByRefCountAndReleasedAtBefore(eq(0), any(), any())).thenReturn(released);
+
+        //When
+        int deleted = contentChunkService.deleteUnreferenced();
+
+        //Then
+        assertEquals(1, deleted);
+        verify(s3Service).deleteFiles(Collections.singletonList("chunks/a"));
+        verify(contentChunkRepository).deleteAllInBatch(released);
+    }
+
+    @DisplayName("Удаление частей без ссылок с ошибкой удаления из хранилища. Строки частей не должны удаляться.")
+    @Test
+    void deleteUnreferenced_whenStorageDeleteFails_thenKeepsRows() {
+        //Given
+        List<ContentChunk> released = Arrays.asList(ContentChunk.builder().hash("a").build(),
+                ContentChunk.builder().hash("b").build());
+        when(contentChunkRepository.findByRefCountAndReleasedAtBefore(eq(0), any(), any())).thenReturn(released);
+        when(s3Service.deleteFiles(any())).thenReturn(Collections.singletonMap("chunks/b", "Access denied"));
+
+        //When
+        //Then
+        assertThrows(S3Exception.class, () -> contentChunkService.deleteUnreferenced());
+        verify(contentChunkRepository, never()).deleteAllInBatch(any());
+    }
+
+    @DisplayName("Удаление объектов, выведенных из использования. Объекты должны быть удалены из хранилища и из БД.")
+    @Test
+    void deleteRetired_whenRetiredObjects_thenDeletesObjects() {
+        //Given
+        List<RetiredObject> retired = Collections.singletonList(RetiredObject.builder().name("first.pdf").build());
+        when(retiredObjectRepository.findByRetiredAtBefore(any(), any())).thenReturn(retired);
+
+        //When
+        int deleted = contentChunkService.deleteRetired();
+
+        //Then
+        assertEquals(1, deleted);
+        verify(s3Service).deleteFiles(Collections.singletonList("first.pdf"));
+        verify(retiredObjectRepository).deleteAllInBatch(retired);
+    }
+
+    @DisplayName("Удаление объектов, выведенных из использования, с ошибкой удаления из хранилища. "
+            + "Строки объектов не должны удаляться.")
+    @Test
+    void deleteRetired_whenStorageDeleteFails_thenKeepsRows() {
+        //Given
+        List<RetiredObject> retired = Collections.singletonList(RetiredObject.builder().name("first.pdf").build());
+        when(retiredObjectRepository.findByRetiredAtBefore(any(), any())).thenReturn(retired);
+        when(s3Service.deleteFiles(any())).thenReturn(Collections.singletonMap("first.pdf", "Access denied"));
+
+        //When
+        //Then
+        assertThrows(S3Exception.class, () -> contentChunkService.deleteRetired());
+        verify(retiredObjectRepository, never()).deleteAllInBatch(any());
+    }
+
+    private static FileChunk chunk(int seq, String hash) {
+        return FileChunk.builder().seq(seq).chunkHash(hash).offset(seq * 10L).length(10).build();
+    }
+}
@@ -0,0 +1,103 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Тестирование деления содержимого на части в {@link ContentDefinedChunker}
+ */
+class ContentDefinedChunkerTest {
+
+    private static final int MIN_SIZE = 1024;
+    private static final int AVERAGE_SIZE = 4096;
+    private static final int MAX_SIZE = 16384;
+
+    @DisplayName("Деление содержимого на части. Части должны составлять содержимое и соблюдать размеры.")
+    @Test
+    void next_whenContentRead_thenChunksRespectSizes() throws IOException {
+        //Given
+        byte[] content = randomContent(1_000_000, 1);
+
+        //When
+        List<byte[]> chunks = split(content);
+
+        //Then
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks.size(); i++) {
+            byte[] chunk = chunks.get(i);
+            joined.write(chunk);
+            assertThat(chunk.length).isLessThanOrEqualTo(MAX_SIZE);
+            if (i < chunks.size() - 1) {
+                assertThat(chunk.length).isGreaterThanOrEqualTo(MIN_SIZE);
+            }
+        }
+        assertArrayEquals(content, joined.toByteArray());
+        assertThat(content.length / chunks.size()).isBetween(AVERAGE_SIZE / 2, AVERAGE_SIZE * 2);
+    }
+
+    @DisplayName("Вставка байтов в середину содержимого. Должны измениться только соседние части.")
+    @Test
+    void next_whenBytesInserted_thenOtherChunksUnchanged() throws IOException {
+        //Given
+        byte[] content = randomContent(1_000_000, 2);
+        byte[] inserted = randomContent(100, 3);
+        byte[] edited = new byte[content.length + inserted.length];
+        System.arraycopy(content, 0, edited, 0, 500_000);
+        System.arraycopy(inserted, 0, edited, 500_000, inserted.length);
+        System.arraycopy(content, 500_000, edited, 500_000 + inserted.length, content.length - 500_000);
+
+        //When
+        Set<String> original = keys(split(content));
+        List<byte[]> editedChunks = split(edited);
+
+        //Then
+        long changed = editedChunks.stream().filter(chunk -> !original.contains(Arrays.toString(chunk))).count();
+        assertThat(changed).isLessThanOrEqualTo(3);
+    }
+
+    @DisplayName("Деление пустого содержимого. Частей быть не должно.")
+    @Test
+    void next_whenEmptyContent_thenNoChunks() throws IOException {
+        //When
+        List<byte[]> chunks = split(new byte[0]);
+
+        //Then
+        assertThat(chunks).isEmpty();
+    }
+
+    private static List<byte[]> split(byte[] content) throws IOException {
+        ContentDefinedChunker chunker = new ContentDefinedChunker(new ByteArrayInputStream(content),
+                MIN_SIZE, AVERAGE_SIZE, MAX_SIZE);
+        List<byte[]> chunks = new ArrayList<>();
+        byte[] chunk;
+        while ((chunk = chunker.next()) != null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static Set<String> keys(List<byte[]> chunks) {
+        Set<String> keys = new HashSet<>();
+        chunks.forEach(chunk -> keys.add(Arrays.toString(chunk)));
+        return keys;
+    }
+
+    private static byte[] randomContent(int size, long seed) {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
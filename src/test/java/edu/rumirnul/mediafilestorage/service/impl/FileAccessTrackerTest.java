@@ -0,0 +1,67 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.FileMetadataConfiguration;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование пакетной записи времени обращения в {@link FileAccessTracker}
+ */
+class FileAccessTrackerTest {
+
+    FileDataRepository fileDataRepository;
+    FileMetadataConfiguration configuration;
+    FileAccessTracker fileAccessTracker;
+
+    @BeforeEach
+    void setUp() {
+        fileDataRepository = mock(FileDataRepository.class);
+        configuration = new FileMetadataConfiguration();
+        fileAccessTracker = new FileAccessTracker(fileDataRepository, configuration);
+    }
+
+    @DisplayName("Повторные обращения к файлам. Каждый файл должен обновиться один раз одной пачкой.")
+    @Test
+    void flush_whenRepeatedAccess_thenUpdatesOnceInBatches() {
+        //Given
+        configuration.setAccessFlushBatchSize(2);
+        fileAccessTracker.recordAccess(1L);
+        fileAccessTracker.recordAccess(2L);
+        fileAccessTracker.recordAccess(1L);
+        fileAccessTracker.recordAccess(3L);
+
+        //When
+        fileAccessTracker.flush();
+        fileAccessTracker.flush();
+
+        //Then
+        verify(fileDataRepository, times(2)).updateLastAccessedAt(anyCollection(), any(Instant.class));
+        HashSet<Long> updated = new HashSet<>();
+        mockingDetails(fileDataRepository).getInvocations()
+                .forEach(invocation -> updated.addAll((Collection<Long>) invocation.getArgument(0)));
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), updated);
+    }
+
+    @DisplayName("Обращений не было. Запросов к БД быть не должно.")
+    @Test
+    void flush_whenNoAccess_thenNoUpdate() {
+        //When
+        fileAccessTracker.recordAccess(null);
+        fileAccessTracker.flush();
+
+        //Then
+        verifyNoInteractions(fileDataRepository);
+    }
+}
@@ -0,0 +1,215 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.entity.FileBlob;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.repository.FileBlobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование подсчёта ссылок на общие объекты в {@link FileBlobService}
+ */
+class FileBlobServiceTest {
+
+    private static final String CHECKSUM = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    FileBlobRepository fileBlobRepository;
+    FileDataService fileDataService;
+    FileBlobService fileBlobService;
+
+    @BeforeEach
+    void setUp() {
+        fileBlobRepository = mock(FileBlobRepository.class);
+        fileDataService = mock(FileDataService.class);
+        fileBlobService = new FileBlobService(fileBlobRepository, fileDataService);
+    }
+
+    @DisplayName("Сохранение файла с новым содержимым. Должен быть создан объект с одной ссылкой.")
+    @Test
+    void saveDeduplicated_whenNewContent_thenCreatesBlob() {
+        //Given
+        FileData fileData = FileData.builder().fileName("first.pdf").checksum(CHECKSUM).size(4L).build();
+        when(fileBlobRepository.findByChecksum(CHECKSUM)).thenReturn(Optional.empty());
+
+        //When
+        boolean duplicate = fileBlobService.saveDeduplicated(fileData, FileStatus.PENDING);
+
+        //Then
+        assertFalse(duplicate);
+        ArgumentCaptor<FileBlob> blob = ArgumentCaptor.forClass(FileBlob.class);
+        verify(fileBlobRepository).save(blob.capture());
+        assertEquals("first.pdf", blob.getValue().getObjectName());
+        assertEquals(1, blob.getValue().getRefCount());
+        assertEquals("first.pdf", fileData.getObjectName());
+        assertEquals(FileStatus.PENDING, fileData.getStatus());
+        verify(fileDataService).save(fileData);
+    }
+
+    @DisplayName("Повторное сохранение после одновременного сохранения того же содержимого. "
+            + "Файл должен получить новый идентификатор, а не выделенный в откаченной попытке.")
+    @Test
+    void saveDeduplicated_whenRetriedAfterConcurrentContent_thenReturnsSavedId() {
+        //Given
+        FileBlob blob = FileBlob.builder().checksum(CHECKSUM).objectName("first.pdf")
+                .refCount(1).status(FileStatus.STORED).build();
+        FileData fileData = FileData.builder().id(41L).fileName("second.pdf").checksum(CHECKSUM).size(4L).build();
+        when(fileBlobRepository.findByChecksum(CHECKSUM)).thenReturn(Optional.of(blob));
+        doAnswer(invocation -> {
+            FileData saved = invocation.getArgument(0);
+            if (saved.getId() == null) {
+                saved.setId(42L);
+            }
+            return saved;
+        }).when(fileDataService).save(any(FileData.class));
+
+        //When
+        boolean duplicate = fileBlobService.saveDeduplicated(fileData, FileStatus.PENDING);
+
+        //Then
+        assertTrue(duplicate);
+        assertEquals(42L, fileData.getId());
+    }
+
+    @DisplayName("Сохранение файла с уже сохранённым содержимым. Файл должен ссылаться на существующий объект.")
+    @Test
+    void saveDeduplicated_whenContentExists_thenReferencesBlob() {
+        //Given
+        FileBlob blob = FileBlob.builder().checksum(CHECKSUM).objectName("first.pdf")
+                .refCount(1).status(FileStatus.STORED).build();
+        FileData fileData = FileData.builder().fileName("second.pdf").checksum(CHECKSUM).size(4L).build();
+        when(fileBlobRepository.findByChecksum(CHECKSUM)).thenReturn(Optional.of(blob));
+
+        //When
+        boolean duplicate = fileBlobService.saveDeduplicated(fileData, FileStatus.PENDING);
+
+        //Then
+        assertTrue(duplicate);
+        assertEquals(2, blob.getRefCount());
+        assertEquals("first.pdf", fileData.getObjectName());
+        assertEquals("first.pdf", fileData.getStorageName());
+        assertEquals(FileStatus.STORED, fileData.getStatus());
+        verify(fileBlobRepository, never()).save(any());
+    }
+
+    @DisplayName("Пакетное сохранение файлов с одинаковым содержимым. Все файлы должны ссылаться на один новый объект.")
+    @Test
+    void saveAllDeduplicated_whenSameContentInBatch_thenCreatesOneBlob() {
+        //Given
+        FileData first = FileData.builder().fileName("first.pdf").checksum(CHECKSUM).size(4L).build();
+        FileData second = FileData.builder().fileName("second.pdf").checksum(CHECKSUM).size(4L).build();
+        when(fileBlobRepository.findByChecksumInOrderByChecksumAsc(any())).thenReturn(Collections.emptyList());
+
+        //When
+        List<FileData> duplicates = fileBlobService.saveAllDeduplicated(Arrays.asList(first, second), FileStatus.STORED);
+
+        //Then
+        assertEquals(Collections.singletonList(second), duplicates);
+        assertEquals("first.pdf", second.getStorageName());
+        ArgumentCaptor<List<FileBlob>> created = ArgumentCaptor.forClass(List.class);
+        verify(fileBlobRepository).saveAll(created.capture());
+        assertEquals(1, created.getValue().size());
+        assertEquals(2, created.getValue().get(0).getRefCount());
+        verify(fileDataService).saveAll(Arrays.asList(first, second));
+    }
+
+    @DisplayName("Удаление одной из ссылок. Объект должен остаться в хранилище.")
+    @Test
+    void release_whenReferencesLeft_thenKeepsBlob() {
+        //Given
+        FileBlob blob = FileBlob.builder().objectName("first.pdf").refCount(2).build();
+        when(fileBlobRepository.findByObjectName("first.pdf")).thenReturn(Optional.of(blob));
+
+        //When
+        boolean unreferenced = fileBlobService.release("first.pdf");
+
+        //Then
+        assertFalse(unreferenced);
+        assertEquals(1, blob.getRefCount());
+        verify(fileBlobRepository, never()).delete(any());
+    }
+
+    @DisplayName("Удаление последней ссылки. Объект должен быть удалён.")
+    @Test
+    void release_whenLastReference_thenDeletesBlob() {
+        //Given
+        FileBlob blob = FileBlob.builder().objectName("first.pdf").refCount(1).build();
+        when(fileBlobRepository.findByObjectName("first.pdf")).thenReturn(Optional.of(blob));
+
+        //When
+        boolean unreferenced = fileBlobService.release("first.pdf");
+
+        //Then
+        assertTrue(unreferenced);
+        verify(fileBlobRepository).delete(blob);
+    }
+
+    @DisplayName("Удаление файла, сохранённого до дедупликации. Объект должен удаляться из хранилища.")
+    @Test
+    void release_whenNoBlob_thenReturnsTrue() {
+        //Given
+        when(fileBlobRepository.findByObjectName("legacy.pdf")).thenReturn(Optional.empty());
+
+        //When
+        boolean unreferenced = fileBlobService.release("legacy.pdf");
+
+        //Then
+        assertTrue(unreferenced);
+    }
+
+    @DisplayName("Удаление ссылок пачки файлов. Объекты без ссылок и файлы без объектов должны быть возвращены.")
+    @Test
+    void releaseAll_whenSomeObjectsUnreferenced_thenReturnsThem() {
+        //Given
+        FileBlob shared = FileBlob.builder().objectName("shared.pdf").refCount(3).build();
+        FileBlob single = FileBlob.builder().objectName("single.pdf").refCount(2).build();
+        Map<String, Integer> references = new HashMap<>();
+        references.put("shared.pdf", 1);
+        references.put("single.pdf", 2);
+        references.put("legacy.pdf", 1);
+        when(fileBlobRepository.findByObjectNameInOrderByObjectNameAsc(any()))
+                .thenReturn(Arrays.asList(shared, single));
+
+        //When
+        Set<String> unreferenced = fileBlobService.releaseAll(references);
+
+        //Then
+        assertEquals(new HashSet<>(Arrays.asList("single.pdf", "legacy.pdf")), unreferenced);
+        assertEquals(2, shared.getRefCount());
+        verify(fileBlobRepository).deleteAllInBatch(Collections.singletonList(single));
+    }
+
+    @DisplayName("Удаление последних ссылок на объект, упакованный в сегмент. Объект не должен удаляться из хранилища отдельно.")
+    @Test
+    void releaseAll_whenPackedObjectUnreferenced_thenExcludesIt() {
+        //Given
+        FileBlob packed = FileBlob.builder().objectName("packed.pdf").refCount(1)
+                .segmentName("segments/first").segmentOffset(128L).build();
+        when(fileBlobRepository.findByObjectNameInOrderByObjectNameAsc(any()))
+                .thenReturn(Collections.singletonList(packed));
+
+        //When
+        Set<String> unreferenced = fileBlobService.releaseAll(Collections.singletonMap("packed.pdf", 1));
+
+        //Then
+        assertTrue(unreferenced.isEmpty());
+        verify(fileBlobRepository).deleteAllInBatch(Collections.singletonList(packed));
+    }
+}
@@ -0,0 +1,189 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.config.FileDataCacheConfiguration;
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.ShardingConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileMetadataDto;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.repository.ContentChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование кэширования в {@link FileDataService}
+ */
+class FileDataServiceTest {
+
+    private static final Long ID = 100L;
+    private static final String FILE_NAME = "testFileName";
+    private static final FileMetadataDto METADATA = FileMetadataDto.builder()
+            .id(ID)
+            .fileName(FILE_NAME)
+            .originalName("testOriginalName")
+            .extension("txt")
+            .build();
+
+    FileDataRepository fileDataRepository;
+    MeterRegistry meterRegistry;
+    FileDataService fileDataService;
+
+    @BeforeEach
+    void setUp() {
+        fileDataRepository = mock(FileDataRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        MinioShardRouter router = new MinioShardRouter(
+                Collections.singletonList(new MinioShard(MinioShardRouter.DEFAULT_SHARD, "bucket", null, null, null)),
+                new ShardingConfiguration(), fileDataRepository, mock(ContentChunkRepository.class), mock(FileSegmentRepository.class),
+                new ChunkingConfiguration(), new PackingConfiguration());
+        fileDataService = new FileDataService(fileDataRepository, router, new FileDataCacheConfiguration(), meterRegistry);
+    }
+
+    @DisplayName("Повторное получение метаданных по id. Должен выполниться один запрос к БД.")
+    @Test
+    void findMetadataById_whenCalledTwice_thenLoadsOnce() {
+        //Given
+        when(fileDataRepository.findMetadataById(ID)).thenReturn(Optional.of(METADATA));
+
+        //When
+        fileDataService.findMetadataById(ID);
+        FileData result = fileDataService.getById(ID);
+
+        //Then
+        assertEquals(FILE_NAME, result.getFileName());
+        verify(fileDataRepository, times(1)).findMetadataById(ID);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "file-data-by-id")
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @DisplayName("Повторное получение отсутствующего id. Отсутствие должно кэшироваться.")
+    @Test
+    void getById_whenNotExistsId_thenCachesMiss() {
+        //Given
+        when(fileDataRepository.findMetadataById(ID)).thenReturn(Optional.empty());
+
+        //When
+        assertNull(fileDataService.getById(ID));
+        assertThat(fileDataService.existsById(ID)).isFalse();
+
+        //Then
+        verify(fileDataRepository, times(1)).findMetadataById(ID);
+    }
+
+    @DisplayName("Удаление метаданных. Записи о файле должны быть удалены из кэша.")
+    @Test
+    void delete_whenCached_thenEvicts() {
+        //Given
+        FileData fileData = FileData.builder().id(ID).fileName(FILE_NAME).build();
+        when(fileDataRepository.findMetadataById(ID)).thenReturn(Optional.of(METADATA));
+        when(fileDataRepository.findFileDataByFileName(FILE_NAME)).thenReturn(fileData);
+        fileDataService.getById(ID);
+        fileDataService.getByName(FILE_NAME);
+
+        //When
+        fileDataService.delete(fileData);
+        fileDataService.getById(ID);
+        fileDataService.getByName(FILE_NAME);
+
+        //Then
+        verify(fileDataRepository, times(2)).findMetadataById(ID);
+        verify(fileDataRepository, times(2)).findFileDataByFileName(FILE_NAME);
+    }
+
+    @DisplayName("Пометка файла удалённым. Файл должен перестать читаться из кэша.")
+    @Test
+    void markDeleted_whenCached_thenEvicts() {
+        //Given
+        FileData fileData = FileData.builder().id(ID).fileName(FILE_NAME).build();
+        when(fileDataRepository.findMetadataById(ID)).thenReturn(Optional.of(METADATA), Optional.empty());
+        when(fileDataRepository.markDeleted(eq(ID), any())).thenReturn(1);
+        fileDataService.getById(ID);
+
+        //When
+        boolean deleted = fileDataService.markDeleted(fileData);
+
+        //Then
+        assertTrue(deleted);
+        assertNull(fileDataService.getById(ID));
+    }
+
+    @DisplayName("Получение файла, срок хранения которого истёк после загрузки метаданных. Файл не должен возвращаться.")
+    @Test
+    void getById_whenLoadedMetadataExpired_thenReturnsNull() {
+        //Given
+        FileMetadataDto metadata = FileMetadataDto.builder()
+                .id(ID)
+                .fileName(FILE_NAME)
+                .expiresAt(Instant.now().minusSeconds(1))
+                .build();
+        when(fileDataRepository.findMetadataById(ID)).thenReturn(Optional.of(metadata));
+
+        //When
+        FileData result = fileDataService.getById(ID);
+
+        //Then
+        assertNull(result);
+        assertFalse(fileDataService.existsById(ID));
+    }
+
+    @DisplayName("Получение по имени, которого нет в БД. Отсутствие не должно кэшироваться.")
+    @Test
+    void getByName_whenNotExistsName_thenNotCached() {
+        //When
+        assertNull(fileDataService.getByName(FILE_NAME));
+        assertNull(fileDataService.getByName(FILE_NAME));
+
+        //Then
+        verify(fileDataRepository, times(2)).findFileDataByFileName(FILE_NAME);
+    }
+
+    @DisplayName("Одновременное получение метаданных одного id. Должен выполниться один запрос к БД.")
+    @Test
+    void findMetadataById_whenConcurrentLookups_thenLoadsOnce() throws Exception {
+        //Given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fileDataRepository.findMetadataById(ID)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return Optional.of(METADATA);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        //When
+        Future<Optional<FileMetadataDto>> first = executor.submit(() -> fileDataService.findMetadataById(ID));
+        loading.await();
+        Future<Optional<FileMetadataDto>> second = executor.submit(() -> fileDataService.findMetadataById(ID));
+        release.countDown();
+
+        //Then
+        assertEquals(Optional.of(METADATA), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Optional.of(METADATA), second.get(5, TimeUnit.SECONDS));
+        verify(fileDataRepository, times(1)).findMetadataById(ID);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,98 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.PurgeConfiguration;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование физического удаления удалённых и истёкших файлов в {@link FilePurgeService}
+ */
+class FilePurgeServiceTest {
+
+    private static final String FILE_NAME = "file.pdf";
+
+    FileDataRepository fileDataRepository;
+    BatchDeleteService batchDeleteService;
+    S3Service s3Service;
+    LocalDiskObjectCache localDiskObjectCache;
+    FilePurgeService filePurgeService;
+
+    @BeforeEach
+    void setUp() {
+        fileDataRepository = mock(FileDataRepository.class);
+        batchDeleteService = mock(BatchDeleteService.class);
+        s3Service = mock(S3Service.class);
+        localDiskObjectCache = mock(LocalDiskObjectCache.class);
+        filePurgeService = new FilePurgeService(fileDataRepository, batchDeleteService, s3Service,
+                localDiskObjectCache, new PurgeConfiguration());
+    }
+
+    @DisplayName("Удаление пачки удалённых файлов. Объекты без ссылок должны быть удалены одним вызовом.")
+    @Test
+    void purgeDeleted_whenDeletedFiles_thenDeletesObjectsInBulk() {
+        //Given
+        List<FileData> files = Collections.singletonList(FileData.builder().id(1L).fileName(FILE_NAME).build());
+        Set<String> unreferenced = Collections.singleton(FILE_NAME);
+        when(fileDataRepository.findDeletedBefore(any(), anyInt())).thenReturn(files);
+        when(batchDeleteService.deleteLocked(files)).thenReturn(unreferenced);
+        when(s3Service.deleteFiles(unreferenced)).thenReturn(Collections.emptyMap());
+
+        //When
+        int purged = filePurgeService.purgeDeleted();
+
+        //Then
+        assertEquals(1, purged);
+        verify(s3Service).deleteFiles(unreferenced);
+        verify(localDiskObjectCache).invalidate(FILE_NAME);
+    }
+
+    @DisplayName("Удаление пачки, объекты которой не удалось удалить из хранилища. Должно выбросить ошибку S3Exception.")
+    @Test
+    void purgeDeleted_whenObjectsNotDeleted_thenThrowsS3Exception() {
+        //Given
+        List<FileData> files = Collections.singletonList(FileData.builder().id(1L).fileName(FILE_NAME).build());
+        Set<String> unreferenced = Collections.singleton(FILE_NAME);
+        when(fileDataRepository.findDeletedBefore(any(), anyInt())).thenReturn(files);
+        when(batchDeleteService.deleteLocked(files)).thenReturn(unreferenced);
+        when(s3Service.deleteFiles(unreferenced)).thenReturn(Collections.singletonMap(FILE_NAME, "Access Denied"));
+
+        //When
+        //Then
+        assertThrows(S3Exception.class, () -> filePurgeService.purgeDeleted());
+        verify(localDiskObjectCache, never()).invalidate(any());
+    }
+
+    @DisplayName("Удаление пачки файлов с истёкшим сроком хранения. Объекты без ссылок должны быть удалены одним вызовом.")
+    @Test
+    void purgeExpired_whenExpiredFiles_thenDeletesObjectsInBulk() {
+        //Given
+        List<FileData> files = Collections.singletonList(FileData.builder().id(1L).fileName(FILE_NAME).build());
+        Set<String> unreferenced = Collections.singleton(FILE_NAME);
+        when(fileDataRepository.findExpiredBefore(any(), anyInt())).thenReturn(files);
+        when(batchDeleteService.deleteLocked(files)).thenReturn(unreferenced);
+        when(s3Service.deleteFiles(unreferenced)).thenReturn(Collections.emptyMap());
+
+        //When
+        int purged = filePurgeService.purgeExpired();
+
+        //Then
+        assertEquals(1, purged);
+        verify(s3Service).deleteFiles(unreferenced);
+        verify(fileDataRepository, never()).findDeletedBefore(any(), anyInt());
+    }
+}
@@ -1,9 +1,11 @@
 package edu.rumirnul.mediafilestorage.service.impl;
 
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
 import edu.rumirnul.mediafilestorage.config.MinioContainerConfig;
 import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
 import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
 import edu.rumirnul.mediafilestorage.exception.ForbiddenFileFormatException;
 import edu.rumirnul.mediafilestorage.exception.IOAccessException;
@@ -86,11 +88,29 @@ class FileServiceImplTest {
     }
 
 
-    @DisplayName("Сохранение файла с ошибкой во время сохранения в minio. Метаданные файла должны быть удалены.")
+    @DisplayName("Потоковое сохранение файла. Размер, тип, контрольная сумма и время создания должны быть заполнены.")
     @Test
-    void saveFile_whenMinioException_thenThrowsFileNotFoundException() throws InterruptedException {
+    void saveFile_whenStreamed_thenFillsExtendedMetadata() {
         //Given
-        MultipartFile multipartFile = getCorrectMultipartFile();
+        InputStream inputStream = getDefaultInputStream();
+
+        //When
+        FileData result = fileService.saveFile(DEFAULT_ORIGINAL_FILE_NAME, inputStream, BYTE_DATA.length);
+
+        //Then
+        assertEquals(BYTE_DATA.length, result.getSize());
+        assertEquals("application/pdf", result.getContentType());
+        assertEquals(Hashing.sha256().hashBytes(BYTE_DATA).toString(), result.getChecksum());
+        assertNotNull(result.getCreatedAt());
+        assertEquals(FileStatus.STORED, result.getStatus());
+    }
+
+    @DisplayName("Сохранение файла с ошибкой во время сохранения в minio. Файл должен читаться из подготовленной копии.")
+    @Test
+    void saveFile_whenMinioException_thenServesStagedContent() throws InterruptedException, IOException {
+        //Given
+        byte[] content = getRandomContent();
+        MultipartFile multipartFile = getMultipartFile(content);
         String uncorrectedBucketName = "test-bucket-non-exist";
         final String correctBucketName = minioConfiguration.getBucket();
         minioConfiguration.setBucket(uncorrectedBucketName);
@@ -100,16 +120,47 @@ class FileServiceImplTest {
         Thread.sleep(1000);
         long id = fileData.getId();
 
-        Throwable throwable = catchThrowable(() -> fileService.getFileById(id));
-
         //Then
-        assertThat(throwable).isInstanceOf(FileNotFoundException.class);
+        assertEquals(FileStatus.PENDING, fileService.getFileStatus(id));
+        assertArrayEquals(content, ByteStreams.toByteArray(fileService.getFileById(id)));
 
 
         //Возвращение корректного имени файла в конфиг.
         minioConfiguration.setBucket(correctBucketName);
     }
 
+    @DisplayName("Сохранение двух файлов с одинаковым содержимым. Файлы должны ссылаться на один объект хранилища.")
+    @Test
+    void saveFile_whenSameContent_thenSharesObject() throws InterruptedException, IOException {
+        //Given
+        byte[] content = getRandomContent();
+
+        //When
+        FileData first = fileService.saveFile(getMultipartFile(content));
+        FileData second = fileService.saveFile(DEFAULT_ORIGINAL_FILE_NAME, new ByteArrayInputStream(content), content.length);
+        Thread.sleep(1000);
+
+        //Then
+        assertNotEquals(first.getFileName(), second.getFileName());
+        assertEquals(first.getStorageName(), second.getStorageName());
+    }
+
+    @DisplayName("Удаление одного из файлов с одинаковым содержимым. Второй файл должен остаться доступен.")
+    @Test
+    void deleteFileById_whenContentShared_thenKeepsObject() throws InterruptedException, IOException {
+        //Given
+        byte[] content = getRandomContent();
+        FileData first = fileService.saveFile(getMultipartFile(content));
+        Thread.sleep(1000);
+        FileData second = fileService.saveFile(getMultipartFile(content));
+
+        //When
+        fileService.deleteFileById(first.getId());
+
+        //Then
+        assertArrayEquals(content, ByteStreams.toByteArray(fileService.getFileById(second.getId())));
+    }
+
     @DisplayName("Сохранение файла с InputStream = null. Должно выбросить ошибку NullPointerException.")
     @Test
     void saveFile_whenNullInputStream_thenThrowsNullPointerException() {
@@ -425,6 +476,16 @@ class FileServiceImplTest {
 
 
     private static MultipartFile getCorrectMultipartFile() {
+        return getMultipartFile(BYTE_DATA);
+    }
+
+    private static byte[] getRandomContent() {
+        byte[] content = new byte[BYTE_DATA.length];
+        RANDOM.nextBytes(content);
+        return content;
+    }
+
+    private static MultipartFile getMultipartFile(byte[] content) {
 
         return new MultipartFile() {
             @Override
@@ -460,7 +521,7 @@ class FileServiceImplTest {
 
             @Override
             public InputStream getInputStream() throws IOException {
-                return getDefaultInputStream();
+                return new ByteArrayInputStream(content);
             }
 
             @Override
@@ -0,0 +1,162 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.DiskCacheConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.service.impl.LocalDiskObjectCache.CachedObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Тестирование функционала {@link LocalDiskObjectCache}
+ */
+class LocalDiskObjectCacheTest {
+
+    private static final String FILE_NAME = "file.txt";
+    private static final byte[] DATA = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+    @TempDir
+    Path tempDir;
+
+    DiskCacheConfiguration configuration;
+    LocalDiskObjectCache cache;
+
+    @BeforeEach
+    void setUp() {
+        configuration = new DiskCacheConfiguration();
+        configuration.setEnabled(true);
+        configuration.setDirectory(tempDir.resolve("cache"));
+        configuration.setMaxSize(DataSize.ofMegabytes(1));
+        configuration.setMaxObjectSize(DataSize.ofKilobytes(512));
+        cache = new LocalDiskObjectCache(configuration, new SimpleMeterRegistry());
+    }
+
+    @DisplayName("Сохранение файла в кэш. Файл должен храниться в каталоге кэша и читаться по диапазону.")
+    @Test
+    void put_whenCorrectContent_thenStoredInDirectory() throws Exception {
+        //When
+        cache.put(FILE_NAME, stat(DATA.length), () -> new ByteArrayInputStream(DATA));
+
+        //Then
+        CachedObject cachedObject = cache.acquire(FILE_NAME).orElseThrow(AssertionError::new);
+        assertThat(cachedObject.getPath().getParent()).isEqualTo(configuration.getDirectory());
+        assertThat(cachedObject.getPath().getFileName().toString()).startsWith(FILE_NAME);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        LocalDiskObjectCache.transferTo(cachedObject.getPath(), 2, 5, outputStream);
+        assertArrayEquals(Arrays.copyOfRange(DATA, 2, 7), outputStream.toByteArray());
+
+        try (InputStream inputStream = LocalDiskObjectCache.open(cachedObject.getPath(), 8, 2)) {
+            assertArrayEquals(Arrays.copyOfRange(DATA, 8, 10), ByteStreams.toByteArray(inputStream));
+        }
+    }
+
+    @DisplayName("Удаление файла из кэша. Файл должен быть удалён с диска.")
+    @Test
+    void invalidate_whenCached_thenDeletesFile() {
+        //Given
+        Path path = cache.put(FILE_NAME, stat(DATA.length), () -> new ByteArrayInputStream(DATA)).getPath();
+
+        //When
+        cache.invalidate(FILE_NAME);
+
+        //Then
+        assertThat(cache.acquire(FILE_NAME)).isEmpty();
+        assertThat(Files.exists(path)).isFalse();
+    }
+
+    @DisplayName("Удаление из кэша файла, который читает скачивание. Файл должен быть удалён с диска после освобождения.")
+    @Test
+    void invalidate_whenAcquired_thenDeletesFileAfterClose() {
+        //Given
+        cache.put(FILE_NAME, stat(DATA.length), () -> new ByteArrayInputStream(DATA));
+        CachedObject cachedObject = cache.acquire(FILE_NAME).orElseThrow(AssertionError::new);
+
+        //When
+        cache.invalidate(FILE_NAME);
+
+        //Then
+        assertThat(cache.acquire(FILE_NAME)).isEmpty();
+        assertThat(Files.exists(cachedObject.getPath())).isTrue();
+        cachedObject.close();
+        assertThat(Files.exists(cachedObject.getPath())).isFalse();
+    }
+
+    @DisplayName("Повторное сохранение закреплённого файла. Файл прежней записи не должен удаляться до освобождения.")
+    @Test
+    void put_whenPreviousAcquired_thenKeepsPreviousFile() {
+        //Given
+        cache.put(FILE_NAME, stat(DATA.length), () -> new ByteArrayInputStream(DATA));
+        CachedObject previous = cache.acquire(FILE_NAME).orElseThrow(AssertionError::new);
+
+        //When
+        CachedObject current = cache.put(FILE_NAME, stat(DATA.length), () -> new ByteArrayInputStream(DATA));
+
+        //Then
+        assertThat(current.getPath()).isNotEqualTo(previous.getPath());
+        assertThat(Files.exists(previous.getPath())).isTrue();
+        previous.close();
+        assertThat(Files.exists(previous.getPath())).isFalse();
+        assertThat(Files.exists(current.getPath())).isTrue();
+    }
+
+    @DisplayName("Сохранение файла в кэш в фоне. Файл должен появиться в кэше.")
+    @Test
+    void fill_whenCacheable_thenCachesInBackground() throws Exception {
+        //When
+        cache.fill(FILE_NAME, stat(DATA.length), () -> new ByteArrayInputStream(DATA));
+
+        //Then
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!cache.acquire(FILE_NAME).isPresent() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.acquire(FILE_NAME)).isPresent();
+    }
+
+    @DisplayName("Размер содержимого не совпадает с размером в хранилище. Файл не должен попасть в кэш.")
+    @Test
+    void put_whenSizeMismatch_thenThrowsAndNotCached() throws Exception {
+        //When
+        Throwable throwable = catchThrowable(() ->
+                cache.put(FILE_NAME, stat(DATA.length + 1), () -> new ByteArrayInputStream(DATA)));
+
+        //Then
+        assertThat(throwable).isInstanceOf(UncheckedIOException.class);
+        assertThat(cache.acquire(FILE_NAME)).isEmpty();
+        try (Stream<Path> files = Files.list(configuration.getDirectory())) {
+            assertThat(files.count()).isZero();
+        }
+    }
+
+    @DisplayName("Проверка размера файла. Файлы больше максимального размера и выключенный кэш не кэшируются.")
+    @Test
+    void isCacheable_whenTooLargeOrDisabled_thenFalse() {
+        assertThat(cache.isCacheable(DataSize.ofKilobytes(512).toBytes())).isTrue();
+        assertThat(cache.isCacheable(DataSize.ofKilobytes(513).toBytes())).isFalse();
+
+        configuration.setEnabled(false);
+        assertThat(cache.isCacheable(1)).isFalse();
+    }
+
+    private static FileStatDto stat(long size) {
+        return FileStatDto.builder().size(size).etag("etag").build();
+    }
+}
@@ -4,8 +4,6 @@ import com.google.common.io.ByteStreams;
 import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
 import edu.rumirnul.mediafilestorage.config.MinioContainerConfig;
 import edu.rumirnul.mediafilestorage.dto.FileDto;
-import edu.rumirnul.mediafilestorage.entity.FileData;
-import edu.rumirnul.mediafilestorage.event.FileSaveFailedEvent;
 import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
 import edu.rumirnul.mediafilestorage.exception.S3Exception;
 import edu.rumirnul.mediafilestorage.service.S3Service;
@@ -21,8 +19,6 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
-import org.springframework.test.context.event.ApplicationEvents;
-import org.springframework.test.context.event.RecordApplicationEvents;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -34,9 +30,6 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.Mockito.doNothing;
-import static org.mockito.Mockito.when;
 
 /**
  * Тестирование функционала {@link MinioFileStorageServiceImpl}
@@ -44,7 +37,6 @@ import static org.mockito.Mockito.when;
 @ActiveProfiles("miniointegrationtest")
 @SpringBootTest
 @ContextConfiguration(classes = {MinioContainerConfig.class}, initializers = {MinioContainerConfig.Initializer.class})
-@RecordApplicationEvents
 class MinioFileStorageServiceImplTest {
 
     @Autowired
@@ -53,8 +45,6 @@ class MinioFileStorageServiceImplTest {
     MinioClient minioClient;
     @Autowired
     MinioConfiguration minioConfiguration;
-    @Autowired
-    ApplicationEvents applicationEvents;
     @MockBean
     FileDataService fileDataService;
 
@@ -74,95 +64,61 @@ class MinioFileStorageServiceImplTest {
 
     @DisplayName("Сохранение файла. Должно пройти успешно.")
     @Test
-    void saveFile_whenCorrectFileDto_thenCorrectSave() throws IOException {
+    void putFile_whenCorrectFileDto_thenCorrectSave() throws IOException {
         //Given
         FileDto fileDto = createCorrectFileDto();
 
         //When
-        s3Service.saveFile(fileDto);
+        s3Service.putFile(fileDto);
 
         //Then
         InputStream result = s3Service.getFileByName(fileDto.getName());
         assertArrayEquals(ByteStreams.toByteArray(getDefaultInputStream()), ByteStreams.toByteArray(result));
     }
 
-    @DisplayName("Сохранение файла в bucket, которого нет. Должно отправить event FileSaveFailedEvent и выбросить ошибку S3Exception.")
+    @DisplayName("Сохранение файла в bucket, которого нет. Должно выбросить ошибку S3Exception.")
     @Test
-    void saveFile_whenNotExistsBucket_thenThrowsS3Exception() throws IOException {
+    void putFile_whenNotExistsBucket_thenThrowsS3Exception() throws IOException {
         //Given
         FileDto fileDto = createCorrectFileDto();
         String uncorrectedBucketName = "test-bucket-non-exist";
         final String correctBucketName = minioConfiguration.getBucket();
         minioConfiguration.setBucket(uncorrectedBucketName);
 
-        FileData fileData = new FileData();
-        fileData.setFileName(fileDto.getName());
-        fileData.setId(10L);
-
         //When
-        when(fileDataService.getByName(fileDto.getName())).thenReturn(fileData);
-        doNothing().when(fileDataService).delete(fileData);
-
-        Throwable throwable = catchThrowable(() -> s3Service.saveFile(fileDto));
+        Throwable throwable = catchThrowable(() -> s3Service.putFile(fileDto));
 
         //Then
-        assertEquals(1, applicationEvents
-                .stream(FileSaveFailedEvent.class)
-                .filter(event -> event.getName().equals(fileDto.getName()))
-                .count());
-
         assertThat(throwable).isInstanceOf(S3Exception.class);
         //Возвращение корректного имени файла в конфиг.
         minioConfiguration.setBucket(correctBucketName);
     }
 
-    @DisplayName("Сохранение файла с name = null. Должно отправить event FileSaveFailedEvent и выбросить ошибку S3Exception.")
+    @DisplayName("Сохранение файла с name = null. Должно выбросить ошибку S3Exception.")
     @Test
-    void saveFile_whenNullFileName_thenThrowsS3Exception() throws IOException {
+    void putFile_whenNullFileName_thenThrowsS3Exception() throws IOException {
         //Given
         FileDto fileDto = createCorrectFileDto();
         fileDto.setName(null);
 
-        FileData fileData = new FileData();
-        fileData.setFileName(fileDto.getName());
-        fileData.setId(10L);
-
         //When
-        when(fileDataService.getByName(fileDto.getName())).thenReturn(fileData);
-        doNothing().when(fileDataService).delete(fileData);
-
-        Throwable throwable = catchThrowable(() -> s3Service.saveFile(fileDto));
+        Throwable throwable = catchThrowable(() -> s3Service.putFile(fileDto));
 
         //Then
-        assertEquals(1, applicationEvents
-                .stream(FileSaveFailedEvent.class)
-                .count());
-
         assertThat(throwable).isInstanceOf(S3Exception.class);
     }
 
-    @DisplayName("Сохранение файла неверным полем size. Должно отправить event FileSaveFailedEvent и выбросить ошибку S3Exception.")
+    @DisplayName("Сохранение файла неверным полем size. Должно выбросить ошибку S3Exception.")
     @Test
-    void saveFile_whenUncorrectedSize_thenThrowsS3Exception() throws IOException {
+    void putFile_whenUncorrectedSize_thenThrowsS3Exception() throws IOException {
         //Given
         FileDto fileDto = createCorrectFileDto();
         fileDto.setSize(1509000L);
 
-        FileData fileData = new FileData();
-        fileData.setFileName(fileDto.getName());
-        fileData.setId(10L);
-
         //When
-        when(fileDataService.getByName(fileDto.getName())).thenReturn(fileData);
-        doNothing().when(fileDataService).delete(fileData);
-
-        Throwable throwable = catchThrowable(() -> s3Service.saveFile(fileDto));
+        Throwable throwable = catchThrowable(() -> s3Service.putFile(fileDto));
 
         //Then
-        assertEquals(1, applicationEvents
-                .stream(FileSaveFailedEvent.class)
-                .count());
-
         assertThat(throwable).isInstanceOf(S3Exception.class);
     }
 
@@ -173,7 +129,7 @@ class MinioFileStorageServiceImplTest {
         FileDto fileDto = createCorrectFileDto();
 
         //When
-        s3Service.saveFile(fileDto);
+        s3Service.putFile(fileDto);
 
         //Then
         InputStream result = s3Service.getFileByName(fileDto.getName());
@@ -213,7 +169,7 @@ class MinioFileStorageServiceImplTest {
         FileDto fileDto = createCorrectFileDto();
 
         //When
-        s3Service.saveFile(fileDto);
+        s3Service.putFile(fileDto);
 
         //Then
         s3Service.deleteFileByName(fileDto.getName());
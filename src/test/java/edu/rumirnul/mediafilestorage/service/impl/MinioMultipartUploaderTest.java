@@ -0,0 +1,195 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.client.MultipartMinioClient;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.ShardingConfiguration;
+import edu.rumirnul.mediafilestorage.repository.ContentChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.messages.Part;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование функционала {@link MinioMultipartUploader}
+ */
+class MinioMultipartUploaderTest {
+
+    private static final String BUCKET = "test-bucket";
+    private static final String OBJECT_NAME = "object";
+    private static final String UPLOAD_ID = "upload-id";
+    private static final int PART_SIZE = (int) DataSize.ofMegabytes(5).toBytes();
+
+    MinioClient minioClient;
+    MultipartMinioClient multipartMinioClient;
+    MinioMultipartUploader uploader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        minioClient = mock(MinioClient.class);
+        multipartMinioClient = mock(MultipartMinioClient.class);
+
+        MinioConfiguration configuration = new MinioConfiguration();
+        configuration.setBucket(BUCKET);
+        configuration.setPartSize(DataSize.ofBytes(PART_SIZE));
+        configuration.setUploadConcurrency(2);
+        configuration.setUploadThreads(2);
+        configuration.setUploadBufferMemory(DataSize.ofMegabytes(20));
+
+        when(multipartMinioClient.createMultipartUpload(BUCKET, OBJECT_NAME)).thenReturn(UPLOAD_ID);
+        MinioShardRouter router = new MinioShardRouter(
+                Collections.singletonList(new MinioShard(MinioShardRouter.DEFAULT_SHARD, BUCKET,
+                        minioClient, multipartMinioClient, minioClient)),
+                new ShardingConfiguration(), mock(FileDataRepository.class), mock(ContentChunkRepository.class), mock(FileSegmentRepository.class),
+                new ChunkingConfiguration(), new PackingConfiguration());
+        uploader = new MinioMultipartUploader(router, configuration);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        uploader.shutdown();
+    }
+
+    @DisplayName("Загрузка файла меньше размера части. Должен выполниться один запрос putObject.")
+    @Test
+    void upload_whenSmallFile_thenSinglePutObject() throws Exception {
+        //Given
+        byte[] data = new byte[1024];
+
+        //When
+        long result = uploader.upload(OBJECT_NAME, new ByteArrayInputStream(data), -1);
+
+        //Then
+        assertEquals(data.length, result);
+        verify(minioClient).putObject(any(PutObjectArgs.class));
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @DisplayName("Загрузка большого файла. Должна выполниться multipart загрузка с упорядоченными частями.")
+    @Test
+    void upload_whenLargeFile_thenUploadsPartsAndCompletes() throws Exception {
+        //Given
+        byte[] data = new byte[PART_SIZE * 2 + 100];
+        when(multipartMinioClient.uploadPart(eq(BUCKET), eq(OBJECT_NAME), eq(UPLOAD_ID), anyInt(), any(), anyInt()))
+                .thenAnswer(invocation -> "etag-" + invocation.getArgument(3));
+
+        //When
+        long result = uploader.upload(OBJECT_NAME, new ByteArrayInputStream(data), data.length);
+
+        //Then
+        assertEquals(data.length, result);
+        ArgumentCaptor<Part[]> parts = ArgumentCaptor.forClass(Part[].class);
+        verify(multipartMinioClient).completeMultipartUpload(eq(BUCKET), eq(OBJECT_NAME), eq(UPLOAD_ID), parts.capture());
+        assertThat(parts.getValue()).extracting(Part::partNumber).containsExactly(1, 2, 3);
+        assertThat(parts.getValue()).extracting(Part::etag).containsExactly("etag-1", "etag-2", "etag-3");
+        verify(multipartMinioClient, never()).abortMultipartUpload(any(), any(), any());
+    }
+
+    @DisplayName("Ошибка загрузки части. Загрузка должна быть отменена и выброшена ошибка S3Exception.")
+    @Test
+    void upload_whenPartFails_thenAbortsAndThrowsS3Exception() throws Exception {
+        //Given
+        byte[] data = new byte[PART_SIZE * 3];
+        when(multipartMinioClient.uploadPart(eq(BUCKET), eq(OBJECT_NAME), eq(UPLOAD_ID), anyInt(), any(), anyInt()))
+                .thenThrow(new IOException("connection reset"));
+
+        //When
+        Throwable throwable = catchThrowable(() -> uploader.upload(OBJECT_NAME, new ByteArrayInputStream(data), -1));
+
+        //Then
+        assertThat(throwable).isInstanceOf(S3Exception.class);
+        verify(multipartMinioClient).abortMultipartUpload(BUCKET, OBJECT_NAME, UPLOAD_ID);
+        verify(multipartMinioClient, never()).completeMultipartUpload(any(), any(), any(), any());
+    }
+
+    @DisplayName("Ошибка загрузки одной части. Все буферы частей должны вернуться в пул.")
+    @Test
+    void upload_whenOnePartFails_thenReleasesAllBuffers() throws Exception {
+        //Given
+        byte[] data = new byte[PART_SIZE * 6];
+        int availableBuffers = uploader.availableBuffers();
+        when(multipartMinioClient.uploadPart(eq(BUCKET), eq(OBJECT_NAME), eq(UPLOAD_ID), anyInt(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    int partNumber = invocation.getArgument(3);
+                    if (partNumber == 2) {
+                        throw new IOException("connection reset");
+                    }
+                    Thread.sleep(50);
+                    return "etag-" + partNumber;
+                });
+
+        //When
+        Throwable throwable = catchThrowable(() -> uploader.upload(OBJECT_NAME, new ByteArrayInputStream(data), -1));
+
+        //Then
+        assertThat(throwable).isInstanceOf(S3Exception.class);
+        assertEquals(availableBuffers, uploader.availableBuffers());
+        verify(multipartMinioClient).abortMultipartUpload(BUCKET, OBJECT_NAME, UPLOAD_ID);
+    }
+
+    @DisplayName("Размер потока не совпадает с заявленным. Должно выбросить ошибку S3Exception.")
+    @Test
+    void upload_whenSizeMismatch_thenThrowsS3Exception() {
+        //Given
+        byte[] data = new byte[100];
+
+        //When
+        Throwable throwable = catchThrowable(() -> uploader.upload(OBJECT_NAME, new ByteArrayInputStream(data), 1000));
+
+        //Then
+        assertThat(throwable).isInstanceOf(S3Exception.class);
+        verifyNoInteractions(minioClient);
+    }
+
+    @DisplayName("Загрузка части, которая короче заявленного размера. Часть не должна загружаться.")
+    @Test
+    void uploadPart_whenShorterThanLength_thenThrowsS3Exception() throws Exception {
+        //Given
+        byte[] data = new byte[100];
+
+        //When
+        Throwable thrown = catchThrowable(() ->
+                uploader.uploadPart(OBJECT_NAME, UPLOAD_ID, 3, new ByteArrayInputStream(data), 200));
+
+        //Then
+        assertThat(thrown).isInstanceOf(S3Exception.class);
+        verify(multipartMinioClient, never()).uploadPart(any(), any(), any(), anyInt(), any(), anyInt());
+    }
+
+    @DisplayName("Загрузка части. Часть должна загрузиться под указанным номером.")
+    @Test
+    void uploadPart_whenFullPart_thenUploadsWithPartNumber() throws Exception {
+        //Given
+        byte[] data = new byte[200];
+        when(multipartMinioClient.uploadPart(eq(BUCKET), eq(OBJECT_NAME), eq(UPLOAD_ID), eq(3), any(), eq(200)))
+                .thenReturn("etag-3");
+
+        //When
+        String etag = uploader.uploadPart(OBJECT_NAME, UPLOAD_ID, 3, new ByteArrayInputStream(data), 200);
+
+        //Then
+        assertEquals("etag-3", etag);
+    }
+}
@@ -0,0 +1,174 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.config.ChunkingConfiguration;
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.ShardingConfiguration;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.repository.ContentChunkRepository;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование выбора шарда в {@link MinioShardRouter}
+ */
+class MinioShardRouterTest {
+
+    private static final String OBJECT_NAME = "object.pdf";
+
+    FileDataRepository fileDataRepository;
+    ContentChunkRepository contentChunkRepository;
+    FileSegmentRepository fileSegmentRepository;
+    MinioShard first;
+    MinioShard second;
+    MinioShardRouter router;
+
+    @BeforeEach
+    void setUp() {
+        fileDataRepository = mock(FileDataRepository.class);
+        contentChunkRepository = mock(ContentChunkRepository.class);
+        fileSegmentRepository = mock(FileSegmentRepository.class);
+        first = new MinioShard("first", "first-bucket", null, null, null);
+        second = new MinioShard("second", "second-bucket", null, null, null);
+        router = new MinioShardRouter(Arrays.asList(first, second), new ShardingConfiguration(), fileDataRepository,
+                contentChunkRepository, fileSegmentRepository, new ChunkingConfiguration(), new PackingConfiguration());
+    }
+
+    @DisplayName("Выбор шарда файла, шард которого сохранён в метаданных. Должен вернуться сохранённый шард.")
+    @Test
+    void route_whenShardStoredInMetadata_thenReturnsStoredShard() {
+        //Given
+        MinioShard other = routeByRing(OBJECT_NAME) == first ? second : first;
+        when(fileDataRepository.findShardByStorageName(OBJECT_NAME)).thenReturn(Optional.of(other.getName()));
+
+        //When
+        MinioShard shard = router.route(OBJECT_NAME);
+
+        //Then
+        assertSame(other, shard);
+    }
+
+    @DisplayName("Выбор шарда файла, шард которого передан из метаданных файла. Должен вернуться переданный шард без запроса к БД.")
+    @Test
+    void route_whenPlacedFromMetadata_thenReturnsPlacedShardWithoutQuery() {
+        //Given
+        MinioShard other = routeByRing(OBJECT_NAME) == first ? second : first;
+
+        //When
+        router.place(OBJECT_NAME, other.getName());
+        MinioShard shard = router.route(OBJECT_NAME);
+
+        //Then
+        assertSame(other, shard);
+        verifyNoInteractions(fileDataRepository);
+    }
+
+    @DisplayName("Выбор шарда файла, сохранённого до разделения на шарды. Должен вернуться шард по умолчанию.")
+    @Test
+    void route_whenPlacedWithoutShard_thenReturnsDefaultShard() {
+        //Given
+        MinioShard defaultShard = new MinioShard(MinioShardRouter.DEFAULT_SHARD, "bucket", null, null, null);
+        router = new MinioShardRouter(Arrays.asList(first, defaultShard), new ShardingConfiguration(),
+                fileDataRepository, contentChunkRepository, fileSegmentRepository, new ChunkingConfiguration(),
+                new PackingConfiguration());
+
+        //When
+        router.place(OBJECT_NAME, null);
+        MinioShard shard = router.route(OBJECT_NAME);
+
+        //Then
+        assertSame(defaultShard, shard);
+        verifyNoInteractions(fileDataRepository);
+    }
+
+    @DisplayName("Повторный выбор шарда объекта без метаданных. Должен вернуться шард кольца, метаданные читаются один раз.")
+    @Test
+    void route_whenObjectNotInMetadata_thenUsesRingAndRemembersIt() {
+        //Given
+        when(fileDataRepository.findShardByStorageName(anyString())).thenReturn(Optional.empty());
+
+        //When
+        MinioShard shard = router.route(OBJECT_NAME);
+        MinioShard repeated = router.route(OBJECT_NAME);
+
+        //Then
+        assertSame(shard, repeated);
+        verify(fileDataRepository, times(1)).findShardByStorageName(OBJECT_NAME);
+    }
+
+    @DisplayName("Выбор шарда объекта, найденного листингом в другом шарде. Должен вернуться шард из листинга.")
+    @Test
+    void route_whenRememberedFromListing_thenReturnsListedShard() {
+        //Given
+        MinioShard other = routeByRing(OBJECT_NAME) == first ? second : first;
+
+        //When
+        router.remember(OBJECT_NAME, other);
+        MinioShard shard = router.route(OBJECT_NAME);
+
+        //Then
+        assertSame(other, shard);
+        verifyNoInteractions(fileDataRepository);
+    }
+
+    @DisplayName("Выбор шарда части содержимого. Должен вернуться шард из метаданных части.")
+    @Test
+    void route_whenChunkStoredInMetadata_thenReturnsChunkShard() {
+        //Given
+        String chunkName = "chunks/" + OBJECT_NAME;
+        MinioShard other = routeByRing(chunkName) == first ? second : first;
+        when(contentChunkRepository.findShardByHash(OBJECT_NAME)).thenReturn(Optional.of(other.getName()));
+
+        //When
+        MinioShard shard = router.route(chunkName);
+
+        //Then
+        assertSame(other, shard);
+        verifyNoInteractions(fileDataRepository);
+    }
+
+    @DisplayName("Выбор шарда объекта, сохранённого в шарде, которого нет в конфигурации. Должно выбросить S3Exception.")
+    @Test
+    void route_whenShardUnknown_thenThrowsS3Exception() {
+        //Given
+        when(fileDataRepository.findShardByStorageName(OBJECT_NAME)).thenReturn(Optional.of(MinioShardRouter.DEFAULT_SHARD));
+
+        //When
+        //Then
+        assertThrows(S3Exception.class, () -> router.route(OBJECT_NAME));
+    }
+
+    @DisplayName("Запуск без шарда по умолчанию при файлах, записанных до разделения на шарды. Должно выбросить ошибку.")
+    @Test
+    void checkDefaultShard_whenUnshardedFilesAndNoDefaultShard_thenThrowsIllegalStateException() {
+        //Given
+        when(fileDataRepository.existsByShardOrUnsharded(MinioShardRouter.DEFAULT_SHARD)).thenReturn(true);
+
+        //When
+        //Then
+        assertThrows(IllegalStateException.class, () -> router.checkDefaultShard());
+    }
+
+    /**
+     * Шард кольца для объекта, определённый отдельным экземпляром без метаданных.
+     */
+    private MinioShard routeByRing(String objectName) {
+        FileDataRepository emptyRepository = mock(FileDataRepository.class);
+        when(emptyRepository.findShardByStorageName(anyString())).thenReturn(Optional.empty());
+        return new MinioShardRouter(Arrays.asList(first, second), new ShardingConfiguration(), emptyRepository,
+                mock(ContentChunkRepository.class), mock(FileSegmentRepository.class), new ChunkingConfiguration(),
+                new PackingConfiguration())
+                .route(objectName);
+    }
+}
@@ -0,0 +1,122 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.MemoryCacheConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование функционала {@link OffHeapCachingS3Service}
+ */
+class OffHeapCachingS3ServiceTest {
+
+    private static final String FILE_NAME = "file.svg";
+    private static final byte[] DATA = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+    S3Service s3Service;
+    MemoryCacheConfiguration configuration;
+    OffHeapCachingS3Service cachingS3Service;
+
+    @BeforeEach
+    void setUp() {
+        s3Service = mock(S3Service.class);
+        configuration = new MemoryCacheConfiguration();
+        configuration.setEnabled(true);
+        configuration.setMaxSize(DataSize.ofKilobytes(64));
+        configuration.setMaxObjectSize(DataSize.ofKilobytes(1));
+        cachingS3Service = new OffHeapCachingS3Service(s3Service, configuration, new SimpleMeterRegistry());
+
+        when(s3Service.statFile(FILE_NAME)).thenReturn(FileStatDto.builder().size(DATA.length).etag("etag").build());
+        when(s3Service.getFileByName(eq(FILE_NAME), anyLong(), anyLong()))
+                .thenAnswer(invocation -> {
+                    int offset = (int) (long) invocation.getArgument(1);
+                    int length = (int) (long) invocation.getArgument(2);
+                    return new ByteArrayInputStream(DATA, offset, length);
+                });
+    }
+
+    @DisplayName("Повторные запросы файла. Файл должен попасть в кэш со второго запроса и дальше читаться из памяти.")
+    @Test
+    void getFileByName_whenRequestedRepeatedly_thenCachedOnSecondRequest() throws Exception {
+        //When
+        read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+        read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+        byte[] third = read(cachingS3Service.getFileByName(FILE_NAME, 2, 5));
+        FileStatDto stat = cachingS3Service.statFile(FILE_NAME);
+
+        //Then
+        assertArrayEquals(Arrays.copyOfRange(DATA, 2, 7), third);
+        assertEquals("etag", stat.getEtag());
+        verify(s3Service, times(2)).getFileByName(eq(FILE_NAME), anyLong(), anyLong());
+        verify(s3Service, times(1)).statFile(FILE_NAME);
+    }
+
+    @DisplayName("Повторные запросы большого файла. Файл не должен попадать в кэш.")
+    @Test
+    void getFileByName_whenTooLarge_thenNotCached() throws Exception {
+        //Given
+        configuration.setMaxObjectSize(DataSize.ofBytes(DATA.length - 1));
+
+        //When
+        for (int i = 0; i < 4; i++) {
+            read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+        }
+
+        //Then
+        verify(s3Service, times(4)).getFileByName(FILE_NAME, 0, DATA.length);
+        verify(s3Service, times(1)).statFile(FILE_NAME);
+    }
+
+    @DisplayName("Удаление закэшированного файла. Следующий запрос должен обратиться к хранилищу.")
+    @Test
+    void deleteFileByName_whenCached_thenEvicts() throws Exception {
+        //Given
+        read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+        read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+
+        //When
+        cachingS3Service.deleteFileByName(FILE_NAME);
+        read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+
+        //Then
+        verify(s3Service).deleteFileByName(FILE_NAME);
+        verify(s3Service, times(3)).getFileByName(eq(FILE_NAME), anyLong(), anyLong());
+    }
+
+    @DisplayName("Кэш выключен. Все запросы должны передаваться хранилищу.")
+    @Test
+    void getFileByName_whenDisabled_thenDelegates() throws Exception {
+        //Given
+        configuration.setEnabled(false);
+
+        //When
+        read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+        read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+        read(cachingS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+
+        //Then
+        verify(s3Service, times(3)).getFileByName(FILE_NAME, 0, DATA.length);
+        verify(s3Service, never()).statFile(FILE_NAME);
+    }
+
+    private static byte[] read(InputStream inputStream) throws Exception {
+        try (InputStream content = inputStream) {
+            return ByteStreams.toByteArray(content);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.service.impl.OffHeapSlabStore.Segment;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Тестирование функционала {@link OffHeapSlabStore}
+ */
+class OffHeapSlabStoreTest {
+
+    private static final int PAGE_SIZE = 16;
+
+    @DisplayName("Сохранение содержимого на нескольких страницах. Должно читаться целиком и по диапазону.")
+    @Test
+    void store_whenSeveralPages_thenReadsBack() throws Exception {
+        //Given
+        OffHeapSlabStore store = new OffHeapSlabStore(PAGE_SIZE * 4, PAGE_SIZE);
+        byte[] data = new byte[40];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        //When
+        Segment segment = store.store(data, data.length);
+
+        //Then
+        assertEquals(3, segment.getPageCount());
+        try (InputStream inputStream = segment.open(0, data.length)) {
+            assertArrayEquals(data, ByteStreams.toByteArray(inputStream));
+        }
+        try (InputStream inputStream = segment.open(10, 20)) {
+            assertArrayEquals(Arrays.copyOfRange(data, 10, 30), ByteStreams.toByteArray(inputStream));
+        }
+    }
+
+    @DisplayName("Недостаточно свободных страниц. Должен вернуть null.")
+    @Test
+    void store_whenNotEnoughPages_thenReturnNull() {
+        //Given
+        OffHeapSlabStore store = new OffHeapSlabStore(PAGE_SIZE * 2, PAGE_SIZE);
+
+        //When
+        Segment segment = store.store(new byte[PAGE_SIZE * 3], PAGE_SIZE * 3);
+
+        //Then
+        assertNull(segment);
+    }
+
+    @DisplayName("Освобождение сегмента с открытым потоком. Страницы должны освобождаться после закрытия потока.")
+    @Test
+    void release_whenStreamOpen_thenPagesFreedAfterClose() throws Exception {
+        //Given
+        OffHeapSlabStore store = new OffHeapSlabStore(PAGE_SIZE, PAGE_SIZE);
+        Segment segment = store.store(new byte[PAGE_SIZE], PAGE_SIZE);
+        InputStream inputStream = segment.open(0, PAGE_SIZE);
+
+        //When
+        segment.release();
+
+        //Then
+        assertThat(store.getUsedBytes()).isEqualTo(PAGE_SIZE);
+        assertNull(store.store(new byte[1], 1));
+
+        inputStream.close();
+        assertThat(store.getUsedBytes()).isZero();
+        assertNull(segment.open(0, 1));
+        assertNotNull(store.store(new byte[1], 1));
+    }
+}
@@ -0,0 +1,96 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Тестирование функционала {@link ParallelRangeInputStream}
+ */
+class ParallelRangeInputStreamTest {
+
+    private static final Random RANDOM = new Random();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @DisplayName("Чтение объекта диапазонами, скачанными не по порядку. Содержимое должно совпадать с исходным.")
+    @Test
+    void read_whenRangesCompleteOutOfOrder_thenReturnsContentInOrder() throws IOException {
+        //Given
+        byte[] data = new byte[10_000];
+        RANDOM.nextBytes(data);
+        ParallelRangeInputStream.RangeFetcher fetcher = (offset, length) -> {
+            Thread.sleep(RANDOM.nextInt(5));
+            return Arrays.copyOfRange(data, (int) offset, (int) offset + length);
+        };
+
+        //When
+        byte[] result;
+        try (InputStream inputStream = new ParallelRangeInputStream(fetcher, executor, 0, data.length, 333, 4)) {
+            result = ByteStreams.toByteArray(inputStream);
+        }
+
+        //Then
+        assertArrayEquals(data, result);
+    }
+
+    @DisplayName("Чтение части объекта. Одновременно должно скачиваться не больше window диапазонов.")
+    @Test
+    void read_whenPartOfObject_thenReturnsPartAndRespectsWindow() throws IOException {
+        //Given
+        byte[] data = new byte[5_000];
+        RANDOM.nextBytes(data);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        ParallelRangeInputStream.RangeFetcher fetcher = (offset, length) -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            Thread.sleep(2);
+            active.decrementAndGet();
+            return Arrays.copyOfRange(data, (int) offset, (int) offset + length);
+        };
+
+        //When
+        byte[] result;
+        try (InputStream inputStream = new ParallelRangeInputStream(fetcher, executor, 1000, 3000, 100, 3)) {
+            result = ByteStreams.toByteArray(inputStream);
+        }
+
+        //Then
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 4000), result);
+        assertThat(maxActive.get()).isLessThanOrEqualTo(3);
+    }
+
+    @DisplayName("Ошибка скачивания диапазона. Должно выбросить ошибку IOException.")
+    @Test
+    void read_whenRangeFails_thenThrowsIOException() {
+        //Given
+        ParallelRangeInputStream.RangeFetcher fetcher = (offset, length) -> {
+            throw new IllegalStateException("range failed");
+        };
+        InputStream inputStream = new ParallelRangeInputStream(fetcher, executor, 0, 1000, 100, 2);
+
+        //When
+        Throwable throwable = catchThrowable(() -> ByteStreams.toByteArray(inputStream));
+
+        //Then
+        assertThat(throwable).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,155 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.PresignedUrlConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileStatDto;
+import edu.rumirnul.mediafilestorage.dto.PresignedUploadDto;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.exception.FileNotFoundException;
+import edu.rumirnul.mediafilestorage.exception.UploadSessionStateException;
+import edu.rumirnul.mediafilestorage.repository.FileDataRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование загрузки файлов напрямую в хранилище в {@link PresignedUploadService}
+ */
+class PresignedUploadServiceTest {
+
+    private static final Long FILE_ID = 1L;
+    private static final String FILE_NAME = "file.pdf";
+    private static final String UPLOAD_URL = "http://minio/bucket/file.pdf?X-Amz-Signature=signature";
+
+    FileDataRepository fileDataRepository;
+    FileDataService fileDataService;
+    S3Service s3Service;
+    PresignedUrlConfiguration configuration;
+    PresignedUploadService presignedUploadService;
+
+    @BeforeEach
+    void setUp() {
+        fileDataRepository = mock(FileDataRepository.class);
+        fileDataService = mock(FileDataService.class);
+        s3Service = mock(S3Service.class);
+        configuration = new PresignedUrlConfiguration();
+        when(fileDataService.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        presignedUploadService = new PresignedUploadService(fileDataRepository, fileDataService, s3Service, configuration);
+    }
+
+    @DisplayName("Регистрация файла. Файл должен ожидать загрузки, ссылка должна быть подписана на время из настроек.")
+    @Test
+    void register_whenFileData_thenReturnsPresignedUrl() {
+        //Given
+        FileData fileData = FileData.builder().fileName(FILE_NAME).build();
+        when(s3Service.getPresignedUploadUrl(FILE_NAME, configuration.getUploadUrlTtl())).thenReturn(UPLOAD_URL);
+
+        //When
+        PresignedUploadDto upload = presignedUploadService.register(fileData);
+
+        //Then
+        assertEquals(UPLOAD_URL, upload.getUploadUrl());
+        assertEquals(FileStatus.AWAITING_UPLOAD, fileData.getStatus());
+        assertEquals(fileData.getCreatedAt().plus(configuration.getUploadUrlTtl()), upload.getExpiresAt());
+    }
+
+    @DisplayName("Подтверждение загрузки до загрузки содержимого. Должно выбрасываться исключение.")
+    @Test
+    void complete_whenContentMissing_thenThrowsException() {
+        //Given
+        when(fileDataRepository.findWithLockById(FILE_ID)).thenReturn(Optional.of(awaitingFile(null)));
+        when(s3Service.statFile(FILE_NAME)).thenThrow(new FileNotFoundException("File not found in storage."));
+
+        //When
+        assertThrows(UploadSessionStateException.class, () -> presignedUploadService.complete(FILE_ID));
+
+        //Then
+        verify(fileDataService, never()).save(any());
+    }
+
+    @DisplayName("Подтверждение загрузки. Файл должен быть сохранён с размером из хранилища.")
+    @Test
+    void complete_whenContentUploaded_thenStoresFile() {
+        //Given
+        when(fileDataRepository.findWithLockById(FILE_ID)).thenReturn(Optional.of(awaitingFile(null)));
+        when(s3Service.statFile(FILE_NAME)).thenReturn(FileStatDto.builder().size(42).build());
+
+        //When
+        FileData fileData = presignedUploadService.complete(FILE_ID);
+
+        //Then
+        assertEquals(FileStatus.STORED, fileData.getStatus());
+        assertEquals(42L, fileData.getSize());
+    }
+
+    @DisplayName("Подтверждение загрузки с размером, отличным от заявленного. Содержимое должно удаляться.")
+    @Test
+    void complete_whenSizeDiffers_thenDeletesContent() {
+        //Given
+        when(fileDataRepository.findWithLockById(FILE_ID)).thenReturn(Optional.of(awaitingFile(10L)));
+        when(s3Service.statFile(FILE_NAME)).thenReturn(FileStatDto.builder().size(42).build());
+
+        //When
+        FileData fileData = presignedUploadService.complete(FILE_ID);
+
+        //Then
+        assertEquals(FileStatus.FAILED, fileData.getStatus());
+        verify(s3Service).deleteFileByName(FILE_NAME);
+    }
+
+    @DisplayName("Уведомление о создании объекта, который не ожидается. Объект должен пропускаться.")
+    @Test
+    void completeByName_whenFileStored_thenSkips() {
+        //Given
+        FileData stored = awaitingFile(null);
+        stored.setStatus(FileStatus.STORED);
+        when(fileDataRepository.findFileDataByFileName(FILE_NAME)).thenReturn(stored);
+
+        //When
+        boolean completed = presignedUploadService.completeByName(FILE_NAME);
+
+        //Then
+        assertEquals(false, completed);
+        verify(s3Service, never()).statFile(any());
+    }
+
+    @DisplayName("Проверка истёкших загрузок. Загруженные файлы должны сохраняться, остальные - удаляться.")
+    @Test
+    void deleteExpired_whenExpiredUploads_thenStoresUploadedAndDeletesMissing() {
+        //Given
+        FileData uploaded = awaitingFile(null);
+        FileData missing = FileData.builder().id(2L).fileName("missing.pdf").status(FileStatus.AWAITING_UPLOAD).build();
+        when(fileDataRepository.findByStatusAndCreatedAtBefore(eq(FileStatus.AWAITING_UPLOAD), any(), any()))
+                .thenReturn(Arrays.asList(uploaded, missing));
+        when(s3Service.statFile(FILE_NAME)).thenReturn(FileStatDto.builder().size(42).build());
+        when(s3Service.statFile("missing.pdf")).thenThrow(new FileNotFoundException("File not found in storage."));
+
+        //When
+        int checked = presignedUploadService.deleteExpired();
+
+        //Then
+        assertEquals(2, checked);
+        assertEquals(FileStatus.STORED, uploaded.getStatus());
+        verify(fileDataService).delete(missing);
+        verify(fileDataService, never()).delete(uploaded);
+    }
+
+    private static FileData awaitingFile(Long size) {
+        return FileData.builder()
+                .id(FILE_ID)
+                .fileName(FILE_NAME)
+                .size(size)
+                .status(FileStatus.AWAITING_UPLOAD)
+                .build();
+    }
+}
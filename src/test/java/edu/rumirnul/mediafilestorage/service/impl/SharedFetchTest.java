@@ -0,0 +1,128 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Тестирование функционала {@link SharedFetch}
+ */
+class SharedFetchTest {
+
+    private static final int WINDOW_SIZE = 16;
+    private static final int CHUNK_SIZE = 4;
+
+    ExecutorService executor;
+    byte[] data;
+    List<Long> fallbackPositions;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+        data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        fallbackPositions = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @DisplayName("Два читателя одного скачивания. Оба должны получить всё содержимое из одного потока хранилища.")
+    @Test
+    void subscribe_whenTwoReaders_thenBothReadSameUpstream() throws Exception {
+        //Given
+        SharedFetch fetch = createFetch(data.length);
+        InputStream first = fetch.subscribe();
+        InputStream second = fetch.subscribe();
+        executor.execute(() -> fetch.pump(new ByteArrayInputStream(data)));
+
+        //When
+        Future<byte[]> firstResult = executor.submit(() -> readAll(first));
+        Future<byte[]> secondResult = executor.submit(() -> readAll(second));
+
+        //Then
+        assertArrayEquals(data, firstResult.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(data, secondResult.get(5, TimeUnit.SECONDS));
+        assertThat(fallbackPositions).isEmpty();
+    }
+
+    @DisplayName("Медленный читатель. Быстрый читатель не должен его ждать, медленный дочитывает собственным запросом.")
+    @Test
+    void read_whenSlowReader_thenDetachedToOwnRequest() throws Exception {
+        //Given
+        SharedFetch fetch = createFetch(WINDOW_SIZE);
+        InputStream fast = fetch.subscribe();
+        InputStream slow = fetch.subscribe();
+        executor.execute(() -> fetch.pump(new ByteArrayInputStream(data)));
+
+        //When
+        byte[] fastResult = executor.submit(() -> readAll(fast)).get(5, TimeUnit.SECONDS);
+        byte[] slowResult = readAll(slow);
+
+        //Then
+        assertArrayEquals(data, fastResult);
+        assertArrayEquals(data, slowResult);
+        assertThat(fallbackPositions).containsExactly(0L);
+        assertThat(fetch.subscribe()).isNull();
+    }
+
+    @DisplayName("Все читатели закрыли потоки. Поток хранилища должен быть закрыт.")
+    @Test
+    void close_whenAllReadersClosed_thenUpstreamClosed() throws Exception {
+        //Given
+        SharedFetch fetch = createFetch(WINDOW_SIZE);
+        InputStream reader = fetch.subscribe();
+        AtomicBoolean upstreamClosed = new AtomicBoolean();
+        InputStream upstream = new ByteArrayInputStream(data) {
+            @Override
+            public void close() {
+                upstreamClosed.set(true);
+            }
+        };
+        Future<?> pump = executor.submit(() -> fetch.pump(upstream));
+        reader.read(new byte[1]);
+
+        //When
+        reader.close();
+
+        //Then
+        pump.get(5, TimeUnit.SECONDS);
+        assertThat(upstreamClosed).isTrue();
+        assertThat(fetch.subscribe()).isNull();
+    }
+
+    private SharedFetch createFetch(int windowSize) {
+        return new SharedFetch(data.length, windowSize, CHUNK_SIZE,
+                position -> {
+                    fallbackPositions.add(position);
+                    return new ByteArrayInputStream(data, (int) position, data.length - (int) position);
+                },
+                fetch -> {
+                });
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws Exception {
+        try (InputStream content = inputStream) {
+            return ByteStreams.toByteArray(content);
+        }
+    }
+}
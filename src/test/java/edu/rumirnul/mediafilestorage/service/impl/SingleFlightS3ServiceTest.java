@@ -0,0 +1,93 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import edu.rumirnul.mediafilestorage.config.CoalescingConfiguration;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование функционала {@link SingleFlightS3Service}
+ */
+class SingleFlightS3ServiceTest {
+
+    private static final String FILE_NAME = "file.mp4";
+    private static final byte[] DATA = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+    S3Service s3Service;
+    CoalescingConfiguration configuration;
+    SingleFlightS3Service singleFlightS3Service;
+
+    @BeforeEach
+    void setUp() {
+        s3Service = mock(S3Service.class);
+        configuration = new CoalescingConfiguration();
+        singleFlightS3Service = new SingleFlightS3Service(s3Service, configuration, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        singleFlightS3Service.shutdown();
+    }
+
+    @DisplayName("Одновременные скачивания одного файла. Должен выполниться один запрос к хранилищу.")
+    @Test
+    void getFileByName_whenConcurrentRequests_thenSingleUpstreamRequest() throws Exception {
+        //Given
+        CountDownLatch upstreamReady = new CountDownLatch(1);
+        when(s3Service.getFileByName(FILE_NAME, 0, DATA.length)).thenReturn(new ByteArrayInputStream(DATA) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                try {
+                    upstreamReady.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read(b, off, len);
+            }
+        });
+
+        //When
+        InputStream first = singleFlightS3Service.getFileByName(FILE_NAME, 0, DATA.length);
+        InputStream second = singleFlightS3Service.getFileByName(FILE_NAME, 0, DATA.length);
+        upstreamReady.countDown();
+
+        //Then
+        assertArrayEquals(DATA, readAll(first));
+        assertArrayEquals(DATA, readAll(second));
+        verify(s3Service, times(1)).getFileByName(FILE_NAME, 0, DATA.length);
+    }
+
+    @DisplayName("Объединение выключено. Каждый запрос должен обращаться к хранилищу.")
+    @Test
+    void getFileByName_whenDisabled_thenDelegates() throws Exception {
+        //Given
+        configuration.setEnabled(false);
+        when(s3Service.getFileByName(FILE_NAME, 0, DATA.length))
+                .thenAnswer(invocation -> new ByteArrayInputStream(DATA));
+
+        //When
+        readAll(singleFlightS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+        readAll(singleFlightS3Service.getFileByName(FILE_NAME, 0, DATA.length));
+
+        //Then
+        verify(s3Service, times(2)).getFileByName(FILE_NAME, 0, DATA.length);
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        try (InputStream content = inputStream) {
+            return ByteStreams.toByteArray(content);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование локального журнала {@link StagingJournal}
+ */
+class StagingJournalTest {
+
+    private static final int CHUNK_SIZE = 4;
+
+    @TempDir
+    Path tempDir;
+
+    @DisplayName("Запись файла из нескольких блоков. Содержимое и его части должны читаться из журнала.")
+    @Test
+    void open_whenAppended_thenReadsContentAndRanges() throws Exception {
+        //Given
+        StagingJournal journal = new StagingJournal(tempDir, 1024, CHUNK_SIZE);
+        byte[] content = bytes(10);
+
+        //When
+        long size = journal.append("file.pdf", new ByteArrayInputStream(content));
+
+        //Then
+        assertEquals(10, size);
+        assertArrayEquals(content, read(journal.open("file.pdf", 0, Long.MAX_VALUE)));
+        assertArrayEquals(new byte[]{3, 4, 5, 6, 7}, read(journal.open("file.pdf", 3, 5)));
+        assertNull(journal.open("missing.pdf", 0, 1));
+        journal.close();
+    }
+
+    @DisplayName("Повторное открытие журнала. Записанные файлы должны восстанавливаться, удалённые - нет.")
+    @Test
+    void constructor_whenReopened_thenReplaysStagedFiles() throws Exception {
+        //Given
+        StagingJournal journal = new StagingJournal(tempDir, 1024, CHUNK_SIZE);
+        journal.append("kept.pdf", new ByteArrayInputStream(bytes(9)));
+        journal.append("forwarded.pdf", new ByteArrayInputStream(bytes(3)));
+        journal.remove("forwarded.pdf");
+        journal.close();
+
+        //When
+        StagingJournal reopened = new StagingJournal(tempDir, 1024, CHUNK_SIZE);
+
+        //Then
+        assertThat(reopened.fileNames()).containsExactly("kept.pdf");
+        assertEquals(9, reopened.size("kept.pdf"));
+        assertArrayEquals(bytes(9), read(reopened.open("kept.pdf", 0, Long.MAX_VALUE)));
+        reopened.close();
+    }
+
+    @DisplayName("Оборванная запись в конце сегмента. Файл без завершающей записи должен отбрасываться.")
+    @Test
+    void constructor_whenTailIsTorn_thenDiscardsIncompleteFile() throws Exception {
+        //Given
+        StagingJournal journal = new StagingJournal(tempDir, 1024, CHUNK_SIZE);
+        journal.append("complete.pdf", new ByteArrayInputStream(bytes(5)));
+        journal.append("torn.pdf", new ByteArrayInputStream(bytes(6)));
+        journal.close();
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        //When
+        StagingJournal reopened = new StagingJournal(tempDir, 1024, CHUNK_SIZE);
+
+        //Then
+        assertTrue(reopened.contains("complete.pdf"));
+        assertFalse(reopened.contains("torn.pdf"));
+        reopened.close();
+    }
+
+    @DisplayName("Удаление всех файлов заполненного сегмента. Сегмент должен удаляться с диска.")
+    @Test
+    void remove_whenSegmentHasNoFiles_thenDeletesSegment() throws Exception {
+        //Given
+        StagingJournal journal = new StagingJournal(tempDir, 64, CHUNK_SIZE);
+        for (int i = 0; i < 5; i++) {
+            journal.append("file" + i + ".pdf", new ByteArrayInputStream(bytes(16)));
+        }
+        int segmentsBefore = segments().size();
+
+        //When
+        for (int i = 0; i < 5; i++) {
+            journal.remove("file" + i + ".pdf");
+        }
+
+        //Then
+        assertThat(segmentsBefore).isGreaterThan(1);
+        assertEquals(1, segments().size());
+        journal.close();
+    }
+
+    @DisplayName("Одновременная запись нескольких файлов. Все файлы должны записываться без смешивания содержимого.")
+    @Test
+    void append_whenConcurrent_thenAllFilesAreReadable() throws Exception {
+        //Given
+        StagingJournal journal = new StagingJournal(tempDir, 1024 * 1024, CHUNK_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //When
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String fileName = "file" + i + ".pdf";
+            byte[] content = bytes(i + 1);
+            futures.add(executor.submit(() -> journal.append(fileName, new ByteArrayInputStream(content))));
+        }
+        for (Future<Long> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //Then
+        for (int i = 0; i < 32; i++) {
+            assertArrayEquals(bytes(i + 1), read(journal.open("file" + i + ".pdf", 0, Long.MAX_VALUE)));
+        }
+        journal.close();
+    }
+
+    @DisplayName("Чтение файла, одновременно удаляемого из журнала. Должно вернуться содержимое или null, но не ошибка.")
+    @Test
+    void open_whenRemovedConcurrently_thenReturnsContentOrNull() throws Exception {
+        //Given
+        StagingJournal journal = new StagingJournal(tempDir, 64, CHUNK_SIZE);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        byte[] content = bytes(48);
+
+        //When
+        //Then
+        for (int i = 0; i < 200; i++) {
+            String fileName = "file" + i + ".pdf";
+            journal.append(fileName, new ByteArrayInputStream(content));
+            Future<?> removal = executor.submit(() -> journal.remove(fileName));
+            InputStream inputStream = journal.open(fileName, 0, Long.MAX_VALUE);
+            removal.get(5, TimeUnit.SECONDS);
+            if (inputStream != null) {
+                assertArrayEquals(content, read(inputStream));
+            }
+        }
+        executor.shutdown();
+        journal.close();
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> paths = Files.list(tempDir)) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] read(InputStream inputStream) throws Exception {
+        try (InputStream content = inputStream) {
+            return ByteStreams.toByteArray(content);
+        }
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,214 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.dto.FileDto;
+import edu.rumirnul.mediafilestorage.entity.UploadOutbox;
+import edu.rumirnul.mediafilestorage.exception.S3Exception;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование обработки outbox загрузок в {@link UploadOutboxProcessor}
+ */
+class UploadOutboxProcessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    UploadOutboxService uploadOutboxService;
+    S3Service s3Service;
+    SegmentPacker segmentPacker;
+    UploadOutboxConfiguration configuration;
+    UploadOutboxProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        uploadOutboxService = mock(UploadOutboxService.class);
+        s3Service = mock(S3Service.class);
+        segmentPacker = mock(SegmentPacker.class);
+        configuration = new UploadOutboxConfiguration();
+        configuration.setWorkerThreads(1);
+        configuration.setQueueCapacity(1);
+        processor = new UploadOutboxProcessor(uploadOutboxService, s3Service, segmentPacker, configuration,
+                new PackingConfiguration());
+    }
+
+    @AfterEach
+    void tearDown() {
+        processor.shutdown();
+    }
+
+    @DisplayName("Успешная загрузка. Запись должна быть завершена, подготовленный файл удалён.")
+    @Test
+    void process_whenPutSucceeds_thenCompletesAndDeletesStagedFile() throws Exception {
+        //Given
+        UploadOutbox entry = createEntry();
+        when(s3Service.putFile(any(FileDto.class))).thenReturn(3L);
+        when(uploadOutboxService.complete(entry)).thenReturn(UploadOutboxService.Completion.COMPLETED);
+
+        //When
+        processor.process(entry);
+
+        //Then
+        verify(uploadOutboxService).complete(entry);
+        verify(uploadOutboxService).deleteStaged(entry.getStagedPath());
+        verify(uploadOutboxService, never()).fail(any(), any());
+        verify(s3Service, never()).deleteFileByName(any());
+    }
+
+    @DisplayName("Загрузка, отменённая удалением файлов. Загруженный объект должен быть удалён из хранилища.")
+    @Test
+    void process_whenCancelledDuringUpload_thenDeletesUploadedObject() throws Exception {
+        //Given
+        UploadOutbox entry = createEntry();
+        when(s3Service.putFile(any(FileDto.class))).thenReturn(3L);
+        when(uploadOutboxService.complete(entry)).thenReturn(UploadOutboxService.Completion.CANCELLED);
+
+        //When
+        processor.process(entry);
+
+        //Then
+        verify(s3Service).deleteFileByName(entry.getFileName());
+        verify(uploadOutboxService).deleteStaged(entry.getStagedPath());
+    }
+
+    @DisplayName("Загрузка, захват которой перешёл к другому обработчику. Объект и подготовленный файл должны остаться.")
+    @Test
+    void process_whenLeaseLost_thenKeepsObjectAndStagedFile() throws Exception {
+        //Given
+        UploadOutbox entry = createEntry();
+        when(s3Service.putFile(any(FileDto.class))).thenReturn(3L);
+        when(uploadOutboxService.complete(entry)).thenReturn(UploadOutboxService.Completion.LEASE_LOST);
+
+        //When
+        processor.process(entry);
+
+        //Then
+        verify(s3Service, never()).deleteFileByName(any());
+        verify(uploadOutboxService, never()).deleteStaged(any());
+        verify(uploadOutboxService, never()).fail(any(), any());
+    }
+
+    @DisplayName("Неудачная загрузка. Попытка должна быть записана, подготовленный файл сохранён для повтора.")
+    @Test
+    void process_whenPutFails_thenRecordsFailureAndKeepsStagedFile() throws Exception {
+        //Given
+        UploadOutbox entry = createEntry();
+        S3Exception error = new S3Exception("Failed to save file in s3(minio)");
+        when(s3Service.putFile(any(FileDto.class))).thenThrow(error);
+        when(uploadOutboxService.fail(entry, error)).thenReturn(false);
+
+        //When
+        processor.process(entry);
+
+        //Then
+        verify(uploadOutboxService).fail(entry, error);
+        verify(uploadOutboxService, never()).complete(any());
+        verify(uploadOutboxService, never()).deleteStaged(any());
+        assertTrue(Files.exists(Paths.get(entry.getStagedPath())));
+    }
+
+    @DisplayName("Опрос очереди при заполненном пуле. Записи не должны захватываться.")
+    @Test
+    void poll_whenQueueFull_thenDoesNotClaim() throws Exception {
+        //Given
+        UploadOutbox entry = createEntry();
+        when(s3Service.putFile(any(FileDto.class))).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return 3L;
+        });
+        processor.submit(entry);
+        processor.submit(entry);
+
+        //When
+        processor.poll();
+
+        //Then
+        verify(uploadOutboxService, never()).claim(anyInt());
+    }
+
+    @DisplayName("Опрос очереди. Захваченные записи должны быть загружены.")
+    @Test
+    void poll_whenEntriesAvailable_thenProcessesClaimed() throws Exception {
+        //Given
+        UploadOutbox entry = createEntry();
+        when(uploadOutboxService.claim(1)).thenReturn(Collections.singletonList(entry), Collections.emptyList());
+
+        //When
+        processor.poll();
+
+        //Then
+        verify(uploadOutboxService, timeout(5000)).complete(entry);
+    }
+
+    @DisplayName("Долгая загрузка. Захват записи должен продлеваться, пока загрузка выполняется.")
+    @Test
+    void submit_whenUploadOutlivesLease_thenRenewsLease() throws Exception {
+        //Given
+        processor.shutdown();
+        configuration.setLease(Duration.ofMillis(90));
+        processor = new UploadOutboxProcessor(uploadOutboxService, s3Service, segmentPacker, configuration,
+                new PackingConfiguration());
+        UploadOutbox entry = createEntry();
+        when(uploadOutboxService.renew(any())).thenReturn(1);
+        when(s3Service.putFile(any(FileDto.class))).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return 3L;
+        });
+
+        //When
+        processor.submit(entry);
+
+        //Then
+        verify(uploadOutboxService, timeout(5000)).complete(entry);
+        verify(uploadOutboxService, atLeastOnce()).renew(Collections.singletonList(entry));
+    }
+
+    @DisplayName("Опрос очереди с упаковкой. Маленькие файлы должны быть упакованы группой одной задачей.")
+    @Test
+    void poll_whenPackingEnabled_thenPacksClaimedGroup() throws Exception {
+        //Given
+        UploadOutbox entry = createEntry();
+        List<UploadOutbox> entries = Collections.singletonList(entry);
+        when(segmentPacker.isEnabled()).thenReturn(true);
+        when(uploadOutboxService.claimPackable(anyInt())).thenReturn(entries);
+        when(segmentPacker.group(entries)).thenReturn(Collections.singletonList(entries));
+
+        //When
+        processor.poll();
+
+        //Then
+        verify(segmentPacker, timeout(5000)).pack(entries);
+        verify(s3Service, never()).putFile(any(FileDto.class));
+    }
+
+    private UploadOutbox createEntry() throws Exception {
+        Path stagedFile = Files.write(tempDir.resolve("staged.pdf"), new byte[]{1, 2, 3});
+        when(uploadOutboxService.openForUpload(stagedFile.toString()))
+                .thenAnswer(invocation -> Files.newInputStream(stagedFile));
+        return UploadOutbox.builder()
+                .id(1L)
+                .fileId(10L)
+                .fileName("staged.pdf")
+                .stagedPath(stagedFile.toString())
+                .size(3)
+                .build();
+    }
+}
@@ -0,0 +1,391 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.client.MinioShard;
+import edu.rumirnul.mediafilestorage.config.PackingConfiguration;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileSegment;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.entity.UploadOutbox;
+import edu.rumirnul.mediafilestorage.repository.FileSegmentRepository;
+import edu.rumirnul.mediafilestorage.repository.UploadOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование повторных попыток и восстановления подготовленных файлов в {@link UploadOutboxService}
+ */
+class UploadOutboxServiceTest {
+
+    private static final String CLAIM_TOKEN = "claim-token";
+
+    @TempDir
+    Path tempDir;
+
+    UploadOutboxRepository uploadOutboxRepository;
+    FileDataService fileDataService;
+    FileBlobService fileBlobService;
+    FileSegmentRepository fileSegmentRepository;
+    UploadOutboxConfiguration configuration;
+    PackingConfiguration packingConfiguration;
+    MinioShardRouter minioShardRouter;
+    UploadOutboxService uploadOutboxService;
+
+    @BeforeEach
+    void setUp() {
+        uploadOutboxRepository = mock(UploadOutboxRepository.class);
+        fileDataService = mock(FileDataService.class);
+        fileBlobService = mock(FileBlobService.class);
+        fileSegmentRepository = mock(FileSegmentRepository.class);
+        packingConfiguration = new PackingConfiguration();
+        configuration = new UploadOutboxConfiguration();
+        configuration.setNodeId("node-1");
+        minioShardRouter = mock(MinioShardRouter.class);
+        when(minioShardRouter.route(anyString())).thenReturn(new MinioShard("second", "bucket", null, null, null));
+        uploadOutboxService = new UploadOutboxService(uploadOutboxRepository, fileDataService, fileBlobService,
+                fileSegmentRepository, configuration, packingConfiguration, minioShardRouter);
+    }
+
+    @DisplayName("Пауза перед повтором. Должна удваиваться и не превышать максимум.")
+    @Test
+    void backoff_whenAttemptsGrow_thenDoublesUpToMax() {
+        //When
+        Duration first = uploadOutboxService.backoff(1);
+        Duration fourth = uploadOutboxService.backoff(4);
+        Duration hundredth = uploadOutboxService.backoff(100);
+
+        //Then
+        assertThat(first).isBetween(Duration.ofMillis(800), Duration.ofSeconds(1));
+        assertThat(fourth).isBetween(Duration.ofMillis(6400), Duration.ofSeconds(8));
+        assertThat(hundredth).isBetween(Duration.ofMinutes(8), Duration.ofMinutes(10));
+    }
+
+    @DisplayName("Неудачная попытка. Запись должна быть отложена с увеличенным счётчиком попыток.")
+    @Test
+    void fail_whenAttemptsLeft_thenPostponesEntry() {
+        //Given
+        UploadOutbox entry = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf").attempts(2)
+                .claimToken(CLAIM_TOKEN).build();
+        UploadOutbox saved = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf").attempts(2)
+                .claimToken(CLAIM_TOKEN).build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.of(saved));
+
+        //When
+        boolean exhausted = uploadOutboxService.fail(entry, new RuntimeException("timeout"));
+
+        //Then
+        assertFalse(exhausted);
+        assertEquals(3, saved.getAttempts());
+        assertEquals("timeout", saved.getLastError());
+        assertThat(saved.getAvailableAt()).isAfter(Instant.now().plusSeconds(2));
+        verifyNoInteractions(fileDataService);
+    }
+
+    @DisplayName("Последняя неудачная попытка. Файлы с этим содержимым должны быть помечены FAILED, запись удалена.")
+    @Test
+    void fail_whenAttemptsExhausted_thenMarksFileFailed() {
+        //Given
+        UploadOutbox entry = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .attempts(configuration.getMaxAttempts() - 1).claimToken(CLAIM_TOKEN).build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.of(entry));
+
+        //When
+        boolean exhausted = uploadOutboxService.fail(entry, new RuntimeException("timeout"));
+
+        //Then
+        assertTrue(exhausted);
+        verify(fileDataService).updateStatusByStorageName("file.pdf", FileStatus.FAILED);
+        verify(fileBlobService).delete("file.pdf");
+        verify(uploadOutboxRepository).delete(entry);
+    }
+
+    @DisplayName("Последняя неудачная попытка при резервной копии содержимого. Загрузка должна продолжиться с копии, "
+            + "файлы не должны помечаться FAILED.")
+    @Test
+    void fail_whenAttemptsExhaustedAndStandbyExists_thenPromotesStandby() {
+        //Given
+        UploadOutbox entry = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .attempts(configuration.getMaxAttempts() - 1).claimToken(CLAIM_TOKEN).build();
+        UploadOutbox standby = UploadOutbox.builder().id(2L).fileId(11L).fileName("file.pdf")
+                .stagedPath("/staging/copy.pdf").standby(true).availableAt(Instant.now().minusSeconds(60)).build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.of(entry));
+        when(uploadOutboxRepository.findByFileNameAndStandbyTrueOrderByIdAsc("file.pdf"))
+                .thenReturn(Collections.singletonList(standby));
+
+        //When
+        boolean finished = uploadOutboxService.fail(entry, new RuntimeException("timeout"));
+
+        //Then
+        assertTrue(finished);
+        assertFalse(standby.isStandby());
+        assertThat(standby.getAvailableAt()).isBeforeOrEqualTo(Instant.now());
+        verify(uploadOutboxRepository).delete(entry);
+        verifyNoInteractions(fileDataService, fileBlobService);
+    }
+
+    @DisplayName("Неудачная попытка после потери захвата. Попытка не должна записываться.")
+    @Test
+    void fail_whenLeaseLost_thenKeepsEntry() {
+        //Given
+        UploadOutbox entry = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .attempts(configuration.getMaxAttempts() - 1).claimToken(CLAIM_TOKEN).build();
+        UploadOutbox saved = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .attempts(configuration.getMaxAttempts() - 1).claimToken("other-token").build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.of(saved));
+
+        //When
+        boolean finished = uploadOutboxService.fail(entry, new RuntimeException("timeout"));
+
+        //Then
+        assertFalse(finished);
+        assertEquals(configuration.getMaxAttempts() - 1, saved.getAttempts());
+        verify(uploadOutboxRepository, never()).delete(any());
+        verifyNoInteractions(fileDataService, fileBlobService);
+    }
+
+    @DisplayName("Постановка в очередь файла с уже сохранённым содержимым. Запись outbox не должна создаваться.")
+    @Test
+    void enqueue_whenContentDuplicated_thenSkipsUpload() {
+        //Given
+        FileData fileData = FileData.builder().fileName("copy.pdf").checksum("abc").size(3L).build();
+        when(fileBlobService.saveDeduplicated(fileData, FileStatus.PENDING)).thenReturn(true);
+
+        //When
+        Optional<UploadOutbox> entry = uploadOutboxService.enqueue(fileData, "/staging/copy.pdf");
+
+        //Then
+        assertFalse(entry.isPresent());
+        verify(uploadOutboxRepository, never()).save(any());
+    }
+
+    @DisplayName("Постановка в очередь файла с загружаемым содержимым. Копия должна сохраниться резервной записью.")
+    @Test
+    void enqueue_whenContentPending_thenKeepsStandbyCopy() {
+        //Given
+        FileData fileData = FileData.builder().id(11L).fileName("copy.pdf").checksum("abc").size(3L).build();
+        when(fileBlobService.saveDeduplicated(fileData, FileStatus.PENDING)).thenAnswer(invocation -> {
+            fileData.setObjectName("file.pdf");
+            fileData.setStatus(FileStatus.PENDING);
+            return true;
+        });
+        when(uploadOutboxRepository.save(any(UploadOutbox.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        //When
+        Optional<UploadOutbox> entry = uploadOutboxService.enqueue(fileData, "/staging/copy.pdf");
+
+        //Then
+        assertTrue(entry.isPresent());
+        assertTrue(entry.get().isStandby());
+        assertEquals("file.pdf", entry.get().getFileName());
+        assertEquals("/staging/copy.pdf", entry.get().getStagedPath());
+    }
+
+    @DisplayName("Завершение загрузки с резервной копией содержимого. Резервная запись должна быть отменена.")
+    @Test
+    void complete_whenStandbyExists_thenCancelsStandby() {
+        //Given
+        UploadOutbox entry = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .claimToken(CLAIM_TOKEN).build();
+        UploadOutbox standby = UploadOutbox.builder().id(2L).fileId(11L).fileName("file.pdf")
+                .stagedPath("/staging/copy.pdf").standby(true).build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.of(entry));
+        when(uploadOutboxRepository.findByFileNameAndStandbyTrueOrderByIdAsc("file.pdf"))
+                .thenReturn(Collections.singletonList(standby));
+
+        //When
+        UploadOutboxService.Completion completion = uploadOutboxService.complete(entry);
+
+        //Then
+        assertEquals(UploadOutboxService.Completion.COMPLETED, completion);
+        assertFalse(standby.isStandby());
+        assertTrue(standby.isCancelled());
+        verify(fileDataService).updateStatusByStorageName("file.pdf", FileStatus.STORED);
+    }
+
+    @DisplayName("Завершение отменённой загрузки. Должно вернуть CANCELLED, запись удалена, состояние файлов не меняется.")
+    @Test
+    void complete_whenCancelled_thenReturnsCancelled() {
+        //Given
+        UploadOutbox entry = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .claimToken(CLAIM_TOKEN).build();
+        UploadOutbox saved = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .claimToken(CLAIM_TOKEN).cancelled(true).build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.of(saved));
+
+        //When
+        UploadOutboxService.Completion completion = uploadOutboxService.complete(entry);
+
+        //Then
+        assertEquals(UploadOutboxService.Completion.CANCELLED, completion);
+        verify(uploadOutboxRepository).delete(saved);
+        verifyNoInteractions(fileDataService, fileBlobService);
+    }
+
+    @DisplayName("Завершение загрузки, запись которой уже обработана другим обработчиком. Должно вернуть LEASE_LOST.")
+    @Test
+    void complete_whenEntryMissing_thenReturnsLeaseLost() {
+        //Given
+        UploadOutbox entry = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .claimToken(CLAIM_TOKEN).build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.empty());
+
+        //When
+        UploadOutboxService.Completion completion = uploadOutboxService.complete(entry);
+
+        //Then
+        assertEquals(UploadOutboxService.Completion.LEASE_LOST, completion);
+        verifyNoInteractions(fileDataService, fileBlobService);
+    }
+
+    @DisplayName("Завершение загрузки, захват которой перешёл к другому обработчику. Запись не должна удаляться.")
+    @Test
+    void complete_whenClaimedByOther_thenReturnsLeaseLost() {
+        //Given
+        UploadOutbox entry = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .claimToken(CLAIM_TOKEN).build();
+        UploadOutbox saved = UploadOutbox.builder().id(1L).fileId(10L).fileName("file.pdf")
+                .claimToken("other-token").build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.of(saved));
+
+        //When
+        UploadOutboxService.Completion completion = uploadOutboxService.complete(entry);
+
+        //Then
+        assertEquals(UploadOutboxService.Completion.LEASE_LOST, completion);
+        verify(uploadOutboxRepository, never()).delete(any());
+        verifyNoInteractions(fileDataService, fileBlobService);
+    }
+
+    @DisplayName("Захват записей. Отменённая запись должна быть удалена, остальные получить общий токен захвата.")
+    @Test
+    void claim_whenEntryCancelled_thenDeletesItAndClaimsOthers() {
+        //Given
+        UploadOutbox queued = UploadOutbox.builder().id(1L).fileName("queued.pdf").claimToken("old-token").build();
+        UploadOutbox cancelled = UploadOutbox.builder().id(2L).fileName("cancelled.pdf")
+                .stagedPath(tempDir.resolve("cancelled.pdf").toString()).cancelled(true).build();
+        when(uploadOutboxRepository.findAvailableForUpdate(any(), anyCollection(), anyLong(), anyLong(), any()))
+                .thenReturn(Arrays.asList(queued, cancelled));
+
+        //When
+        List<UploadOutbox> claimed = uploadOutboxService.claim(10);
+
+        //Then
+        assertThat(claimed).containsExactly(queued);
+        assertThat(queued.getClaimToken()).isNotNull().isNotEqualTo("old-token");
+        assertThat(queued.getAvailableAt()).isAfter(Instant.now());
+        verify(uploadOutboxRepository).delete(cancelled);
+    }
+
+    @DisplayName("Захват записи выведенного из работы экземпляра. Запись должна перейти этому экземпляру.")
+    @Test
+    void claim_whenEntryOfAdoptedNode_thenHandsItOver() {
+        //Given
+        configuration.setStagingDirectory(tempDir);
+        configuration.setAdoptedNodes(Collections.singletonList("node-0"));
+        UploadOutbox adopted = UploadOutbox.builder().id(1L).fileName("adopted.pdf").owner("node-0")
+                .stagedPath("/old/staging/adopted.pdf").build();
+        when(uploadOutboxRepository.findAvailableForUpdate(any(), eq(Arrays.asList("node-0", "node-1")),
+                anyLong(), anyLong(), any())).thenReturn(Collections.singletonList(adopted));
+
+        //When
+        List<UploadOutbox> claimed = uploadOutboxService.claim(10);
+
+        //Then
+        assertThat(claimed).containsExactly(adopted);
+        assertEquals("node-1", adopted.getOwner());
+        assertEquals(tempDir.resolve("adopted.pdf").toString(), adopted.getStagedPath());
+    }
+
+    @DisplayName("Запуск с пустым каталогом подготовки. Должно выбросить ошибку IllegalStateException.")
+    @Test
+    void createStagingDirectory_whenNotConfigured_thenThrowsIllegalStateException() {
+        //Given
+        configuration.setStagingDirectory(null);
+
+        //When
+        //Then
+        assertThrows(IllegalStateException.class, () -> uploadOutboxService.createStagingDirectory());
+    }
+
+    @DisplayName("Восстановление после перезапуска. Захват записи журнала должен быть снят, лишнее содержимое удалено.")
+    @Test
+    void recoverStaged_whenJournalHasEntries_thenReleasesQueuedAndDeletesOrphans() throws Exception {
+        //Given
+        configuration.setStagingDirectory(tempDir.resolve("staging"));
+        configuration.setJournalDirectory(tempDir.resolve("journal"));
+        configuration.setJournalEnabled(true);
+        uploadOutboxService.createStagingDirectory();
+        uploadOutboxService.stage("queued.pdf", new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        uploadOutboxService.stage("orphan.pdf", new ByteArrayInputStream(new byte[]{4}));
+        uploadOutboxService.closeJournal();
+
+        UploadOutboxService restarted = new UploadOutboxService(uploadOutboxRepository, fileDataService, fileBlobService,
+                fileSegmentRepository, configuration, packingConfiguration, minioShardRouter);
+        restarted.createStagingDirectory();
+        UploadOutbox queued = UploadOutbox.builder().id(1L).fileName("queued.pdf").stagedPath("journal:queued.pdf")
+                .availableAt(Instant.now().plusSeconds(300)).build();
+        when(uploadOutboxRepository.findByFileNameInOrStagedPathIn(anyCollection(), anyCollection()))
+                .thenReturn(Collections.singletonList(queued));
+
+        //When
+        restarted.recoverStaged();
+
+        //Then
+        assertThat(queued.getAvailableAt()).isBeforeOrEqualTo(Instant.now());
+        assertEquals(3, restarted.findStagedSize("queued.pdf"));
+        assertEquals(-1, restarted.findStagedSize("orphan.pdf"));
+        restarted.closeJournal();
+    }
+
+    @DisplayName("Завершение загрузок одним сегментом. Отменённая загрузка должна быть пропущена, сегмент сохранён.")
+    @Test
+    void completePacked_whenOneCancelled_thenCompletesOthersAndSavesSegment() {
+        //Given
+        UploadOutbox queued = UploadOutbox.builder().id(1L).fileName("queued.svg").size(10)
+                .claimToken(CLAIM_TOKEN).build();
+        UploadOutbox cancelled = UploadOutbox.builder().id(2L).fileName("cancelled.svg").size(20)
+                .claimToken(CLAIM_TOKEN).build();
+        when(uploadOutboxRepository.findWithLockById(1L)).thenReturn(Optional.of(queued));
+        when(uploadOutboxRepository.findWithLockById(2L)).thenReturn(Optional.of(UploadOutbox.builder().id(2L)
+                .fileName("cancelled.svg").size(20).claimToken(CLAIM_TOKEN).cancelled(true).build()));
+
+        //When
+        int completed = uploadOutboxService.completePacked("segments/1", 30,
+                Arrays.asList(queued, cancelled), new long[]{0, 10});
+
+        //Then
+        assertEquals(1, completed);
+        verify(uploadOutboxRepository).delete(queued);
+        verify(fileBlobService).updateSegment("queued.svg", "segments/1", 0);
+        verify(fileDataService).updateSegmentByStorageName("queued.svg", "segments/1", 0);
+        verify(fileDataService, never()).updateSegmentByStorageName(eq("cancelled.svg"), any(), anyLong());
+        ArgumentCaptor<FileSegment> segment = ArgumentCaptor.forClass(FileSegment.class);
+        verify(fileSegmentRepository).save(segment.capture());
+        assertEquals("second", segment.getValue().getShard());
+    }
+}
@@ -0,0 +1,169 @@
+package edu.rumirnul.mediafilestorage.service.impl;
+
+import edu.rumirnul.mediafilestorage.config.MinioConfiguration;
+import edu.rumirnul.mediafilestorage.config.UploadOutboxConfiguration;
+import edu.rumirnul.mediafilestorage.dto.UploadSessionDto;
+import edu.rumirnul.mediafilestorage.entity.FileData;
+import edu.rumirnul.mediafilestorage.entity.FileStatus;
+import edu.rumirnul.mediafilestorage.entity.UploadSession;
+import edu.rumirnul.mediafilestorage.entity.UploadSessionPart;
+import edu.rumirnul.mediafilestorage.entity.UploadSessionStatus;
+import edu.rumirnul.mediafilestorage.exception.UploadSessionStateException;
+import edu.rumirnul.mediafilestorage.repository.UploadSessionPartRepository;
+import edu.rumirnul.mediafilestorage.repository.UploadSessionRepository;
+import edu.rumirnul.mediafilestorage.service.S3Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование сессий возобновляемой загрузки в {@link UploadSessionService}
+ */
+class UploadSessionServiceTest {
+
+    private static final String SESSION_ID = "session";
+    private static final String FILE_NAME = "file.pdf";
+    private static final String UPLOAD_ID = "upload-id";
+
+    UploadSessionRepository uploadSessionRepository;
+    UploadSessionPartRepository uploadSessionPartRepository;
+    FileDataService fileDataService;
+    S3Service s3Service;
+    UploadSessionService uploadSessionService;
+
+    @BeforeEach
+    void setUp() {
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+        uploadSessionPartRepository = mock(UploadSessionPartRepository.class);
+        fileDataService = mock(FileDataService.class);
+        s3Service = mock(S3Service.class);
+        MinioConfiguration minioConfiguration = new MinioConfiguration();
+        minioConfiguration.setPartSize(DataSize.ofBytes(10));
+        uploadSessionService = new UploadSessionService(uploadSessionRepository, uploadSessionPartRepository,
+                fileDataService, s3Service, minioConfiguration, new UploadOutboxConfiguration());
+    }
+
+    @DisplayName("Создание сессии. Должна начаться multipart загрузка, последняя часть должна быть короче.")
+    @Test
+    void create_whenValidSize_thenStartsMultipartUpload() {
+        //Given
+        when(s3Service.createMultipartUpload(FILE_NAME)).thenReturn(UPLOAD_ID);
+        when(uploadSessionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        //When
+        UploadSessionDto session = uploadSessionService.create(FILE_NAME, "original.pdf", "pdf", "application/pdf", 25);
+
+        //Then
+        assertEquals(3, session.getChunkCount());
+        assertEquals(10, session.getChunkSize());
+        assertEquals(UploadSessionStatus.ACTIVE, session.getStatus());
+        verify(s3Service).createMultipartUpload(FILE_NAME);
+    }
+
+    @DisplayName("Завершение сессии, в которой загружены не все части. Должно выбрасываться исключение.")
+    @Test
+    void complete_whenChunksMissing_thenThrowsException() {
+        //Given
+        when(uploadSessionRepository.findWithLockById(SESSION_ID)).thenReturn(Optional.of(activeSession()));
+        when(uploadSessionPartRepository.findBySessionIdOrderByChunkIndexAsc(SESSION_ID))
+                .thenReturn(Collections.singletonList(part(1, "etag-1")));
+
+        //When
+        assertThrows(UploadSessionStateException.class, () -> uploadSessionService.complete(SESSION_ID));
+
+        //Then
+        verify(s3Service, never()).completeMultipartUpload(anyString(), anyString(), any());
+        verify(fileDataService, never()).save(any());
+    }
+
+    @DisplayName("Завершение сессии со всеми частями. Файл должен собраться из частей по порядку.")
+    @Test
+    void complete_whenAllChunksUploaded_thenComposesFile() {
+        //Given
+        UploadSession session = activeSession();
+        when(uploadSessionRepository.findWithLockById(SESSION_ID)).thenReturn(Optional.of(session));
+        when(uploadSessionPartRepository.findBySessionIdOrderByChunkIndexAsc(SESSION_ID))
+                .thenReturn(Arrays.asList(part(0, "etag-0"), part(1, "etag-1")));
+        when(fileDataService.save(any())).thenAnswer(invocation -> {
+            FileData fileData = invocation.getArgument(0);
+            fileData.setId(7L);
+            return fileData;
+        });
+
+        //When
+        FileData fileData = uploadSessionService.complete(SESSION_ID);
+
+        //Then
+        verify(s3Service).completeMultipartUpload(FILE_NAME, UPLOAD_ID, Arrays.asList("etag-0", "etag-1"));
+        assertEquals(FILE_NAME, fileData.getFileName());
+        assertEquals(15L, fileData.getSize());
+        assertEquals(FileStatus.STORED, fileData.getStatus());
+        assertEquals(UploadSessionStatus.COMPLETED, session.getStatus());
+        assertEquals(7L, session.getFileId());
+    }
+
+    @DisplayName("Загрузка части в истёкшую сессию. Должно выбрасываться исключение.")
+    @Test
+    void recordPart_whenExpired_thenThrowsException() {
+        //Given
+        UploadSession session = activeSession();
+        session.setExpiresAt(Instant.now().minus(1, ChronoUnit.MINUTES));
+        when(uploadSessionRepository.findWithLockById(SESSION_ID)).thenReturn(Optional.of(session));
+
+        //When
+        assertThrows(UploadSessionStateException.class,
+                () -> uploadSessionService.recordPart(SESSION_ID, 0, 10, "etag-0"));
+
+        //Then
+        verify(uploadSessionPartRepository, never()).save(any());
+    }
+
+    @DisplayName("Удаление истёкших сессий. Должны отменяться только незавершённые multipart загрузки.")
+    @Test
+    void deleteExpired_whenExpiredSessions_thenAbortsActiveUploads() {
+        //Given
+        UploadSession active = activeSession();
+        UploadSession completed = UploadSession.builder().id("completed").fileName("other.pdf").uploadId("other")
+                .status(UploadSessionStatus.COMPLETED).build();
+        when(uploadSessionRepository.findByExpiresAtBefore(any(), any())).thenReturn(Arrays.asList(active, completed));
+
+        //When
+        int deleted = uploadSessionService.deleteExpired();
+
+        //Then
+        assertEquals(2, deleted);
+        verify(s3Service).abortMultipartUpload(FILE_NAME, UPLOAD_ID);
+        verify(s3Service, never()).abortMultipartUpload("other.pdf", "other");
+        verify(uploadSessionRepository).deleteAllInBatch(Arrays.asList(active, completed));
+    }
+
+    private static UploadSession activeSession() {
+        return UploadSession.builder()
+                .id(SESSION_ID)
+                .fileName(FILE_NAME)
+                .uploadId(UPLOAD_ID)
+                .size(15)
+                .chunkSize(10)
+                .chunkCount(2)
+                .status(UploadSessionStatus.ACTIVE)
+                .expiresAt(Instant.now().plus(1, ChronoUnit.HOURS))
+                .build();
+    }
+
+    private static UploadSessionPart part(int index, String etag) {
+        return UploadSessionPart.builder().sessionId(SESSION_ID).chunkIndex(index).etag(etag).build();
+    }
+}
@@ -0,0 +1,102 @@
+package edu.rumirnul.mediafilestorage.util;
+
+import edu.rumirnul.mediafilestorage.dto.ByteRangeDto;
+import edu.rumirnul.mediafilestorage.exception.RangeNotSatisfiableException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Тестирование функционала {@link ByteRangeUtils}
+ */
+class ByteRangeUtilsTest {
+
+    private static final long SIZE = 1000;
+
+    @DisplayName("Один диапазон. Должен вернуть диапазон с включёнными границами.")
+    @Test
+    void resolve_whenSingleRange_thenReturnRange() {
+        //When
+        List<ByteRangeDto> result = ByteRangeUtils.resolve("bytes=0-99", SIZE);
+
+        //Then
+        assertThat(result).containsExactly(new ByteRangeDto(0, 99));
+        assertThat(result.get(0).getLength()).isEqualTo(100);
+    }
+
+    @DisplayName("Открытый и суффиксный диапазоны. Должны ограничиваться размером файла.")
+    @Test
+    void resolve_whenOpenAndSuffixRanges_thenReturnRangesWithinSize() {
+        //When
+        List<ByteRangeDto> result = ByteRangeUtils.resolve("bytes=0-9, -50, 500-5000", SIZE);
+
+        //Then
+        assertThat(result).containsExactly(
+                new ByteRangeDto(0, 9),
+                new ByteRangeDto(500, 999));
+    }
+
+    @DisplayName("Пересекающиеся и соседние диапазоны. Должны быть объединены по возрастанию смещения.")
+    @Test
+    void resolve_whenOverlappingAndAdjacentRanges_thenCoalesce() {
+        //When
+        List<ByteRangeDto> result = ByteRangeUtils.resolve("bytes=500-599, 0-9, 10-19, 550-700, 900-", SIZE);
+
+        //Then
+        assertThat(result).containsExactly(
+                new ByteRangeDto(0, 19),
+                new ByteRangeDto(500, 700),
+                new ByteRangeDto(900, 999));
+    }
+
+    @DisplayName("Диапазонов больше максимального количества. Должен вернуть пустой список - файл целиком.")
+    @Test
+    void resolve_whenTooManyRanges_thenReturnEmptyList() {
+        //Given
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRangeUtils.MAX_RANGES; i++) {
+            header.append(", ").append(i * 10).append('-').append(i * 10);
+        }
+
+        //When
+        List<ByteRangeDto> result = ByteRangeUtils.resolve(header.toString(), SIZE);
+
+        //Then
+        assertThat(result).isEmpty();
+    }
+
+    @DisplayName("Часть диапазонов за концом файла. Невыполнимые диапазоны должны быть отброшены.")
+    @Test
+    void resolve_whenSomeRangesUnsatisfiable_thenSkipThem() {
+        //When
+        List<ByteRangeDto> result = ByteRangeUtils.resolve("bytes=2000-3000, 10-19", SIZE);
+
+        //Then
+        assertThat(result).containsExactly(new ByteRangeDto(10, 19));
+    }
+
+    @DisplayName("Все диапазоны за концом файла. Должно выбросить ошибку RangeNotSatisfiableException.")
+    @Test
+    void resolve_whenAllRangesUnsatisfiable_thenThrowsRangeNotSatisfiableException() {
+        //When
+        Throwable throwable = catchThrowable(() -> ByteRangeUtils.resolve("bytes=1000-", SIZE));
+
+        //Then
+        assertThat(throwable).isInstanceOf(RangeNotSatisfiableException.class);
+        assertThat(((RangeNotSatisfiableException) throwable).getSize()).isEqualTo(SIZE);
+    }
+
+    @DisplayName("Синтаксически неверный заголовок. Должен вернуть пустой список - файл целиком.")
+    @Test
+    void resolve_whenInvalidHeader_thenReturnEmptyList() {
+        //When
+        List<ByteRangeDto> result = ByteRangeUtils.resolve("items=0-10", SIZE);
+
+        //Then
+        assertThat(result).isEmpty();
+    }
+}